@@ -33,11 +33,15 @@ public interface ChangeListener {
     public static final ChangeListener NOOP = new ChangeListener() {
         @Override public void onChanged(BrooklynObject instance) {}
         @Override public void onManaged(BrooklynObject instance) {}
+        @Override public void onManagedAll(Iterable<? extends BrooklynObject> instances) {}
         @Override public void onUnmanaged(BrooklynObject instance) {}
     };
 
     void onManaged(BrooklynObject instance);
     
+    /** As {@link #onManaged(BrooklynObject)}, for many instances at once (e.g. a newly managed tree of entities). */
+    void onManagedAll(Iterable<? extends BrooklynObject> instances);
+    
     void onUnmanaged(BrooklynObject instance);
     
     void onChanged(BrooklynObject instance);
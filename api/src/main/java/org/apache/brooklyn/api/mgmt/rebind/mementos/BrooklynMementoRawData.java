@@ -44,6 +44,7 @@ public class BrooklynMementoRawData {
     
     public static class Builder {
         protected String planeId;
+        protected boolean streaming;
         protected String brooklynVersion;
         protected final Map<String, String> entities = Maps.newConcurrentMap();
         protected final Map<String, String> locations = Maps.newConcurrentMap();
@@ -58,6 +59,12 @@ public class BrooklynMementoRawData {
             planeId = val; return this;
         }
 
+        /** See {@link BrooklynMementoRawData#isStreaming()}. */
+        @Beta
+        public Builder streaming(boolean val) {
+            streaming = val; return this;
+        }
+
         /** @deprecated since 0.11.0; value not used */
         @Deprecated
         public Builder brooklynVersion(String val) {
@@ -148,6 +155,7 @@ public class BrooklynMementoRawData {
     }
 
     private final String planeId;
+    private final boolean streaming;
     private final String brooklynVersion;
     private final Map<String, String> entities;
     private final Map<String, String> locations;
@@ -160,6 +168,7 @@ public class BrooklynMementoRawData {
     
     private BrooklynMementoRawData(Builder builder) {
         planeId = builder.planeId;
+        streaming = builder.streaming;
         brooklynVersion = builder.brooklynVersion;
         entities = builder.entities;
         locations = builder.locations;
@@ -176,6 +185,16 @@ public class BrooklynMementoRawData {
         return planeId;
     }
 
+    /**
+     * Whether the values for entities, locations, policies, enrichers and feeds are the paths of their contents
+     * in the persistence store, rather than the contents, so that the persister reads each when it is needed
+     * and the persisted state is never all in memory at once. Catalog items and bundles always have their contents.
+     */
+    @Beta
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     /**
      * Setting the brooklyn version explicitly is optional. 
      * @deprecated since 0.11.0; value unused and not set anywhere
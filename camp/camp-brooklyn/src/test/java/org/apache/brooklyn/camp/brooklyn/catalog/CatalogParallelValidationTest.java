@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.camp.brooklyn.catalog;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.api.typereg.RegisteredType;
+import org.apache.brooklyn.camp.brooklyn.AbstractYamlTest;
+import org.apache.brooklyn.core.catalog.internal.BasicBrooklynCatalog;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.entity.stock.BasicEntity;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Validates interdependent catalog types concurrently, checking the result is as when validated one at a time
+ * (i.e. that the plan transformers and resolvers used here are safe to run concurrently).
+ */
+public class CatalogParallelValidationTest extends AbstractYamlTest {
+
+    private static final int NUM_ITEMS = 60;
+
+    /** Ten items of a basic type, then items each extending an earlier item, in chains six deep. */
+    private void addItems() {
+        List<String> lines = MutableList.of(
+                "brooklyn.catalog:",
+                "  version: " + TEST_VERSION,
+                "  items:");
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            lines.add("  - id: parallel" + i);
+            lines.add("    itemType: entity");
+            lines.add("    item:");
+            lines.add("      type: " + (i < 10 ? BasicEntity.class.getName() : "parallel" + (i - 10)));
+        }
+        addCatalogItems(lines);
+    }
+
+    private List<RegisteredType> getItems() {
+        List<RegisteredType> result = MutableList.of();
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            RegisteredType item = mgmt().getTypeRegistry().get("parallel" + i, TEST_VERSION);
+            if (item != null) result.add(item);
+        }
+        return result;
+    }
+
+    private Map<RegisteredType, Collection<Throwable>> validate(List<RegisteredType> types, int threads) {
+        ((ManagementContextInternal) mgmt()).getBrooklynProperties().put(BasicBrooklynCatalog.VALIDATION_THREADS, threads);
+        return mgmt().getCatalog().validateTypes(types);
+    }
+
+    @Test
+    public void testConcurrentValidationMatchesSerial() throws Exception {
+        addItems();
+        List<RegisteredType> types = getItems();
+        Assert.assertEquals(types.size(), NUM_ITEMS);
+
+        Map<RegisteredType, Collection<Throwable>> serialErrors = validate(types, 1);
+        Assert.assertTrue(serialErrors.isEmpty(), "errors: " + serialErrors);
+        for (int attempt = 0; attempt < 5; attempt++) {
+            Map<RegisteredType, Collection<Throwable>> errors = validate(getItems(), 4);
+            Assert.assertTrue(errors.isEmpty(), "attempt " + attempt + " errors: " + errors);
+        }
+        Assert.assertEquals(((BasicBrooklynCatalog) mgmt().getCatalog()).getLastValidationTimings().size(), NUM_ITEMS);
+    }
+
+    @Test
+    public void testConcurrentValidationReportsSameErrorsAsSerial() throws Exception {
+        addItems();
+        // the chain from parallel3 (parallel13, parallel23, ...) can no longer be resolved
+        deleteCatalogEntity("parallel3");
+        List<RegisteredType> types = getItems();
+
+        Map<RegisteredType, Collection<Throwable>> serialErrors = validate(types, 1);
+        Assert.assertEquals(serialErrors.size(), 5, "errors: " + serialErrors.keySet());
+        for (int attempt = 0; attempt < 5; attempt++) {
+            Assert.assertEquals(validate(types, 4).keySet(), serialErrors.keySet(), "attempt " + attempt);
+        }
+    }
+}
@@ -19,17 +19,21 @@
 package org.apache.brooklyn.camp.brooklyn.qa.performance;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.catalog.CatalogItem;
 import org.apache.brooklyn.camp.brooklyn.AbstractYamlTest;
+import org.apache.brooklyn.core.catalog.internal.BasicBrooklynCatalog;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.core.test.policy.TestPolicy;
 import org.apache.brooklyn.core.test.qa.performance.AbstractPerformanceTest;
 import org.apache.brooklyn.test.performance.PerformanceMeasurer;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
@@ -163,6 +167,53 @@ public class CatalogPerformanceTest extends AbstractYamlTest {
         runPerformanceTest("testPeekSameSpecsRepeatedly", null, job, null);
     }
     
+    /** A BOM of many items, most of which reference an earlier item, so are validated after it. */
+    private String manyItemsYaml(int idSuffix, int numItems) {
+        List<String> lines = MutableList.of(
+                "brooklyn.catalog:",
+                "  version: " + TEST_VERSION,
+                "  items:");
+        for (int i = 0; i < numItems; i++) {
+            lines.add("  - id: mybulkentity-" + idSuffix + "-" + i);
+            lines.add("    itemType: entity");
+            lines.add("    item:");
+            lines.add("      type: " + (i < 10 ? TestEntity.class.getName() : "mybulkentity-" + idSuffix + "-" + (i % 10)));
+        }
+        return Joiner.on("\n").join(lines);
+    }
+
+    @Test(groups={"Integration"})
+    public void testAddManyItems() {
+        final AtomicInteger counter = new AtomicInteger();
+        final AtomicReference<List<CatalogItem<?,?>>> items = new AtomicReference<>();
+
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                int i = counter.getAndIncrement();
+                items.set(ImmutableList.copyOf(mgmt().getCatalog().addItems(manyItemsYaml(i, 200), false)));
+                Map<String, Duration> timings = ((BasicBrooklynCatalog) mgmt().getCatalog()).getLastValidationTimings();
+                LOG.debug("Validation timings: " + timings);
+            }
+        };
+        Runnable postJob = new Runnable() {
+            @Override
+            public void run() {
+                if (items.get() != null) {
+                    for (CatalogItem<?, ?> item : items.get()) {
+                        mgmt().getCatalog().deleteCatalogItem(item.getSymbolicName(),  item.getVersion());
+                    }
+                }
+            }
+        };
+        measure(PerformanceTestDescriptor.create()
+                .summary("CatalogPerformanceTest.testAddManyItems")
+                .iterations(10)
+                .minAcceptablePerSecond(AbstractPerformanceTest.PERFORMANCE_EXPECTATION / 10)
+                .job(job)
+                .postJob(postJob));
+    }
+
     protected void runPerformanceTest(String methodName, Runnable preJob, Runnable job, Runnable postJob) {
         int numIterations = numIterations();
         double minRatePerSec = 10 * AbstractPerformanceTest.PERFORMANCE_EXPECTATION;
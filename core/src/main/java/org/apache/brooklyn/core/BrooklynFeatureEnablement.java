@@ -86,6 +86,14 @@ public class BrooklynFeatureEnablement {
      */
     public static final String FEATURE_JITTER_THREADS = "brooklyn.executionManager.jitterThreads";
 
+    /**
+     * Whether to record queue-wait and run-time statistics for tasks when the execution manager is created;
+     * this can be changed at runtime, e.g. over REST or JMX. See {@link org.apache.brooklyn.util.core.task.TaskStatistics}.
+     * <p>
+     * Defaults to false if system property is not set.
+     */
+    public static final String FEATURE_TASK_STATISTICS = "brooklyn.executionManager.taskStatistics";
+
     /**
      * When rebinding to state created from very old versions, the catalogItemId properties will be missing which
      * results in errors when OSGi bundles are used. When enabled the code tries to infer the catalogItemId from
@@ -114,6 +122,12 @@ public class BrooklynFeatureEnablement {
 
     public static final String FEATURE_VALIDATE_LOCATION_SSH_KEYS = "brooklyn.validate.locationSshKeys";
 
+    /**
+     * Whether to cache the results of class loading (by class name and catalog item) in the
+     * {@link org.apache.brooklyn.util.core.osgi.BundleIndex}, invalidated when bundles change.
+     */
+    public static final String FEATURE_CLASS_LOADING_CACHE = FEATURE_PROPERTY_PREFIX+".classLoadingCache";
+
     /**
      * Values explicitly set by Java calls.
      */
@@ -146,10 +160,12 @@ public class BrooklynFeatureEnablement {
         setDefault(FEATURE_DEFAULT_STANDBY_IS_HOT_PROPERTY, false);
         setDefault(FEATURE_RENAME_THREADS, false);
         setDefault(FEATURE_JITTER_THREADS, false);
+        setDefault(FEATURE_TASK_STATISTICS, false);
         setDefault(FEATURE_BACKWARDS_COMPATIBILITY_INFER_CATALOG_ITEM_ON_REBIND, true);
         setDefault(FEATURE_AUTO_FIX_CATALOG_REF_ON_REBIND, false);
         setDefault(FEATURE_SSH_ASYNC_EXEC, false);
         setDefault(FEATURE_VALIDATE_LOCATION_SSH_KEYS, true);
+        setDefault(FEATURE_CLASS_LOADING_CACHE, true);
     }
     
     static {
@@ -29,10 +29,13 @@ import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
@@ -46,16 +49,22 @@ import org.apache.brooklyn.api.catalog.CatalogItem.CatalogItemType;
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.internal.AbstractBrooklynObjectSpec;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.classloading.BrooklynClassLoadingContext;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
 import org.apache.brooklyn.api.typereg.BrooklynTypeRegistry.RegisteredTypeKind;
 import org.apache.brooklyn.api.typereg.ManagedBundle;
 import org.apache.brooklyn.api.typereg.OsgiBundleWithUrl;
 import org.apache.brooklyn.api.typereg.RegisteredType;
+import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.catalog.CatalogPredicates;
 import org.apache.brooklyn.core.catalog.internal.CatalogClasspathDo.CatalogScanningModes;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.mgmt.BrooklynTags;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.ha.OsgiBundleInstallationResult;
 import org.apache.brooklyn.core.mgmt.ha.OsgiManager;
 import org.apache.brooklyn.core.mgmt.internal.CampYamlParser;
@@ -73,6 +82,7 @@ import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.ResourceUtils;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
 import org.apache.brooklyn.util.core.osgi.BundleMaker;
+import org.apache.brooklyn.util.core.task.TaskBuilder;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.CompoundRuntimeException;
 import org.apache.brooklyn.util.exceptions.Exceptions;
@@ -104,6 +114,7 @@ import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -132,6 +143,12 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
     
     private static final Logger log = LoggerFactory.getLogger(BasicBrooklynCatalog.class);
 
+    public static final ConfigKey<Integer> VALIDATION_THREADS = ConfigKeys.newIntegerConfigKey("brooklyn.catalog.validation.threads",
+        "Maximum number of catalog types to validate concurrently, when adding many types (e.g. a large catalog.bom or on rebind); "
+        + "types are always validated after those they reference. Only increase this if all type plan transformers "
+        + "(and their resolvers) in use are thread-safe",
+        1);
+
     public static class BrooklynLoaderTracker {
         public static final ThreadLocal<BrooklynClassLoadingContext> loader = new ThreadLocal<BrooklynClassLoadingContext>();
         
@@ -168,6 +185,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
      * A longer term improvement is to focus on our YAML parsing, to make that faster and better!
      */
     private final SpecCache specCache;
+    private volatile Map<String,Duration> lastValidationTimings = Collections.emptyMap();
 
     public BasicBrooklynCatalog(ManagementContext mgmt) {
         this(mgmt, CatalogDto.newNamedInstance("empty catalog", "empty catalog", "empty catalog, expected to be reset later"));
@@ -675,12 +693,15 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
 
         if (items!=null) {
             int count = 0;
+            // parse once for all the items, rather than once per item
+            List<YamlExtract> itemExtracts = Yamls.getTextOfYamlListItemsAtPath(sourceYaml, "items");
             for (Object ii: checkType(items, "items", List.class)) {
                 if (ii instanceof String) {
                     collectUrlReferencedCatalogItems((String) ii, containingBundle, result, requireValidation, catalogMetadata, depth+1, force);
                 } else {
                     Map<?,?> i = checkType(ii, "entry in items list", Map.class);
-                    collectCatalogItemsFromItemMetadataBlock(Yamls.getTextOfYamlAtPath(sourceYaml, "items", count).getMatchedYamlTextOrWarn(),
+                    YamlExtract itemExtract = count < itemExtracts.size() ? itemExtracts.get(count) : Yamls.getTextOfYamlAtPath(sourceYaml, "items", count);
+                    collectCatalogItemsFromItemMetadataBlock(itemExtract.getMatchedYamlTextOrWarn(),
                             containingBundle, i, result, requireValidation, catalogMetadata, depth+1, force);
                 }
                 count++;
@@ -1444,23 +1465,220 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
     
     @Override @Beta
     public Map<RegisteredType,Collection<Throwable>> validateTypes(Iterable<RegisteredType> typesToValidate) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
         List<RegisteredType> typesRemainingToValidate = MutableList.copyOf(typesToValidate);
+        int numTypes = typesRemainingToValidate.size();
+        Map<String,Long> nanosByType = new ConcurrentHashMap<String,Long>();
+        Map<RegisteredType,Collection<Throwable>> result;
         while (true) {
-            Map<RegisteredType,Collection<Throwable>> result = MutableMap.of();
-            for (RegisteredType t: typesToValidate) {
-                Collection<Throwable> tr = validateType(t);
-                if (!tr.isEmpty()) {
-                    result.put(t, tr);
-                }
-            }
+            result = validateTypesInDependencyOrder(typesRemainingToValidate, nanosByType);
             if (result.isEmpty() || result.size()==typesRemainingToValidate.size()) {
-                return result;
+                break;
             }
             // recurse wherever there were problems so long as we are reducing the number of problem types
-            // (this lets us solve complex reference problems without needing a complex dependency tree,
+            // (this lets us solve reference problems the dependency order misses, e.g. cycles,
             // in max O(N^2) time)
             typesRemainingToValidate = MutableList.copyOf(result.keySet());
         }
+        
+        Map<String,Duration> timings = MutableMap.of();
+        for (Map.Entry<String,Long> entry: nanosByType.entrySet()) {
+            timings.put(entry.getKey(), Duration.nanos(entry.getValue()));
+        }
+        lastValidationTimings = Collections.unmodifiableMap(timings);
+        if (log.isDebugEnabled() && numTypes>0) {
+            List<Map.Entry<String,Duration>> slowest = MutableList.copyOf(timings.entrySet());
+            Collections.sort(slowest, new Comparator<Map.Entry<String,Duration>>() {
+                @Override
+                public int compare(Map.Entry<String,Duration> o1, Map.Entry<String,Duration> o2) {
+                    return o2.getValue().compareTo(o1.getValue());
+                }
+            });
+            log.debug("Validated "+numTypes+" type(s) in "+Duration.of(stopwatch)+", "+result.size()+" with errors; slowest "
+                + slowest.subList(0, Math.min(5, slowest.size())));
+        }
+        return result;
+    }
+
+    /** Time spent validating each type (by id) in the most recent call to {@link #validateTypes(Iterable)}. */
+    @Beta
+    public Map<String,Duration> getLastValidationTimings() {
+        return lastValidationTimings;
+    }
+
+    /**
+     * Validates the types, each after the types (in this set) which it references, 
+     * validating types whose references are validated concurrently.
+     * Returns the errors for each type which failed, in the order given.
+     */
+    private Map<RegisteredType,Collection<Throwable>> validateTypesInDependencyOrder(final List<RegisteredType> types, final Map<String,Long> nanosByType) {
+        @SuppressWarnings("unchecked")
+        final Collection<Throwable>[] errors = new Collection[types.size()];
+        List<List<Integer>> waves = dependencyWaves(types);
+        int maxWaveSize = 0;
+        for (List<Integer> wave: waves) {
+            maxWaveSize = Math.max(maxWaveSize, wave.size());
+        }
+        Integer configuredThreads = mgmt.getConfig().getConfig(VALIDATION_THREADS);
+        int numThreads = Math.min(configuredThreads!=null ? configuredThreads : 1, maxWaveSize);
+        
+        // validation may check entitlements, and resolve using the caller's loader
+        EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+        final BrooklynClassLoadingContext loader = BrooklynLoaderTracker.getLoader();
+        for (final List<Integer> wave: waves) {
+            if (numThreads<=1 || wave.size()==1) {
+                for (int i: wave) {
+                    errors[i] = validateTypeTimed(types.get(i), nanosByType);
+                }
+                continue;
+            }
+            // each task takes the next type in the wave, so at most numThreads are validated at once
+            final AtomicInteger next = new AtomicInteger();
+            List<Task<?>> tasks = MutableList.of();
+            for (int t=0; t<Math.min(numThreads, wave.size()); t++) {
+                TaskBuilder<Void> tb = Tasks.<Void>builder()
+                    .displayName("validating catalog types")
+                    .tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                    .body(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (loader!=null) BrooklynLoaderTracker.setLoader(loader);
+                            try {
+                                int n;
+                                while ((n = next.getAndIncrement()) < wave.size()) {
+                                    int i = wave.get(n);
+                                    errors[i] = validateTypeTimed(types.get(i), nanosByType);
+                                }
+                            } finally {
+                                BrooklynLoaderTracker.unsetLoader(loader);
+                            }
+                        }
+                    });
+                if (entitlementContext!=null) tb.tag(BrooklynTaskTags.tagForEntitlement(entitlementContext));
+                tasks.add(mgmt.getExecutionManager().submit(tb.build()));
+            }
+            for (Task<?> task: tasks) {
+                task.getUnchecked();
+            }
+        }
+        
+        Map<RegisteredType,Collection<Throwable>> result = MutableMap.of();
+        for (int i=0; i<types.size(); i++) {
+            if (errors[i]!=null && !errors[i].isEmpty()) {
+                result.put(types.get(i), errors[i]);
+            }
+        }
+        return result;
+    }
+
+    private Collection<Throwable> validateTypeTimed(RegisteredType type, Map<String,Long> nanosByType) {
+        long start = System.nanoTime();
+        try {
+            return validateType(type);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Long previous = nanosByType.put(type.getId(), elapsed);
+            // a type retried after an error accumulates the time of each attempt
+            if (previous!=null) nanosByType.put(type.getId(), previous + elapsed);
+            if (log.isTraceEnabled()) log.trace("Validated "+type+" in "+Duration.nanos(elapsed));
+        }
+    }
+
+    /**
+     * Groups the indices of the types so that each type only references types (in this set) in earlier groups,
+     * where references are names in the type's plan or supertypes. Types in or depending on a reference cycle
+     * go in the last group.
+     */
+    private static List<List<Integer>> dependencyWaves(List<RegisteredType> types) {
+        // index by every name a plan might use to refer to a type
+        Map<String,Set<Integer>> indicesByName = MutableMap.of();
+        for (int i=0; i<types.size(); i++) {
+            RegisteredType type = types.get(i);
+            Set<String> names = MutableSet.<String>of(type.getSymbolicName(), type.getId()).putAll(type.getAliases());
+            for (String name: names) {
+                Set<Integer> indices = indicesByName.get(name);
+                if (indices==null) {
+                    indices = MutableSet.of();
+                    indicesByName.put(name, indices);
+                }
+                indices.add(i);
+            }
+        }
+        
+        List<Set<Integer>> dependents = MutableList.of();
+        int[] numDependencies = new int[types.size()];
+        for (int i=0; i<types.size(); i++) {
+            dependents.add(MutableSet.<Integer>of());
+        }
+        for (int i=0; i<types.size(); i++) {
+            Set<Integer> dependencies = MutableSet.of();
+            collectReferences(parsePlanOrNull(types.get(i)), indicesByName, dependencies);
+            for (Object superType: types.get(i).getSuperTypes()) {
+                if (superType instanceof RegisteredType) {
+                    Set<Integer> indices = indicesByName.get(((RegisteredType)superType).getId());
+                    if (indices!=null) dependencies.addAll(indices);
+                }
+            }
+            dependencies.remove(i);
+            numDependencies[i] = dependencies.size();
+            for (int d: dependencies) {
+                dependents.get(d).add(i);
+            }
+        }
+        
+        List<List<Integer>> result = MutableList.of();
+        List<Integer> wave = MutableList.of();
+        for (int i=0; i<types.size(); i++) {
+            if (numDependencies[i]==0) wave.add(i);
+        }
+        int numPlaced = 0;
+        while (!wave.isEmpty()) {
+            result.add(wave);
+            numPlaced += wave.size();
+            List<Integer> nextWave = MutableList.of();
+            for (int i: wave) {
+                for (int dependent: dependents.get(i)) {
+                    if (--numDependencies[dependent]==0) nextWave.add(dependent);
+                }
+            }
+            wave = nextWave;
+        }
+        if (numPlaced < types.size()) {
+            List<Integer> remaining = MutableList.of();
+            for (int i=0; i<types.size(); i++) {
+                if (numDependencies[i]>0) remaining.add(i);
+            }
+            result.add(remaining);
+        }
+        return result;
+    }
+
+    @Nullable
+    private static Object parsePlanOrNull(RegisteredType type) {
+        try {
+            String yaml = RegisteredTypes.getImplementationDataStringForSpec(type);
+            return (yaml==null) ? null : Yamls.parseAll(yaml);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            // not a yaml plan, or not valid; references are not known, and validation will report any problem
+            return null;
+        }
+    }
+
+    private static void collectReferences(Object plan, Map<String,Set<Integer>> indicesByName, Set<Integer> result) {
+        if (plan instanceof String) {
+            Set<Integer> indices = indicesByName.get(plan);
+            if (indices!=null) result.addAll(indices);
+        } else if (plan instanceof Map) {
+            for (Map.Entry<?,?> entry: ((Map<?,?>)plan).entrySet()) {
+                collectReferences(entry.getKey(), indicesByName, result);
+                collectReferences(entry.getValue(), indicesByName, result);
+            }
+        } else if (plan instanceof Iterable) {
+            for (Object item: (Iterable<?>)plan) {
+                collectReferences(item, indicesByName, result);
+            }
+        }
     }
     
     @Override @Beta
@@ -18,13 +18,17 @@
  */
 package org.apache.brooklyn.core.config.internal;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -54,6 +58,7 @@ import org.apache.brooklyn.util.core.internal.ConfigKeySelfExtracting;
 import org.apache.brooklyn.util.core.task.DeferredSupplier;
 import org.apache.brooklyn.util.exceptions.ReferenceWithError;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -86,6 +91,21 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
      */
     protected final Map<ConfigKey<?>,Object> ownConfig;
 
+    /**
+     * Cache of the results of {@link #getConfigImpl(ConfigKey, boolean)} and {@link #getConfigAllInheritedRaw(ConfigKey)},
+     * keyed by the identity of the query key, used if {@link #isInheritedConfigCacheSupported()}.
+     * Entries are stamped with the {@link #inheritedConfigVersion} current when they started being computed,
+     * and are ignored if it has since changed; it is bumped whenever our config changes
+     * or when {@link #invalidateInheritedConfigCache()} is called
+     * (which containers must do when config or keys change on an ancestor, or an ancestor changes).
+     * Lazily created as this class may be deserialized from old state.
+     */
+    private transient volatile Map<InheritedConfigCacheKey, InheritedConfigCacheEntry> inheritedConfigCache;
+    private transient volatile long inheritedConfigVersion;
+
+    /** Bound on the number of cached keys; cleared when exceeded, as keys are sometimes created dynamically for lookup */
+    private static final int MAX_INHERITED_CONFIG_CACHE_SIZE = 256;
+
     protected AbstractConfigMapImpl(TContainer bo) {
         // Not using ConcurrentMap, because want to (continue to) allow null values.
         // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
@@ -179,6 +199,7 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
         } else {
             oldVal = ownConfig.put(ownKey, val);
         }
+        invalidateInheritedConfigCache();
         postSetConfig();
         return oldVal;
     }
@@ -190,6 +211,7 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
             ownConfig.clear();
             ownConfig.putAll(vals);
         }
+        invalidateInheritedConfigCacheIncludingDescendants();
     }
 
     @SuppressWarnings("unchecked")
@@ -208,13 +230,121 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
     }
 
     public void removeKey(String key) {
-        ownConfig.remove(ConfigKeys.newConfigKey(Object.class, key));
+        removeKey(ConfigKeys.newConfigKey(Object.class, key));
     }
 
     public void removeKey(ConfigKey<?> key) {
         ownConfig.remove(key);
+        invalidateInheritedConfigCacheIncludingDescendants();
+    }
+
+    /**
+     * Whether results of inherited lookups can be cached; requires that the container call
+     * {@link #invalidateInheritedConfigCache()} whenever config on any ancestor changes,
+     * the set of ancestors changes, or the declared keys of the container or an ancestor change.
+     * Defaults false; entities support it via {@link BrooklynObjectInternal.ConfigurationSupportInternal#refreshInheritedConfig()}.
+     */
+    protected boolean isInheritedConfigCacheSupported() {
+        return false;
+    }
+
+    /**
+     * Discards any cached inherited values here and in any descendants which inherit from us, without the 
+     * {@link #postSetConfig()} callback; used where our config is changed without that callback.
+     * Only needs overriding if {@link #isInheritedConfigCacheSupported()}.
+     */
+    protected void invalidateInheritedConfigCacheIncludingDescendants() {
+        invalidateInheritedConfigCache();
+    }
+
+    /** Discards any cached inherited values, so subsequent lookups walk the ancestors again. */
+    public void invalidateInheritedConfigCache() {
+        synchronized (this) {
+            inheritedConfigVersion++;
+        }
+        Map<InheritedConfigCacheKey, InheritedConfigCacheEntry> cache = inheritedConfigCache;
+        if (cache!=null) cache.clear();
+    }
+
+    private Map<InheritedConfigCacheKey, InheritedConfigCacheEntry> getInheritedConfigCache() {
+        Map<InheritedConfigCacheKey, InheritedConfigCacheEntry> result = inheritedConfigCache;
+        if (result==null) {
+            synchronized (this) {
+                result = inheritedConfigCache;
+                if (result==null) {
+                    result = new ConcurrentHashMap<InheritedConfigCacheKey, InheritedConfigCacheEntry>();
+                    inheritedConfigCache = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private Object getCachedInherited(InheritedConfigCacheKey key) {
+        InheritedConfigCacheEntry entry = getInheritedConfigCache().get(key);
+        if (entry==null || entry.version!=inheritedConfigVersion) return null;
+        return entry.value;
+    }
+
+    private void putCachedInherited(InheritedConfigCacheKey key, long version, Object value) {
+        Map<InheritedConfigCacheKey, InheritedConfigCacheEntry> cache = getInheritedConfigCache();
+        if (cache.size() >= MAX_INHERITED_CONFIG_CACHE_SIZE) cache.clear();
+        cache.put(key, new InheritedConfigCacheEntry(version, value));
+    }
+
+    /** Whether a raw value can be cached; deferred values and collections are resolved afresh on each lookup. */
+    private static boolean isCacheableRawValue(Maybe<Object> value) {
+        if (value==null || value.isAbsentOrNull()) return true;
+        Object v = value.get();
+        return !(v instanceof Future || v instanceof DeferredSupplier || v instanceof TaskFactory
+            || v instanceof Map || v instanceof Iterable);
+    }
+
+    /**
+     * Whether a resolved value can be cached and returned to every caller; only values of known immutable
+     * types are, as otherwise one caller's changes to the value (e.g. to a list or a bean produced by coercion)
+     * would be seen by all others.
+     */
+    private static boolean isImmutableValue(@Nullable Object v) {
+        return v==null || v instanceof String || v instanceof Boolean || v instanceof Character
+            || v instanceof Integer || v instanceof Long || v instanceof Double || v instanceof Float
+            || v instanceof Short || v instanceof Byte || v instanceof BigInteger || v instanceof BigDecimal
+            || v instanceof Enum || v instanceof Class || v instanceof Duration;
+    }
+
+    private static final class InheritedConfigCacheKey {
+        private final ConfigKey<?> key;
+        private final int mode;
+        InheritedConfigCacheKey(ConfigKey<?> key, int mode) {
+            this.key = key;
+            this.mode = mode;
+        }
+        @Override
+        public int hashCode() {
+            return 31*System.identityHashCode(key) + mode;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof InheritedConfigCacheKey)) return false;
+            InheritedConfigCacheKey o = (InheritedConfigCacheKey) obj;
+            return key==o.key && mode==o.mode;
+        }
+    }
+
+    private static final class InheritedConfigCacheEntry {
+        private final long version;
+        private final Object value;
+        InheritedConfigCacheEntry(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
     }
 
+    private static final int CACHE_MODE_RESOLVED = 0;
+    private static final int CACHE_MODE_RAW = 1;
+    private static final int CACHE_MODE_ALL_INHERITED_RAW = 2;
+
     protected final TContainer getParent() {
         return getParentOfContainer(getContainer());
     }
@@ -365,6 +495,28 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
     }
 
     protected <T> ReferenceWithError<ConfigValueAtContainer<TContainer,T>> getConfigImpl(final ConfigKey<T> queryKey, final boolean raw) {
+        if (queryKey==null || !isInheritedConfigCacheSupported() || queryKey instanceof StructuredConfigKey) {
+            return getConfigImpl(queryKey, raw, null);
+        }
+        InheritedConfigCacheKey cacheKey = new InheritedConfigCacheKey(queryKey, raw ? CACHE_MODE_RAW : CACHE_MODE_RESOLVED);
+        @SuppressWarnings("unchecked")
+        ConfigValueAtContainer<TContainer,T> cached = (ConfigValueAtContainer<TContainer,T>) getCachedInherited(cacheKey);
+        if (cached!=null) {
+            // a copy, as the holder is mutable; the value itself is immutable
+            return ReferenceWithError.<ConfigValueAtContainer<TContainer,T>>newInstanceWithoutError(new BasicConfigValueAtContainer<TContainer,T>(cached));
+        }
+
+        long version = inheritedConfigVersion;
+        AtomicBoolean cacheable = new AtomicBoolean(true);
+        ReferenceWithError<ConfigValueAtContainer<TContainer,T>> result = getConfigImpl(queryKey, raw, cacheable);
+        if (cacheable.get() && !result.hasError() && isImmutableValue(result.getWithoutError().get())) {
+            putCachedInherited(cacheKey, version, new BasicConfigValueAtContainer<TContainer,T>(result.getWithoutError()));
+        }
+        return result;
+    }
+
+    /** @param cacheable if non-null, set false if any value encountered cannot be cached, e.g. because it is a deferred value */
+    protected <T> ReferenceWithError<ConfigValueAtContainer<TContainer,T>> getConfigImpl(final ConfigKey<T> queryKey, final boolean raw, @Nullable final AtomicBoolean cacheable) {
         if (queryKey==null) {
             return ReferenceWithError.newInstanceThrowingError(new BasicConfigValueAtContainer<TContainer,T>(getContainer(), null, null, false,
                     null),
@@ -405,6 +557,7 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
                 @Override public Maybe<Object> apply(TContainer input) {
                     // lookup against ownKey as it may do extra resolution (eg grab *.* subkeys if a map)
                     Maybe<Object> result = getRawValueAtContainer(input, ownKey);
+                    if (cacheable!=null && !isCacheableRawValue(result)) cacheable.set(false);
                     if (!raw) result = resolveRawValueFromContainer(input, ownKey, result);
                     return result;
                 }
@@ -432,6 +585,35 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
 
     @Override
     public List<ConfigValueAtContainer<TContainer,?>> getConfigAllInheritedRaw(ConfigKey<?> queryKey) {
+        if (queryKey==null || !isInheritedConfigCacheSupported()) {
+            return getConfigAllInheritedRawUncached(queryKey);
+        }
+        InheritedConfigCacheKey cacheKey = new InheritedConfigCacheKey(queryKey, CACHE_MODE_ALL_INHERITED_RAW);
+        @SuppressWarnings("unchecked")
+        List<ConfigValueAtContainer<TContainer,?>> result = (List<ConfigValueAtContainer<TContainer,?>>) getCachedInherited(cacheKey);
+        if (result==null) {
+            long version = inheritedConfigVersion;
+            result = copyOfValuesAtContainers(getConfigAllInheritedRawUncached(queryKey));
+            putCachedInherited(cacheKey, version, result);
+        }
+        // copies, as the holders are mutable and the cached list is shared by all callers
+        return copyOfValuesAtContainers(result);
+    }
+
+    /** Returns an unmodifiable list of copies of the given (mutable) value holders. */
+    private List<ConfigValueAtContainer<TContainer,?>> copyOfValuesAtContainers(List<ConfigValueAtContainer<TContainer,?>> values) {
+        List<ConfigValueAtContainer<TContainer,?>> result = MutableList.of();
+        for (ConfigValueAtContainer<TContainer,?> value : values) {
+            result.add(copyOfValueAtContainer(value));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static <TContainer,T> ConfigValueAtContainer<TContainer,T> copyOfValueAtContainer(ConfigValueAtContainer<TContainer,T> value) {
+        return new BasicConfigValueAtContainer<TContainer,T>(value);
+    }
+
+    protected List<ConfigValueAtContainer<TContainer,?>> getConfigAllInheritedRawUncached(ConfigKey<?> queryKey) {
         List<ConfigValueAtContainer<TContainer, ?>> result = MutableList.of();
         TContainer c = getContainer();
         int count=0;
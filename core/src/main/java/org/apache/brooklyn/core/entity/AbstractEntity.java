@@ -26,6 +26,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.brooklyn.api.effector.Effector;
 import org.apache.brooklyn.api.entity.Application;
@@ -276,6 +278,15 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
     // If FEATURE_USE_BROOKLYN_LIVE_OBJECTS_DATAGRID_STORAGE, this value will be only temporary.
     private AttributeMap attributesInternal = new AttributeMap(this);
 
+    /**
+     * Counts modifications to all entities, so that they can be compared across entities. Starts from the time
+     * (in microseconds) so that sequence numbers seen by clients before a restart are not repeated.
+     * An adder rather than an atomic counter, so that entities changing concurrently do not contend on it.
+     */
+    private static final LongAdder MODIFICATIONS = newModificationCounter();
+
+    private final AtomicLong modificationSequence = new AtomicLong(nextModificationSequence());
+
     /**
      * For temporary data, e.g. timestamps etc for calculating real attribute values, such as when
      * calculating averages over time etc.
@@ -528,6 +539,47 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
     protected Object getAttributesSynchObjectInternal() {
         return attributesInternal.getSynchObjectInternal();
     }
+
+    /**
+     * At least the {@link #getModificationSequence() modification sequence} of every change already made to any entity;
+     * any entity changed after this is read will have a greater one.
+     */
+    @Beta
+    public static long getCurrentModificationSequence() {
+        return MODIFICATIONS.sum();
+    }
+
+    private static LongAdder newModificationCounter() {
+        LongAdder result = new LongAdder();
+        result.add(System.currentTimeMillis() * 1000);
+        return result;
+    }
+
+    /**
+     * Counts a modification, returning a sequence number greater than any previously returned by
+     * {@link #getCurrentModificationSequence()} (though not necessarily unique, if entities change concurrently).
+     */
+    private static long nextModificationSequence() {
+        MODIFICATIONS.increment();
+        return MODIFICATIONS.sum();
+    }
+
+    @Override
+    public long getModificationSequence() {
+        return modificationSequence.get();
+    }
+
+    /** Records a change to this entity, returning its new {@link #getModificationSequence() modification sequence}. */
+    @Beta
+    public long markModified() {
+        long next = nextModificationSequence();
+        // concurrent changes to this entity may finish counting in either order; keep the greatest
+        while (true) {
+            long current = modificationSequence.get();
+            if (next <= current) return current;
+            if (modificationSequence.compareAndSet(current, next)) return next;
+        }
+    }
     
     @Override
     public Map<String, String> toMetadataRecord() {
@@ -553,6 +605,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
     public void setDisplayName(String newDisplayName) {
         displayName.set(newDisplayName);
         displayNameAutoGenerated = false;
+        markModified();
         getManagementSupport().getEntityChangeListener().onChanged();
     }
     
@@ -626,6 +679,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
             if (!Entities.isNoLongerManaged(oldParent)) 
                 oldParent.removeChild(getProxyIfAvailable());
         }
+        config().refreshInheritedConfig();
     }
     
     /**
@@ -649,6 +703,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
                 child.setParent(getProxyIfAvailable());
                 boolean changed = children.add(child);
                 
+                if (changed) markModified();
                 getManagementSupport().getEntityChangeListener().onChildrenChanged();
                 if (changed) {
                     sensors().emit(AbstractEntity.CHILD_ADDED, child);
@@ -689,6 +744,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
                 child.clearParent();
                 
                 if (changed) {
+                    markModified();
                     getManagementSupport().getEntityChangeListener().onChildrenChanged();
                 }
             
@@ -1146,6 +1202,11 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
             entityType.removeSensor(attribute);
         }
 
+        @Override
+        public long getModificationSequence(AttributeSensor<?> attribute) {
+            return attributesInternal.getModificationSequence(attribute);
+        }
+
         @Override
         public Map<AttributeSensor<?>, Object> getAll() {
             Map<AttributeSensor<?>, Object> result = Maps.newLinkedHashMap();
@@ -1210,8 +1271,8 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
 
         @Override
         public void refreshInheritedConfig() {
-            // no-op, for now, because the impl always looks at ancestors
-            // but in a distributed impl it will need to clear any local cache
+            // lookups always look at ancestors, but may be cached locally
+            configsInternal.invalidateInheritedConfigCache();
             refreshInheritedConfigOfChildren();
         }
         
@@ -1236,6 +1297,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
         
         @Override
         protected <T> void onConfigChanged(ConfigKey<T> key, Object val) {
+            markModified();
             getManagementSupport().getEntityChangeListener().onConfigChanged(key);
         }
 
@@ -60,6 +60,24 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
 
     private static final Logger LOG = LoggerFactory.getLogger(EntityDynamicType.class);
 
+    /** The effectors defined statically on each entity class, shared by its instances; see {@link BrooklynDynamicType} for config keys. */
+    private static final ClassValue<Map<String,Effector<?>>> EFFECTORS_BY_CLASS = new ClassValue<Map<String,Effector<?>>>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Map<String, Effector<?>> computeValue(Class<?> type) {
+            return Collections.unmodifiableMap(findEffectors((Class<? extends Entity>) type, null));
+        }
+    };
+
+    /** The sensors defined statically on each entity class, shared by its instances. */
+    private static final ClassValue<Map<String,Sensor<?>>> SENSORS_BY_CLASS = new ClassValue<Map<String,Sensor<?>>>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Map<String, Sensor<?>> computeValue(Class<?> type) {
+            return Collections.unmodifiableMap(findSensors((Class<? extends Entity>) type, null));
+        }
+    };
+
     /** 
      * Effectors on this entity, by name.
      */
@@ -81,11 +99,11 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
         super(clazz, entity);
         String id = entity==null ? clazz.getName() : entity.getId();
         
-        effectors.putAll(findEffectors(clazz, null));
+        effectors.putAll(EFFECTORS_BY_CLASS.get(clazz));
         if (LOG.isTraceEnabled())
             LOG.trace("Entity {} effectors: {}", id, Joiner.on(", ").join(effectors.keySet()));
         
-        sensors.putAll(findSensors(clazz, null));
+        sensors.putAll(SENSORS_BY_CLASS.get(clazz));
         if (LOG.isTraceEnabled())
             LOG.trace("Entity {} sensors: {}", id, Joiner.on(", ").join(sensors.keySet()));
         
@@ -242,6 +260,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
     public void addConfigKey(ConfigKey<?> newKey) {
         configKeys.put(newKey.getName(), new FieldAndValue<ConfigKey<?>>(null, newKey));
         invalidateSnapshot();
+        instance.config().refreshInheritedConfig();
         instance.sensors().emit(AbstractEntity.CONFIG_KEY_ADDED, newKey);
     }
     
@@ -261,6 +280,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
         FieldAndValue<ConfigKey<?>> result = configKeys.remove(key.getName());
         if (result != null) {
             invalidateSnapshot();
+            instance.config().refreshInheritedConfig();
             ConfigKey<?> removedKey = result.value;
             instance.sensors().emit(AbstractEntity.CONFIG_KEY_REMOVED, removedKey);
             return true;
@@ -273,6 +293,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
         Map<String, FieldAndValue<ConfigKey<?>>> oldKeys = MutableMap.copyOf(configKeys);
         configKeys.clear();
         invalidateSnapshot();
+        instance.config().refreshInheritedConfig();
         for (FieldAndValue<ConfigKey<?>> k: oldKeys.values()) {
             instance.sensors().emit(AbstractEntity.CONFIG_KEY_REMOVED, k.value);
         }
@@ -125,6 +125,14 @@ public interface EntityInternal extends BrooklynObjectInternal, EntityLocal, Reb
     @Beta
     Effector<?> getEffector(String effectorName);
     
+    /**
+     * Returns the sequence number of the last change to this entity's attributes, config, name or children.
+     * Sequence numbers are shared by all entities in this JVM, so can be compared across entities,
+     * e.g. to find everything changed since {@link AbstractEntity#getCurrentModificationSequence()} was last read.
+     */
+    @Beta
+    long getModificationSequence();
+    
     FeedSupport feeds();
     
     /**
@@ -187,6 +195,13 @@ public interface EntityInternal extends BrooklynObjectInternal, EntityLocal, Reb
 
         @Beta
         void remove(AttributeSensor<?> attribute);
+
+        /**
+         * The {@link EntityInternal#getModificationSequence() modification sequence} of the last change to the
+         * given attribute, or 0 if it has not been set.
+         */
+        @Beta
+        long getModificationSequence(AttributeSensor<?> attribute);
     }
 
     public interface FeedSupport {
@@ -77,11 +77,28 @@ public class EntityConfigMap extends AbstractConfigMapImpl<Entity> {
         return ((EntityInternal)bo).getExecutionContext();
     }
     
+    @Override
+    protected boolean isInheritedConfigCacheSupported() {
+        // AbstractEntity invalidates on parent change, ancestor config change and entity type change
+        return true;
+    }
+
     @Override
     protected void postSetConfig() {
         getEntity().config().refreshInheritedConfigOfChildren();
     }
 
+    @Override
+    protected void invalidateInheritedConfigCacheIncludingDescendants() {
+        super.invalidateInheritedConfigCacheIncludingDescendants();
+        for (Entity child : getEntity().getChildren()) {
+            Object childConfig = ((EntityInternal)child).config().getInternalConfigMap();
+            if (childConfig instanceof EntityConfigMap) {
+                ((EntityConfigMap)childConfig).invalidateInheritedConfigCacheIncludingDescendants();
+            }
+        }
+    }
+
     @Override
     protected void postLocalEvaluate(ConfigKey<?> key, BrooklynObject bo, Maybe<?> rawValue, Maybe<?> resolvedValue) {
         // TEMPORARY CODE
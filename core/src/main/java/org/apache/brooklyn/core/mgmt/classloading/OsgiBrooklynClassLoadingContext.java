@@ -20,7 +20,10 @@ package org.apache.brooklyn.core.mgmt.classloading;
 
 import java.net.URL;
 import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.typereg.OsgiBundleWithUrl;
@@ -28,6 +31,7 @@ import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.ha.OsgiManager;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.util.core.osgi.BundleIndex;
 import org.apache.brooklyn.util.guava.Maybe;
 
 import com.google.common.base.Objects;
@@ -66,7 +70,7 @@ public class OsgiBrooklynClassLoadingContext extends AbstractBrooklynClassLoadin
                 if (!Entitlements.isEntitled(mgmt.getEntitlementManager(), Entitlements.SEE_CATALOG_ITEM, catalogItemId))
                     return Maybe.absent("Not entitled to use this catalog entry");
                 
-                clazz = osgi.get().tryResolveClass(className, getBundles());
+                clazz = (Maybe) tryResolveClassCached(osgi.get(), className);
                 if (clazz.isPresent())
                     return (Maybe)clazz;
             }
@@ -84,6 +88,24 @@ public class OsgiBrooklynClassLoadingContext extends AbstractBrooklynClassLoadin
         return Maybe.absent("Inconsistent state ("+mgmt+"/"+osgi+"/"+getBundles()+" loading "+className);
     }
 
+    /** Resolves the class in our bundles, using the {@link BundleIndex} class cache when available. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected Maybe<Class<?>> tryResolveClassCached(final OsgiManager osgi, final String className) {
+        BundleIndex index = BundleIndex.forFramework(osgi.getFramework());
+        if (index==null) {
+            return (Maybe) osgi.tryResolveClass(className, getBundles());
+        }
+        // entitlement has already been checked, so the user is not part of the key
+        List<Object> key = Arrays.<Object>asList(
+            OsgiBrooklynClassLoadingContext.class, mgmt.getManagementNodeId(), catalogItemId, String.valueOf(getBundles()), className);
+        return index.getOrLoadClass(key, new Callable<Maybe<Class<?>>>() {
+            @Override
+            public Maybe<Class<?>> call() {
+                return (Maybe) osgi.tryResolveClass(className, getBundles());
+            }
+        });
+    }
+
     @Override
     public String toString() {
         return "OSGi:"+catalogItemId+"["+getBundles()+"]";
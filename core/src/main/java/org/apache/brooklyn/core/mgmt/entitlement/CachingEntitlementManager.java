@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.entitlement;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementClass;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementManager;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches the decisions of another {@link EntitlementManager}, for managers which are expensive to consult
+ * (e.g. those which call out to a directory service).
+ * <p>
+ * Optionally, decisions for a {@link WebEntitlementContext} are cached for the rest of that request, as REST calls
+ * check the same entitlements many times (e.g. per entity in a listing, per sensor in a batch read).
+ * These are only cached for checks made by the request itself: tasks started by the request carry its
+ * context (through their entitlement tag) and may run long after it, so their checks are not cached.
+ * At most {@link #REQUEST_MAX_SIZE} decisions are kept per request.
+ * <p>
+ * Optionally decisions are also shared between requests for a short time, keyed by user, entitlement
+ * class and argument; this assumes the decision depends only on the user. Only decisions for a
+ * {@link WebEntitlementContext} with a user are shared, as other contexts may carry more than the user.
+ * <p>
+ * The numbers of hits and misses are reported by {@link #getStatistics()} (and by the server's extended up status).
+ * <p>
+ * Both are off by default. Use {@link #invalidateAll()} or {@link #invalidateUser(String)} when entitlements change
+ * (or {@link Entitlements#invalidateCachedDecisions(EntitlementManager, String)}, for any manager).
+ */
+@Beta
+public class CachingEntitlementManager implements InvalidatableEntitlementManager {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingEntitlementManager.class);
+
+    public final static String CACHE_CONFIG_PREFIX = Entitlements.ENTITLEMENTS_CONFIG_PREFIX+".cache";
+
+    public static final ConfigKey<Boolean> PER_REQUEST = ConfigKeys.newBooleanConfigKey(CACHE_CONFIG_PREFIX+".perRequest",
+        "Whether to cache entitlement decisions for the duration of each REST request", false);
+
+    public static final ConfigKey<Integer> REQUEST_MAX_SIZE = ConfigKeys.newIntegerConfigKey(CACHE_CONFIG_PREFIX+".perRequest.maxSize",
+        "Maximum number of entitlement decisions cached for a REST request", 1000);
+
+    public static final ConfigKey<Duration> SHARED_TTL = ConfigKeys.newConfigKey(Duration.class, CACHE_CONFIG_PREFIX+".ttl",
+        "How long to share entitlement decisions between requests by the same user; zero (the default) to not share them",
+        Duration.ZERO);
+
+    public static final ConfigKey<Integer> SHARED_MAX_SIZE = ConfigKeys.newIntegerConfigKey(CACHE_CONFIG_PREFIX+".maxSize",
+        "Maximum number of entitlement decisions shared between requests", 10000);
+
+    /** Wraps the manager in a cache if configured to, otherwise returns it unchanged. */
+    public static EntitlementManager wrapIfConfigured(EntitlementManager delegate, BrooklynProperties properties) {
+        boolean perRequest = Boolean.TRUE.equals(properties.getConfig(PER_REQUEST));
+        Duration ttl = properties.getConfig(SHARED_TTL);
+        if (!perRequest && (ttl == null || !ttl.isPositive())) {
+            return delegate;
+        }
+        return new CachingEntitlementManager(delegate, perRequest, properties.getConfig(REQUEST_MAX_SIZE), ttl, properties.getConfig(SHARED_MAX_SIZE));
+    }
+
+    /** A decision cached for a request, made in the given generation (so discarded once invalidated). */
+    private static class RequestDecision {
+        final long generation;
+        final boolean result;
+        RequestDecision(long generation, boolean result) {
+            this.generation = generation;
+            this.result = result;
+        }
+    }
+
+    private final EntitlementManager delegate;
+    private final boolean perRequest;
+    private final int requestMaxSize;
+    /** decisions by user, entitlement class and argument; null if not shared */
+    private final Cache<List<Object>, Boolean> shared;
+    /** incremented on invalidation, and recorded with each per-request decision, so that earlier per-request decisions are not used */
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingEntitlementManager(EntitlementManager delegate, boolean perRequest, int requestMaxSize, @Nullable Duration sharedTtl, int sharedMaxSize) {
+        this.delegate = Preconditions.checkNotNull(delegate, "delegate");
+        this.perRequest = perRequest;
+        this.requestMaxSize = requestMaxSize;
+        this.shared = (sharedTtl != null && sharedTtl.isPositive())
+                ? CacheBuilder.newBuilder()
+                    .expireAfterWrite(sharedTtl.toMilliseconds(), TimeUnit.MILLISECONDS)
+                    .maximumSize(sharedMaxSize)
+                    .<List<Object>, Boolean>build()
+                : null;
+    }
+
+    public EntitlementManager getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> boolean isEntitled(@Nullable EntitlementContext context, EntitlementClass<T> permission, @Nullable T entitlementClassArgument) {
+        // not in tasks, which may outlive the request whose context they inherit
+        WebEntitlementContext webContext = (perRequest && context instanceof WebEntitlementContext && Tasks.current() == null)
+                ? (WebEntitlementContext) context : null;
+        long currentGeneration = generation.get();
+        List<Object> requestKey = null;
+        if (webContext != null) {
+            requestKey = Arrays.<Object>asList(this, permission, entitlementClassArgument);
+            Object cached = webContext.decisionCache().get(requestKey);
+            if (cached instanceof RequestDecision && ((RequestDecision) cached).generation == currentGeneration) {
+                hits.incrementAndGet();
+                return ((RequestDecision) cached).result;
+            }
+        }
+        List<Object> sharedKey = null;
+        if (shared != null && context instanceof WebEntitlementContext && context.user() != null) {
+            sharedKey = Arrays.<Object>asList(context.user(), permission, entitlementClassArgument);
+            Boolean result = shared.getIfPresent(sharedKey);
+            if (result != null) {
+                hits.incrementAndGet();
+                if (requestKey != null) putForRequest(webContext, requestKey, currentGeneration, result);
+                return result;
+            }
+        }
+        misses.incrementAndGet();
+        boolean result = delegate.isEntitled(context, permission, entitlementClassArgument);
+        if (requestKey != null) putForRequest(webContext, requestKey, currentGeneration, result);
+        if (sharedKey != null) putShared(sharedKey, currentGeneration, result);
+        return result;
+    }
+
+    private void putShared(List<Object> key, long decisionGeneration, boolean result) {
+        // not if invalidated while deciding, as the decision may be from before the change
+        if (generation.get() != decisionGeneration) return;
+        shared.put(key, result);
+        if (generation.get() != decisionGeneration) {
+            // invalidated between the check and the put, so the invalidation may have missed it
+            shared.invalidate(key);
+        }
+    }
+
+    private void putForRequest(WebEntitlementContext context, List<Object> key, long decisionGeneration, boolean result) {
+        Map<Object, Object> decisions = context.decisionCache();
+        if (decisions.size() >= requestMaxSize && !decisions.containsKey(key)) {
+            // rather than tracking use; a request rarely makes this many distinct checks
+            decisions.clear();
+        }
+        // replaces any decision from an earlier generation
+        decisions.put(key, new RequestDecision(decisionGeneration, result));
+    }
+
+    /** Discards all cached decisions, e.g. because the entitlements have changed. */
+    @Override
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        if (shared != null) shared.invalidateAll();
+        log.debug("Invalidated all cached entitlement decisions of {}", this);
+    }
+
+    /** Discards the cached decisions for the given user, and those cached for the current requests of all users. */
+    @Override
+    public void invalidateUser(@Nullable String user) {
+        generation.incrementAndGet();
+        if (shared != null) {
+            for (List<Object> key : shared.asMap().keySet()) {
+                if (Objects.equals(key.get(0), user)) shared.invalidate(key);
+            }
+        }
+        log.debug("Invalidated cached entitlement decisions for user {} of {}", user, this);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** The fraction of decisions found in the cache, or 0 if none have been requested. */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? 0 : ((double) h) / total;
+    }
+
+    /** The hits, misses and hit ratio, e.g. for reporting by the REST API. */
+    public Map<String, Object> getStatistics() {
+        return MutableMap.<String, Object>of(
+                "hits", getHitCount(),
+                "misses", getMissCount(),
+                "hitRatio", getHitRatio());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+delegate+"; hits="+hits.get()+"; misses="+misses.get()+"]";
+    }
+}
@@ -154,6 +154,18 @@ public class Entitlements {
             this.p1 = p1;
             this.p2 = p2;
         }
+        // value equality, so that decisions can be cached (see CachingEntitlementManager)
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || obj.getClass() != getClass()) return false;
+            Pair<?,?> other = (Pair<?,?>) obj;
+            return Objects.equal(p1, other.p1) && Objects.equal(p2, other.p2);
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(p1, p2);
+        }
     }
 
     public static class EntityAndItem<T> extends Pair<Entity,T> {
@@ -435,8 +447,23 @@ public class Entitlements {
         + "or supply the name of an "+EntitlementManager.class+" class to instantiate, taking a 1-arg BrooklynProperties constructor or a 0-arg constructor",
         "root");
     
+    /**
+     * Discards any decisions cached by the given manager (if it is an {@link InvalidatableEntitlementManager}),
+     * e.g. after entitlements change: for the given user, or for all users if null.
+     */
+    @Beta
+    public static void invalidateCachedDecisions(EntitlementManager manager, @Nullable String user) {
+        if (manager instanceof InvalidatableEntitlementManager) {
+            if (user == null) {
+                ((InvalidatableEntitlementManager) manager).invalidateAll();
+            } else {
+                ((InvalidatableEntitlementManager) manager).invalidateUser(user);
+            }
+        }
+    }
+
     public static EntitlementManager newManager(ManagementContext mgmt, BrooklynProperties brooklynProperties) {
-        return newGlobalManager(mgmt, brooklynProperties);
+        return CachingEntitlementManager.wrapIfConfigured(newGlobalManager(mgmt, brooklynProperties), brooklynProperties);
     }
     private static EntitlementManager newGlobalManager(ManagementContext mgmt, BrooklynProperties brooklynProperties) {
         return load(mgmt, brooklynProperties, brooklynProperties.getConfig(GLOBAL_ENTITLEMENT_MANAGER));
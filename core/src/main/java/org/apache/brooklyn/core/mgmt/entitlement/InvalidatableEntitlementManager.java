@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.entitlement;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementManager;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * An {@link EntitlementManager} which caches its decisions, so must be told when entitlements change.
+ *
+ * @see Entitlements#invalidateCachedDecisions(EntitlementManager, String)
+ */
+@Beta
+public interface InvalidatableEntitlementManager extends EntitlementManager {
+
+    /** Discards all cached decisions. */
+    void invalidateAll();
+
+    /** Discards the cached decisions for the given user (or those with no user, if null). */
+    void invalidateUser(@Nullable String user);
+
+}
@@ -18,9 +18,14 @@
  */
 package org.apache.brooklyn.core.mgmt.entitlement;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.util.javalang.JavaClassNames;
 
+import com.google.common.annotations.Beta;
+
 /**
  * Indicates an authenticated web request as the entitlements context;
  * note user may still be null if no authentication was requested
@@ -37,6 +42,9 @@ public class WebEntitlementContext implements EntitlementContext {
      */
     final String requestUniqueIdentifier;
     
+    /** decisions made for this request, by {@link CachingEntitlementManager} */
+    private final transient ConcurrentMap<Object, Object> decisions = new ConcurrentHashMap<Object, Object>();
+    
     public WebEntitlementContext(String user, String sourceIp, String requestUri, String requestUniqueIdentifier) {
         this.user = user;
         this.sourceIp = sourceIp;
@@ -48,6 +56,9 @@ public class WebEntitlementContext implements EntitlementContext {
     public String sourceIp() { return sourceIp; }
     public String requestUri() { return requestUri; }
     public String requestUniqueIdentifier() { return requestUniqueIdentifier; }
+    
+    @Beta
+    ConcurrentMap<Object, Object> decisionCache() { return decisions; }
 
     @Override
     public String toString() {
@@ -50,6 +50,7 @@ import org.apache.brooklyn.core.typereg.RegisteredTypePredicates;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.osgi.BundleIndex;
 import org.apache.brooklyn.util.core.osgi.Osgis;
 import org.apache.brooklyn.util.core.osgi.Osgis.BundleFinder;
 import org.apache.brooklyn.util.core.osgi.SystemFrameworkLoader;
@@ -220,6 +221,7 @@ public class OsgiManager {
         }
         
         if (!reuseFramework || !REUSED_FRAMEWORKS_ARE_KEPT_RUNNING) {
+            BundleIndex.release(framework);
             Osgis.ungetFramework(framework);
         }
         
@@ -366,58 +366,18 @@ public class LocalEntityManager implements EntityManagerInternal {
      * (and the non-recursive RO path here could maybe be dropped)
      */
     
-    /** Applies management lifecycle callbacks (onManagementStarting, for all beforehand, then onManagementStopped, for all after) */
+    /**
+     * Applies management lifecycle callbacks (onManagementStarting, for all beforehand, then onManagementStopped, for all after).
+     * <p>
+     * The tree is managed a level at a time, parents first: the entities of a level are pre-managed together,
+     * then have onManagementStarting called, then are registered together, each step in a single critical section,
+     * before any of their children start management (as children may look up their parent). As with
+     * {@link #recursively(Entity, Predicate)}, the children of an entity which is not managed are skipped.
+     */
     protected void manageRecursive(Entity e, final ManagementTransitionMode initialMode) {
         checkManagementAllowed(e);
 
         final List<EntityInternal> allEntities = Lists.newArrayList();
-        Predicate<EntityInternal> manageEntity = new Predicate<EntityInternal>() { @Override public boolean apply(EntityInternal it) {
-            ManagementTransitionMode mode = getLastManagementTransitionMode(it.getId());
-            if (mode==null) {
-                setManagementTransitionMode(it, mode = initialMode);
-            }
-            
-            Boolean isReadOnlyFromEntity = it.getManagementSupport().isReadOnlyRaw();
-            if (isReadOnlyFromEntity==null) {
-                if (mode.isReadOnly()) {
-                    // should have been marked by rebinder
-                    log.warn("Read-only entity "+it+" not marked as such on call to manage; marking and continuing");
-                }
-                it.getManagementSupport().setReadOnly(mode.isReadOnly());
-            } else {
-                if (!isReadOnlyFromEntity.equals(mode.isReadOnly())) {
-                    log.warn("Read-only status at entity "+it+" ("+isReadOnlyFromEntity+") not consistent with management mode "+mode);
-                }
-            }
-            
-            if (it.getManagementSupport().isDeployed()) {
-                if (mode.wasNotLoaded()) {
-                    // silently bail out
-                    return false;
-                } else {
-                    if (mode.wasPrimary() && mode.isPrimary()) {
-                        // active partial rebind; continue
-                    } else if (mode.wasReadOnly() && mode.isReadOnly()) {
-                        // reload in RO mode
-                    } else {
-                        // on initial non-RO rebind, should not have any deployed instances
-                        log.warn("Already deployed "+it+" when managing "+mode+"/"+initialMode+"; ignoring this and all descendants");
-                        return false;
-                    }
-                }
-            }
-            
-            // check RO status is consistent
-            boolean isNowReadOnly = Boolean.TRUE.equals( it.getManagementSupport().isReadOnly() );
-            if (mode.isReadOnly()!=isNowReadOnly) {
-                throw new IllegalStateException("Read-only status mismatch for "+it+": "+mode+" / RO="+isNowReadOnly);
-            }
-
-            allEntities.add(it);
-            preManageNonRecursive(it, mode);
-            it.getManagementSupport().onManagementStarting( new ManagementTransitionInfo(managementContext, mode) ); 
-            return manageNonRecursive(it, mode);
-        } };
         boolean isRecursive = true;
         if (initialMode.wasPrimary() && initialMode.isPrimary()) {
             // already managed, so this shouldn't be recursive 
@@ -433,21 +393,93 @@ public class LocalEntityManager implements EntityManagerInternal {
                 isRecursive = false;
             }
         }
-        if (!isRecursive) {
-            manageEntity.apply( (EntityInternal)e );
-        } else {
-            recursively(e, manageEntity);
+        List<EntityInternal> level = ImmutableList.of((EntityInternal) (isRecursive ? preferPreRegistered(e) : e));
+        while (!level.isEmpty()) {
+            Map<EntityInternal, ManagementTransitionMode> modes = Maps.newLinkedHashMap();
+            for (EntityInternal it : level) {
+                ManagementTransitionMode mode = getModeIfManageable(it, initialMode);
+                if (mode!=null) modes.put(it, mode);
+            }
+            allEntities.addAll(modes.keySet());
+            preManageAllNonRecursive(modes);
+            for (Map.Entry<EntityInternal, ManagementTransitionMode> entry : modes.entrySet()) {
+                entry.getKey().getManagementSupport().onManagementStarting( new ManagementTransitionInfo(managementContext, entry.getValue()) );
+            }
+            List<EntityInternal> managed = manageAllNonRecursive(modes);
+            
+            List<EntityInternal> nextLevel = Lists.newArrayList();
+            if (isRecursive) {
+                for (EntityInternal it : managed) {
+                    for (Entity child : it.getChildren()) {
+                        nextLevel.add((EntityInternal) preferPreRegistered(child));
+                    }
+                }
+            }
+            level = nextLevel;
         }
         
+        // the remaining callbacks do not depend on the order, so are made for all entities together
+        List<EntityInternal> started = Lists.newArrayListWithCapacity(allEntities.size());
         for (EntityInternal it : allEntities) {
             if (!it.getManagementSupport().isFullyManaged()) {
                 ManagementTransitionMode mode = getLastManagementTransitionMode(it.getId());
                 ManagementTransitionInfo info = new ManagementTransitionInfo(managementContext, mode);
                 
                 it.getManagementSupport().onManagementStarted(info);
-                managementContext.getRebindManager().getChangeListener().onManaged(it);
+                started.add(it);
+            }
+        }
+        if (!started.isEmpty()) {
+            managementContext.getRebindManager().getChangeListener().onManagedAll(started);
+        }
+    }
+
+    /**
+     * Returns the mode in which the entity should be managed, recording it if not already set,
+     * or null if it (and its descendants) should not be managed, e.g. because already deployed.
+     */
+    private ManagementTransitionMode getModeIfManageable(EntityInternal it, ManagementTransitionMode initialMode) {
+        ManagementTransitionMode mode = getLastManagementTransitionMode(it.getId());
+        if (mode==null) {
+            setManagementTransitionMode(it, mode = initialMode);
+        }
+        
+        Boolean isReadOnlyFromEntity = it.getManagementSupport().isReadOnlyRaw();
+        if (isReadOnlyFromEntity==null) {
+            if (mode.isReadOnly()) {
+                // should have been marked by rebinder
+                log.warn("Read-only entity "+it+" not marked as such on call to manage; marking and continuing");
+            }
+            it.getManagementSupport().setReadOnly(mode.isReadOnly());
+        } else {
+            if (!isReadOnlyFromEntity.equals(mode.isReadOnly())) {
+                log.warn("Read-only status at entity "+it+" ("+isReadOnlyFromEntity+") not consistent with management mode "+mode);
             }
         }
+        
+        if (it.getManagementSupport().isDeployed()) {
+            if (mode.wasNotLoaded()) {
+                // silently bail out
+                return null;
+            } else {
+                if (mode.wasPrimary() && mode.isPrimary()) {
+                    // active partial rebind; continue
+                } else if (mode.wasReadOnly() && mode.isReadOnly()) {
+                    // reload in RO mode
+                } else {
+                    // on initial non-RO rebind, should not have any deployed instances
+                    log.warn("Already deployed "+it+" when managing "+mode+"/"+initialMode+"; ignoring this and all descendants");
+                    return null;
+                }
+            }
+        }
+        
+        // check RO status is consistent
+        boolean isNowReadOnly = Boolean.TRUE.equals( it.getManagementSupport().isReadOnly() );
+        if (mode.isReadOnly()!=isNowReadOnly) {
+            throw new IllegalStateException("Read-only status mismatch for "+it+": "+mode+" / RO="+isNowReadOnly);
+        }
+        return mode;
     }
 
     @Override
@@ -634,13 +666,7 @@ public class LocalEntityManager implements EntityManagerInternal {
     }
 
     private void recursively(Entity e, Predicate<EntityInternal> action) {
-        Entity otherPreregistered = preRegisteredEntitiesById.get(e.getId());
-        if (otherPreregistered!=null) {
-            // if something has been pre-registered, prefer it
-            // (e.g. if we recursing through children, we might have a proxy from previous iteration;
-            // the most recent will have been pre-registered)
-            e = otherPreregistered;
-        }
+        e = preferPreRegistered(e);
             
         boolean success = action.apply( (EntityInternal)e );
         if (!success) {
@@ -651,6 +677,17 @@ public class LocalEntityManager implements EntityManagerInternal {
         }
     }
 
+    private Entity preferPreRegistered(Entity e) {
+        Entity otherPreregistered = preRegisteredEntitiesById.get(e.getId());
+        if (otherPreregistered!=null) {
+            // if something has been pre-registered, prefer it
+            // (e.g. if we recursing through children, we might have a proxy from previous iteration;
+            // the most recent will have been pre-registered)
+            return otherPreregistered;
+        }
+        return e;
+    }
+
     /**
      * Whether the entity is in the process of being managed.
      */
@@ -686,6 +723,25 @@ public class LocalEntityManager implements EntityManagerInternal {
         }
     }
 
+    /** As {@link #preManageNonRecursive(Entity, ManagementTransitionMode)}, for many entities under one lock. */
+    private synchronized void preManageAllNonRecursive(Map<? extends Entity, ManagementTransitionMode> modes) {
+        for (Map.Entry<? extends Entity, ManagementTransitionMode> entry : modes.entrySet()) {
+            preManageNonRecursive(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * As {@link #manageNonRecursive(Entity, ManagementTransitionMode)}, for many entities under one lock;
+     * returns those which have now become managed.
+     */
+    private synchronized List<EntityInternal> manageAllNonRecursive(Map<EntityInternal, ManagementTransitionMode> modes) {
+        List<EntityInternal> result = Lists.newArrayListWithCapacity(modes.size());
+        for (Map.Entry<EntityInternal, ManagementTransitionMode> entry : modes.entrySet()) {
+            if (manageNonRecursive(entry.getKey(), entry.getValue())) result.add(entry.getKey());
+        }
+        return result;
+    }
+
     /**
      * Should ensure that the entity is now managed somewhere, and known about in all the lists.
      * Returns true if the entity has now become managed; false if it was already managed (anything else throws exception)
@@ -318,6 +318,7 @@ public class LocalManagementContext extends AbstractManagementContext {
 
         if (execution == null) {
             execution = new BasicExecutionManager(getManagementNodeId());
+            execution.getTaskStatistics().registerMBean(getManagementNodeId());
             gc = new BrooklynGarbageCollector(configMap, execution, getStorage());
         }
         return execution;
@@ -339,7 +340,10 @@ public class LocalManagementContext extends AbstractManagementContext {
             osgiManager = null;
         }
         if (usageManager != null) usageManager.terminate();
-        if (execution != null) execution.shutdownNow();
+        if (execution != null) {
+            execution.getTaskStatistics().unregisterMBean();
+            execution.shutdownNow();
+        }
         if (gc != null) gc.shutdownNow();
 
         log.debug("Terminated management context "+this);
@@ -26,9 +26,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -36,7 +38,6 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nullable;
-import javax.xml.xpath.XPathConstants;
 
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.rebind.PersistenceExceptionHandler;
@@ -87,7 +88,6 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
-import org.w3c.dom.NodeList;
 
 /** Implementation of the {@link BrooklynMementoPersister} backed by a pluggable
  * {@link PersistenceObjectStore} such as a file system or a jclouds object store */
@@ -112,6 +112,22 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             "Maximum number of attempts to serialize a memento (e.g. if first attempts fail because of concurrent modifications of an entity)", 
             5);
 
+    public static final ConfigKey<Boolean> PERSISTER_REBIND_STREAMING = ConfigKeys.newBooleanConfigKey(
+            "persister.rebind.streaming",
+            "Whether to rebind without reading all persisted state into memory first; "
+            + "each entity, location, policy, enricher and feed is instead read when needed (once for the manifest, once to deserialize it) "
+            + "and released once used, which uses much less memory for large stores at the cost of reading them twice", 
+            false);
+
+    public static final ConfigKey<Integer> PERSISTER_REBIND_READ_AHEAD = ConfigKeys.newIntegerConfigKey(
+            "persister.rebind.readAhead",
+            "Maximum number of objects read from the store but not yet deserialized, when rebinding with "+PERSISTER_REBIND_STREAMING.getName(), 
+            50);
+
+    /** Types whose contents are read on demand in a streaming rebind; see {@link BrooklynMementoRawData#isStreaming()}. */
+    private static final Set<BrooklynObjectType> STREAMED_TYPES = ImmutableSet.of(
+            BrooklynObjectType.ENTITY, BrooklynObjectType.LOCATION, BrooklynObjectType.POLICY, BrooklynObjectType.ENRICHER, BrooklynObjectType.FEED);
+
     private final PersistenceObjectStore objectStore;
     private final MementoSerializer<Object> serializerWithStandardClassLoader;
 
@@ -121,6 +137,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
     private volatile boolean writesAllowed = false;
     private volatile boolean writesShuttingDown = false;
+    private volatile HeapUsageSampler heapUsageSampler;
     private StringConfigMap brooklynProperties;
     private ManagementContext mgmt = null;
     
@@ -290,8 +307,18 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
         Stopwatch stopwatch = Stopwatch.createStarted();
         try {
-            for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
-                subPathDataBuilder.putAll(type, makeIdSubPathMap(objectStore.listContentsWithSubPath(type.getSubPathName())));
+            // list the types concurrently, as each list may take several requests against a remote object store
+            Map<BrooklynObjectType, ListenableFuture<List<String>>> listings = MutableMap.of();
+            for (final BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+                listings.put(type, executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() {
+                        return objectStore.listContentsWithSubPath(type.getSubPathName());
+                    }
+                }));
+            }
+            for (Map.Entry<BrooklynObjectType, ListenableFuture<List<String>>> listing : listings.entrySet()) {
+                subPathDataBuilder.putAll(listing.getKey(), makeIdSubPathMap(listing.getValue().get()));
             }
             
         } catch (Exception e) {
@@ -316,7 +343,79 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         
         final BrooklynMementoRawData.Builder builder = BrooklynMementoRawData.builder();
         
-        Visitor loaderVisitor = new Visitor() {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        builder.planeId(Strings.emptyToNull(read(PLANE_ID_FILE_NAME)));
+        visitMemento("loading raw", subPathData, newRawDataLoader(builder, exceptionHandler), exceptionHandler);
+        
+        BrooklynMementoRawData result = builder.build();
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loaded rebind raw data; took {}; {} entities, {} locations, {} policies, {} enrichers, {} feeds, {} catalog items, {} bundles, from {}", new Object[]{
+                     Time.makeTimeStringRounded(stopwatch.elapsed(TimeUnit.MILLISECONDS)), result.getEntities().size(), 
+                     result.getLocations().size(), result.getPolicies().size(), result.getEnrichers().size(),
+                     result.getFeeds().size(), result.getCatalogItems().size(), result.getBundles().size(),
+                     objectStore.getSummaryName() });
+        }
+
+        return result;
+    }
+
+    /**
+     * As {@link #loadMementoRawData(RebindExceptionHandler)}, but only reading the catalog items and bundles
+     * (which are needed before anything else, and are comparatively few); for other objects the result has the
+     * paths of their contents, which {@link #loadMementoManifest(BrooklynMementoRawData, RebindExceptionHandler)}
+     * and {@link #loadMemento(BrooklynMementoRawData, LookupContext, RebindExceptionHandler)} read when needed.
+     * See {@link BrooklynMementoRawData#isStreaming()}.
+     */
+    @Beta
+    public BrooklynMementoRawData loadMementoRawDataStreaming(final RebindExceptionHandler exceptionHandler) {
+        BrooklynMementoRawData subPathData = listMementoSubPathsAsData(exceptionHandler);
+        
+        final BrooklynMementoRawData.Builder builder = BrooklynMementoRawData.builder().streaming(true);
+        for (BrooklynObjectType type: STREAMED_TYPES) {
+            builder.putAll(type, subPathData.getObjectsOfType(type));
+        }
+        
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        builder.planeId(Strings.emptyToNull(read(PLANE_ID_FILE_NAME)));
+        BrooklynMementoRawData catalogSubPathData = BrooklynMementoRawData.builder()
+                .catalogItems(subPathData.getCatalogItems())
+                .bundles(subPathData.getBundles())
+                .build();
+        visitMemento("loading raw catalog", catalogSubPathData, newRawDataLoader(builder, exceptionHandler), exceptionHandler);
+        
+        BrooklynMementoRawData result = builder.build();
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loaded rebind raw catalog data for streaming rebind; took {}; {} catalog items, {} bundles, from {}", new Object[]{
+                     Time.makeTimeStringRounded(stopwatch.elapsed(TimeUnit.MILLISECONDS)), 
+                     result.getCatalogItems().size(), result.getBundles().size(),
+                     objectStore.getSummaryName() });
+        }
+
+        return result;
+    }
+
+    /** Whether rebind should use {@link #loadMementoRawDataStreaming(RebindExceptionHandler)}; see {@link #PERSISTER_REBIND_STREAMING}. */
+    @Beta
+    public boolean isStreamingRebind() {
+        return Boolean.TRUE.equals(brooklynProperties.getConfig(PERSISTER_REBIND_STREAMING));
+    }
+
+    /**
+     * Sets the sampler to be told of each memento visited while loading (e.g. during a rebind), 
+     * so that it can sample the heap while they are read and deserialized; null to clear it.
+     */
+    @Beta
+    public void setHeapUsageSampler(@Nullable HeapUsageSampler heapUsageSampler) {
+        this.heapUsageSampler = heapUsageSampler;
+    }
+
+    /** Returns a visitor of mementos' subpaths, which reads their contents into the builder. */
+    private Visitor newRawDataLoader(final BrooklynMementoRawData.Builder builder, final RebindExceptionHandler exceptionHandler) {
+        return new Visitor() {
             @Override
             public void visit(BrooklynObjectType type, String id, String contentsSubpath) throws Exception {
                 if (type == BrooklynObjectType.MANAGED_BUNDLE && id.endsWith(".jar")) {
@@ -332,7 +431,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     exceptionHandler.onLoadMementoFailed(type, "memento "+id+" read error", e);
                 }
                 
-                String xmlId = (String) XmlUtil.xpathHandlingIllegalChars(contents, "/"+type.toCamelCase()+"/id");
+                String xmlId = new ManifestFields(contents, ID_FIELDS, NO_FIELDS).get("id");
                 String safeXmlId = Strings.makeValidFilename(xmlId);
                 if (!Objects.equal(id, safeXmlId))
                     LOG.warn("ID mismatch on "+type.toCamelCase()+", "+id+" from path, "+safeXmlId+" from xml");
@@ -345,45 +444,33 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                 builder.put(type, xmlId, contents);
             }
         };
-
-        Stopwatch stopwatch = Stopwatch.createStarted();
-
-        builder.planeId(Strings.emptyToNull(read(PLANE_ID_FILE_NAME)));
-        visitMemento("loading raw", subPathData, loaderVisitor, exceptionHandler);
-        
-        BrooklynMementoRawData result = builder.build();
-
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Loaded rebind raw data; took {}; {} entities, {} locations, {} policies, {} enrichers, {} feeds, {} catalog items, {} bundles, from {}", new Object[]{
-                     Time.makeTimeStringRounded(stopwatch.elapsed(TimeUnit.MILLISECONDS)), result.getEntities().size(), 
-                     result.getLocations().size(), result.getPolicies().size(), result.getEnrichers().size(),
-                     result.getFeeds().size(), result.getCatalogItems().size(), result.getBundles().size(),
-                     objectStore.getSummaryName() });
-        }
-
-        return result;
     }
 
-    private static class XPathHelper {
-        private String contents;
-        private String prefix;
+    private static final Set<String> ID_FIELDS = ImmutableSet.of("id");
+    private static final Set<String> TYPE_FIELDS = ImmutableSet.of("id", "type");
+    private static final Set<String> ENTITY_FIELDS = ImmutableSet.of("id", "type", "parent", "catalogItemId");
+    private static final Set<String> ENTITY_LIST_FIELDS = ImmutableSet.of("searchPath");
+    private static final Set<String> NO_FIELDS = ImmutableSet.of();
+
+    /** 
+     * Reads the given fields of the memento in a single streaming pass (rather than parsing it for each field), 
+     * returning the empty string for any which are absent (as the xpath previously used here did).
+     */
+    private static class ManifestFields {
+        private final Map<String, Object> fields;
 
-        public XPathHelper(String contents, String prefix) {
-            this.contents = contents;
-            this.prefix = prefix;
+        public ManifestFields(String contents, Set<String> textFields, Set<String> stringListFields) {
+            this.fields = XmlUtil.readRootChildren(contents, textFields, stringListFields);
         }
 
-        private String get(String innerPath) {
-            return (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix+innerPath);
+        private String get(String field) {
+            Object result = fields.get(field);
+            return result == null ? "" : (String) result;
         }
-        private List<String> getStringList(String innerPath) {
-            List<String> result = MutableList.of();
-            final NodeList nodeList =
-                (NodeList) XmlUtil.xpathHandlingIllegalChars(contents, prefix + innerPath + "//string", XPathConstants.NODESET);
-            for(int c = 0 ; c < nodeList.getLength() ; c++) {
-                result.add(nodeList.item(c).getFirstChild().getNodeValue());
-            }
-            return result;
+        @SuppressWarnings("unchecked")
+        private List<String> getStringList(String field) {
+            Object result = fields.get(field);
+            return result == null ? MutableList.<String>of() : MutableList.copyOf((List<String>) result);
         }
     }
 
@@ -400,7 +487,15 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         Visitor visitor = new Visitor() {
             @Override
             public void visit(BrooklynObjectType type, String objectId, final String contents) throws Exception {
-                XPathHelper x = new XPathHelper(contents, "/"+type.toCamelCase()+"/");
+                ManifestFields x;
+                switch (type) {
+                    case ENTITY: x = new ManifestFields(contents, ENTITY_FIELDS, ENTITY_LIST_FIELDS); break;
+                    case LOCATION:
+                    case POLICY:
+                    case ENRICHER:
+                    case FEED: x = new ManifestFields(contents, TYPE_FIELDS, NO_FIELDS); break;
+                    default: x = null;
+                }
                 switch (type) {
                     case ENTITY:
                         builder.entity(x.get("id"), x.get("type"), Strings.emptyToNull(x.get("parent")),
@@ -512,8 +607,16 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         public void visit(BrooklynObjectType type, String id, String contents) throws Exception;
     }
     
+    /**
+     * Visits each object in the raw data concurrently. If the raw data is {@link BrooklynMementoRawData#isStreaming() streaming}
+     * then each object's contents are read just before it is visited, with at most {@link #PERSISTER_REBIND_READ_AHEAD}
+     * read or waiting to be read at once, so that the contents can be released once visited.
+     */
     protected void visitMemento(final String phase, final BrooklynMementoRawData rawData, final Visitor visitor, final RebindExceptionHandler exceptionHandler) {
         List<ListenableFuture<?>> futures = Lists.newArrayList();
+        final boolean streaming = rawData.isStreaming();
+        final Semaphore readAhead = streaming ? new Semaphore(Math.max(1, brooklynProperties.getConfig(PERSISTER_REBIND_READ_AHEAD))) : null;
+        final HeapUsageSampler sampler = heapUsageSampler;
         
         class VisitorWrapper implements Runnable {
             private final BrooklynObjectType type;
@@ -525,16 +628,31 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             @Override
             public void run() {
                 try {
-                    visitor.visit(type, objectIdAndData.getKey(), objectIdAndData.getValue());
+                    String contents = objectIdAndData.getValue();
+                    if (streaming && STREAMED_TYPES.contains(type)) {
+                        // value is the subpath
+                        contents = read(contents);
+                    }
+                    visitor.visit(type, objectIdAndData.getKey(), contents);
                 } catch (Exception e) {
                     Exceptions.propagateIfFatal(e);
                     exceptionHandler.onLoadMementoFailed(type, "memento "+objectIdAndData.getKey()+" "+phase+" error", e);
+                } finally {
+                    if (sampler!=null) sampler.onItem();
+                    if (readAhead!=null) readAhead.release();
                 }
             }
         }
         
         for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
             for (final Map.Entry<String,String> entry : rawData.getObjectsOfType(type).entrySet()) {
+                if (readAhead!=null) {
+                    try {
+                        readAhead.acquire();
+                    } catch (InterruptedException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                }
                 futures.add(executor.submit(new VisitorWrapper(type, entry)));
             }
         }
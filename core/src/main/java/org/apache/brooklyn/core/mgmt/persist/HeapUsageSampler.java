@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Records the most heap used when sampled during an activity such as a rebind.
+ * <p>
+ * This samples the heap in use rather than using the memory pools' peak usage, as those are shared
+ * by the whole JVM and resetting them would affect anything else monitoring them. As well as being
+ * sampled explicitly (e.g. between phases), it is sampled every {@link #getItemsPerSample()} items
+ * processed, so that it sees the heap while (for example) mementos are being read and deserialized.
+ * Safe for use by concurrent threads.
+ */
+@Beta
+public class HeapUsageSampler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HeapUsageSampler.class);
+
+    public static final int DEFAULT_ITEMS_PER_SAMPLE = 50;
+
+    private final int itemsPerSample;
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong maxUsed = new AtomicLong(-1);
+
+    public HeapUsageSampler() {
+        this(DEFAULT_ITEMS_PER_SAMPLE);
+    }
+
+    public HeapUsageSampler(int itemsPerSample) {
+        this.itemsPerSample = Math.max(1, itemsPerSample);
+    }
+
+    public int getItemsPerSample() {
+        return itemsPerSample;
+    }
+
+    /** Notes that an item has been processed, sampling the heap if it is the {@link #getItemsPerSample()}th since the last. */
+    public void onItem() {
+        if (items.incrementAndGet() % itemsPerSample == 0) {
+            sample();
+        }
+    }
+
+    /** Records the heap currently used, if more than previously sampled. */
+    public void sample() {
+        long used;
+        try {
+            used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            LOG.trace("Unable to sample heap usage: "+e);
+            return;
+        }
+        while (true) {
+            long current = maxUsed.get();
+            if (used <= current || maxUsed.compareAndSet(current, used)) return;
+        }
+    }
+
+    /** @return the most heap used when sampled, in bytes; -1 if not known */
+    public long getMaxUsed() {
+        return maxUsed.get();
+    }
+
+    /** @return the number of items noted by {@link #onItem()} */
+    public long getItemCount() {
+        return items.get();
+    }
+}
@@ -30,7 +30,7 @@ public class PersistenceActivityMetrics {
     final static int MAX_ERRORS = 200;
     
     long count=0, failureCount=0;
-    Long lastSuccessTime, lastDuration, lastFailureTime;
+    Long lastSuccessTime, lastDuration, lastFailureTime, lastPeakHeapBytes;
     List<Map<String,Object>> errorMessages = MutableList.of();
 
     public void noteSuccess(Duration duration) {
@@ -46,6 +46,11 @@ public class PersistenceActivityMetrics {
         lastDuration = duration!=null ? duration.toMilliseconds() : -1;
     }
 
+    /** Records the peak heap used by the last activity (as sampled during it), in bytes; negative if unknown. */
+    public void notePeakHeap(long bytes) {
+        lastPeakHeapBytes = bytes>=0 ? bytes : null;
+    }
+
     public void noteError(String error) {
         noteErrorObject(error);
     }
@@ -68,6 +73,7 @@ public class PersistenceActivityMetrics {
         result.put("lastSuccessTimeUtc", lastSuccessTime);
         result.put("lastSuccessTimeMillisSince", since(lastSuccessTime));
         result.put("lastDuration", lastDuration);
+        result.put("lastPeakHeapBytes", lastPeakHeapBytes);
         result.put("failureCount", failureCount);
         result.put("lastFailureTimeUtc", lastFailureTime);
         result.put("lastFailureTimeMillisSince", since(lastFailureTime));
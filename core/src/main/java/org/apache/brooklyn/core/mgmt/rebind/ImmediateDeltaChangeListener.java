@@ -70,6 +70,13 @@ public class ImmediateDeltaChangeListener implements ChangeListener {
         onChanged(instance);
     }
 
+    @Override
+    public void onManagedAll(Iterable<? extends BrooklynObject> instances) {
+        for (BrooklynObject instance : instances) {
+            onManaged(instance);
+        }
+    }
+
     @Override
     public void onUnmanaged(BrooklynObject instance) {
         if (running && persister != null) {
@@ -32,6 +32,7 @@ import org.apache.brooklyn.core.mgmt.internal.BrooklynObjectManagementMode;
 import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.LocationManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.ManagementTransitionMode;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
 import org.apache.brooklyn.util.text.Strings;
 import org.slf4j.Logger;
@@ -73,7 +74,13 @@ public class InitialFullRebindIteration extends RebindIteration {
     protected void loadManifestFiles() throws Exception {
         checkEnteringPhase(1);
         Preconditions.checkState(mementoRawData==null, "Memento raw data should not yet be set when calling this");
-        mementoRawData = persistenceStoreAccess.loadMementoRawData(exceptionHandler);
+        if (persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore
+                && ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).isStreamingRebind()) {
+            // contents other than catalog are read when needed, rather than all held in memory
+            mementoRawData = ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).loadMementoRawDataStreaming(exceptionHandler);
+        } else {
+            mementoRawData = persistenceStoreAccess.loadMementoRawData(exceptionHandler);
+        }
         
         preprocessManifestFiles();
         
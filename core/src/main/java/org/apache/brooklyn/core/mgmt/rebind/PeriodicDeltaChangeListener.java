@@ -236,7 +236,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
 
             Callable<Task<?>> taskFactory = new Callable<Task<?>>() {
                 @Override public Task<Void> call() {
-                    return Tasks.<Void>builder().dynamic(false).displayName("periodic-persister").body(new Callable<Void>() {
+                    return Tasks.<Void>builder().dynamic(false).displayName("periodic-persister").tag(BrooklynTaskTags.PERSISTENCE_TAG).body(new Callable<Void>() {
                         @Override
                         public Void call() {
                             persistNowSafely();
@@ -516,6 +516,16 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         onChanged(instance);
     }
 
+    @Override
+    public synchronized void onManagedAll(Iterable<? extends BrooklynObject> instances) {
+        if (LOG.isTraceEnabled()) LOG.trace("onManagedAll: {}", instances);
+        if (!isStopped()) {
+            for (BrooklynObject instance : instances) {
+                deltaCollector.add(instance);
+            }
+        }
+    }
+
     @Override
     public synchronized void onUnmanaged(BrooklynObject instance) {
         if (LOG.isTraceEnabled()) LOG.trace("onUnmanaged: {}", instance);
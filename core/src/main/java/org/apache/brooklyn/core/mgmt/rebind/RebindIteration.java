@@ -88,7 +88,9 @@ import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
 import org.apache.brooklyn.core.mgmt.internal.LocationManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.mgmt.internal.ManagementTransitionMode;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.DeserializingClassRenamesProvider;
+import org.apache.brooklyn.core.mgmt.persist.HeapUsageSampler;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
 import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl.RebindTracker;
 import org.apache.brooklyn.core.objs.AbstractBrooklynObject;
@@ -191,6 +193,8 @@ public abstract class RebindIteration {
     // set on run start
     
     protected Stopwatch timer;
+    /** samples the heap between phases, and as mementos are loaded by the persister */
+    private final HeapUsageSampler heapUsageSampler = new HeapUsageSampler();
     /** phase is used to ensure our steps are run as we've expected, and documented (in javadoc at top).
      * it's worth the extra effort due to the complication and the subtleties. */
     protected int phase = 0;
@@ -277,6 +281,10 @@ public abstract class RebindIteration {
                 readOnlyRebindCount.incrementAndGet();
 
             timer = Stopwatch.createStarted();
+            heapUsageSampler.sample();
+            if (persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore) {
+                ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).setHeapUsageSampler(heapUsageSampler);
+            }
             exceptionHandler.onStart(rebindContext);
 
             doRun();
@@ -284,22 +292,30 @@ public abstract class RebindIteration {
             exceptionHandler.onDone();
             
             rebindMetrics.noteSuccess(Duration.of(timer));
+            heapUsageSampler.sample();
+            rebindMetrics.notePeakHeap(heapUsageSampler.getMaxUsed());
             noteErrors(exceptionHandler, null);
             
         } catch (Exception e) {
             rebindMetrics.noteFailure(Duration.of(timer));
+            heapUsageSampler.sample();
+            rebindMetrics.notePeakHeap(heapUsageSampler.getMaxUsed());
             
             Exceptions.propagateIfFatal(e);
             noteErrors(exceptionHandler, e);
             throw exceptionHandler.onFailed(e);
             
         } finally {
+            if (persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore) {
+                ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).setHeapUsageSampler(null);
+            }
             rebindActive.release();
             RebindTracker.reset();
         }
     }
-    
+
     protected void checkEnteringPhase(int targetPhase) {
+        heapUsageSampler.sample();
         phase++;
         checkContinuingPhase(targetPhase);
     }
@@ -646,6 +646,15 @@ public class RebindManagerImpl implements RebindManager {
             }
         }
 
+        @Override
+        public void onManagedAll(Iterable<? extends BrooklynObject> instances) {
+            try {
+                delegate.onManagedAll(instances);
+            } catch (Throwable t) {
+                LOG.error("Error persisting mememento onManagedAll("+instances+"); continuing.", t);
+            }
+        }
+
         @Override
         public void onChanged(BrooklynObject instance) {
             try {
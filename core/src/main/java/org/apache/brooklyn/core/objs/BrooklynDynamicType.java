@@ -63,6 +63,21 @@ public abstract class BrooklynDynamicType<T extends BrooklynObject, AbstractT ex
 
     private static final Logger LOG = LoggerFactory.getLogger(BrooklynDynamicType.class);
 
+    /** 
+     * The config keys defined statically on each class, as found by {@link #buildConfigKeys(Class, AbstractBrooklynObject, Map)},
+     * shared by all instances of that class rather than found for each. Held by the class itself,
+     * so discarded along with it, e.g. when the OSGi bundle which loaded it is uninstalled.
+     */
+    private static final ClassValue<Map<String,FieldAndValue<ConfigKey<?>>>> CONFIG_KEYS_BY_CLASS = new ClassValue<Map<String,FieldAndValue<ConfigKey<?>>>>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Map<String, FieldAndValue<ConfigKey<?>>> computeValue(Class<?> type) {
+            Map<String, FieldAndValue<ConfigKey<?>>> result = new LinkedHashMap<String, FieldAndValue<ConfigKey<?>>>();
+            buildConfigKeys((Class<? extends BrooklynObject>) type, null, result);
+            return Collections.unmodifiableMap(result);
+        }
+    };
+
     protected final Class<? extends T> brooklynClass;
     protected final AbstractT instance;
     protected volatile String name;
@@ -88,7 +103,7 @@ public abstract class BrooklynDynamicType<T extends BrooklynObject, AbstractT ex
         // NB: official name is usually injected later, e.g. from AbstractEntity.setManagementContext
         this.name = (clazz.getCanonicalName() == null) ? clazz.getName() : clazz.getCanonicalName();
         
-        buildConfigKeys(clazz, null, configKeys);
+        configKeys.putAll(CONFIG_KEYS_BY_CLASS.get(clazz));
         if (LOG.isTraceEnabled())
             LOG.trace("Entity {} config keys: {}", (instance==null ? clazz.getName() : instance.getId()), Joiner.on(", ").join(configKeys.keySet()));
     }
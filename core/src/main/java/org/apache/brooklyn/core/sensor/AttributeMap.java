@@ -23,6 +23,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
@@ -57,6 +58,9 @@ public final class AttributeMap {
     // Assumed to be something like a ConcurrentMap passed in.
     private final Map<Collection<String>, Object> values;
 
+    /** The entity's modification sequence when each value was last set; see {@link #getModificationSequence(AttributeSensor)}. */
+    private final Map<Collection<String>, Long> modificationSequences = new ConcurrentHashMap<Collection<String>, Long>();
+
     /**
      * Creates a new AttributeMap.
      *
@@ -130,6 +134,7 @@ public final class AttributeMap {
 
         @SuppressWarnings("unchecked")
         T oldValue = (T) values.put(path, newValue);
+        modificationSequences.put(path, entity.markModified());
         return (isNull(oldValue)) ? null : oldValue;
     }
 
@@ -193,6 +198,18 @@ public final class AttributeMap {
         }
 
         values.remove(path);
+        modificationSequences.remove(path);
+        entity.markModified();
+    }
+
+    /**
+     * Returns the entity's {@link AbstractEntity#getModificationSequence() modification sequence}
+     * as at the last time the given attribute was set, or 0 if it is not set.
+     */
+    @Beta
+    public long getModificationSequence(AttributeSensor<?> attribute) {
+        Long result = modificationSequences.get(attribute.getNameParts());
+        return (result == null) ? 0 : result;
     }
 
     /**
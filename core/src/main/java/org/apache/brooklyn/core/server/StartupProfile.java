@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.server;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Records when each phase of server startup (management context, web console, persistence, catalog, etc)
+ * started and how long it took, and on which thread, so that slow startups can be diagnosed and
+ * phases which run in parallel can be seen.
+ * <p>
+ * The launcher puts the profile in the management context's scratchpad under {@link #STARTUP_PROFILE},
+ * from where it is reported by the REST API.
+ */
+@Beta
+public class StartupProfile {
+
+    public static final ConfigKey<StartupProfile> STARTUP_PROFILE = ConfigKeys.newConfigKey(StartupProfile.class,
+            "brooklyn.server.startupProfile", "Timings of the phases of server startup");
+
+    private final long startTimeUtc = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos = -1;
+    private final List<Phase> phases = MutableList.of();
+
+    /** Records that the given phase is starting, in the current thread; call {@link Phase#end()} when it completes. */
+    public Phase start(String name) {
+        Phase result = new Phase(name);
+        synchronized (phases) {
+            phases.add(result);
+        }
+        return result;
+    }
+
+    /** Records that startup has completed. */
+    public void complete() {
+        endNanos = System.nanoTime();
+    }
+
+    public boolean isComplete() {
+        return endNanos != -1;
+    }
+
+    /** Time from the start of startup until it completed, or until now if it has not yet completed. */
+    public Duration getElapsed() {
+        return Duration.nanos((isComplete() ? endNanos : System.nanoTime()) - startNanos);
+    }
+
+    public List<Phase> getPhases() {
+        synchronized (phases) {
+            return ImmutableList.copyOf(phases);
+        }
+    }
+
+    /** The profile as a map (suitable for JSON), with each phase's start offset and duration in milliseconds. */
+    public Map<String, Object> toMap() {
+        List<Map<String, Object>> phaseMaps = MutableList.of();
+        for (Phase phase : getPhases()) {
+            phaseMaps.add(phase.toMap());
+        }
+        return MutableMap.<String, Object>of(
+                "startTime", Time.makeDateString(startTimeUtc),
+                "complete", isComplete(),
+                "elapsedMillis", getElapsed().toMilliseconds(),
+                "phases", phaseMaps);
+    }
+
+    /** The profile as a human-readable table, one phase per line. */
+    public String toReport() {
+        StringBuilder result = new StringBuilder();
+        result.append("Startup ").append(isComplete() ? "completed" : "in progress").append(" after ").append(getElapsed());
+        for (Phase phase : getPhases()) {
+            result.append("\n  ").append(String.format("%-20s", phase.getName()))
+                .append(" start +").append(Duration.nanos(phase.startNanos - startNanos))
+                .append(", ").append(phase.isEnded() ? "took "+phase.getDuration() : "running for "+phase.getDuration())
+                .append(" [").append(phase.getThread()).append("]");
+            if (phase.getError() != null) result.append(" FAILED: ").append(Exceptions.collapseText(phase.getError()));
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+(isComplete() ? "complete" : "in progress")+"; "+getElapsed()+"]";
+    }
+
+    public class Phase {
+        private final String name;
+        private final String thread = Thread.currentThread().getName();
+        private final long startNanos = System.nanoTime();
+        private volatile long endNanos = -1;
+        private volatile Throwable error;
+
+        protected Phase(String name) {
+            this.name = name;
+        }
+
+        public void end() {
+            endNanos = System.nanoTime();
+        }
+
+        /** Records that the phase ended with the given error. */
+        public void failed(Throwable error) {
+            this.error = error;
+            end();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public boolean isEnded() {
+            return endNanos != -1;
+        }
+
+        /** How long the phase took, or has taken so far if not yet ended. */
+        public Duration getDuration() {
+            return Duration.nanos((isEnded() ? endNanos : System.nanoTime()) - startNanos);
+        }
+
+        @Nullable
+        public Throwable getError() {
+            return error;
+        }
+
+        protected Map<String, Object> toMap() {
+            Map<String, Object> result = MutableMap.<String, Object>of(
+                    "name", name,
+                    "thread", thread,
+                    "startOffsetMillis", Duration.nanos(startNanos - StartupProfile.this.startNanos).toMilliseconds(),
+                    "durationMillis", getDuration().toMilliseconds(),
+                    "ended", isEnded());
+            if (error != null) result.put("error", Exceptions.collapseText(error));
+            return result;
+        }
+    }
+}
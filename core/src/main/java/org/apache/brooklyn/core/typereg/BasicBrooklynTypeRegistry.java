@@ -18,6 +18,7 @@
  */
 package org.apache.brooklyn.core.typereg;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -39,8 +40,10 @@ import org.apache.brooklyn.core.catalog.internal.CatalogUtils;
 import org.apache.brooklyn.core.mgmt.ha.OsgiManager;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.osgi.BundleIndex;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.osgi.VersionedName;
@@ -61,7 +64,8 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
     private static final Logger log = LoggerFactory.getLogger(BasicBrooklynTypeRegistry.class);
     
     private ManagementContext mgmt;
-    private Map<String,RegisteredType> localRegisteredTypes = MutableMap.of();
+    /** synchronized, as types may be validated (and replaced here) concurrently; see {@link BasicBrooklynCatalog#validateTypes(Iterable)} */
+    private final Map<String,RegisteredType> localRegisteredTypes = Collections.synchronizedMap(MutableMap.<String,RegisteredType>of());
 
     public BasicBrooklynTypeRegistry(ManagementContext mgmt) {
         this.mgmt = mgmt;
@@ -73,9 +77,10 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
     }
     
     private Iterable<RegisteredType> getAllWithoutCatalog(Predicate<? super RegisteredType> filter) {
-        // TODO thread safety
         // TODO optimisation? make indexes and look up?
-        return Iterables.filter(localRegisteredTypes.values(), filter);
+        synchronized (localRegisteredTypes) {
+            return MutableList.copyOf(Iterables.filter(localRegisteredTypes.values(), filter));
+        }
     }
 
     private Maybe<RegisteredType> getExactWithoutLegacyCatalog(String symbolicName, String version, RegisteredTypeLoadingContext constraint) {
@@ -319,6 +324,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         if (oldType==null || canForce || BrooklynVersionSyntax.isSnapshot(oldType.getVersion())) {
             log.debug("Inserting "+type+" into "+this);
             localRegisteredTypes.put(type.getId(), type);
+            invalidateClassLoadingCache();
         } else {
             assertSameEnoughToAllowReplacing(oldType, type);
         }
@@ -425,6 +431,14 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
             + "item  is already present in different bundle "+oldType.getContainingBundle());
     }
 
+    /** types contribute to the search path used when loading classes, so cached results may no longer be valid */
+    private void invalidateClassLoadingCache() {
+        OsgiManager osgi = ((ManagementContextInternal)mgmt).getOsgiManager().orNull();
+        if (osgi==null) return;
+        BundleIndex index = BundleIndex.forFramework(osgi.getFramework());
+        if (index!=null) index.invalidateClassCache();
+    }
+
     private boolean samePlan(RegisteredType oldType, RegisteredType type) {
         return RegisteredTypes.arePlansEquivalent(oldType, type);
     }
@@ -433,6 +447,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
     public void delete(VersionedName type) {
         RegisteredType registeredTypeRemoved = localRegisteredTypes.remove(type.toString());
         if (registeredTypeRemoved != null) {
+            invalidateClassLoadingCache();
             return ;
         }
         
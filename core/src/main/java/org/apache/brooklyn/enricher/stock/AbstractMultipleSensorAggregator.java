@@ -23,6 +23,8 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
@@ -42,8 +44,11 @@ public abstract class AbstractMultipleSensorAggregator<U> extends AbstractAggreg
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractMultipleSensorAggregator.class);
 
-    /** access via {@link #getValues(Sensor)} */
-    private final Map<String, Map<Entity,Object>> values = Collections.synchronizedMap(new LinkedHashMap<String, Map<Entity,Object>>());
+    /**
+     * Access via {@link #getValues(Sensor)}. Each sensor's map is synchronized independently,
+     * so events for different sensors do not contend.
+     */
+    private final ConcurrentMap<String, Map<Entity,Object>> values = new ConcurrentHashMap<String, Map<Entity,Object>>();
 
     public AbstractMultipleSensorAggregator() { }
 
@@ -87,14 +92,15 @@ public abstract class AbstractMultipleSensorAggregator<U> extends AbstractAggreg
     protected void onProducerAdded(Entity producer) {
         BrooklynLogging.log(LOG, BrooklynLogging.levelDebugOrTraceIfReadOnly(producer),
             "{} listening to {}", this, producer);
-        synchronized (values) {
-            for (Sensor<?> sensor: getSourceSensors()) {
-                Map<Entity,Object> vs = values.get(sensor.getName());
-                if (vs==null) {
-                    vs = new LinkedHashMap<Entity,Object>();
-                    values.put(sensor.getName(), vs);
-                }
+        for (Sensor<?> sensor: getSourceSensors()) {
+            Map<Entity,Object> vs = values.get(sensor.getName());
+            if (vs==null) {
+                Map<Entity,Object> newVs = Collections.synchronizedMap(new LinkedHashMap<Entity,Object>());
+                vs = values.putIfAbsent(sensor.getName(), newVs);
+                if (vs==null) vs = newVs;
+            }
 
+            synchronized (vs) {
                 Object vo = vs.get(producer);
                 if (vo==null) {
                     Object initialVal;
@@ -112,12 +118,10 @@ public abstract class AbstractMultipleSensorAggregator<U> extends AbstractAggreg
 
     @Override
     protected void onProducerRemoved(Entity producer) {
-        synchronized (values) {
-            for (Sensor<?> sensor: getSourceSensors()) {
-                Map<Entity,Object> vs = values.get(sensor.getName());
-                if (vs!=null)
-                    vs.remove(producer);
-            }
+        for (Sensor<?> sensor: getSourceSensors()) {
+            Map<Entity,Object> vs = values.get(sensor.getName());
+            if (vs!=null)
+                vs.remove(producer);
         }
         onUpdated();
     }
@@ -126,13 +130,11 @@ public abstract class AbstractMultipleSensorAggregator<U> extends AbstractAggreg
     public void onEvent(SensorEvent<Object> event) {
         Entity e = event.getSource();
         if (entityFilter.apply(e)) {
-            synchronized (values) {
-                Map<Entity,Object> vs = values.get(event.getSensor().getName());
-                if (vs==null) {
-                    LOG.debug(this+" received event when no entry for sensor ("+event+"); likely just added or removed, and will initialize subsequently if needed");
-                } else {
-                    vs.put(e, event.getValue());
-                }
+            Map<Entity,Object> vs = values.get(event.getSensor().getName());
+            if (vs==null) {
+                LOG.debug(this+" received event when no entry for sensor ("+event+"); likely just added or removed, and will initialize subsequently if needed");
+            } else {
+                vs.put(e, event.getValue());
             }
             onUpdated();
         }
@@ -154,9 +156,10 @@ public abstract class AbstractMultipleSensorAggregator<U> extends AbstractAggreg
     }
 
     private <T> Map<Entity, T> copyValues(Sensor<T> sensor) {
-        synchronized (values) {
-            @SuppressWarnings("unchecked")
-            Map<Entity, T> sv = (Map<Entity, T>) values.get(sensor.getName());
+        @SuppressWarnings("unchecked")
+        Map<Entity, T> sv = (Map<Entity, T>) values.get(sensor.getName());
+        if (sv==null) return MutableMap.<Entity, T>of().asUnmodifiable();
+        synchronized (sv) {
             //use MutableMap because of potentially null values
             return MutableMap.copyOf(sv).asUnmodifiable();
         }
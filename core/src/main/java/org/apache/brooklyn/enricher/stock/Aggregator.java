@@ -34,6 +34,7 @@ import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.enricher.stock.MathAggregatorFunctions.IncrementalNumberAggregation;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.QuorumCheck.QuorumChecks;
@@ -87,6 +88,13 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
      */
     // We use a synchronizedMap over a ConcurrentHashMap for entities that store null values.
     protected final Map<Entity, T> values = Collections.synchronizedMap(new LinkedHashMap<Entity, T>());
+    /**
+     * For the standard numeric transformations, the aggregate is maintained as values change
+     * rather than by applying the transformation to all values; null if not supported for the transformation.
+     */
+    private volatile IncrementalNumberAggregation<?> incrementalAggregation;
+    /** The values currently included in {@link #incrementalAggregation}, by producer (guarded by {@link #values}). */
+    private final Map<Entity, Number> aggregatedValues = MutableMap.of();
 
     public Aggregator() {}
 
@@ -112,6 +120,14 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         } else if (t1!=null && !Objects.equals(t2, this.transformation)) {
             throw new IllegalStateException("Cannot supply both "+TRANSFORMATION_UNTYPED+" and "+TRANSFORMATION+" unless they are equal.");
         }
+        
+        synchronized (values) {
+            incrementalAggregation = MathAggregatorFunctions.newIncrementalAggregation(transformation);
+            aggregatedValues.clear();
+            for (Map.Entry<Entity, T> entry : values.entrySet()) {
+                aggregate(entry.getKey(), entry.getValue());
+            }
+        }
     }
         
     @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -193,7 +209,10 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
                 } else {
                     initialVal = null;
                 }
-                values.put(producer, initialVal != null ? initialVal : defaultMemberValue);
+                T val = initialVal != null ? initialVal : defaultMemberValue;
+                unaggregate(producer);
+                values.put(producer, val);
+                aggregate(producer, val);
                 //we might skip in onEvent in the short window while !values.containsKey(producer)
                 //but that's okay because the put which would have been done there is done here now
             } else {
@@ -206,7 +225,10 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     
     @Override
     protected void onProducerRemoved(Entity producer) {
-        values.remove(producer);
+        synchronized (values) {
+            values.remove(producer);
+            unaggregate(producer);
+        }
         onUpdated();
     }
 
@@ -216,6 +238,8 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         synchronized (values) {
             if (values.containsKey(e)) {
                 values.put(e, event.getValue());
+                unaggregate(e);
+                aggregate(e, event.getValue());
             } else {
                 if (LOG.isDebugEnabled()) LOG.debug("{} received event for unknown producer ({}); presumably that producer has recently been removed", this, e);
             }
@@ -223,6 +247,28 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         onUpdated();
     }
 
+    /** Adds the producer's value to the incremental aggregation, if there is one and the value passes the filter. */
+    private void aggregate(Entity producer, T value) {
+        IncrementalNumberAggregation<?> aggregation = incrementalAggregation;
+        if (aggregation==null || !valueFilter.apply(value)) return;
+        if (value!=null && !(value instanceof Number)) {
+            // not something the transformation can handle incrementally; let it deal with it
+            if (LOG.isDebugEnabled()) LOG.debug("{} received non-numeric value ({}); no longer aggregating incrementally", this, value);
+            incrementalAggregation = null;
+            aggregatedValues.clear();
+            return;
+        }
+        aggregation.add((Number) value);
+        aggregatedValues.put(producer, (Number) value);
+    }
+
+    private void unaggregate(Entity producer) {
+        IncrementalNumberAggregation<?> aggregation = incrementalAggregation;
+        if (aggregation!=null && aggregatedValues.containsKey(producer)) {
+            aggregation.remove(aggregatedValues.remove(producer));
+        }
+    }
+
     @Override
     protected void onUpdated() {
         try {
@@ -236,6 +282,8 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     @Override
     protected Object compute() {
         synchronized (values) {
+            IncrementalNumberAggregation<?> aggregation = incrementalAggregation;
+            if (aggregation!=null) return aggregation.get();
             // TODO Could avoid copying when filter not needed
             List<T> vs = MutableList.copyOf(Iterables.filter(values.values(), valueFilter));
             if (transformation==null) return vs;
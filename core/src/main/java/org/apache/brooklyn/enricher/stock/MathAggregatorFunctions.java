@@ -21,9 +21,11 @@ package org.apache.brooklyn.enricher.stock;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
 
 import com.google.common.annotations.Beta;
@@ -197,6 +199,180 @@ public class MathAggregatorFunctions {
         }
     }
 
+    /**
+     * Returns an {@link IncrementalNumberAggregation} giving the same result as the given function, if it is one of
+     * {@link #computingSum(Number, Number, TypeToken) sum}, {@link #computingAverage(Number, Number, TypeToken) average},
+     * {@link #computingMin(Number, Number, TypeToken) min} or {@link #computingMax(Number, Number, TypeToken) max};
+     * otherwise null (e.g. for custom functions, including subclasses of these).
+     */
+    @Beta
+    @Nullable
+    public static IncrementalNumberAggregation<?> newIncrementalAggregation(@Nullable Function<?, ?> function) {
+        if (function == null) return null;
+        Class<?> type = function.getClass();
+        IncrementalNumberAggregation.Kind kind;
+        if (type == ComputingSum.class) {
+            kind = IncrementalNumberAggregation.Kind.SUM;
+        } else if (type == ComputingAverage.class) {
+            kind = IncrementalNumberAggregation.Kind.AVERAGE;
+        } else if (type == ComputingMin.class) {
+            kind = IncrementalNumberAggregation.Kind.MIN;
+        } else if (type == ComputingMax.class) {
+            kind = IncrementalNumberAggregation.Kind.MAX;
+        } else {
+            return null;
+        }
+        return new IncrementalNumberAggregation<Number>((BasicComputingNumber<?>) function, kind);
+    }
+
+    /**
+     * Maintains the result of a sum, average, min or max as values are added and removed, rather than
+     * recomputing it over all values on each change: add and remove are O(1), as is {@link #get()} except
+     * for a min or max when the current min or max has been removed, in which case the distinct values are
+     * scanned on the next get.
+     * <p>
+     * Gives the same result as {@link BasicComputingNumber#apply(Collection)} on the current values
+     * (other than rounding of the sum), including for null values and infinities. The running sum is
+     * compensated (Kahan-Babuska summation), so that rounding errors do not accumulate as large values
+     * are added and removed, and is reset whenever no finite values remain. Not thread-safe.
+     */
+    @Beta
+    public static class IncrementalNumberAggregation<T extends Number> {
+        enum Kind { SUM, AVERAGE, MIN, MAX }
+
+        private final AbstractComputingNumber<?> function;
+        private final Kind kind;
+
+        private int count;
+        private double finiteSum;
+        /** compensation for the rounding error in {@link #finiteSum} */
+        private double finiteSumCompensation;
+        private int nanCount;
+        private int positiveInfinityCount;
+        private int negativeInfinityCount;
+        /** number of occurrences of each value; only for min and max */
+        private final Map<Double, Integer> occurrences;
+        /** the current min or max, or null if it must be recomputed from {@link #occurrences} */
+        private Double extreme;
+
+        protected IncrementalNumberAggregation(AbstractComputingNumber<?> function, Kind kind) {
+            this.function = function;
+            this.kind = kind;
+            this.occurrences = (kind == Kind.MIN || kind == Kind.MAX) ? MutableMap.<Double, Integer>of() : null;
+        }
+
+        public void add(@Nullable Number val) {
+            Double d = toDouble(val);
+            if (d == null) return;
+            count++;
+            updateSum(d, 1);
+            if (occurrences != null) {
+                Integer old = occurrences.get(d);
+                occurrences.put(d, (old == null) ? 1 : old + 1);
+                if (count == 1) {
+                    extreme = d;
+                } else if (extreme != null && isBetter(d, extreme)) {
+                    extreme = d;
+                }
+            }
+        }
+
+        public void remove(@Nullable Number val) {
+            Double d = toDouble(val);
+            if (d == null) return;
+            count--;
+            updateSum(d, -1);
+            if (occurrences != null) {
+                Integer old = occurrences.get(d);
+                if (old == null || old <= 1) {
+                    occurrences.remove(d);
+                    if (d.equals(extreme)) extreme = null;
+                } else {
+                    occurrences.put(d, old - 1);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get() {
+            if (count <= 0) return (T) cast(function.valueToReportIfNoSensors, function.typeToken);
+            Number result;
+            switch (kind) {
+            case SUM:
+                result = sum();
+                break;
+            case AVERAGE:
+                result = sum() / count;
+                break;
+            default:
+                result = (nanCount > 0) ? Double.NaN : extreme();
+            }
+            return (T) cast(result, function.typeToken);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        private Double toDouble(@Nullable Number val) {
+            if (val == null) val = function.defaultValueForUnreportedSensors;
+            return (val == null) ? null : val.doubleValue();
+        }
+
+        private void updateSum(double d, int delta) {
+            if (Double.isNaN(d)) {
+                nanCount += delta;
+            } else if (d == Double.POSITIVE_INFINITY) {
+                positiveInfinityCount += delta;
+            } else if (d == Double.NEGATIVE_INFINITY) {
+                negativeInfinityCount += delta;
+            } else {
+                addToSum(delta * d);
+            }
+            if (count == nanCount + positiveInfinityCount + negativeInfinityCount) {
+                // no finite values, so discard any residual rounding error
+                finiteSum = 0;
+                finiteSumCompensation = 0;
+            }
+        }
+
+        private void addToSum(double d) {
+            double t = finiteSum + d;
+            if (Math.abs(finiteSum) >= Math.abs(d)) {
+                finiteSumCompensation += (finiteSum - t) + d;
+            } else {
+                finiteSumCompensation += (d - t) + finiteSum;
+            }
+            finiteSum = t;
+        }
+
+        private double sum() {
+            // infinities and NaN are counted separately, as they cannot be subtracted from a running total
+            if (nanCount > 0 || (positiveInfinityCount > 0 && negativeInfinityCount > 0)) return Double.NaN;
+            if (positiveInfinityCount > 0) return Double.POSITIVE_INFINITY;
+            if (negativeInfinityCount > 0) return Double.NEGATIVE_INFINITY;
+            return finiteSum + finiteSumCompensation;
+        }
+
+        private double extreme() {
+            if (extreme == null) {
+                for (Double d : occurrences.keySet()) {
+                    if (extreme == null || isBetter(d, extreme)) extreme = d;
+                }
+            }
+            return extreme;
+        }
+
+        private boolean isBetter(double d, double current) {
+            return (kind == Kind.MIN) ? Double.compare(d, current) < 0 : Double.compare(d, current) > 0;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName()+"["+kind+", count="+count+"]";
+        }
+    }
+
     protected static <N extends Number> N cast(Number n, TypeToken<? extends N> numberType) {
         return (N) TypeCoercions.coerce(n, numberType);
     }
@@ -143,6 +143,19 @@ implements MachineProvisioningLocation<T>, Closeable {
     @SetFromFlag
     protected Map<T, Map<String, Object>> origConfigs;
 
+    /**
+     * The machines which can be allocated, i.e. in {@link #machines} but not {@link #inUse}, in the order they became free,
+     * so that allocating and releasing a machine is constant-time. Derived from those sets, so not persisted;
+     * null until first needed (and after {@link #init()}), when it is rebuilt. Accessed holding {@link #lock}.
+     */
+    private volatile Set<T> free;
+
+    /** 
+     * Where the machines added by {@link #provisionMore(int, Map)} are recorded while it is called by {@link #obtain(Map)}, 
+     * so that they are reserved for that caller rather than made free.
+     */
+    private final ThreadLocal<List<T>> reservations = new ThreadLocal<List<T>>();
+
     public FixedListMachineProvisioningLocation() {
         this(Maps.newLinkedHashMap());
     }
@@ -196,6 +209,7 @@ implements MachineProvisioningLocation<T>, Closeable {
         if (!machinesCopy.equals(machines)) {
             machines = machinesCopy;
         }
+        free = null;
     }
     
     @Override
@@ -244,6 +258,7 @@ implements MachineProvisioningLocation<T>, Closeable {
             }
             
             machines.add(machine);
+            onMachineAdded(machine);
         }
     }
     
@@ -254,6 +269,7 @@ implements MachineProvisioningLocation<T>, Closeable {
             } else {
                 machines.remove(machine);
                 pendingRemoval.remove(machine);
+                if (free != null) free.remove(machine);
                 if (this.equals(machine.getParent())) {
                     removeChild(machine);
                 }
@@ -283,6 +299,7 @@ implements MachineProvisioningLocation<T>, Closeable {
     public void addChild(Location child) {
         super.addChild(child);
         machines.add((T)child);
+        onMachineAdded((T)child);
     }
 
     @Override
@@ -291,9 +308,38 @@ implements MachineProvisioningLocation<T>, Closeable {
             throw new IllegalStateException("Child location "+child+" is in use; cannot remove from "+this);
         }
         machines.remove(child);
+        if (free != null) {
+            synchronized (lock) {
+                free.remove(child);
+            }
+        }
         return super.removeChild(child);
     }
 
+    /** Makes a newly added machine free, or reserves it if it was added by {@link #provisionMore(int, Map)} for this thread. */
+    private void onMachineAdded(T machine) {
+        // (reservations is null if called during construction)
+        List<T> reserved = (reservations != null) ? reservations.get() : null;
+        if (reserved != null) {
+            reserved.add(machine);
+        } else if (free != null) {
+            synchronized (lock) {
+                if (!inUse.contains(machine)) free.add(machine);
+            }
+        }
+    }
+
+    /** Returns the free machines, computing them if not yet known (e.g. after rebind); caller must hold {@link #lock}. */
+    private Set<T> getFree() {
+        Set<T> result = free;
+        if (result == null) {
+            result = Sets.newLinkedHashSet(machines);
+            result.removeAll(inUse);
+            free = result;
+        }
+        return result;
+    }
+
     protected boolean canProvisionMore() {
         return false;
     }
@@ -313,36 +359,16 @@ implements MachineProvisioningLocation<T>, Closeable {
     @SuppressWarnings("unchecked")
     @Override
     public T obtain(Map<?,?> flags) throws NoMachinesAvailableException {
-        T machine;
         T desiredMachine = (T) flags.get("desiredMachine");
         ConfigBag allflags = ConfigBag.newInstanceExtending(config().getBag()).putAll(flags);
         Function<Iterable<? extends MachineLocation>, MachineLocation> chooser = allflags.get(MACHINE_CHOOSER);
         
-        synchronized (lock) {
-            Set<T> a = getAvailable();
-            if (a.isEmpty()) {
-                if (canProvisionMore()) {
-                    provisionMore(1, allflags.getAllConfig());
-                    a = getAvailable();
-                }
-                if (a.isEmpty())
-                    throw new NoMachinesAvailableException("No machines available in "+toString());
-            }
-            if (desiredMachine != null) {
-                if (a.contains(desiredMachine)) {
-                    machine = desiredMachine;
-                } else {
-                    throw new IllegalStateException("Desired machine "+desiredMachine+" not available in "+toString()+"; "+
-                            (inUse.contains(desiredMachine) ? "machine in use" : "machine unknown"));
-                }
-            } else {
-                machine = (T) chooser.apply(a);
-                if (!a.contains(machine)) {
-                    throw new IllegalStateException("Machine chooser attempted to choose '"+machine+"' from outside the available set, in "+this);
-                }
-            }
-            inUse.add(machine);
-            updateMachineConfig(machine, flags);
+        T machine = allocate(desiredMachine, chooser, flags);
+        if (machine == null && canProvisionMore()) {
+            machine = provisionAndAllocate(desiredMachine, chooser, allflags, flags);
+        }
+        if (machine == null) {
+            throw new NoMachinesAvailableException("No machines available in "+toString());
         }
         
         for (MachineLocationCustomizer customizer : getMachineCustomizers(allflags)) {
@@ -352,6 +378,112 @@ implements MachineProvisioningLocation<T>, Closeable {
         return machine;
     }
 
+    /**
+     * Allocates a free machine, returning null if there are none.
+     * <p>
+     * With the default chooser (or a desired machine) this takes the lock only for constant-time work.
+     * A custom chooser is given a snapshot of the free machines and called without the lock;
+     * if its choice is allocated concurrently, it is asked again.
+     */
+    @SuppressWarnings("unchecked")
+    private T allocate(T desiredMachine, Function<Iterable<? extends MachineLocation>, MachineLocation> chooser, Map<?,?> flags) {
+        while (true) {
+            Set<T> candidates;
+            synchronized (lock) {
+                Set<T> a = getFree();
+                if (a.isEmpty()) {
+                    return null;
+                }
+                if (desiredMachine != null) {
+                    if (!a.contains(desiredMachine)) {
+                        throw new IllegalStateException("Desired machine "+desiredMachine+" not available in "+toString()+"; "+
+                                (inUse.contains(desiredMachine) ? "machine in use" : "machine unknown"));
+                    }
+                    markInUse(desiredMachine, flags);
+                    return desiredMachine;
+                }
+                if (chooser == null || chooser instanceof CollectionFunctionals.FirstElementFunction) {
+                    T machine = a.iterator().next();
+                    markInUse(machine, flags);
+                    return machine;
+                }
+                candidates = ImmutableSet.copyOf(a);
+            }
+            
+            T machine = (T) chooser.apply(candidates);
+            if (!candidates.contains(machine)) {
+                throw new IllegalStateException("Machine chooser attempted to choose '"+machine+"' from outside the available set, in "+this);
+            }
+            synchronized (lock) {
+                if (getFree().contains(machine)) {
+                    markInUse(machine, flags);
+                    return machine;
+                }
+            }
+            if (log.isDebugEnabled()) log.debug("Machine {} chosen in {} was allocated concurrently; choosing again", machine, this);
+        }
+    }
+
+    /**
+     * Calls {@link #provisionMore(int, Map)} without holding the lock, so that other callers can allocate 
+     * (and release) machines meanwhile. The machines it adds are reserved for this caller, rather than 
+     * made free, so that they cannot be taken by others first. If it fails part-way, the machines it 
+     * added are made free.
+     */
+    private T provisionAndAllocate(T desiredMachine, Function<Iterable<? extends MachineLocation>, MachineLocation> chooser, 
+            ConfigBag allflags, Map<?,?> flags) {
+        List<T> reserved = Lists.newArrayList();
+        reservations.set(reserved);
+        boolean provisioned = false;
+        try {
+            provisionMore(1, allflags.getAllConfig());
+            provisioned = true;
+        } finally {
+            reservations.remove();
+            if (!provisioned) {
+                // otherwise they would be neither free nor in use, so never allocated
+                allocateReserved(reserved, false, null, flags);
+            }
+        }
+        
+        T result = allocateReserved(reserved, true, desiredMachine, flags);
+        if (result != null) {
+            return result;
+        }
+        // e.g. provisionMore made existing machines available
+        return allocate(desiredMachine, chooser, flags);
+    }
+
+    /** 
+     * Allocates the first of the reserved machines which is suitable (if {@code allocate} is set), 
+     * and makes the others free; returns the allocated machine, or null. 
+     */
+    private T allocateReserved(List<T> reserved, boolean allocate, T desiredMachine, Map<?,?> flags) {
+        T result = null;
+        synchronized (lock) {
+            for (T machine : reserved) {
+                if (!machines.contains(machine) || inUse.contains(machine)) {
+                    // removed, or taken after being made free by a concurrent rebuild of the free list
+                    continue;
+                }
+                if (allocate && result == null && (desiredMachine == null || desiredMachine.equals(machine))) {
+                    markInUse(machine, flags);
+                    result = machine;
+                } else {
+                    getFree().add(machine);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Records the machine as allocated; caller must hold {@link #lock}. */
+    private void markInUse(T machine, Map<?,?> flags) {
+        getFree().remove(machine);
+        inUse.add(machine);
+        updateMachineConfig(machine, flags);
+    }
+
     @Override
     public void release(T machine) {
         ConfigBag machineConfig = ((ConfigurationSupportInternal)machine.config()).getBag();
@@ -367,6 +499,8 @@ implements MachineProvisioningLocation<T>, Closeable {
             
             if (pendingRemoval.contains(machine)) {
                 removeMachine(machine);
+            } else if (free != null) {
+                free.add(machine);
             }
         }
     }
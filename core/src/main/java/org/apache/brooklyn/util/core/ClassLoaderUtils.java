@@ -19,7 +19,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.brooklyn.core.catalog.internal.CatalogUtils.newClassLoadingContextForCatalogItems;
 
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
@@ -27,18 +29,21 @@ import javax.annotation.Nullable;
 import org.apache.brooklyn.api.catalog.CatalogItem;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.api.typereg.OsgiBundleWithUrl;
 import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.core.BrooklynVersion;
 import org.apache.brooklyn.core.catalog.internal.CatalogUtils;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.classloading.BrooklynClassLoadingContextSequential;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.ha.OsgiManager;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.core.LoaderDispatcher.ClassLoaderDispatcher;
 import org.apache.brooklyn.util.core.LoaderDispatcher.MultipleResourceLoaderDispatcher;
 import org.apache.brooklyn.util.core.LoaderDispatcher.ResourceLoaderDispatcher;
+import org.apache.brooklyn.util.core.osgi.BundleIndex;
 import org.apache.brooklyn.util.core.osgi.Osgis;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
@@ -154,7 +159,7 @@ public class ClassLoaderUtils {
      * {@link #WHITE_LIST_KEY}, defaulting to all {@code org.apache.brooklyn.*} bundles.
      */
     public Class<?> loadClass(String name) throws ClassNotFoundException {
-        Maybe<Class<?>> cls = load(name, ClassLoaderDispatcher.INSTANCE);
+        Maybe<Class<?>> cls = loadClassCached(name);
         if (cls.isPresent()) {
             return cls.get();
         } else {
@@ -163,6 +168,33 @@ public class ClassLoaderUtils {
         }
     }
 
+    /**
+     * As {@link #load(String, LoaderDispatcher)} for classes, but consulting the {@link BundleIndex} class cache
+     * of the framework (if there is one). The cache key includes everything which can affect the result:
+     * the management context, the entitlement user, the fallback classloader, and the entity's catalog item and search path.
+     */
+    protected Maybe<Class<?>> loadClassCached(final String name) {
+        BundleIndex index = BundleIndex.forFramework(getFramework());
+        if (index==null) {
+            return load(name, ClassLoaderDispatcher.INSTANCE);
+        }
+        EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+        List<Object> key = Arrays.<Object>asList(
+            ClassLoaderUtils.class,
+            mgmt!=null ? mgmt.getManagementNodeId() : null,
+            entitlementContext!=null ? entitlementContext.user() : null,
+            classLoader,
+            entity!=null ? entity.getCatalogItemId() : null,
+            entity!=null ? entity.getCatalogItemIdSearchPath() : null,
+            name);
+        return index.getOrLoadClass(key, new Callable<Maybe<Class<?>>>() {
+            @Override
+            public Maybe<Class<?>> call() {
+                return load(name, ClassLoaderDispatcher.INSTANCE);
+            }
+        });
+    }
+
     public Class<?> loadClass(String symbolicName, @Nullable String version, String className) throws ClassNotFoundException {
         try {
             return tryLoadFromBundle(ClassLoaderDispatcher.INSTANCE, symbolicName, version, className).get();
@@ -20,6 +20,7 @@ package org.apache.brooklyn.util.core.config;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -52,6 +53,10 @@ import com.google.common.collect.Sets;
  * This bag is order-preserving and thread-safe except where otherwise indicated,
  * currently by synching on this instance (but that behaviour may change).
  * <p>
+ * Copying a bag into a new one (e.g. {@link #newInstanceCopying(ConfigBag)} and {@link #newInstanceExtending(ConfigBag)})
+ * does not copy the maps: the two bags share them until either is modified (including marking a key as used),
+ * when that bag takes its own copy.
+ * <p>
  * @author alex
  */
 public class ConfigBag {
@@ -64,9 +69,18 @@ public class ConfigBag {
     protected String description;
     
     private Map<String,Object> config;
-    private final Map<String,Object> unusedConfig;
+    private Map<String,Object> unusedConfig;
     private final boolean live;
     private boolean sealed = false;
+    
+    /** whether {@link #config} may be referenced by another bag, so must be copied before being modified */
+    private boolean configShared = false;
+    /** whether {@link #unusedConfig} may be referenced by another bag, so must be copied before being modified */
+    private boolean unusedConfigShared = false;
+    /** whether {@link #config} has been handed out for direct modification, so must never be shared with another bag */
+    private boolean configEscaped = false;
+    /** whether {@link #unusedConfig} has been handed out for direct modification, so must never be shared with another bag */
+    private boolean unusedConfigEscaped = false;
 
     /** creates a new ConfigBag instance, empty and ready for population */
     public static ConfigBag newInstance() {
@@ -161,6 +175,24 @@ public class ConfigBag {
         return this;
     }
     
+    /** returns {@link #config} for modification, first taking a copy if it is shared with another bag */
+    private Map<String,Object> configForWrite() {
+        if (configShared) {
+            config = new LinkedHashMap<String,Object>(config);
+            configShared = false;
+        }
+        return config;
+    }
+
+    /** returns {@link #unusedConfig} for modification, first taking a copy if it is shared with another bag */
+    private Map<String,Object> unusedConfigForWrite() {
+        if (unusedConfigShared) {
+            unusedConfig = new LinkedHashMap<String,Object>(unusedConfig);
+            unusedConfigShared = false;
+        }
+        return unusedConfig;
+    }
+
     /** optional description used to provide context for operations */
     public String getDescription() {
         return description;
@@ -186,7 +218,7 @@ public class ConfigBag {
      * <p>
      * Accesses to the returned map must be synchronized on this bag if the 
      * thread-safe behaviour is required. */ 
-    public Map<String,Object> getAllConfigMutable() {
+    public synchronized Map<String,Object> getAllConfigMutable() {
         if (live) {
             // TODO sealed no longer works as before, because `config` is the backing storage map.
             // Therefore returning it is dangerous! Even if we were to replace our field with an immutable copy,
@@ -194,7 +226,10 @@ public class ConfigBag {
             // value's behaviour to sealable (i.e. wrapping the returned map).
             return (sealed) ? MutableMap.copyOf(config).asUnmodifiable() : config;
         } else {
-            return config;
+            if (sealed) return config;
+            Map<String,Object> result = configForWrite();
+            configEscaped = true;
+            return result;
         }
     }
 
@@ -209,8 +244,10 @@ public class ConfigBag {
      * <p>
      * Accesses to the returned map must be synchronized on this bag if the 
      * thread-safe behaviour is required. */ 
-    public Map<String,Object> getUnusedConfigMutable() {
-        return unusedConfig;
+    public synchronized Map<String,Object> getUnusedConfigMutable() {
+        Map<String,Object> result = unusedConfigForWrite();
+        unusedConfigEscaped = true;
+        return result;
     }
 
     public ConfigBag putAll(Map<?,?> addlConfig) {
@@ -309,9 +346,9 @@ public class ConfigBag {
             throw new IllegalStateException("Cannot insert "+key+"="+value+": this config bag has been sealed and is now immutable.");
         boolean isNew = !config.containsKey(key);
         boolean isUsed = !isNew && !unusedConfig.containsKey(key);
-        Object old = config.put(key, value);
+        Object old = configForWrite().put(key, value);
         if (!isUsed) 
-            unusedConfig.put(key, value);
+            unusedConfigForWrite().put(key, value);
         //if (!isNew && !isUsed) log.debug("updating config value which has already been used");
         return old;
     }
@@ -595,14 +632,16 @@ public class ConfigBag {
 
     /** indicates that a string key in the config map has been accessed */
     public synchronized void markUsed(String key) {
-        unusedConfig.remove(key);
+        if (unusedConfig.containsKey(key)) {
+            unusedConfigForWrite().remove(key);
+        }
     }
 
     public synchronized void clear() {
         if (sealed) 
             throw new IllegalStateException("Cannot clear this config bag has been sealed and is now immutable.");
-        config.clear();
-        unusedConfig.clear();
+        configForWrite().clear();
+        unusedConfigForWrite().clear();
     }
     
     public ConfigBag removeAll(ConfigKey<?> ...keys) {
@@ -622,8 +661,8 @@ public class ConfigBag {
     public synchronized void remove(String key) {
         if (sealed) 
             throw new IllegalStateException("Cannot remove "+key+": this config bag has been sealed and is now immutable.");
-        config.remove(key);
-        unusedConfig.remove(key);
+        if (config.containsKey(key)) configForWrite().remove(key);
+        if (unusedConfig.containsKey(key)) unusedConfigForWrite().remove(key);
     }
 
     public ConfigBag copy(ConfigBag other) {
@@ -651,12 +690,47 @@ public class ConfigBag {
     protected ConfigBag copyWhileSynched(ConfigBag other) {
         if (sealed) 
             throw new IllegalStateException("Cannot copy "+other+" to "+this+": this config bag has been sealed and is now immutable.");
-        putAll(other.getAllConfig());
-        markAll(Sets.difference(other.getAllConfig().keySet(), other.getUnusedConfig().keySet()));
+        if (!other.isRawValueAccess() || !shareWhileSynched(other)) {
+            putAll(other.getAllConfig());
+            markAll(Sets.difference(other.getAllConfig().keySet(), other.getUnusedConfig().keySet()));
+        }
         setDescription(other.getDescription());
         return this;
     }
 
+    /**
+     * If this bag is empty, makes it share the other bag's raw values and record of unused keys,
+     * so that neither needs to be copied unless and until one of the bags is modified;
+     * returns false (doing nothing) if this bag is not empty, either is live, or the other bag's maps
+     * have been handed out for direct modification (e.g. by {@link #getAllConfigMutable()}).
+     * Caller must be synchronized on both bags.
+     */
+    protected boolean shareWhileSynched(ConfigBag other) {
+        if (live || other.live || !config.isEmpty() || !unusedConfig.isEmpty()) {
+            return false;
+        }
+        if (configEscaped || unusedConfigEscaped || other.configEscaped || other.unusedConfigEscaped) {
+            // whoever holds them could modify them without the other bag copying them first
+            // (or, for this bag's, would not see the shared values)
+            return false;
+        }
+        config = other.config;
+        unusedConfig = other.unusedConfig;
+        configShared = true;
+        unusedConfigShared = true;
+        other.configShared = true;
+        other.unusedConfigShared = true;
+        return true;
+    }
+
+    /**
+     * Whether {@link #getAllConfig()} and {@link #getUnusedConfig()} return the values as stored,
+     * so that {@link #copy(ConfigBag)} can share this bag's maps; subclasses which transform values when read should return false.
+     */
+    protected boolean isRawValueAccess() {
+        return true;
+    }
+
     public synchronized int size() {
         return config.size();
     }
@@ -687,6 +761,8 @@ public class ConfigBag {
             // TODO How to ensure sealed?!
         } else {
             config = getAllConfig();
+            configShared = false;
+            configEscaped = false;
         }
         return this;
     }
@@ -701,14 +777,25 @@ public class ConfigBag {
     }
     
     // TODO why have both this and mutable
-    /** @see #getAllConfigMutable() */
-    public Map<String, Object> getAllConfigRaw() {
-        return getAllConfigMutable();
+    /**
+     * Returns the internal map containing the current values for all entries, for reading;
+     * this does not copy the map if it is shared with another bag, but then returns an unmodifiable view of it.
+     * 
+     * @see #getAllConfigMutable() 
+     */
+    public synchronized Map<String, Object> getAllConfigRaw() {
+        if (live || sealed) return getAllConfigMutable();
+        if (configShared) return Collections.unmodifiableMap(config);
+        configEscaped = true;
+        return config;
     }
     
     @Override
     public String toString() {
-        return JavaClassNames.simpleClassName(this)+"["+getAllConfigRaw()+"]";
+        // not getAllConfigRaw(), as that would stop the map being shared
+        synchronized (this) {
+            return JavaClassNames.simpleClassName(this)+"["+config+"]";
+        }
     }
 
 }
@@ -111,8 +111,10 @@ public class ResolvingConfigBag extends ConfigBag {
             ResolvingConfigBag other = (ResolvingConfigBag) otherRaw;
             if (isSealed()) 
                 throw new IllegalStateException("Cannot copy "+other+" to "+this+": this config bag has been sealed and is now immutable.");
-            putAll(other.getAllConfigUntransformed());
-            markAll(Sets.difference(other.getAllConfigUntransformed().keySet(), other.getUnusedConfigUntransformed().keySet()));
+            if (!shareWhileSynched(other)) {
+                putAll(other.getAllConfigUntransformed());
+                markAll(Sets.difference(other.getAllConfigUntransformed().keySet(), other.getUnusedConfigUntransformed().keySet()));
+            }
             setDescription(other.getDescription());
             return this;
         } else {
@@ -120,6 +122,11 @@ public class ResolvingConfigBag extends ConfigBag {
         }
     }
 
+    @Override
+    protected boolean isRawValueAccess() {
+        return false;
+    }
+
     protected Map<String,Object> getAllConfigUntransformed() {
         return super.getAllConfig();
     }
@@ -22,6 +22,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.elvis;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.groovyTruth;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -31,6 +34,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.brooklyn.api.objs.Configurable;
 import org.apache.brooklyn.api.objs.SpecParameter;
@@ -48,6 +53,7 @@ import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -62,6 +68,29 @@ public class FlagUtils {
 
     public static final Logger log = LoggerFactory.getLogger(FlagUtils.class);
     
+    /** 
+     * All fields of each class, as returned by {@link #getAllFields(Class)}, as that is called for every new entity etc.
+     * Being a {@link ClassValue} these are held by the class itself, so are discarded along with the class,
+     * e.g. when the OSGi bundle which loaded it is uninstalled.
+     */
+    private static final ClassValue<List<Field>> ALL_FIELDS = new ClassValue<List<Field>>() {
+        @Override
+        protected List<Field> computeValue(Class<?> type) {
+            return ImmutableList.copyOf(getAllFields(type, Predicates.<Field>alwaysTrue()));
+        }
+    };
+    
+    /** 
+     * Setters for the fields declared by each class, created on first use by {@link #setField(Object, Field, Object, SetFromFlag)};
+     * absent where a field cannot be set that way (e.g. final fields), so reflection is used instead.
+     */
+    private static final ClassValue<ConcurrentMap<Field, Maybe<MethodHandle>>> FIELD_SETTERS = new ClassValue<ConcurrentMap<Field, Maybe<MethodHandle>>>() {
+        @Override
+        protected ConcurrentMap<Field, Maybe<MethodHandle>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<Field, Maybe<MethodHandle>>();
+        }
+    };
+    
     private FlagUtils() {}
     
     /** see {@link #setFieldsFromFlags(Object o, ConfigBag)} */
@@ -295,8 +324,9 @@ public class FlagUtils {
     public static List<Field> getAllFields(Class<?> base, Closure<Boolean> filter) {
         return getAllFields(base, GroovyJavaMethods.<Field>predicateFromClosure(filter));
     }
+    /** as {@link #getAllFields(Class, Predicate)} for all fields; the result is cached so is unmodifiable */
     public static List<Field> getAllFields(Class<?> base) {
-        return getAllFields(base, Predicates.<Field>alwaysTrue());
+        return ALL_FIELDS.get(base);
     }
     public static List<Field> getAllFields(Class<?> base, Predicate<Field> filter) {
         return getLocalFields(getAllAssignableTypes(base), filter);
@@ -494,7 +524,7 @@ public class FlagUtils {
             } catch (Exception e) {
                 throw new IllegalArgumentException("Cannot set "+f+" in "+objectOfField+" from type "+value.getClass()+" ("+value+"): "+e, e);
             }
-            f.set(objectOfField, newValue);
+            setFieldValue(objectOfField, f, newValue);
             if (log.isTraceEnabled()) log.trace("FlagUtils for "+objectOfField+", setting field="+f.getName()+"; val="+value+"; newVal="+newValue+"; key="+key);
 
         } catch (IllegalAccessException e) {
@@ -502,6 +532,40 @@ public class FlagUtils {
         }
     }
 
+    private static void setFieldValue(Object objectOfField, Field f, Object value) throws IllegalAccessException {
+        Maybe<MethodHandle> setter = getSetter(f);
+        if (setter.isAbsent() || (value==null && f.getType().isPrimitive())) {
+            // reflection gives the usual error for null primitives
+            f.set(objectOfField, value);
+            return;
+        }
+        try {
+            setter.get().invokeExact(objectOfField, value);
+        } catch (Throwable e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /** returns a setter taking the object (ignored for static fields) and the value, cached per field */
+    private static Maybe<MethodHandle> getSetter(Field f) {
+        ConcurrentMap<Field, Maybe<MethodHandle>> setters = FIELD_SETTERS.get(f.getDeclaringClass());
+        Maybe<MethodHandle> result = setters.get(f);
+        if (result==null) {
+            try {
+                if (!f.isAccessible()) f.setAccessible(true);
+                MethodHandle setter = MethodHandles.lookup().unreflectSetter(f);
+                if (Modifier.isStatic(f.getModifiers())) {
+                    setter = MethodHandles.dropArguments(setter, 0, Object.class);
+                }
+                result = Maybe.of(setter.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+            } catch (IllegalAccessException e) {
+                result = Maybe.<MethodHandle>absent();
+            }
+            setters.putIfAbsent(f, result);
+        }
+        return result;
+    }
+
     /** gets the value of the field. 
      */
     public static Object getField(Object objectOfField, Field f) {
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.osgi;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.launch.Framework;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Index of the bundles installed in a {@link Framework}, keyed by symbolic name, kept up to date by a
+ * {@link SynchronousBundleListener}; used by {@link Osgis.BundleFinder} to avoid iterating over every
+ * installed bundle on each lookup.
+ * <p>
+ * Also holds a bounded cache of class-loading results (including negative results),
+ * keyed by whatever the caller considers to determine the outcome (typically the class name,
+ * the catalog item id and the search path). The class cache is cleared whenever bundles are
+ * installed, updated, resolved, unresolved or uninstalled, and can be cleared explicitly
+ * with {@link #invalidateClassCache()} (e.g. when the type registry changes).
+ * Negative entries additionally expire after {@link #NEGATIVE_CLASS_CACHE_TTL_SECONDS}.
+ * <p>
+ * The class cache can be disabled with {@link BrooklynFeatureEnablement#FEATURE_CLASS_LOADING_CACHE}.
+ * <p>
+ * An index is discarded (and its listener removed) when its framework stops, or explicitly with
+ * {@link #release(Framework)}, e.g. when the management context's OSGi manager is stopped.
+ */
+@Beta
+public class BundleIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BundleIndex.class);
+
+    public static final int MAX_CLASS_CACHE_SIZE = 10*1000;
+    public static final int NEGATIVE_CLASS_CACHE_TTL_SECONDS = 60;
+
+    // Not a WeakHashMap: the index's bundle context strongly references the framework, so entries
+    // would never be cleared; instead entries are removed explicitly when the framework stops.
+    private static final Map<Framework, BundleIndex> INDEXES = new IdentityHashMap<Framework, BundleIndex>();
+
+    /**
+     * Returns the index for the given framework, creating and registering it if necessary;
+     * returns null if the framework is not active (no bundle context), in which case callers
+     * should scan the bundles themselves.
+     */
+    @Nullable
+    public static BundleIndex forFramework(Framework framework) {
+        if (framework==null) return null;
+        synchronized (INDEXES) {
+            BundleIndex result = INDEXES.get(framework);
+            if (result!=null) {
+                if (result.isValid()) return result;
+                INDEXES.remove(framework);
+                result.close();
+            }
+
+            BundleContext context = framework.getBundleContext();
+            if (context==null) return null;
+            try {
+                result = new BundleIndex(context);
+            } catch (Exception e) {
+                // e.g. framework stopping concurrently
+                Exceptions.propagateIfFatal(e);
+                LOG.debug("Unable to index bundles in "+framework+"; will scan (may be shutting down): "+e);
+                return null;
+            }
+            INDEXES.put(framework, result);
+            return result;
+        }
+    }
+
+    /** Discards the index for the given framework, if any, removing its bundle listener. */
+    public static void release(Framework framework) {
+        if (framework==null) return;
+        BundleIndex index;
+        synchronized (INDEXES) {
+            index = INDEXES.remove(framework);
+        }
+        if (index!=null) index.close();
+    }
+
+    private static void release(BundleIndex index) {
+        synchronized (INDEXES) {
+            for (Map.Entry<Framework, BundleIndex> entry: INDEXES.entrySet()) {
+                if (entry.getValue()==index) {
+                    INDEXES.remove(entry.getKey());
+                    break;
+                }
+            }
+        }
+        index.close();
+    }
+
+    private final BundleContext context;
+    private final ConcurrentMap<String, Set<Bundle>> bySymbolicName = new ConcurrentHashMap<String, Set<Bundle>>();
+    private final Cache<Object, Maybe<Class<?>>> classCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CLASS_CACHE_SIZE)
+            .build();
+    private final Cache<Object, Maybe<Class<?>>> negativeClassCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CLASS_CACHE_SIZE)
+            .expireAfterWrite(NEGATIVE_CLASS_CACHE_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+    /** Incremented on each invalidation, so that a result loaded before an invalidation is not cached after it. */
+    private final AtomicLong classCacheGeneration = new AtomicLong();
+    private final AtomicLong classCacheHits = new AtomicLong();
+    private final AtomicLong classCacheMisses = new AtomicLong();
+
+    private final SynchronousBundleListener listener = new SynchronousBundleListener() {
+        @Override
+        public void bundleChanged(BundleEvent event) {
+            onBundleEvent(event);
+        }
+    };
+
+    protected BundleIndex(BundleContext context) {
+        this.context = context;
+        // register listener first, so we don't miss any bundle installed while we scan
+        context.addBundleListener(listener);
+        for (Bundle b: context.getBundles()) {
+            add(b);
+        }
+    }
+
+    protected boolean isValid() {
+        try {
+            context.getBundle();
+            return true;
+        } catch (IllegalStateException e) {
+            // context no longer valid, framework restarted
+            return false;
+        }
+    }
+
+    /** Removes the bundle listener and clears the index; the index should not be used afterwards. */
+    protected void close() {
+        try {
+            context.removeBundleListener(listener);
+        } catch (IllegalStateException e) {
+            // context no longer valid; listener already discarded by the framework
+        }
+        bySymbolicName.clear();
+        invalidateClassCache();
+    }
+
+    protected void onBundleEvent(BundleEvent event) {
+        Bundle b = event.getBundle();
+        if (b.getBundleId()==0 && event.getType()==BundleEvent.STOPPING) {
+            // the framework (system bundle) is stopping
+            release(this);
+            return;
+        }
+        switch (event.getType()) {
+        case BundleEvent.INSTALLED:
+            add(b);
+            invalidateClassCache();
+            break;
+        case BundleEvent.UNINSTALLED:
+            remove(b);
+            invalidateClassCache();
+            break;
+        case BundleEvent.UPDATED:
+            // symbolic name may have changed
+            remove(b);
+            add(b);
+            invalidateClassCache();
+            break;
+        case BundleEvent.RESOLVED:
+        case BundleEvent.UNRESOLVED:
+            invalidateClassCache();
+            break;
+        default:
+            // starting/stopping do not change what is installed or what classes can be loaded
+        }
+    }
+
+    private void add(Bundle b) {
+        String name = b.getSymbolicName();
+        if (name==null) return;
+        Set<Bundle> bundles = bySymbolicName.get(name);
+        if (bundles==null) {
+            Set<Bundle> newBundles = Collections.newSetFromMap(new ConcurrentHashMap<Bundle, Boolean>());
+            bundles = bySymbolicName.putIfAbsent(name, newBundles);
+            if (bundles==null) bundles = newBundles;
+        }
+        bundles.add(b);
+    }
+
+    private void remove(Bundle b) {
+        // symbolic name may no longer be reported (or may have changed in an update), so check all
+        for (Set<Bundle> bundles: bySymbolicName.values()) {
+            bundles.remove(b);
+        }
+    }
+
+    /** All bundles currently installed. */
+    public List<Bundle> getBundles() {
+        return MutableList.copyOf(Arrays.asList(context.getBundles()));
+    }
+
+    /** Installed bundles with the given symbolic name, in installation order (as per {@link BundleContext#getBundles()}). */
+    public List<Bundle> getBundles(String symbolicName) {
+        Set<Bundle> bundles = bySymbolicName.get(symbolicName);
+        if (bundles==null) return Collections.emptyList();
+        List<Bundle> result = MutableList.of();
+        for (Bundle b: bundles) {
+            // guard against a bundle uninstalled while the index was initialising
+            if (b.getState()!=Bundle.UNINSTALLED) result.add(b);
+        }
+        if (result.size()>1) {
+            Collections.sort(result, new Comparator<Bundle>() {
+                @Override
+                public int compare(Bundle o1, Bundle o2) {
+                    return Long.compare(o1.getBundleId(), o2.getBundleId());
+                }
+            });
+        }
+        return result;
+    }
+
+    /** The bundle installed from the given location, or null. */
+    @Nullable
+    public Bundle getBundleByLocation(String location) {
+        return context.getBundle(location);
+    }
+
+    /**
+     * Returns the cached result for the given key, or else invokes the loader and caches its result.
+     * Exceptions thrown by the loader are propagated and not cached, nor are results of loads which
+     * overlapped an invalidation (as they may reflect the bundles before the change).
+     * If the cache is disabled the loader is always invoked.
+     */
+    public Maybe<Class<?>> getOrLoadClass(Object key, Callable<Maybe<Class<?>>> loader) {
+        if (!BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_CLASS_LOADING_CACHE)) {
+            return call(loader);
+        }
+        Maybe<Class<?>> result = classCache.getIfPresent(key);
+        if (result==null) result = negativeClassCache.getIfPresent(key);
+        if (result!=null) {
+            classCacheHits.incrementAndGet();
+            return result;
+        }
+        classCacheMisses.incrementAndGet();
+        long generation = classCacheGeneration.get();
+        result = call(loader);
+        if (classCacheGeneration.get() != generation) {
+            // invalidated while loading
+            return result;
+        }
+        Cache<Object, Maybe<Class<?>>> cache = result.isPresent() ? classCache : negativeClassCache;
+        cache.put(key, result);
+        if (classCacheGeneration.get() != generation) {
+            // invalidated between the check and the put; the invalidation may have cleared the cache before the put
+            cache.invalidate(key);
+        }
+        return result;
+    }
+
+    private static Maybe<Class<?>> call(Callable<Maybe<Class<?>>> loader) {
+        try {
+            return loader.call();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    public void invalidateClassCache() {
+        classCacheGeneration.incrementAndGet();
+        classCache.invalidateAll();
+        negativeClassCache.invalidateAll();
+    }
+
+    public long getClassCacheHits() {
+        return classCacheHits.get();
+    }
+
+    public long getClassCacheMisses() {
+        return classCacheMisses.get();
+    }
+
+    /** Number of symbolic names indexed; mainly for testing. */
+    public int getSymbolicNameCount() {
+        int count = 0;
+        for (Collection<Bundle> bundles: bySymbolicName.values()) {
+            if (!bundles.isEmpty()) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+context+"]";
+    }
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -177,7 +178,7 @@ public class Osgis {
                 v = BrooklynVersionSyntax.toValidOsgiVersion(version);
                 vDep = OsgiUtils.toOsgiVersion(version);
             }
-            for (Bundle b: framework.getBundleContext().getBundles()) {
+            for (Bundle b: getCandidates()) {
                 if (symbolicName!=null && !symbolicName.equals(b.getSymbolicName())) continue;
                 if (version!=null) {
                     String bv = b.getVersion().toString();
@@ -233,6 +234,22 @@ public class Osgis {
             return result;
         }
         
+        /** Bundles which might match, using the {@link BundleIndex} where possible rather than all installed bundles. */
+        protected Iterable<Bundle> getCandidates() {
+            BundleIndex index = BundleIndex.forFramework(framework);
+            if (index==null) {
+                return Arrays.asList(framework.getBundleContext().getBundles());
+            }
+            if (symbolicName!=null) {
+                return index.getBundles(symbolicName);
+            }
+            if (url!=null && urlMandatory) {
+                Bundle b = index.getBundleByLocation(url);
+                return b==null ? Collections.<Bundle>emptyList() : Collections.singletonList(b);
+            }
+            return index.getBundles();
+        }
+        
         public String getConstraintsDescription() {
             List<String> parts = MutableList.of();
             if (symbolicName!=null) parts.add("symbolicName="+symbolicName);
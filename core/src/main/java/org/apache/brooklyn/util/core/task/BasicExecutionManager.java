@@ -131,6 +131,8 @@ public class BasicExecutionManager implements ExecutionManager {
     
     private final List<ExecutionListener> listeners = new CopyOnWriteArrayList<ExecutionListener>();
     
+    private final TaskStatistics taskStatistics = new TaskStatistics();
+    
     private final static ThreadLocal<String> threadOriginalName = new ThreadLocal<String>() {
         @Override
         protected String initialValue() {
@@ -152,6 +154,8 @@ public class BasicExecutionManager implements ExecutionManager {
                 daemonThreadFactory);
             
         delayedRunner = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
+        
+        addListener(taskStatistics);
 
         if (jitterThreads) {
             log.info("Task startup jittering enabled with a maximum of " + jitterThreadsMaxDelay + " delay.");
@@ -284,6 +288,12 @@ public class BasicExecutionManager implements ExecutionManager {
         return tasksById.size();
     }
 
+    /** queue-wait and run-time statistics of tasks, by category and entity type, when enabled */
+    @Beta
+    public TaskStatistics getTaskStatistics() {
+        return taskStatistics;
+    }
+
     private Set<Task<?>> tasksWithTagCreating(Object tag) {
         Preconditions.checkNotNull(tag);
         synchronized (tasksByTag) {
@@ -726,6 +736,7 @@ public class BasicExecutionManager implements ExecutionManager {
     }
     protected void beforeSubmitAtomicTask(Map<?,?> flags, Task<?> task) {
         internalBeforeSubmit(flags, task);
+        taskStatistics.onSubmitted(task);
     }
     /** invoked when a task is submitted */
     protected void internalBeforeSubmit(Map<?,?> flags, Task<?> task) {
@@ -748,6 +759,7 @@ public class BasicExecutionManager implements ExecutionManager {
     }
     protected void beforeStartAtomicTask(Map<?,?> flags, Task<?> task) {
         internalBeforeStart(flags, task);
+        taskStatistics.onStarted(task);
     }
     
     /** invoked in a task's thread when a task is starting to run (may be some time after submitted), 
@@ -826,6 +838,7 @@ public class BasicExecutionManager implements ExecutionManager {
      * and normally (if not interrupted prior to start) 
      * called once for each task on which {@link #beforeSubmitAtomicTask(Map, Task)} */
     protected void afterEndAtomicTask(Map<?,?> flags, Task<?> task) {
+        taskStatistics.onEnded(task);
         internalAfterEnd(flags, task, true, true);
     }
     /** normally (if not interrupted) called once for each call to {@link #internalBeforeSubmit(Map, Task)},
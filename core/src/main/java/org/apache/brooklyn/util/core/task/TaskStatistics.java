@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Records how long tasks wait to start after being submitted (queue wait) and how long they take
+ * to run, as latency distributions per task category (see {@link #categoryOf(Task)}) and, within
+ * each category, per type of the task's context entity. This shows which effectors, sensor
+ * deliveries, polls, etc dominate the execution manager.
+ * <p>
+ * Only atomic tasks are timed; the iterations of scheduled tasks (such as feed polls) are submitted
+ * as atomic tasks, so are included. The distributions are fixed-size log-linear histograms,
+ * and the number of entity types tracked is capped, so memory use is bounded however many tasks
+ * are run. Collection can be enabled and disabled at runtime (see {@link #setEnabled(boolean)});
+ * when disabled the cost to each task is a volatile read.
+ * <p>
+ * Results are available from {@link #getStatistics()}, from the REST API, and over JMX
+ * (see {@link TaskStatisticsMBean}).
+ */
+@Beta
+public class TaskStatistics implements ExecutionListener, TaskStatisticsMBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskStatistics.class);
+
+    public static final String CATEGORY_EFFECTOR = "effector";
+    public static final String CATEGORY_SENSOR = "sensor";
+    public static final String CATEGORY_POLL = "poll";
+    public static final String CATEGORY_PERSISTENCE = "persistence";
+    public static final String CATEGORY_OTHER = "other";
+
+    /** Entity types seen after this many are recorded under {@link #OTHER_ENTITY_TYPES}. */
+    public static final int MAX_ENTITY_TYPES = 256;
+    public static final String OTHER_ENTITY_TYPES = "other";
+
+    private volatile boolean enabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_TASK_STATISTICS);
+    private volatile long sinceUtc = System.currentTimeMillis();
+
+    /** submit and start times (nanos) of tasks in flight, keyed by task id */
+    private final ConcurrentMap<String, long[]> timings = new ConcurrentHashMap<String, long[]>();
+
+    private final ConcurrentMap<String, TaskTypeStatistics> byCategory = new ConcurrentHashMap<String, TaskTypeStatistics>();
+    private final ConcurrentMap<String, ConcurrentMap<String, TaskTypeStatistics>> byEntityType = new ConcurrentHashMap<String, ConcurrentMap<String, TaskTypeStatistics>>();
+
+    private ObjectName mbeanName;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) return;
+        log.info((enabled ? "Enabling" : "Disabling")+" task statistics");
+        this.enabled = enabled;
+        if (!enabled) timings.clear();
+    }
+
+    /** Discards all statistics recorded so far. */
+    @Override
+    public void reset() {
+        byCategory.clear();
+        byEntityType.clear();
+        sinceUtc = System.currentTimeMillis();
+    }
+
+    /** Invoked when a task is submitted. */
+    public void onSubmitted(Task<?> task) {
+        if (!enabled) return;
+        timings.put(task.getId(), new long[] {System.nanoTime(), -1});
+    }
+
+    /** Invoked in the task's thread when it starts to run; records the queue wait. */
+    public void onStarted(Task<?> task) {
+        if (!enabled) return;
+        long[] timing = timings.get(task.getId());
+        if (timing == null || timing[1] != -1) return;
+        timing[1] = System.nanoTime();
+        long queueWait = micros(timing[1] - timing[0]);
+        for (TaskTypeStatistics stats : statisticsFor(task)) {
+            stats.queueWait.record(queueWait);
+        }
+    }
+
+    /** Invoked in the task's thread when it finishes running; records the run time. */
+    public void onEnded(Task<?> task) {
+        if (!enabled) return;
+        long[] timing = timings.remove(task.getId());
+        if (timing == null || timing[1] == -1) return;
+        long runTime = micros(System.nanoTime() - timing[1]);
+        for (TaskTypeStatistics stats : statisticsFor(task)) {
+            stats.runTime.record(runTime);
+        }
+    }
+
+    /** Forgets tasks which finish without running, e.g. cancelled before they start. */
+    @Override
+    public void onTaskDone(Task<?> task) {
+        if (!timings.isEmpty()) timings.remove(task.getId());
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    /** The statistics to update for the given task: those for its category, and for that category of its entity's type. */
+    protected TaskTypeStatistics[] statisticsFor(Task<?> task) {
+        String category = categoryOf(task);
+        Entity entity = BrooklynTaskTags.getContextEntity(task);
+        if (entity == null) {
+            return new TaskTypeStatistics[] {statisticsIn(byCategory, category)};
+        }
+        String entityType = entity.getEntityType().getName();
+        ConcurrentMap<String, TaskTypeStatistics> categories = byEntityType.get(entityType);
+        if (categories == null) {
+            if (byEntityType.size() >= MAX_ENTITY_TYPES) entityType = OTHER_ENTITY_TYPES;
+            categories = new ConcurrentHashMap<String, TaskTypeStatistics>();
+            ConcurrentMap<String, TaskTypeStatistics> existing = byEntityType.putIfAbsent(entityType, categories);
+            if (existing != null) categories = existing;
+        }
+        return new TaskTypeStatistics[] {statisticsIn(byCategory, category), statisticsIn(categories, category)};
+    }
+
+    private static TaskTypeStatistics statisticsIn(ConcurrentMap<String, TaskTypeStatistics> map, String category) {
+        TaskTypeStatistics result = map.get(category);
+        if (result == null) {
+            result = new TaskTypeStatistics();
+            TaskTypeStatistics existing = map.putIfAbsent(category, result);
+            if (existing != null) result = existing;
+        }
+        return result;
+    }
+
+    /**
+     * The category of a task: {@link #CATEGORY_EFFECTOR effector}, {@link #CATEGORY_SENSOR sensor} (delivery to subscribers),
+     * {@link #CATEGORY_PERSISTENCE persistence}, {@link #CATEGORY_POLL poll} (any iteration of a scheduled task,
+     * mostly feeds), or {@link #CATEGORY_OTHER other}.
+     */
+    public static String categoryOf(Task<?> task) {
+        if (TaskTags.hasTag(task, BrooklynTaskTags.EFFECTOR_TAG)) return CATEGORY_EFFECTOR;
+        if (TaskTags.hasTag(task, BrooklynTaskTags.SENSOR_TAG)) return CATEGORY_SENSOR;
+        if (TaskTags.hasTag(task, BrooklynTaskTags.PERSISTENCE_TAG)) return CATEGORY_PERSISTENCE;
+        if (task.getSubmittedByTask() instanceof ScheduledTask) return CATEGORY_POLL;
+        return CATEGORY_OTHER;
+    }
+
+    /**
+     * Returns the statistics recorded since enabled or last {@link #reset()}, as a map containing
+     * {@code categories} (category to statistics) and {@code entityTypes} (entity type to category to statistics),
+     * where the statistics for each give the {@code count} and {@code perSecond} of tasks run,
+     * and their {@code queueWait} and {@code runTime} distributions in milliseconds.
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = MutableMap.of();
+        result.put("enabled", enabled);
+        result.put("since", Time.makeDateString(sinceUtc));
+        double seconds = Math.max(1, System.currentTimeMillis() - sinceUtc) / 1000.0;
+
+        Map<String, Object> categories = new TreeMap<String, Object>();
+        for (Map.Entry<String, TaskTypeStatistics> entry : byCategory.entrySet()) {
+            categories.put(entry.getKey(), entry.getValue().toMap(seconds));
+        }
+        result.put("categories", categories);
+
+        Map<String, Object> entityTypes = new TreeMap<String, Object>();
+        for (Map.Entry<String, ConcurrentMap<String, TaskTypeStatistics>> entry : byEntityType.entrySet()) {
+            Map<String, Object> typeCategories = new TreeMap<String, Object>();
+            for (Map.Entry<String, TaskTypeStatistics> category : entry.getValue().entrySet()) {
+                typeCategories.put(category.getKey(), category.getValue().toMap(seconds));
+            }
+            entityTypes.put(entry.getKey(), typeCategories);
+        }
+        result.put("entityTypes", entityTypes);
+        return result;
+    }
+
+    @Override
+    public String getSummary() {
+        return getStatistics().toString();
+    }
+
+    @Override
+    public long getCount(String category) {
+        TaskTypeStatistics stats = byCategory.get(category);
+        return stats == null ? 0 : stats.runTime.getCount();
+    }
+
+    @Override
+    public double getQueueWaitPercentileMillis(String category, double percentile) {
+        TaskTypeStatistics stats = byCategory.get(category);
+        return stats == null ? 0 : stats.queueWait.getPercentile(percentile) / 1000.0;
+    }
+
+    @Override
+    public double getRunTimePercentileMillis(String category, double percentile) {
+        TaskTypeStatistics stats = byCategory.get(category);
+        return stats == null ? 0 : stats.runTime.getPercentile(percentile) / 1000.0;
+    }
+
+    /** Registers this with the platform MBean server, named for the given management node; failures are logged and ignored. */
+    public synchronized void registerMBean(String managementNodeId) {
+        if (mbeanName != null) return;
+        try {
+            ObjectName name = new ObjectName("org.apache.brooklyn:type=TaskStatistics,node="+ObjectName.quote(managementNodeId));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            mbeanName = name;
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            log.debug("Unable to register task statistics MBean for "+managementNodeId+" (continuing): "+e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (mbeanName == null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(mbeanName)) server.unregisterMBean(mbeanName);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            log.debug("Unable to unregister task statistics MBean "+mbeanName+" (continuing): "+e);
+        }
+        mbeanName = null;
+    }
+
+    /** The queue-wait and run-time distributions for one kind of task. */
+    public static class TaskTypeStatistics {
+        protected final LatencyHistogram queueWait;
+        protected final LatencyHistogram runTime;
+
+        public TaskTypeStatistics() {
+            queueWait = new LatencyHistogram();
+            runTime = new LatencyHistogram();
+        }
+
+        public LatencyHistogram getQueueWait() {
+            return queueWait;
+        }
+
+        public LatencyHistogram getRunTime() {
+            return runTime;
+        }
+
+        protected Map<String, Object> toMap(double seconds) {
+            long count = runTime.getCount();
+            return MutableMap.<String, Object>of(
+                    "count", count,
+                    "perSecond", count / seconds,
+                    "queueWait", queueWait.toMap(),
+                    "runTime", runTime.toMap());
+        }
+    }
+
+    /**
+     * A fixed-size histogram of durations in microseconds, in the style of HdrHistogram: the buckets are
+     * linear within each power of two (8 per power), so values are recorded to within 12.5% in a few
+     * hundred counters, up to about 12 days. Recording is lock-free.
+     */
+    public static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_BITS = 40;
+        @VisibleForTesting
+        static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+        private static final int NUM_BUCKETS = (MAX_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long micros) {
+            long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+            counts.incrementAndGet(bucketOf(value));
+            total.addAndGet(value);
+            long oldMax;
+            while (value > (oldMax = max.get())) {
+                if (max.compareAndSet(oldMax, value)) break;
+            }
+        }
+
+        @VisibleForTesting
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int highestBit = 63 - Long.numberOfLeadingZeros(value);
+            int shift = highestBit - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        /** The highest value recorded in the given bucket. */
+        @VisibleForTesting
+        static long highestValueIn(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            long subBucket = SUB_BUCKETS + bucket % SUB_BUCKETS;
+            return ((subBucket + 1) << shift) - 1;
+        }
+
+        public long getCount() {
+            long result = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                result += counts.get(i);
+            }
+            return result;
+        }
+
+        /** The given percentile (0-100) of the recorded values, in microseconds, or 0 if none recorded. */
+        public long getPercentile(double percentile) {
+            long count = getCount();
+            if (count == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long cumulative = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                cumulative += counts.get(i);
+                if (cumulative >= target) return Math.min(highestValueIn(i), max.get());
+            }
+            return max.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) total.get() / count;
+        }
+
+        protected Map<String, Object> toMap() {
+            return MutableMap.<String, Object>of(
+                    "meanMs", getMean() / 1000.0,
+                    "p50Ms", getPercentile(50) / 1000.0,
+                    "p90Ms", getPercentile(90) / 1000.0,
+                    "p99Ms", getPercentile(99) / 1000.0,
+                    "maxMs", getMax() / 1000.0);
+        }
+    }
+}
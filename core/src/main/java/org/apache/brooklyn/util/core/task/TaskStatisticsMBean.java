@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import com.google.common.annotations.Beta;
+
+/** JMX view of {@link TaskStatistics}; categories are as per {@link TaskStatistics#categoryOf(org.apache.brooklyn.api.mgmt.Task)}. */
+@Beta
+public interface TaskStatisticsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+
+    /** All statistics, as a string; see {@link TaskStatistics#getStatistics()}. */
+    String getSummary();
+
+    /** Number of tasks of the given category which have run. */
+    long getCount(String category);
+
+    /** The given percentile (0-100) of the time tasks of the given category waited to start. */
+    double getQueueWaitPercentileMillis(String category, double percentile);
+
+    /** The given percentile (0-100) of the time tasks of the given category took to run. */
+    double getRunTimePercentileMillis(String category, double percentile);
+
+}
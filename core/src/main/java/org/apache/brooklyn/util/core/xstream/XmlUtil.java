@@ -20,16 +20,25 @@ package org.apache.brooklyn.util.core.xstream;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
@@ -59,6 +68,22 @@ public class XmlUtil {
         }
     }
 
+    /** As {@link SharedDocumentBuilder}, for the {@link XMLInputFactory} used for streaming reads. */
+    private static class SharedXmlInputFactory {
+        private static ThreadLocal<XMLInputFactory> instance = new ThreadLocal<XMLInputFactory>();
+        
+        public static XMLInputFactory get() {
+            XMLInputFactory result = instance.get();
+            if (result == null) {
+                result = XMLInputFactory.newInstance();
+                result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+                result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+                instance.set(result);
+            }
+            return result;
+        }
+    }
+
     public static String xpath(String xml, String xpath) {
         return (String) xpath(xml, xpath, XPathConstants.STRING);
     }
@@ -120,6 +145,127 @@ public class XmlUtil {
         }
     }
 
+    /**
+     * Reads the text of the given children of the root element in a single streaming pass, without building a DOM,
+     * and stopping as soon as all of them have been read; this is much cheaper than an {@link #xpath(String, String)}
+     * per child on large documents. For children in {@code stringListElementNames}, returns the list of the text
+     * of each {@code string} element within it (as XStream writes collections of strings).
+     * Only the first occurrence of each child is read, and children not present are absent from the result.
+     * <p>
+     * If the xml contains illegal characters (e.g. "&#x1b;") they are handled as for
+     * {@link #xpathHandlingIllegalChars(String, String, QName)}, but with the values returned unescaped.
+     */
+    @Beta
+    public static Map<String,Object> readRootChildren(String xml, Set<String> textElementNames, Set<String> stringListElementNames) {
+        try {
+            return readRootChildrenStreaming(xml, textElementNames, stringListElementNames);
+        } catch (XMLStreamException e) {
+            // messages for illegal characters differ between StAX implementations, so retry if there could be any
+            if (xml.contains("&#")) {
+                Escaper escaper = new Escaper();
+                try {
+                    Map<String,Object> result = readRootChildrenStreaming(escaper.escape(xml), textElementNames, stringListElementNames);
+                    for (Map.Entry<String,Object> entry : result.entrySet()) {
+                        if (entry.getValue() instanceof String) {
+                            entry.setValue(escaper.unescape((String)entry.getValue()));
+                        } else {
+                            List<String> unescaped = MutableList.of();
+                            for (Object item : (List<?>)entry.getValue()) {
+                                unescaped.add(escaper.unescape((String)item));
+                            }
+                            entry.setValue(unescaped);
+                        }
+                    }
+                    return result;
+                } catch (Exception e2) {
+                    Exceptions.propagateIfFatal(e2);
+                }
+            }
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static Map<String,Object> readRootChildrenStreaming(String xml, Set<String> textElementNames, Set<String> stringListElementNames) throws XMLStreamException {
+        Map<String,Object> result = MutableMap.of();
+        int remaining = textElementNames.size() + stringListElementNames.size();
+        XMLStreamReader reader = SharedXmlInputFactory.get().createXMLStreamReader(new StringReader(xml));
+        try {
+            if (!nextElementStartOrEnd(reader)) return result;
+            // at the start of the root; now look at each of its children
+            while (remaining > 0 && nextElementStartOrEnd(reader)) {
+                String name = reader.getLocalName();
+                if (result.containsKey(name)) {
+                    skipElement(reader);
+                } else if (textElementNames.contains(name)) {
+                    result.put(name, readText(reader));
+                    remaining--;
+                } else if (stringListElementNames.contains(name)) {
+                    result.put(name, readStrings(reader));
+                    remaining--;
+                } else {
+                    skipElement(reader);
+                }
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Advances to the next start or end of an element, returning true if it is a start. */
+    private static boolean nextElementStartOrEnd(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) return true;
+            if (event == XMLStreamConstants.END_ELEMENT) return false;
+        }
+        return false;
+    }
+
+    /** Skips to the end of the current element. */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    /** Returns all the text within the current element (as for its xpath string value), leaving the reader at its end. */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder result = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+            else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE) {
+                result.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+        return result.toString();
+    }
+
+    /** Returns the text of each {@code string} element within the current element, leaving the reader at its end. */
+    private static List<String> readStrings(XMLStreamReader reader) throws XMLStreamException {
+        List<String> result = MutableList.of();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("string".equals(reader.getLocalName())) {
+                    result.add(readText(reader));
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return result;
+    }
+
     /**
      * Replaces things like "&#x1b;" with "BR_UNICODE_x1b". This is because xstream happily writes 
      * out such characters (which are not valid in xml), but xpath fails when parsing them.
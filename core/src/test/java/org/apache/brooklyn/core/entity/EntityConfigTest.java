@@ -40,8 +40,10 @@ import org.apache.brooklyn.api.mgmt.ExecutionManager;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.TaskFactory;
 import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.ConfigValueAtContainer;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.config.ConfigPredicates;
+import org.apache.brooklyn.core.entity.internal.EntityConfigMap;
 import org.apache.brooklyn.core.sensor.BasicAttributeSensorAndConfigKey.IntegerAttributeSensorAndConfigKey;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
@@ -49,6 +51,7 @@ import org.apache.brooklyn.entity.stock.BasicEntity;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.core.flags.SetFromFlag;
+import org.apache.brooklyn.util.core.flags.TypeCoercions;
 import org.apache.brooklyn.util.core.task.BasicTask;
 import org.apache.brooklyn.util.core.task.DeferredSupplier;
 import org.apache.brooklyn.util.core.task.ImmediateSupplier;
@@ -64,6 +67,7 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
@@ -632,6 +636,115 @@ public class EntityConfigTest extends BrooklynAppUnitTestSupport {
         assertEquals(entity.getConfig(MyOtherEntity.INT_KEY), Integer.valueOf(1));
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void testGetInheritedConfigWithDeferredSupplierReturnsSuppliedEachTime() throws Exception {
+        DeferredSupplier<Integer> supplier = new DeferredSupplier<Integer>() {
+            volatile int next = 0;
+            @Override
+            public Integer get() {
+                return next++;
+            }
+        };
+
+        MyOtherEntity entity = app.addChild(EntitySpec.create(MyOtherEntity.class));
+        TestEntity child = entity.addChild(EntitySpec.create(TestEntity.class));
+        entity.config().set((ConfigKey)MyOtherEntity.INT_KEY, supplier);
+
+        assertEquals(child.getConfig(MyOtherEntity.INT_KEY), Integer.valueOf(0));
+        assertEquals(child.getConfig(MyOtherEntity.INT_KEY), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testGetInheritedConfigSeesAncestorChanges() throws Exception {
+        TestEntity child = app.addChild(EntitySpec.create(TestEntity.class));
+        TestEntity grandchild = child.addChild(EntitySpec.create(TestEntity.class));
+        
+        // lookups may be cached; check changes at every level are seen
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "defaultval");
+        app.config().set(TestEntity.CONF_NAME, "fromApp");
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "fromApp");
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "fromApp");
+        
+        child.config().set(TestEntity.CONF_NAME, "fromChild");
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "fromChild");
+        assertEquals(grandchild.config().getRaw(TestEntity.CONF_NAME).get(), "fromChild");
+        assertEquals(grandchild.config().getInternalConfigMap().getConfigAllInheritedRaw(TestEntity.CONF_NAME).size(), 2);
+        
+        ((EntityInternal)child).config().removeKey(TestEntity.CONF_NAME);
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "fromApp");
+        assertEquals(grandchild.config().getInternalConfigMap().getConfigAllInheritedRaw(TestEntity.CONF_NAME).size(), 1);
+
+        grandchild.config().set(TestEntity.CONF_NAME, "local");
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "local");
+    }
+
+    @Test
+    public void testGetInheritedConfigDoesNotShareMutableCoercedValues() throws Exception {
+        TypeCoercions.registerAdapter(String.class, MyMutableHolder.class, new Function<String, MyMutableHolder>() {
+            @Override public MyMutableHolder apply(String input) {
+                return new MyMutableHolder(input);
+            }
+        });
+        ConfigKey<MyMutableHolder> key = ConfigKeys.newConfigKey(MyMutableHolder.class, "myMutableHolderKey");
+        TestEntity child = app.addChild(EntitySpec.create(TestEntity.class));
+        app.config().set(ConfigKeys.newStringConfigKey("myMutableHolderKey"), "original");
+
+        child.config().get(key).value = "changed";
+        assertEquals(child.config().get(key).value, "original");
+    }
+
+    public static class MyMutableHolder {
+        public String value;
+        public MyMutableHolder(String value) {
+            this.value = value;
+        }
+    }
+
+    @Test
+    public void testGetConfigAllInheritedRawReturnsImmutableCopies() throws Exception {
+        TestEntity child = app.addChild(EntitySpec.create(TestEntity.class));
+        app.config().set(TestEntity.CONF_NAME, "fromApp");
+
+        List<? extends ConfigValueAtContainer<?,?>> first = ((EntityInternal)child).config().getInternalConfigMap().getConfigAllInheritedRaw(TestEntity.CONF_NAME);
+        List<? extends ConfigValueAtContainer<?,?>> second = ((EntityInternal)child).config().getInternalConfigMap().getConfigAllInheritedRaw(TestEntity.CONF_NAME);
+        assertEquals(first.size(), 1);
+        assertEquals(second.size(), 1);
+        assertEquals(second.get(0).get(), "fromApp");
+        Assert.assertNotSame(first.get(0), second.get(0));
+        try {
+            first.clear();
+            Asserts.shouldHaveFailedPreviously();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetInheritedConfigSeesAncestorLocalConfigReplaced() throws Exception {
+        TestEntity child = app.addChild(EntitySpec.create(TestEntity.class));
+        TestEntity grandchild = child.addChild(EntitySpec.create(TestEntity.class));
+        child.config().set(TestEntity.CONF_NAME, "fromChild");
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "fromChild");
+
+        EntityConfigMap childConfig = (EntityConfigMap) ((EntityInternal)child).config().getInternalConfigMap();
+        childConfig.setLocalConfig(ImmutableMap.<ConfigKey<?>,Object>of(TestEntity.CONF_NAME, "replaced"));
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "replaced");
+
+        childConfig.removeKey(TestEntity.CONF_NAME);
+        assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "defaultval");
+    }
+
+    @Test
+    public void testGetInheritedConfigSeesDynamicallyAddedKey() throws Exception {
+        ConfigKey<String> key = ConfigKeys.newStringConfigKey("myDynamicKey");
+        TestEntity child = app.addChild(EntitySpec.create(TestEntity.class));
+        assertEquals(child.config().get(key), null);
+        
+        ((EntityInternal)child).getMutableEntityType().addConfigKey(ConfigKeys.newStringConfigKey("myDynamicKey", "", "myDefault"));
+        assertEquals(child.config().get(key), "myDefault");
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     @Test
     public void testGetConfigWithFutureWaitsForResult() throws Exception {
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.entity;
+
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.testng.annotations.Test;
+
+public class EntityModificationSequenceTest extends BrooklynAppUnitTestSupport {
+
+    @Test
+    public void testChangeAfterReadingCurrentSequenceHasGreaterSequence() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+
+        long since = AbstractEntity.getCurrentModificationSequence();
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        long entitySequence = ((EntityInternal) entity).getModificationSequence();
+        assertTrue(entitySequence > since, "since="+since+"; entity="+entitySequence);
+        assertTrue(((EntityInternal) entity).sensors().getModificationSequence(TestEntity.SEQUENCE) > since);
+        assertTrue(AbstractEntity.getCurrentModificationSequence() >= entitySequence);
+    }
+
+    @Test
+    public void testConcurrentChangesAreAllAfterEarlierRead() throws Exception {
+        final List<TestEntity> entities = MutableList.of();
+        for (int i = 0; i < 4; i++) {
+            entities.add(app.createAndManageChild(EntitySpec.create(TestEntity.class)));
+        }
+        long since = AbstractEntity.getCurrentModificationSequence();
+
+        ExecutorService executor = Executors.newFixedThreadPool(entities.size());
+        try {
+            List<Future<?>> futures = MutableList.of();
+            for (final TestEntity entity : entities) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override public Void call() {
+                        for (int i = 0; i < 1000; i++) {
+                            entity.sensors().set(TestEntity.SEQUENCE, i);
+                        }
+                        return null;
+                    }}));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (TestEntity entity : entities) {
+            long sequence = ((EntityInternal) entity).sensors().getModificationSequence(TestEntity.SEQUENCE);
+            assertTrue(sequence > since, "since="+since+"; entity="+sequence);
+        }
+        assertTrue(AbstractEntity.getCurrentModificationSequence() >= since + entities.size() * 1000);
+    }
+}
@@ -54,6 +54,7 @@ import org.testng.annotations.Test;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -119,6 +120,56 @@ public class EntityManagerTest extends BrooklynAppUnitTestSupport {
         Asserts.assertEqualsIgnoringOrder(entityManager.findEntitiesInApplication(app, Predicates.instanceOf(TestApplication.class)), ImmutableList.of(app));
     }
     
+    /** Records whether its parent was already managed when it started management. */
+    public static class RecordingParentManagedEntityImpl extends TestEntityImpl {
+        static final List<Boolean> PARENT_MANAGED = Lists.newCopyOnWriteArrayList();
+        static final List<Boolean> PARENT_LEVEL_MANAGED = Lists.newCopyOnWriteArrayList();
+        
+        @Override
+        public void onManagementStarting() {
+            super.onManagementStarting();
+            EntityManager entityManager = getManagementContext().getEntityManager();
+            PARENT_MANAGED.add(entityManager.isManaged(getParent()));
+            Entity grandparent = getParent().getParent();
+            if (grandparent != null) {
+                boolean parentLevelManaged = true;
+                for (Entity parentOrSibling : grandparent.getChildren()) {
+                    parentLevelManaged &= entityManager.isManaged(parentOrSibling);
+                }
+                PARENT_LEVEL_MANAGED.add(parentLevelManaged);
+            }
+        }
+    }
+    
+    @Test
+    public void testParentManagedBeforeChildStartsManagement() {
+        RecordingParentManagedEntityImpl.PARENT_MANAGED.clear();
+        TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .impl(RecordingParentManagedEntityImpl.class)
+                .child(EntitySpec.create(TestEntity.class).impl(RecordingParentManagedEntityImpl.class)));
+        
+        assertEquals(RecordingParentManagedEntityImpl.PARENT_MANAGED, ImmutableList.of(true, true));
+        assertTrue(entityManager.isManaged(Iterables.getOnlyElement(child.getChildren())));
+    }
+    
+    @Test
+    public void testTreeManagedLevelByLevel() {
+        RecordingParentManagedEntityImpl.PARENT_MANAGED.clear();
+        RecordingParentManagedEntityImpl.PARENT_LEVEL_MANAGED.clear();
+        TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .child(EntitySpec.create(TestEntity.class)
+                        .child(EntitySpec.create(TestEntity.class).impl(RecordingParentManagedEntityImpl.class)))
+                .child(EntitySpec.create(TestEntity.class)
+                        .child(EntitySpec.create(TestEntity.class).impl(RecordingParentManagedEntityImpl.class))));
+        
+        // each level is registered before any entity of the next level starts management
+        assertEquals(RecordingParentManagedEntityImpl.PARENT_MANAGED, ImmutableList.of(true, true));
+        assertEquals(RecordingParentManagedEntityImpl.PARENT_LEVEL_MANAGED, ImmutableList.of(true, true));
+        for (Entity grandchild : child.getChildren()) {
+            assertTrue(entityManager.isManaged(Iterables.getOnlyElement(grandchild.getChildren())));
+        }
+    }
+    
     @Test
     public void testCreateEntitiesWithDuplicateIdFails() {
         TestApplication origApp = app;
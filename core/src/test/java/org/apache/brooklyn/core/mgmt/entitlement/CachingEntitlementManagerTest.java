@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.entitlement;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementClass;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementManager;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class CachingEntitlementManagerTest extends BrooklynAppUnitTestSupport {
+
+    /** Allows only the user "admin", counting the decisions made. */
+    private static class CountingEntitlementManager implements EntitlementManager {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public <T> boolean isEntitled(EntitlementContext context, EntitlementClass<T> entitlementClass, T entitlementClassArgument) {
+            calls.incrementAndGet();
+            return context != null && "admin".equals(context.user());
+        }
+    }
+
+    @Test
+    public void testCachesForRequest() {
+        CountingEntitlementManager delegate = new CountingEntitlementManager();
+        CachingEntitlementManager manager = new CachingEntitlementManager(delegate, true, 100, Duration.ZERO, 100);
+        WebEntitlementContext request1 = new WebEntitlementContext("admin", "127.0.0.1", "/v1/applications", "req1");
+        WebEntitlementContext request2 = new WebEntitlementContext("admin", "127.0.0.1", "/v1/applications", "req2");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(manager.isEntitled(request1, Entitlements.SEE_ENTITY, app));
+            assertTrue(manager.isEntitled(request1, Entitlements.SEE_SENSOR, EntityAndItem.of(app, "mysensor")));
+        }
+        assertEquals(delegate.calls.get(), 2);
+
+        // not shared with another request
+        assertTrue(manager.isEntitled(request2, Entitlements.SEE_ENTITY, app));
+        assertEquals(delegate.calls.get(), 3);
+
+        // nor with other contexts
+        assertFalse(manager.isEntitled(null, Entitlements.SEE_ENTITY, app));
+        assertFalse(manager.isEntitled(null, Entitlements.SEE_ENTITY, app));
+        assertEquals(delegate.calls.get(), 5);
+
+        assertEquals(manager.getHitCount(), 4);
+        assertEquals(manager.getMissCount(), 5);
+        assertEquals(manager.getHitRatio(), 4d / 9, 0.0001);
+    }
+
+    @Test
+    public void testNotCachedInTasks() throws Exception {
+        CountingEntitlementManager delegate = new CountingEntitlementManager();
+        final CachingEntitlementManager manager = new CachingEntitlementManager(delegate, true, 100, Duration.ZERO, 100);
+        final WebEntitlementContext request = new WebEntitlementContext("admin", null, null, "req1");
+
+        app.getExecutionContext().submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(manager.isEntitled(request, Entitlements.SEE_ENTITY, app));
+                }
+            }
+        }).get();
+        assertEquals(delegate.calls.get(), 3);
+        assertTrue(request.decisionCache().isEmpty());
+    }
+
+    @Test
+    public void testRequestCacheBounded() {
+        CountingEntitlementManager delegate = new CountingEntitlementManager();
+        CachingEntitlementManager manager = new CachingEntitlementManager(delegate, true, 2, Duration.ZERO, 100);
+        WebEntitlementContext request = new WebEntitlementContext("admin", null, null, "req1");
+
+        for (int i = 0; i < 10; i++) {
+            manager.isEntitled(request, Entitlements.SEE_SENSOR, EntityAndItem.of(app, "sensor"+i));
+            assertTrue(request.decisionCache().size() <= 2, "size="+request.decisionCache().size());
+        }
+        assertEquals(delegate.calls.get(), 10);
+    }
+
+    @Test
+    public void testInvalidationReplacesRequestDecisions() {
+        CountingEntitlementManager delegate = new CountingEntitlementManager();
+        CachingEntitlementManager manager = new CachingEntitlementManager(delegate, true, 100, Duration.ZERO, 100);
+        WebEntitlementContext request = new WebEntitlementContext("admin", null, null, "req1");
+
+        for (int i = 0; i < 3; i++) {
+            manager.invalidateAll();
+            manager.isEntitled(request, Entitlements.SEE_ENTITY, app);
+        }
+        assertEquals(delegate.calls.get(), 3);
+        assertEquals(request.decisionCache().size(), 1);
+    }
+
+    @Test
+    public void testInvalidateCachedDecisions() {
+        CountingEntitlementManager delegate = new CountingEntitlementManager();
+        CachingEntitlementManager manager = new CachingEntitlementManager(delegate, false, 100, Duration.ONE_MINUTE, 100);
+
+        manager.isEntitled(new WebEntitlementContext("admin", null, null, "req1"), Entitlements.SEE_ENTITY, app);
+        Entitlements.invalidateCachedDecisions(manager, null);
+        manager.isEntitled(new WebEntitlementContext("admin", null, null, "req2"), Entitlements.SEE_ENTITY, app);
+        assertEquals(delegate.calls.get(), 2);
+
+        // no-op for managers which do not cache
+        Entitlements.invalidateCachedDecisions(delegate, "admin");
+    }
+
+    @Test
+    public void testSharesBetweenRequestsOfUser() {
+        CountingEntitlementManager delegate = new CountingEntitlementManager();
+        CachingEntitlementManager manager = new CachingEntitlementManager(delegate, false, 100, Duration.ONE_MINUTE, 100);
+
+        assertTrue(manager.isEntitled(new WebEntitlementContext("admin", null, null, "req1"), Entitlements.SEE_ENTITY, app));
+        assertTrue(manager.isEntitled(new WebEntitlementContext("admin", null, null, "req2"), Entitlements.SEE_ENTITY, app));
+        assertEquals(delegate.calls.get(), 1);
+
+        assertFalse(manager.isEntitled(new WebEntitlementContext("other", null, null, "req3"), Entitlements.SEE_ENTITY, app));
+        assertFalse(manager.isEntitled(new WebEntitlementContext("other", null, null, "req4"), Entitlements.SEE_ENTITY, app));
+        assertEquals(delegate.calls.get(), 2);
+    }
+
+    @Test
+    public void testSharesOnlyForWebContextsWithUser() {
+        CountingEntitlementManager delegate = new CountingEntitlementManager();
+        CachingEntitlementManager manager = new CachingEntitlementManager(delegate, false, 100, Duration.ONE_MINUTE, 100);
+
+        for (int i = 0; i < 2; i++) {
+            manager.isEntitled(new WebEntitlementContext(null, null, null, "req"+i), Entitlements.SEE_ENTITY, app);
+        }
+        assertEquals(delegate.calls.get(), 2);
+
+        // other contexts may carry more than the user
+        EntitlementContext nonWebContext = new EntitlementContext() {
+            @Override
+            public String user() {
+                return "admin";
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            manager.isEntitled(nonWebContext, Entitlements.SEE_ENTITY, app);
+        }
+        assertEquals(delegate.calls.get(), 4);
+    }
+
+    @Test
+    public void testDecisionOverlappingInvalidationNotShared() {
+        final AtomicReference<CachingEntitlementManager> manager = new AtomicReference<CachingEntitlementManager>();
+        final AtomicInteger calls = new AtomicInteger();
+        EntitlementManager delegate = new EntitlementManager() {
+            @Override
+            public <T> boolean isEntitled(EntitlementContext context, EntitlementClass<T> entitlementClass, T entitlementClassArgument) {
+                // the first decision races with a change to the user's entitlements
+                if (calls.incrementAndGet() == 1) {
+                    manager.get().invalidateUser(context.user());
+                }
+                return true;
+            }
+        };
+        manager.set(new CachingEntitlementManager(delegate, false, 100, Duration.ONE_MINUTE, 100));
+
+        manager.get().isEntitled(new WebEntitlementContext("admin", null, null, "req1"), Entitlements.SEE_ENTITY, app);
+        manager.get().isEntitled(new WebEntitlementContext("admin", null, null, "req2"), Entitlements.SEE_ENTITY, app);
+        assertEquals(calls.get(), 2);
+        manager.get().isEntitled(new WebEntitlementContext("admin", null, null, "req3"), Entitlements.SEE_ENTITY, app);
+        assertEquals(calls.get(), 2);
+        assertEquals(manager.get().getStatistics(), ImmutableMap.of("hits", 1L, "misses", 2L, "hitRatio", 1d / 3));
+    }
+
+    @Test
+    public void testInvalidation() {
+        CountingEntitlementManager delegate = new CountingEntitlementManager();
+        CachingEntitlementManager manager = new CachingEntitlementManager(delegate, true, 100, Duration.ONE_MINUTE, 100);
+        WebEntitlementContext admin = new WebEntitlementContext("admin", null, null, "req1");
+        WebEntitlementContext other = new WebEntitlementContext("other", null, null, "req2");
+
+        manager.isEntitled(admin, Entitlements.SEE_ENTITY, app);
+        manager.isEntitled(other, Entitlements.SEE_ENTITY, app);
+        assertEquals(delegate.calls.get(), 2);
+
+        manager.invalidateUser("admin");
+        manager.isEntitled(new WebEntitlementContext("admin", null, null, "req3"), Entitlements.SEE_ENTITY, app);
+        manager.isEntitled(new WebEntitlementContext("other", null, null, "req4"), Entitlements.SEE_ENTITY, app);
+        assertEquals(delegate.calls.get(), 3);
+
+        // the decisions cached for in-flight requests are discarded too
+        manager.invalidateAll();
+        manager.isEntitled(admin, Entitlements.SEE_ENTITY, app);
+        manager.isEntitled(other, Entitlements.SEE_ENTITY, app);
+        assertEquals(delegate.calls.get(), 5);
+    }
+
+    @Test
+    public void testWrapIfConfigured() {
+        EntitlementManager delegate = new CountingEntitlementManager();
+
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        assertSame(CachingEntitlementManager.wrapIfConfigured(delegate, props), delegate);
+
+        props.put(CachingEntitlementManager.PER_REQUEST, true);
+        assertTrue(CachingEntitlementManager.wrapIfConfigured(delegate, props) instanceof CachingEntitlementManager);
+
+        props.put(CachingEntitlementManager.PER_REQUEST, false);
+        assertSame(CachingEntitlementManager.wrapIfConfigured(delegate, props), delegate);
+
+        props.put(CachingEntitlementManager.SHARED_TTL, Duration.ONE_SECOND);
+        assertTrue(CachingEntitlementManager.wrapIfConfigured(delegate, props) instanceof CachingEntitlementManager);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.location.LocationSpec;
+import org.apache.brooklyn.api.mgmt.rebind.RebindExceptionHandler;
+import org.apache.brooklyn.api.policy.PolicySpec;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.location.SimulatedLocation;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.HeapUsageSampler;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.policy.TestPolicy;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+public class RebindStreamingTest extends RebindTestFixtureWithApp {
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(BrooklynMementoPersisterToObjectStore.PERSISTER_REBIND_STREAMING, true);
+        // fewer than the number of objects, so reads must wait for earlier objects to be deserialized
+        result.put(BrooklynMementoPersisterToObjectStore.PERSISTER_REBIND_READ_AHEAD, 2);
+        return result;
+    }
+
+    @Test
+    public void testRebindsEntitiesLocationsAndPolicies() throws Exception {
+        SimulatedLocation origLoc = origManagementContext.getLocationManager().createLocation(LocationSpec.create(SimulatedLocation.class));
+        for (int i = 0; i < 5; i++) {
+            TestEntity child = origApp.createAndManageChild(EntitySpec.create(TestEntity.class)
+                    .configure(TestEntity.CONF_NAME, "child"+i)
+                    .policy(PolicySpec.create(TestPolicy.class)));
+            child.createAndManageChild(EntitySpec.create(TestEntity.class).configure(TestEntity.CONF_NAME, "grandchild"+i));
+        }
+        origApp.start(ImmutableList.of(origLoc));
+
+        TestApplication newApp = rebind();
+
+        assertEquals(newApp.getChildren().size(), 5);
+        for (Entity child : newApp.getChildren()) {
+            assertEquals(child.policies().size(), 1);
+            assertEquals(child.getChildren().size(), 1);
+        }
+        assertEquals(Iterables.getOnlyElement(newApp.getLocations()).getId(), origLoc.getId());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> rebindMetrics = (Map<String, Object>) newManagementContext.getRebindManager().getMetrics().get("rebind");
+        assertNotNull(rebindMetrics.get("lastPeakHeapBytes"), "metrics="+rebindMetrics);
+    }
+
+    @Test
+    public void testHeapSampledAsMementosLoaded() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+        }
+        rebind();
+
+        BrooklynMementoPersisterToObjectStore persister = (BrooklynMementoPersisterToObjectStore) newManagementContext.getRebindManager().getPersister();
+        RebindExceptionHandler exceptionHandler = RebindExceptionHandlerImpl.builder().build();
+        HeapUsageSampler sampler = new HeapUsageSampler(1);
+        persister.setHeapUsageSampler(sampler);
+        try {
+            persister.loadMementoManifest(persister.loadMementoRawDataStreaming(exceptionHandler), exceptionHandler);
+        } finally {
+            persister.setHeapUsageSampler(null);
+        }
+        // the app and its children, at least
+        assertTrue(sampler.getItemCount() >= 4, "items="+sampler.getItemCount());
+        assertTrue(sampler.getMaxUsed() > 0, "maxUsed="+sampler.getMaxUsed());
+    }
+
+    @Test
+    public void testDoesNotResetJvmMemoryPoolPeaks() throws Exception {
+        Map<String, Long> peaksBefore = MutableMap.of();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peaksBefore.put(pool.getName(), pool.getPeakUsage().getUsed());
+            }
+        }
+
+        rebind();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            Long before = peaksBefore.get(pool.getName());
+            if (before != null) {
+                assertTrue(pool.getPeakUsage().getUsed() >= before, "pool="+pool.getName()+"; before="+before+"; after="+pool.getPeakUsage());
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.zip.ZipEntry;
+
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.core.test.entity.TestEntityImpl;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.ClassLoaderUtils;
+import org.apache.brooklyn.util.core.osgi.BundleMaker;
+import org.apache.brooklyn.util.core.osgi.Osgis;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Measures the class-loading done for each memento during rebind, with many bundles installed.
+ */
+public class ClassLoadingPerformanceTest extends AbstractPerformanceTest {
+
+    private static final int NUM_BUNDLES = 200;
+
+    private List<File> tempFiles;
+    private List<Bundle> bundles;
+    private String prefix;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        mgmt = LocalManagementContextForTests.builder(true).enableOsgiReusable().build();
+        super.setUp();
+
+        tempFiles = MutableList.of();
+        bundles = MutableList.of();
+        prefix = "perf-bundle-"+Identifiers.makeRandomId(4)+"-";
+        Framework framework = mgmt.getOsgiManager().get().getFramework();
+        BundleMaker bundleMaker = new BundleMaker(mgmt);
+        for (int i = 0; i < NUM_BUNDLES; i++) {
+            File jar = bundleMaker.createTempBundle(prefix+i, ImmutableMap.of(
+                    Attributes.Name.MANIFEST_VERSION.toString(), "1.0",
+                    Constants.BUNDLE_MANIFESTVERSION, "2",
+                    Constants.BUNDLE_SYMBOLICNAME, prefix+i,
+                    Constants.BUNDLE_VERSION, "1.0.0"),
+                MutableMap.<ZipEntry, InputStream>of());
+            tempFiles.add(jar);
+            bundles.add(Osgis.install(framework, "file://"+jar.getAbsolutePath()));
+        }
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            if (bundles != null) {
+                for (Bundle b : bundles) {
+                    try {
+                        b.uninstall();
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                    }
+                }
+            }
+            if (tempFiles != null) {
+                for (File f : tempFiles) f.delete();
+            }
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    protected int numIterations() {
+        return 10000;
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testLoadClassForEntityMemento() {
+        int numIterations = numIterations();
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        final ClassLoaderUtils loader = new ClassLoaderUtils(getClass(), app);
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("ClassLoadingPerformanceTest.testLoadClassForEntityMemento("+NUM_BUNDLES+" bundles)")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            loader.loadClass(TestEntityImpl.class.getName());
+                        } catch (ClassNotFoundException e) {
+                            throw Exceptions.propagate(e);
+                        }
+                    }}));
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testLoadClassFromNamedBundle() {
+        int numIterations = numIterations();
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        final ClassLoaderUtils loader = new ClassLoaderUtils(getClass(), mgmt);
+        final String name = prefix+(NUM_BUNDLES-1)+":"+getClass().getName();
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("ClassLoadingPerformanceTest.testLoadClassFromNamedBundle("+NUM_BUNDLES+" bundles)")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        // not in the (empty) bundle, so falls back to the classpath, as can happen on rebind
+                        try {
+                            loader.loadClass(name);
+                        } catch (ClassNotFoundException e) {
+                            throw Exceptions.propagate(e);
+                        }
+                    }}));
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testLoadMissingClass() {
+        int numIterations = numIterations();
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        final ClassLoaderUtils loader = new ClassLoaderUtils(getClass(), app);
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("ClassLoadingPerformanceTest.testLoadMissingClass("+NUM_BUNDLES+" bundles)")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            loader.loadClass("org.example.DoesNotExist");
+                            throw new IllegalStateException("class should not have been found");
+                        } catch (ClassNotFoundException e) {
+                            // expected
+                        }
+                    }}));
+    }
+}
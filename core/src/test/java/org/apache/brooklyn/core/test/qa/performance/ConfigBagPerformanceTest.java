@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class ConfigBagPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigBagPerformanceTest.class);
+
+    protected int numIterations() {
+        return 10000;
+    }
+
+    /** Roughly what obtaining a machine does: extend the location's config with the caller's flags, then read some of it. */
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testExtendLargeConfig() throws Exception {
+        final ConfigBag locationConfig = ConfigBag.newInstance();
+        final List<ConfigKey<String>> keys = MutableList.of();
+        for (int i = 0; i < 200; i++) {
+            ConfigKey<String> key = ConfigKeys.newStringConfigKey("key"+i);
+            keys.add(key);
+            locationConfig.put(key, "val"+i);
+        }
+        final Map<String, Object> flags = ImmutableMap.<String, Object>of("key1", "flag1", "callerContext", "me");
+
+        Runnable job = new Runnable() {
+            @Override public void run() {
+                ConfigBag setup = ConfigBag.newInstanceExtending(locationConfig, flags);
+                ConfigBag copy = ConfigBag.newInstanceCopying(setup);
+                for (int i = 0; i < 10; i++) {
+                    copy.get(keys.get(i));
+                }
+            }
+        };
+
+        long allocatedBefore = currentThreadAllocatedBytes();
+        for (int i = 0; i < numIterations(); i++) {
+            job.run();
+        }
+        long allocatedAfter = currentThreadAllocatedBytes();
+        if (allocatedBefore >= 0) {
+            LOG.info("ConfigBagPerformanceTest.testExtendLargeConfig: bytes allocated per iteration="+
+                    ((allocatedAfter - allocatedBefore) / numIterations()));
+        }
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("ConfigBagPerformanceTest.testExtendLargeConfig")
+                .iterations(numIterations())
+                .minAcceptablePerSecond(1000 * PERFORMANCE_EXPECTATION)
+                .job(job));
+    }
+
+    /** Bytes allocated by this thread so far, or -1 if the JVM does not report it. */
+    private static long currentThreadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -113,6 +113,22 @@ public class EntityPerformanceTest extends AbstractPerformanceTest {
             }});
     }
 
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCreateEntities() {
+        int numIterations = numIterations();
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        
+        measure(PerformanceTestDescriptor.create()
+                .summary("EntityPerformanceTest.testCreateEntities")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        app.createAndManageChild(EntitySpec.create(TestEntity.class));
+                    }}));
+    }
+
     @Test(groups={"Integration", "Acceptance"})
     public void testInvokeEffector() {
         int numIterations = numIterations();
@@ -18,13 +18,38 @@
  */
 package org.apache.brooklyn.core.test.qa.performance;
 
+import static org.testng.Assert.assertEquals;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.xpath.XPathConstants;
+
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoManifest;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.InMemoryObjectStore;
+import org.apache.brooklyn.core.mgmt.rebind.RebindExceptionHandlerImpl;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.core.xstream.XmlUtil;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+
 public class XmlPerformanceTest extends AbstractPerformanceTest {
 
+    private static final Logger LOG = LoggerFactory.getLogger(XmlPerformanceTest.class);
+
+    private static final Set<String> ENTITY_FIELDS = ImmutableSet.of("id", "type", "parent", "catalogItemId");
+    private static final Set<String> ENTITY_LIST_FIELDS = ImmutableSet.of("searchPath");
+
     @BeforeMethod(alwaysRun=true)
     @Override
     public void setUp() throws Exception {
@@ -51,4 +76,78 @@ public class XmlPerformanceTest extends AbstractPerformanceTest {
                         XmlUtil.xpath(xml, "/a/b[text()]");
                     }}));
     }
+
+    /** Roughly the shape of a persisted entity, with the fields needed for the rebind manifest spread through it. */
+    private static String entityMementoXml(String id, String parentId) {
+        StringBuilder result = new StringBuilder("<entity>\n");
+        result.append("  <brooklynVersion>0.12.0-SNAPSHOT</brooklynVersion>\n");
+        result.append("  <type>org.apache.brooklyn.core.test.entity.TestEntityImpl</type>\n");
+        result.append("  <id>").append(id).append("</id>\n");
+        result.append("  <displayName>entity ").append(id).append("</displayName>\n");
+        result.append("  <searchPath>\n    <string>my.catalog.item:1.0</string>\n  </searchPath>\n");
+        result.append("  <config>\n");
+        for (int i = 0; i < 50; i++) {
+            result.append("    <key").append(i).append(">").append(Strings.repeat("v", 40)).append("</key").append(i).append(">\n");
+        }
+        result.append("  </config>\n  <attributes>\n");
+        for (int i = 0; i < 100; i++) {
+            result.append("    <sensor").append(i).append(">").append(Strings.repeat("s", 40)).append("</sensor").append(i).append(">\n");
+        }
+        result.append("  </attributes>\n");
+        if (parentId != null) result.append("  <parent>").append(parentId).append("</parent>\n");
+        result.append("</entity>");
+        return result.toString();
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testEntityManifestFieldsByXpath() throws Exception {
+        final String xml = entityMementoXml("myid", "myparent");
+        measure(PerformanceTestDescriptor.create()
+                .summary("XmlPerformanceTest.testEntityManifestFieldsByXpath")
+                .iterations(numIterations())
+                .minAcceptablePerSecond(10 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        // as rebind did before reading the manifest fields in a single pass
+                        for (String field : ENTITY_FIELDS) {
+                            XmlUtil.xpathHandlingIllegalChars(xml, "/entity/"+field);
+                        }
+                        XmlUtil.xpathHandlingIllegalChars(xml, "/entity/searchPath//string", XPathConstants.NODESET);
+                    }}));
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testEntityManifestFieldsStreaming() throws Exception {
+        final String xml = entityMementoXml("myid", "myparent");
+        measure(PerformanceTestDescriptor.create()
+                .summary("XmlPerformanceTest.testEntityManifestFieldsStreaming")
+                .iterations(numIterations())
+                .minAcceptablePerSecond(100 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        XmlUtil.readRootChildren(xml, ENTITY_FIELDS, ENTITY_LIST_FIELDS);
+                    }}));
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testLoadMementoManifestOfLargeStore() throws Exception {
+        int numEntities = 50*1000;
+        BrooklynMementoRawData.Builder rawData = BrooklynMementoRawData.builder();
+        for (int i = 0; i < numEntities; i++) {
+            rawData.entity("entity"+i, entityMementoXml("entity"+i, i == 0 ? null : "entity"+(i/10)));
+        }
+        BrooklynMementoPersisterToObjectStore persister = new BrooklynMementoPersisterToObjectStore(new InMemoryObjectStore(), mgmt);
+        try {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            BrooklynMementoManifest manifest = persister.loadMementoManifest(rawData.build(), RebindExceptionHandlerImpl.builder().build());
+            LOG.info("Loaded manifest of "+numEntities+" entities in "+Time.makeTimeStringRounded(stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+            assertEquals(manifest.getEntityIdToManifest().size(), numEntities);
+            assertEquals(manifest.getEntityIdToManifest().get("entity12").getParent(), "entity1");
+            assertEquals(manifest.getEntityIdToManifest().get("entity12").getCatalogItemIdSearchPath(), MutableList.of("my.catalog.item:1.0"));
+        } finally {
+            persister.stop(false);
+        }
+    }
 }
@@ -290,6 +290,28 @@ public class EnrichersTest extends BrooklynAppUnitTestSupport {
         EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 5);
     }
     
+    @Test
+    public void testAggregatingGroupMinAsMembersChange() {
+        group.addMember(entity);
+        group.addMember(entity2);
+        group.enrichers().add(Enrichers.builder()
+                .aggregating(NUM1)
+                .publishing(NUM2)
+                .fromMembers()
+                .computing(MathAggregatorFunctions.computingMin(null, null, Integer.class))
+                .build());
+        
+        entity.sensors().set(NUM1, 1);
+        entity2.sensors().set(NUM1, 3);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 1);
+        
+        entity.sensors().set(NUM1, 5);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 3);
+        
+        group.removeMember(entity2);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 5);
+    }
+    
     @Test
     public void testAggregatingChildrenSum() {
         group.addMember(entity);
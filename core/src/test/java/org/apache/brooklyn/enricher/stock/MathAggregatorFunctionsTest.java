@@ -19,11 +19,14 @@
 package org.apache.brooklyn.enricher.stock;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
+import org.apache.brooklyn.enricher.stock.MathAggregatorFunctions.IncrementalNumberAggregation;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.testng.annotations.Test;
 
@@ -115,4 +118,88 @@ public class MathAggregatorFunctionsTest {
         assertEquals(func.apply(MutableList.<Number>of(1, 3, 5)), (Integer)5);
         assertEquals(func.apply(MutableList.<Number>of(3, null, 1)), (Integer)3);
     }
+
+    @Test
+    public void testIncrementalAggregationMatchesFunction() throws Exception {
+        List<Function<Collection<? extends Number>, Double>> funcs = new ArrayList<>();
+        funcs.add(MathAggregatorFunctions.computingSum(5, 999, Double.class));
+        funcs.add(MathAggregatorFunctions.computingAverage(null, 999, Double.class));
+        funcs.add(MathAggregatorFunctions.computingMin(null, 999, Double.class));
+        funcs.add(MathAggregatorFunctions.computingMax(5, null, Double.class));
+        
+        Random random = new Random(0);
+        for (Function<Collection<? extends Number>, Double> func : funcs) {
+            IncrementalNumberAggregation<?> incremental = MathAggregatorFunctions.newIncrementalAggregation(func);
+            List<Number> vals = MutableList.of();
+            assertEquals(incremental.get(), func.apply(vals), "func="+func);
+            for (int i = 0; i < 500; i++) {
+                if (!vals.isEmpty() && random.nextInt(3) == 0) {
+                    Number val = vals.remove(random.nextInt(vals.size()));
+                    incremental.remove(val);
+                } else {
+                    // small range, so that the min and max are often removed
+                    Number val = (random.nextInt(10) == 0) ? null : random.nextInt(10);
+                    vals.add(val);
+                    incremental.add(val);
+                }
+                assertEquals(incremental.get(), func.apply(vals), "func="+func+"; vals="+vals);
+            }
+        }
+    }
+    
+    @Test
+    public void testIncrementalAggregationWithInfinities() throws Exception {
+        Function<Collection<? extends Number>, Double> func = MathAggregatorFunctions.computingSum(null, null, Double.class);
+        IncrementalNumberAggregation<?> incremental = MathAggregatorFunctions.newIncrementalAggregation(func);
+        incremental.add(1);
+        incremental.add(Double.POSITIVE_INFINITY);
+        assertEquals(incremental.get(), Double.POSITIVE_INFINITY);
+        incremental.add(Double.NEGATIVE_INFINITY);
+        assertEquals(incremental.get(), Double.NaN);
+        incremental.remove(Double.POSITIVE_INFINITY);
+        incremental.remove(Double.NEGATIVE_INFINITY);
+        assertEquals(incremental.get(), 1d);
+    }
+    
+    @Test
+    public void testIncrementalSumDoesNotDrift() throws Exception {
+        Function<Collection<? extends Number>, Double> func = MathAggregatorFunctions.computingSum(null, null, Double.class);
+        IncrementalNumberAggregation<?> incremental = MathAggregatorFunctions.newIncrementalAggregation(func);
+        
+        // large values come and go amongst small ones; an uncompensated running sum is then off by hundreds
+        Random random = new Random(0);
+        List<Double> vals = MutableList.of();
+        for (int i = 0; i < 10000; i++) {
+            if (!vals.isEmpty() && random.nextInt(5) < 2) {
+                incremental.remove(vals.remove(random.nextInt(vals.size())));
+            } else {
+                double val = random.nextBoolean() ? random.nextDouble() * 1e16 : random.nextDouble();
+                vals.add(val);
+                incremental.add(val);
+            }
+        }
+        for (Double val : MutableList.copyOf(vals)) {
+            if (val > 1) {
+                vals.remove(val);
+                incremental.remove(val);
+            }
+        }
+        assertEquals((Double) incremental.get(), func.apply(vals), 1e-6, "vals="+vals.size());
+        
+        // and nothing is left over once empty
+        for (Double val : vals) {
+            incremental.remove(val);
+        }
+        incremental.add(0.3);
+        assertEquals(incremental.get(), 0.3);
+    }
+    
+    @Test
+    public void testNoIncrementalAggregationForCustomFunction() throws Exception {
+        assertNull(MathAggregatorFunctions.newIncrementalAggregation(new Function<Collection<? extends Number>, Integer>() {
+            @Override public Integer apply(Collection<? extends Number> input) {
+                return input.size();
+            }
+        }));
+    }
 }
@@ -20,12 +20,21 @@ package org.apache.brooklyn.location.byon;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.location.LocationSpec;
@@ -36,8 +45,10 @@ import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.location.RecordingMachineLocationCustomizer;
 import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
 import org.apache.brooklyn.location.ssh.SshMachineLocation;
+import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.net.Networking;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +62,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 /**
  * Provisions {@link SshMachineLocation}s in a specific location from a list of known machines
@@ -323,6 +335,44 @@ public class FixedListMachineProvisioningLocationTest extends BrooklynMgmtUnitTe
         }
     }
     
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConcurrentObtainAndRelease() throws Exception {
+        List<SshMachineLocation> machines = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            machines.add(mgmt.getLocationManager().createLocation(LocationSpec.create(SshMachineLocation.class).configure("address", Networking.getInetAddressWithFixedName("1.1.1."+i))));
+        }
+        provisioner2 = mgmt.getLocationManager().createLocation(LocationSpec.create(FixedListMachineProvisioningLocation.class)
+                .configure("machines", machines));
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            for (int round = 0; round < 3; round++) {
+                List<Future<SshMachineLocation>> futures = Lists.newArrayList();
+                for (int i = 0; i < machines.size(); i++) {
+                    futures.add(executor.submit(new Callable<SshMachineLocation>() {
+                        @Override public SshMachineLocation call() throws Exception {
+                            return provisioner2.obtain();
+                        }
+                    }));
+                }
+                Set<SshMachineLocation> obtained = Sets.newLinkedHashSet();
+                for (Future<SshMachineLocation> future : futures) {
+                    obtained.add(future.get());
+                }
+                assertEquals(obtained, ImmutableSet.copyOf(machines));
+                assertEquals(provisioner2.getAvailable(), ImmutableSet.of());
+                
+                for (SshMachineLocation m : obtained) {
+                    provisioner2.release(m);
+                }
+                assertEquals(provisioner2.getAvailable(), ImmutableSet.copyOf(machines));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
     @Test
     @SuppressWarnings("unchecked")
     public void testMachineChooser() throws Exception {
@@ -547,6 +597,88 @@ public class FixedListMachineProvisioningLocationTest extends BrooklynMgmtUnitTe
         assertEquals(releasedVal, "myval");
     }
 
+    /** Adds the next of the given machines when asked to provision more, optionally then blocking or failing. */
+    private static class ProvisioningLocation extends FixedListMachineProvisioningLocation<SshMachineLocation> {
+        final List<SshMachineLocation> toAdd = Lists.newCopyOnWriteArrayList();
+        final CountDownLatch added = new CountDownLatch(1);
+        volatile CountDownLatch proceed;
+        volatile boolean failing;
+
+        ProvisioningLocation() {
+            super(MutableMap.of("machines", MutableList.of()));
+        }
+
+        @Override
+        protected boolean canProvisionMore() {
+            return !toAdd.isEmpty();
+        }
+
+        @Override
+        protected void provisionMore(int size, Map<?, ?> flags) {
+            addMachine(toAdd.remove(0));
+            added.countDown();
+            if (proceed != null) {
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    throw Exceptions.propagate(e);
+                }
+            }
+            if (failing) {
+                throw new IllegalStateException("Simulated failure part-way through provisioning");
+            }
+        }
+    }
+
+    @Test
+    public void testAllocatesConcurrentlyWhileProvisioningMore() throws Exception {
+        final ProvisioningLocation location = new ProvisioningLocation();
+        SshMachineLocation existing = new SshMachineLocation(MutableMap.of("address", Networking.getInetAddressWithFixedName("1.1.1.1")));
+        SshMachineLocation provisioned = new SshMachineLocation(MutableMap.of("address", Networking.getInetAddressWithFixedName("1.1.1.2")));
+        location.addMachine(existing);
+        assertEquals(location.obtain(), existing);
+
+        location.toAdd.add(provisioned);
+        location.proceed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SshMachineLocation> future = executor.submit(new Callable<SshMachineLocation>() {
+                @Override public SshMachineLocation call() throws Exception {
+                    return location.obtain();
+                }
+            });
+            assertTrue(location.added.await(30, TimeUnit.SECONDS));
+
+            // while provisionMore is blocked, others can release and obtain, but not take the machine it added
+            location.release(existing);
+            assertEquals(location.obtain(), existing);
+            assertFalse(future.isDone());
+
+            location.proceed.countDown();
+            assertEquals(future.get(30, TimeUnit.SECONDS), provisioned);
+            assertEquals(location.getInUse(), ImmutableSet.of(existing, provisioned));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMachinesAddedByFailedProvisionMoreMadeFree() throws Exception {
+        ProvisioningLocation location = new ProvisioningLocation();
+        SshMachineLocation provisioned = new SshMachineLocation(MutableMap.of("address", Networking.getInetAddressWithFixedName("1.1.1.2")));
+        location.toAdd.add(provisioned);
+        location.failing = true;
+
+        try {
+            location.obtain();
+            fail();
+        } catch (IllegalStateException e) {
+            Asserts.expectedFailureContains(e, "Simulated failure");
+        }
+        assertEquals(location.getAvailable(), ImmutableSet.of(provisioned));
+        assertEquals(location.obtain(), provisioned);
+    }
+
     private static <T> List<T> randomized(Iterable<T> list) {
         // TODO inefficient implementation, but don't care for small tests
         Random random = new Random();
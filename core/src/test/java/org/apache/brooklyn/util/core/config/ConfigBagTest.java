@@ -136,6 +136,90 @@ public class ConfigBagTest {
         assertEquals(bag1.getUnusedConfig().size(), 0);
     }
 
+    @Test
+    public void testCopyIsIndependentOfOriginal() {
+        ConfigBag bag1 = ConfigBag.newInstance();
+        bag1.put(K1, "v1");
+        bag1.put(K2, "v2a");
+        assertEquals(bag1.get(K1), "v1");
+        
+        // copies share the original's maps until modified, but changes to either are not seen by the other
+        ConfigBag bag2 = ConfigBag.newInstanceCopying(bag1);
+        ConfigBag bag3 = ConfigBag.newInstanceCopying(bag1);
+        bag1.put(K2, "v2b");
+        bag1.put(K3, "v3");
+        assertEquals(bag2.getAllConfig(), ImmutableMap.of(K1.getName(), "v1", K2.getName(), "v2a"));
+        assertEquals(bag2.getUnusedConfig(), ImmutableMap.of(K2.getName(), "v2a"));
+        
+        bag2.remove(K1);
+        bag2.getAllConfigMutable().put(K3.getName(), "v3c");
+        assertEquals(bag1.getAllConfig(), ImmutableMap.of(K1.getName(), "v1", K2.getName(), "v2b", K3.getName(), "v3"));
+        assertEquals(bag3.getAllConfig(), ImmutableMap.of(K1.getName(), "v1", K2.getName(), "v2a"));
+        
+        assertEquals(bag3.get(K2), "v2a");
+        assertEquals(bag3.getUnusedConfig(), ImmutableMap.of());
+        assertEquals(bag1.getUnusedConfig(), ImmutableMap.of(K2.getName(), "v2b", K3.getName(), "v3"));
+        assertEquals(bag2.getUnusedConfig(), ImmutableMap.of(K2.getName(), "v2a"));
+    }
+
+    @Test
+    public void testMutableMapHandedOutIsNotShared() {
+        ConfigBag bag1 = ConfigBag.newInstance();
+        bag1.put(K1, "v1");
+        Map<String, Object> mutable1 = bag1.getAllConfigMutable();
+        Map<String, Object> unused1 = bag1.getUnusedConfigMutable();
+        
+        // modifying the maps handed out earlier must not change the copy
+        ConfigBag bag2 = ConfigBag.newInstanceCopying(bag1);
+        mutable1.put(K2.getName(), "v2");
+        unused1.remove(K1.getName());
+        assertEquals(bag2.getAllConfig(), ImmutableMap.of(K1.getName(), "v1"));
+        assertEquals(bag2.getUnusedConfig(), ImmutableMap.of(K1.getName(), "v1"));
+        assertEquals(bag1.getAllConfig(), ImmutableMap.of(K1.getName(), "v1", K2.getName(), "v2"));
+        
+        // nor must copying into a bag detach a map already handed out from it
+        ConfigBag bag3 = ConfigBag.newInstance();
+        Map<String, Object> mutable3 = bag3.getAllConfigMutable();
+        bag3.copy(bag2);
+        assertEquals(mutable3, ImmutableMap.of(K1.getName(), "v1"));
+    }
+    
+    @Test
+    public void testAllConfigRawDoesNotCopySharedMap() {
+        ConfigBag bag1 = ConfigBag.newInstance();
+        bag1.put(K1, "v1");
+        ConfigBag bag2 = ConfigBag.newInstanceCopying(bag1);
+        
+        Map<String, Object> raw2 = bag2.getAllConfigRaw();
+        assertEquals(raw2, ImmutableMap.of(K1.getName(), "v1"));
+        try {
+            raw2.put(K2.getName(), "v2");
+            Assert.fail("shared map should not be modifiable; raw="+raw2);
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        
+        // still shared, so a further copy also shares it; writes to either are not seen by the other
+        ConfigBag bag3 = ConfigBag.newInstanceCopying(bag2);
+        bag2.put(K2, "v2");
+        assertEquals(bag3.getAllConfig(), ImmutableMap.of(K1.getName(), "v1"));
+        assertEquals(bag1.getAllConfig(), ImmutableMap.of(K1.getName(), "v1"));
+    }
+    
+    @Test
+    public void testCopyOfSealedCanBeModified() {
+        ConfigBag bag1 = ConfigBag.newInstance(ImmutableMap.of(K1, "v1")).seal();
+        ConfigBag bag2 = ConfigBag.newInstanceCopying(bag1).configure(K2, "v2");
+        assertEquals(bag2.getAllConfig(), ImmutableMap.of(K1.getName(), "v1", K2.getName(), "v2"));
+        assertEquals(bag1.getAllConfig(), ImmutableMap.of(K1.getName(), "v1"));
+        try {
+            bag1.put(K2, "v2");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected, sealed
+        }
+    }
+
     @Test
     public void testCopyKey() throws InterruptedException {
         ConfigBag bag = ConfigBag.newInstance();
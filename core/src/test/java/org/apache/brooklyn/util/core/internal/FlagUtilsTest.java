@@ -93,6 +93,17 @@ public class FlagUtilsTest {
         assertEquals(m2, m);
     }
     
+    @Test
+    public void testSetStaticAndFinalFieldsFromFlags() {
+        WithStaticAndFinalFields o = new WithStaticAndFinalFields();
+        for (String val : ImmutableList.of("v1", "v2")) {
+            // the second time uses the cached setters
+            FlagUtils.setFieldsFromFlags(ImmutableMap.of("s", val, "f", val), o);
+            assertEquals(WithStaticAndFinalFields.s, val);
+            assertEquals(o.f, val);
+        }
+    }
+
     @Test
     public void testCollectionCoercionOnSetFromFlags() {
         WithSpecialFieldTypes s = new WithSpecialFieldTypes();
@@ -340,6 +351,11 @@ public class FlagUtilsTest {
         public Object b;
     }
     
+    public static class WithStaticAndFinalFields {
+        @SetFromFlag static String s;
+        @SetFromFlag final String f = null;
+    }
+    
     public static class WithSpecialFieldTypes {
         @SetFromFlag Set<?> set;
         @SetFromFlag InetAddress inet;
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.osgi;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.zip.ZipEntry;
+
+import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class BundleIndexTest extends BrooklynMgmtUnitTestSupport {
+
+    private Framework framework;
+    private BundleMaker bundleMaker;
+    private List<File> tempFiles;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        mgmt = LocalManagementContextForTests.builder(true).enableOsgiReusable().build();
+        super.setUp();
+        framework = mgmt.getOsgiManager().get().getFramework();
+        bundleMaker = new BundleMaker(mgmt);
+        tempFiles = MutableList.of();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        if (tempFiles != null) {
+            for (File f : tempFiles) f.delete();
+        }
+    }
+
+    @Test
+    public void testIndexTracksInstallAndUninstall() throws Exception {
+        String name = "bundle-index-test-"+Identifiers.makeRandomId(8);
+        BundleIndex index = BundleIndex.forFramework(framework);
+        assertNotNull(index);
+        assertSame(BundleIndex.forFramework(framework), index);
+        assertTrue(index.getBundles(name).isEmpty());
+
+        Bundle bundle = installBundle(name, "1.0.0");
+        assertEquals(index.getBundles(name), MutableList.of(bundle));
+        assertEquals(Osgis.bundleFinder(framework).symbolicName(name).find().get(), bundle);
+        assertEquals(Osgis.bundleFinder(framework).requiringFromUrl(bundle.getLocation()).find().get(), bundle);
+
+        bundle.uninstall();
+        assertTrue(index.getBundles(name).isEmpty());
+        assertFalse(Osgis.bundleFinder(framework).symbolicName(name).find().isPresent());
+    }
+
+    @Test
+    public void testReleaseRemovesIndexAndListener() throws Exception {
+        String name = "bundle-index-test-"+Identifiers.makeRandomId(8);
+        BundleIndex index = BundleIndex.forFramework(framework);
+        BundleIndex.release(framework);
+
+        installBundle(name, "1.0.0");
+        assertTrue(index.getBundles(name).isEmpty());
+
+        BundleIndex newIndex = BundleIndex.forFramework(framework);
+        assertNotSame(newIndex, index);
+        assertEquals(newIndex.getBundles(name).size(), 1);
+    }
+
+    @Test
+    public void testFinderReturnsHighestVersion() throws Exception {
+        String name = "bundle-index-test-"+Identifiers.makeRandomId(8);
+        installBundle(name, "1.0.0");
+        Bundle b2 = installBundle(name, "2.0.0");
+        installBundle(name, "1.5.0");
+
+        assertEquals(BundleIndex.forFramework(framework).getBundles(name).size(), 3);
+        assertEquals(Osgis.bundleFinder(framework).symbolicName(name).find().get(), b2);
+        assertEquals(Osgis.bundleFinder(framework).symbolicName(name).version("1.5.0").findAll().size(), 1);
+    }
+
+    @Test
+    public void testClassCacheHitsAndInvalidatedOnInstall() throws Exception {
+        BundleIndex index = BundleIndex.forFramework(framework);
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<Maybe<Class<?>>> loader = new Callable<Maybe<Class<?>>>() {
+            @Override
+            public Maybe<Class<?>> call() {
+                loads.incrementAndGet();
+                return Maybe.<Class<?>>of(String.class);
+            }
+        };
+        Object key = "key-"+Identifiers.makeRandomId(8);
+
+        assertEquals(index.getOrLoadClass(key, loader).get(), String.class);
+        assertEquals(index.getOrLoadClass(key, loader).get(), String.class);
+        assertEquals(loads.get(), 1);
+
+        installBundle("bundle-index-test-"+Identifiers.makeRandomId(8), "1.0.0");
+        assertEquals(index.getOrLoadClass(key, loader).get(), String.class);
+        assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testClassCacheCachesNegativeResults() throws Exception {
+        BundleIndex index = BundleIndex.forFramework(framework);
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<Maybe<Class<?>>> loader = new Callable<Maybe<Class<?>>>() {
+            @Override
+            public Maybe<Class<?>> call() {
+                loads.incrementAndGet();
+                return Maybe.absent("not found");
+            }
+        };
+        Object key = "key-"+Identifiers.makeRandomId(8);
+
+        assertFalse(index.getOrLoadClass(key, loader).isPresent());
+        assertFalse(index.getOrLoadClass(key, loader).isPresent());
+        assertEquals(loads.get(), 1);
+
+        index.invalidateClassCache();
+        assertFalse(index.getOrLoadClass(key, loader).isPresent());
+        assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testResultLoadedDuringInvalidationNotCached() throws Exception {
+        final BundleIndex index = BundleIndex.forFramework(framework);
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<Maybe<Class<?>>> loader = new Callable<Maybe<Class<?>>>() {
+            @Override
+            public Maybe<Class<?>> call() {
+                // the first load races with an invalidation (e.g. a bundle being installed)
+                if (loads.incrementAndGet() == 1) {
+                    index.invalidateClassCache();
+                }
+                return Maybe.absent("not found");
+            }
+        };
+        Object key = "key-"+Identifiers.makeRandomId(8);
+
+        assertFalse(index.getOrLoadClass(key, loader).isPresent());
+        assertFalse(index.getOrLoadClass(key, loader).isPresent());
+        assertEquals(loads.get(), 2);
+        assertFalse(index.getOrLoadClass(key, loader).isPresent());
+        assertEquals(loads.get(), 2);
+    }
+
+    private Bundle installBundle(String symbolicName, String version) throws Exception {
+        File jar = bundleMaker.createTempBundle(symbolicName, ImmutableMap.of(
+                Attributes.Name.MANIFEST_VERSION.toString(), "1.0",
+                Constants.BUNDLE_MANIFESTVERSION, "2",
+                Constants.BUNDLE_SYMBOLICNAME, symbolicName,
+                Constants.BUNDLE_VERSION, version),
+            MutableMap.<ZipEntry, InputStream>of());
+        tempFiles.add(jar);
+        return Osgis.install(framework, "file://"+jar.getAbsolutePath());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.util.core.task.TaskStatistics.LatencyHistogram;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.Test;
+
+public class TaskStatisticsTest extends BrooklynAppUnitTestSupport {
+
+    private TaskStatistics stats() {
+        return ((BasicExecutionManager) mgmt.getExecutionManager()).getTaskStatistics();
+    }
+
+    @Test
+    public void testNothingRecordedWhenDisabled() throws Exception {
+        assertFalse(stats().isEnabled());
+        runEffectorTask(Duration.ZERO);
+        assertEquals(stats().getCount(TaskStatistics.CATEGORY_EFFECTOR), 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRecordsByCategoryAndEntityType() throws Exception {
+        stats().setEnabled(true);
+        runEffectorTask(Duration.millis(50));
+        mgmt.getExecutionManager().submit(Tasks.builder().displayName("other").body(new Runnable() {
+            @Override public void run() {}
+        }).build()).get();
+
+        assertEquals(stats().getCount(TaskStatistics.CATEGORY_EFFECTOR), 1);
+        assertTrue(stats().getCount(TaskStatistics.CATEGORY_OTHER) >= 1);
+        assertTrue(stats().getRunTimePercentileMillis(TaskStatistics.CATEGORY_EFFECTOR, 50) >= 50);
+
+        Map<String, Object> result = stats().getStatistics();
+        Map<String, Object> entityTypes = (Map<String, Object>) result.get("entityTypes");
+        Map<String, Object> appCategories = (Map<String, Object>) entityTypes.get(app.getEntityType().getName());
+        assertTrue(appCategories.containsKey(TaskStatistics.CATEGORY_EFFECTOR), "result="+result);
+        assertFalse(appCategories.containsKey(TaskStatistics.CATEGORY_OTHER), "result="+result);
+
+        stats().reset();
+        assertEquals(stats().getCount(TaskStatistics.CATEGORY_EFFECTOR), 0);
+
+        stats().setEnabled(false);
+        runEffectorTask(Duration.ZERO);
+        assertEquals(stats().getCount(TaskStatistics.CATEGORY_EFFECTOR), 0);
+    }
+
+    @Test
+    public void testCategoryOf() throws Exception {
+        assertEquals(TaskStatistics.categoryOf(Tasks.builder().body(new Runnable() { @Override public void run() {} })
+                .tag(BrooklynTaskTags.SENSOR_TAG).build()), TaskStatistics.CATEGORY_SENSOR);
+        assertEquals(TaskStatistics.categoryOf(Tasks.builder().body(new Runnable() { @Override public void run() {} })
+                .tag(BrooklynTaskTags.PERSISTENCE_TAG).build()), TaskStatistics.CATEGORY_PERSISTENCE);
+    }
+
+    @Test
+    public void testHistogramBuckets() throws Exception {
+        for (long value : new long[] {0, 1, 7, 8, 15, 16, 17, 100, 1000, 123456789, LatencyHistogram.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long highest = LatencyHistogram.highestValueIn(bucket);
+            assertTrue(highest >= value && highest <= value * 1.125 + 1, "value="+value+"; highest="+highest);
+            assertEquals(LatencyHistogram.bucketOf(highest), bucket, "value="+value);
+            assertEquals(LatencyHistogram.bucketOf(highest + 1), bucket + 1, "value="+value);
+        }
+    }
+
+    @Test
+    public void testHistogramPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(histogram.getCount(), 1000);
+        assertEquals(histogram.getMax(), 1000);
+        assertEquals(histogram.getMean(), 500.5, 0.001);
+        assertInRange(histogram.getPercentile(50), 500, 500*1.125);
+        assertInRange(histogram.getPercentile(99), 990, 1000);
+        assertEquals(histogram.getPercentile(100), 1000);
+    }
+
+    private void assertInRange(long actual, double min, double max) {
+        assertTrue(actual >= min && actual <= max, "actual="+actual+"; min="+min+"; max="+max);
+    }
+
+    private void runEffectorTask(final Duration duration) throws Exception {
+        Task<Void> task = Tasks.<Void>builder().displayName("myeffector").tag(BrooklynTaskTags.EFFECTOR_TAG)
+                .body(new Callable<Void>() {
+                    @Override public Void call() {
+                        Time.sleep(duration);
+                        return null;
+                    }})
+                .build();
+        ((EntityInternal) app).getExecutionContext().submit(task).get();
+    }
+}
@@ -23,6 +23,7 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.xpath.XPathConstants;
 
@@ -37,6 +38,7 @@ import com.google.common.annotations.Beta;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 public class XmlUtilTest {
@@ -123,6 +125,36 @@ public class XmlUtilTest {
         assertEquals(XmlUtil.xpathHandlingIllegalChars(xml.toString(), "/a/b[text()]"), "myb");
     }
 
+    @Test
+    public void testReadRootChildren() throws Exception {
+        String xml = "<entity><brooklynVersion>1</brooklynVersion><type>my.Type</type><id>myid</id>"
+                + "<config><id>not-this-id</id></config>"
+                + "<searchPath><string>a:1</string><string>b:2</string></searchPath>"
+                + "<other><nested>x</nested></other></entity>";
+        Map<String, Object> result = XmlUtil.readRootChildren(xml, ImmutableSet.of("id", "type", "parent"), ImmutableSet.of("searchPath"));
+        assertEquals(result.get("id"), "myid");
+        assertEquals(result.get("type"), "my.Type");
+        assertFalse(result.containsKey("parent"));
+        assertEquals(result.get("searchPath"), ImmutableList.of("a:1", "b:2"));
+    }
+
+    @Test
+    public void testReadRootChildrenSameAsXpath() throws Exception {
+        String xml = "<?xml version=\"1.0\" ?>\n<location>\n  <id>myid</id>\n  <type>my.<![CDATA[Type]]></type>\n  <parent>p &amp; q</parent>\n</location>";
+        Map<String, Object> result = XmlUtil.readRootChildren(xml, ImmutableSet.of("id", "type", "parent"), ImmutableSet.<String>of());
+        for (String field : ImmutableList.of("id", "type", "parent")) {
+            assertEquals(result.get(field), XmlUtil.xpath(xml, "/location/"+field), field);
+        }
+    }
+
+    @Test
+    public void testReadRootChildrenHandlingIllegalChars() throws Exception {
+        String xml = "<a><c>&#x1b;</c><b>my&#x1b;b</b><d><string>BR_UNICODE_x1b;</string></d></a>";
+        Map<String, Object> result = XmlUtil.readRootChildren(xml, ImmutableSet.of("b"), ImmutableSet.of("d"));
+        assertEquals(result.get("b"), "my&#x1b;b");
+        assertEquals(result.get("d"), ImmutableList.of("BR_UNICODE_x1b;"));
+    }
+
     @Test
     public void testEscaper() throws Exception {
         // Escapes unicode char, ignoring things around it
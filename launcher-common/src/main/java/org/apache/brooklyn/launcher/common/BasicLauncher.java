@@ -24,6 +24,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 
@@ -31,6 +32,7 @@ import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityManager;
 import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
 import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
@@ -63,10 +65,12 @@ import org.apache.brooklyn.core.mgmt.rebind.transformer.CompoundTransformer;
 import org.apache.brooklyn.core.mgmt.rebind.transformer.impl.DeleteOrphanedStateTransformer;
 import org.apache.brooklyn.core.server.BrooklynServerConfig;
 import org.apache.brooklyn.core.server.BrooklynServerPaths;
+import org.apache.brooklyn.core.server.StartupProfile;
 import org.apache.brooklyn.entity.brooklynnode.BrooklynNode;
 import org.apache.brooklyn.entity.brooklynnode.LocalBrooklynNode;
 import org.apache.brooklyn.entity.software.base.SoftwareProcess;
 import org.apache.brooklyn.entity.stock.BasicApplication;
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.exceptions.FatalConfigurationRuntimeException;
 import org.apache.brooklyn.util.exceptions.FatalRuntimeException;
@@ -127,6 +131,12 @@ public class BasicLauncher<T extends BasicLauncher<T>> {
     
     protected boolean started;
     
+    private boolean parallelStartup = false;
+    /** the task starting the web console, if started in the background; null once waited for */
+    private Task<?> startingUpTask;
+    private final AtomicReference<Throwable> startingUpError = new AtomicReference<Throwable>();
+    private final StartupProfile startupProfile = new StartupProfile();
+    
     private BrooklynProperties.Factory.Builder brooklynPropertiesBuilder;
 
     private CampPlatform campPlatform;
@@ -292,6 +302,17 @@ public class BasicLauncher<T extends BasicLauncher<T>> {
         return self();
     }
 
+    /**
+     * Whether to start the web console in the background (defaults to false). It then overlaps only with
+     * initialising CAMP and {@link #initPersistence()} (preparing the object store and HA persister);
+     * it is waited for before {@link #startPersistence()}, so a failure to start it stops startup
+     * before rebinding or HA promotion.
+     */
+    public T parallelStartup(boolean val) {
+        this.parallelStartup = val;
+        return self();
+    }
+
     /**
      * @param destinationDir Directory for state to be copied to
      */
@@ -370,31 +391,78 @@ public class BasicLauncher<T extends BasicLauncher<T>> {
 
     /**
      * Starts the web server (with web console) and Brooklyn applications, as per the specifications configured. 
+     * <p>
+     * If {@link #parallelStartup(boolean) enabled}, the web console is started in the background, overlapping
+     * only with initialising CAMP and {@link #initPersistence()}; it is waited for before rebinding or HA promotion.
+     * The timing of each phase is recorded in the {@link #getStartupProfile() startup profile}.
      * @return An object containing details of the web server and the management context.
      */
     public T start() {
         if (started) throw new IllegalStateException("Cannot start() or launch() multiple times");
         started = true;
 
+        StartupProfile.Phase phase = startupProfile.start("managementContext");
         initManagementContext();
+        managementContext.getScratchpad().put(StartupProfile.STARTUP_PROFILE, startupProfile);
+        phase.end();
 
         CatalogInitialization catInit = ((ManagementContextInternal)managementContext).getCatalogInitialization();
 
         markCatalogStartingUp(catInit);
         
-        // note: web console is started by subclass overriding this method
-        startingUp();
+        // note: web console is started by subclass overriding this method;
+        // it needs only the management context, so can run alongside initCamp and initPersistence
+        final StartupProfile.Phase startingUpPhase = startupProfile.start("startingUp");
+        Runnable startingUpJob = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    startingUp();
+                    startingUpPhase.end();
+                } catch (Throwable e) {
+                    startingUpPhase.failed(e);
+                    startingUpError.set(e);
+                }
+            }
+        };
+        if (parallelStartup) {
+            startingUpTask = managementContext.getServerExecutionContext().submit(
+                    MutableMap.of("displayName", "Starting up web console"), startingUpJob);
+        } else {
+            startingUpJob.run();
+            awaitStartingUp();
+        }
         
+        phase = startupProfile.start("camp");
         initCamp();
+        phase.end();
+        phase = startupProfile.start("persistence");
         handlePersistence();
+        phase.end();
+        phase = startupProfile.start("catalog");
         populateCatalog(catInit);
         markCatalogStarted(catInit);
+        phase.end();
+        phase = startupProfile.start("locations");
         addLocations();
+        phase.end();
+        
+        awaitStartingUp();
         markStartupComplete();
+        
+        phase = startupProfile.start("apps");
         initApps();
+        phase.end();
+        phase = startupProfile.start("brooklynNode");
         initBrooklynNode();
+        phase.end();
 
+        phase = startupProfile.start("persist");
         persist();
+        phase.end();
+        
+        startupProfile.complete();
+        LOG.info("Brooklyn startup profile: "+startupProfile.toReport());
         return self();
     }
 
@@ -468,12 +536,29 @@ public class BasicLauncher<T extends BasicLauncher<T>> {
     protected void handlePersistence() {
         try {
             initPersistence();
+        } catch (Exception e) {
+            handleSubsystemStartupError(ignorePersistenceErrors, "persistence", e);
+            return;
+        }
+        // before rebinding or HA promotion, so that we do not become master (e.g. taking over from another node) 
+        // if the web console could not start
+        awaitStartingUp();
+        try {
             startPersistence();
         } catch (Exception e) {
             handleSubsystemStartupError(ignorePersistenceErrors, "persistence", e);
         }
     }
 
+    /** Waits for the web console to have started, if starting in the background, rethrowing any error from it. */
+    protected void awaitStartingUp() {
+        if (startingUpTask != null) {
+            startingUpTask.blockUntilEnded();
+            startingUpTask = null;
+        }
+        if (startingUpError.get() != null) throw Exceptions.propagate(startingUpError.get());
+    }
+
     protected void initCamp() {
         // Add a CAMP platform
         campPlatform = new BrooklynCampPlatformLauncherNoServer()
@@ -715,6 +800,12 @@ public class BasicLauncher<T extends BasicLauncher<T>> {
         return locations;
     }
 
+    /** The timings of the phases of {@link #start()}; also available from the management context's scratchpad. */
+    @Beta
+    public StartupProfile getStartupProfile() {
+        return startupProfile;
+    }
+
     public CampPlatform getCampPlatform() {
         return campPlatform;
     }
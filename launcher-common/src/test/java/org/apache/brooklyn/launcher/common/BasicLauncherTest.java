@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.launcher.common;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.persist.PersistMode;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.test.Asserts;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BasicLauncherTest {
+
+    private ManagementContext mgmt;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        mgmt = LocalManagementContextForTests.newInstance();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (mgmt != null) Entities.destroyAll(mgmt);
+    }
+
+    @Test
+    public void testParallelStartupFailureStopsStartupBeforeHaPromotion() throws Exception {
+        RecordingLauncher launcher = new RecordingLauncher()
+                .managementContext(mgmt)
+                .persistMode(PersistMode.DISABLED)
+                .highAvailabilityMode(HighAvailabilityMode.DISABLED)
+                .parallelStartup(true);
+        try {
+            launcher.start();
+            Asserts.shouldHaveFailedPreviously();
+        } catch (Exception e) {
+            Asserts.expectedFailureContains(e, "web console failed");
+        }
+        // the web console was started alongside initialising persistence, but its failure stopped startup
+        // before persistence and the HA manager were started
+        assertTrue(launcher.persistenceInitialised);
+        assertFalse(launcher.persistenceStarted);
+    }
+
+    private static class RecordingLauncher extends BasicLauncher<RecordingLauncher> {
+        private final CountDownLatch initPersistenceCalled = new CountDownLatch(1);
+        private volatile boolean persistenceInitialised;
+        private volatile boolean persistenceStarted;
+
+        @Override
+        protected void startingUp() {
+            try {
+                assertTrue(initPersistenceCalled.await(Asserts.DEFAULT_LONG_TIMEOUT.toMilliseconds(), TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            throw new IllegalStateException("Simulating web console failed to start");
+        }
+
+        @Override
+        protected void initPersistence() {
+            super.initPersistence();
+            persistenceInitialised = true;
+            initPersistenceCalled.countDown();
+        }
+
+        @Override
+        protected void startPersistence() {
+            persistenceStarted = true;
+            super.startPersistence();
+        }
+    }
+}
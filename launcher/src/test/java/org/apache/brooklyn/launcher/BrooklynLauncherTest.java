@@ -26,6 +26,7 @@ import static org.testng.Assert.assertTrue;
 
 import java.io.File;
 import java.net.URI;
+import java.util.List;
 
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.EntitySpec;
@@ -36,6 +37,7 @@ import org.apache.brooklyn.core.internal.BrooklynProperties;
 import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.server.BrooklynServerConfig;
+import org.apache.brooklyn.core.server.StartupProfile;
 import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
 import org.apache.brooklyn.core.test.entity.TestApplication;
 import org.apache.brooklyn.core.test.entity.TestApplicationImpl;
@@ -62,6 +64,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 
 public class BrooklynLauncherTest {
@@ -151,6 +154,24 @@ public class BrooklynLauncherTest {
         Assert.assertTrue( ((ManagementContextInternal)launcher.getServerDetails().getManagementContext()).errors().isEmpty() );
     }
     
+    @Test
+    public void testRecordsStartupProfile() throws Exception {
+        launcher = newLauncherForTests(true)
+                .webconsole(false)
+                .application(EntitySpec.create(TestApplication.class))
+                .start();
+        
+        StartupProfile profile = launcher.getStartupProfile();
+        assertTrue(profile.isComplete());
+        List<String> phases = Lists.newArrayList();
+        for (StartupProfile.Phase phase : profile.getPhases()) {
+            assertTrue(phase.isEnded(), "phase="+phase.getName());
+            phases.add(phase.getName());
+        }
+        assertTrue(phases.containsAll(ImmutableList.of("managementContext", "startingUp", "persistence", "catalog", "apps")), "phases="+phases);
+        assertSame(launcher.getManagementContext().getScratchpad().get(StartupProfile.STARTUP_PROFILE), profile);
+    }
+    
     @Test
     public void testStartsAppInstance() throws Exception {
         launcher = newLauncherForTests(true)
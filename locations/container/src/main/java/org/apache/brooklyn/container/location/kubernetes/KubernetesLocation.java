@@ -65,6 +65,7 @@ import org.apache.brooklyn.util.core.config.ConfigBag;
 import org.apache.brooklyn.util.core.config.ResolvingConfigBag;
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
 import org.apache.brooklyn.util.core.text.TemplateProcessor;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.exceptions.ReferenceWithError;
 import org.apache.brooklyn.util.net.Networking;
 import org.apache.brooklyn.util.repeat.Repeater;
@@ -240,7 +241,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
                 return "No service with namespace=" + namespace + ", serviceName=" + service;
             }
         };
-        waitForExitCondition(exitCondition);
+        waitForExitCondition(exitCondition, namespace, service, KubernetesResourceWatches.Kind.SERVICES);
 
         Boolean delete = machine.config().get(DELETE_EMPTY_NAMESPACE);
         if (delete) {
@@ -297,7 +298,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
                 return "No deployment with namespace=" + namespace + ", deployment=" + deployment;
             }
         };
-        waitForExitCondition(exitCondition);
+        waitForExitCondition(exitCondition, namespace, deployment, KubernetesResourceWatches.Kind.DEPLOYMENTS);
     }
 
     protected synchronized void deleteEmptyNamespace(final String name) {
@@ -316,7 +317,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
                         return "Namespace " + name + " still present";
                     }
                 };
-                waitForExitCondition(exitCondition);
+                waitForExitCondition(exitCondition, name, name, KubernetesResourceWatches.Kind.NAMESPACES);
             }
         }
     }
@@ -580,7 +581,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
         } else {
             throw new IllegalStateException("Namespace " + name + " does not exist and namespace.create is not set");
         }
-        waitForExitCondition(namespaceReady);
+        waitForExitCondition(namespaceReady, name, name, KubernetesResourceWatches.Kind.NAMESPACES);
         return client.namespaces().withName(name).get();
     }
 
@@ -597,7 +598,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
                 return "Cannot find pod with name: " + name;
             }
         };
-        waitForExitCondition(exitCondition);
+        waitForExitCondition(exitCondition, namespace, name, KubernetesResourceWatches.Kind.PODS);
         Pod result = client.pods().inNamespace(namespace).withName(name).get();
         return result;
     }
@@ -615,7 +616,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
                 return "Cannot find pod with metadata: " + Joiner.on(" ").withKeyValueSeparator("=").join(metadata);
             }
         };
-        waitForExitCondition(exitCondition);
+        waitForExitCondition(exitCondition, namespace, null, KubernetesResourceWatches.Kind.PODS);
         PodList result = client.pods().inNamespace(namespace).withLabels(metadata).list();
         return result.getItems().get(0);
     }
@@ -659,7 +660,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
                 return "Absent namespace=" + namespace + ", secretName=" + secretName;
             }
         };
-        waitForExitCondition(exitCondition);
+        waitForExitCondition(exitCondition, namespace, secretName, KubernetesResourceWatches.Kind.SECRETS);
         return client.secrets().inNamespace(namespace).withName(secretName).get();
     }
 
@@ -741,7 +742,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
                         + "; availableReplicas=" + (status == null ? "null" : status.getAvailableReplicas());
             }
         };
-        waitForExitCondition(exitCondition);
+        waitForExitCondition(exitCondition, namespace, deploymentName, KubernetesResourceWatches.Kind.DEPLOYMENTS);
         LOG.debug("Deployed deployment {} in namespace {}.", deployment, namespace);
     }
 
@@ -790,7 +791,7 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
                 return "Service endpoints in " + namespace + " for serviceName= " + serviceName + " not ready: " + endpoints;
             }
         };
-        waitForExitCondition(exitCondition);
+        waitForExitCondition(exitCondition, namespace, serviceName, KubernetesResourceWatches.Kind.SERVICES, KubernetesResourceWatches.Kind.ENDPOINTS);
 
         return client.services().inNamespace(namespace).withName(serviceName).get();
     }
@@ -1035,6 +1036,30 @@ public class KubernetesLocation extends AbstractLocation implements MachineProvi
         waitForExitCondition(exitCondition, Duration.ONE_SECOND, Duration.FIVE_MINUTES);
     }
 
+    /**
+     * As {@link #waitForExitCondition(ExitCondition)}, but if {@link #USE_WATCHES} is set, re-checks the condition
+     * when resources of the given kinds and name (or any name, if null) change in the namespace
+     * (using {@link KubernetesResourceWatches}), rather than polling.
+     */
+    public void waitForExitCondition(ExitCondition exitCondition, String namespace, @Nullable String name, KubernetesResourceWatches.Kind... kinds) {
+        if (!Boolean.TRUE.equals(config().get(USE_WATCHES))) {
+            waitForExitCondition(exitCondition);
+            return;
+        }
+        Duration duration = Duration.FIVE_MINUTES;
+        boolean result;
+        try {
+            result = KubernetesResourceWatches.forClient(getClient()).waitFor(exitCondition, namespace, name, duration, kinds);
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+        if (!result) {
+            String err = "Exit condition unsatisfied after " + duration + ": " + exitCondition.getFailureMessage();
+            LOG.info(err + " (rethrowing)");
+            throw new IllegalStateException(err);
+        }
+    }
+
     public void waitForExitCondition(ExitCondition exitCondition, Duration initial, Duration duration) {
         ReferenceWithError<Boolean> result = Repeater.create()
                 .backoff(initial, 1.2, duration)
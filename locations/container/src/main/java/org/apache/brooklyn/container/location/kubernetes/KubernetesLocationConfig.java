@@ -115,6 +115,14 @@ public interface KubernetesLocationConfig extends CloudLocationConfig {
             .constraint(Predicates.<Duration>notNull())
             .build();
 
+    ConfigKey<Boolean> USE_WATCHES = ConfigKeys.builder(Boolean.class)
+            .name("useWatches")
+            .description("Whether to wait for resources to become ready or be deleted by watching for changes, "
+                    + "with one watch per namespace and kind of resource shared by concurrent provisionings "
+                    + "(falling back to polling if watches repeatedly fail); if false (the default), polls each resource")
+            .defaultValue(false)
+            .build();
+
     ConfigKey<Boolean> CREATE_NAMESPACE = ConfigKeys.builder(Boolean.class)
             .name("namespace.create")
             .description("Whether to create the namespace if it does not exist")
@@ -0,0 +1,422 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.container.location.kubernetes;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.container.location.kubernetes.KubernetesLocation.ExitCondition;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+
+/**
+ * Waits for conditions on Kubernetes resources by watching for changes, rather than by polling.
+ * <p>
+ * There is at most one watch per client, namespace and kind of resource, shared by all threads waiting
+ * on resources of that kind (e.g. all concurrent provisionings in the namespace), and closed when none
+ * are waiting. A waiting thread re-checks its condition only when a resource of a kind it is waiting
+ * on changes, so the condition's requests are made once per relevant change rather than every second.
+ * A thread waiting on a named resource is woken only by changes to resources of that name, so that
+ * concurrent waits in a namespace do not all re-check their conditions on every change in it.
+ * The condition is also re-checked every {@link #RECHECK_INTERVAL} in case events are missed (e.g. while
+ * a watch is re-established).
+ * <p>
+ * A watch which cannot be opened, or which closes soon after opening, is re-opened with exponential backoff.
+ * After {@link #MAX_WATCH_FAILURES} consecutive failures the watch is abandoned and waits on that kind and
+ * namespace poll instead (from {@link #POLL_INTERVAL}, backing off to {@link #RECHECK_INTERVAL}), for
+ * {@link #POLLING_FALLBACK_PERIOD} before watching is tried again.
+ */
+@Beta
+public class KubernetesResourceWatches {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KubernetesResourceWatches.class);
+
+    /** Maximum time between checks of a condition when no change is seen. */
+    public static final Duration RECHECK_INTERVAL = Duration.TEN_SECONDS;
+
+    /** Initial time between checks of a condition when polling rather than watching. */
+    public static final Duration POLL_INTERVAL = Duration.ONE_SECOND;
+
+    /** Number of consecutive failures of a watch after which waits fall back to polling. */
+    public static final int MAX_WATCH_FAILURES = 5;
+
+    /** How long to poll, after a watch has failed repeatedly, before trying to watch again. */
+    public static final Duration POLLING_FALLBACK_PERIOD = Duration.FIVE_MINUTES;
+
+    /** The kinds of resource which can be watched. */
+    public enum Kind {
+        NAMESPACES(false),
+        PODS(true),
+        SERVICES(true),
+        ENDPOINTS(true),
+        SECRETS(true),
+        DEPLOYMENTS(true);
+
+        private final boolean namespaced;
+
+        Kind(boolean namespaced) {
+            this.namespaced = namespaced;
+        }
+    }
+
+    private static final Cache<KubernetesClient, KubernetesResourceWatches> INSTANCES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    public static KubernetesResourceWatches forClient(final KubernetesClient client) {
+        try {
+            return INSTANCES.get(client, new Callable<KubernetesResourceWatches>() {
+                @Override
+                public KubernetesResourceWatches call() {
+                    return new KubernetesResourceWatches(client);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        }
+    }
+
+    /** A waiting thread; its fields are guarded by itself, and it is notified when they change. */
+    private static class Waiter {
+        /** the name of the resources whose changes wake this waiter, or null for any */
+        final String name;
+        /** number of relevant changes seen */
+        long changes;
+        /** number of times woken for other reasons (e.g. a watch closing) */
+        long wakeups;
+
+        Waiter(@Nullable String name) {
+            this.name = name;
+        }
+
+        synchronized void onChange() {
+            changes++;
+            notifyAll();
+        }
+
+        synchronized void wakeup() {
+            wakeups++;
+            notifyAll();
+        }
+
+        synchronized long getChanges() {
+            return changes;
+        }
+
+        synchronized long getWakeups() {
+            return wakeups;
+        }
+    }
+
+    private class SharedWatch implements Watcher<HasMetadata> {
+        final Kind kind;
+        final String namespace;
+        /** the threads waiting on this watch; guarded by the enclosing instance */
+        final Set<Waiter> waiters = MutableSet.of();
+        Watch watch;
+        boolean open;
+        /** when the watch was last opened */
+        long openedAt;
+        /** number of consecutive failures to open the watch or keep it open */
+        int failures;
+        /** when the watch may next be opened, after a failure */
+        long retryAt;
+        /** whether watching has been abandoned, so waiters poll */
+        boolean polling;
+
+        SharedWatch(Kind kind, String namespace) {
+            this.kind = kind;
+            this.namespace = namespace;
+        }
+
+        @Override
+        public void eventReceived(Action action, HasMetadata resource) {
+            String name = (resource != null && resource.getMetadata() != null) ? resource.getMetadata().getName() : null;
+            synchronized (KubernetesResourceWatches.this) {
+                failures = 0;
+                for (Waiter waiter : waiters) {
+                    if (waiter.name == null || name == null || Objects.equal(waiter.name, name)) {
+                        waiter.onChange();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            synchronized (KubernetesResourceWatches.this) {
+                if (!open) return;
+                LOG.debug("Watch of " + kind + " in " + namespace + " closed" + (cause != null ? ": " + cause : ""));
+                open = false;
+                watch = null;
+                // a watch which stayed open a while is re-opened straight away; otherwise back off
+                boolean healthy = System.currentTimeMillis() - openedAt >= RECHECK_INTERVAL.toMilliseconds();
+                onFailure(this, healthy);
+                // wake waiters, to re-open the watch when due (without re-checking their conditions)
+                for (Waiter waiter : waiters) {
+                    waiter.wakeup();
+                }
+            }
+        }
+    }
+
+    private final KubernetesClient client;
+    /** watches by kind and namespace; guarded by this */
+    private final Map<List<?>, SharedWatch> watches = MutableMap.of();
+    /** when watching may be tried again, for kinds and namespaces whose watches failed repeatedly; guarded by this */
+    private final Map<List<?>, Long> pollingUntil = MutableMap.of();
+
+    protected KubernetesResourceWatches(KubernetesClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Waits until the condition is true, checking it initially and then whenever a resource of one of
+     * the given kinds changes in the given namespace (ignored for kinds which are not namespaced).
+     * As for a polling wait, an exception from the condition counts as the condition not being true.
+     *
+     * @return whether the condition became true before the timeout
+     */
+    public boolean waitFor(ExitCondition condition, @Nullable String namespace, Duration timeout, Kind... kinds) throws InterruptedException {
+        return waitFor(condition, namespace, null, timeout, kinds);
+    }
+
+    /**
+     * As {@link #waitFor(ExitCondition, String, Duration, Kind...)}, but re-checks the condition only when a
+     * resource with the given name changes (if non-null), rather than any resource of the given kinds.
+     */
+    public boolean waitFor(ExitCondition condition, @Nullable String namespace, @Nullable String name, Duration timeout, Kind... kinds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout.toMilliseconds();
+        Waiter waiter = new Waiter(name);
+        List<SharedWatch> acquired = MutableList.of();
+        try {
+            for (Kind kind : kinds) {
+                acquired.add(acquire(kind, namespace, waiter));
+            }
+            long pollInterval = POLL_INTERVAL.toMilliseconds();
+            while (true) {
+                ensureOpen(acquired);
+                long seen = waiter.getChanges();
+                if (check(condition)) return true;
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                if (isPolling(acquired)) {
+                    awaitChange(waiter, acquired, seen, Math.min(remaining, pollInterval));
+                    pollInterval = Math.min((long) (pollInterval * 1.2), RECHECK_INTERVAL.toMilliseconds());
+                } else {
+                    awaitChange(waiter, acquired, seen, Math.min(remaining, RECHECK_INTERVAL.toMilliseconds()));
+                }
+            }
+        } finally {
+            for (SharedWatch watch : acquired) {
+                release(watch, waiter);
+            }
+        }
+    }
+
+    private boolean check(ExitCondition condition) {
+        try {
+            return Boolean.TRUE.equals(condition.call());
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            LOG.trace("Condition check failed (will retry): " + e);
+            return false;
+        }
+    }
+
+    private synchronized SharedWatch acquire(Kind kind, String namespace, Waiter waiter) {
+        List<?> key = Arrays.asList(kind, kind.namespaced ? namespace : null);
+        SharedWatch result = watches.get(key);
+        if (result == null) {
+            result = new SharedWatch(kind, kind.namespaced ? namespace : null);
+            Long until = pollingUntil.get(key);
+            if (until != null) {
+                if (until > System.currentTimeMillis()) {
+                    result.polling = true;
+                } else {
+                    pollingUntil.remove(key);
+                }
+            }
+            watches.put(key, result);
+        }
+        result.waiters.add(waiter);
+        return result;
+    }
+
+    private void release(SharedWatch sharedWatch, Waiter waiter) {
+        Watch toClose = null;
+        synchronized (this) {
+            sharedWatch.waiters.remove(waiter);
+            if (sharedWatch.waiters.isEmpty()) {
+                watches.remove(Arrays.asList(sharedWatch.kind, sharedWatch.namespace));
+                sharedWatch.open = false;
+                toClose = sharedWatch.watch;
+                sharedWatch.watch = null;
+            }
+        }
+        if (toClose != null) {
+            try {
+                toClose.close();
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                LOG.debug("Error closing watch of " + sharedWatch.kind + " in " + sharedWatch.namespace + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Opens any of the watches which are not open (so that a change made after the condition is checked is seen).
+     */
+    private void ensureOpen(List<SharedWatch> sharedWatches) {
+        for (SharedWatch sharedWatch : sharedWatches) {
+            synchronized (this) {
+                if (sharedWatch.open || sharedWatch.polling || System.currentTimeMillis() < sharedWatch.retryAt) continue;
+                // mark open before opening, so others don't also open it; reset by onClose if it fails
+                sharedWatch.open = true;
+                sharedWatch.openedAt = System.currentTimeMillis();
+            }
+            Watch watch = null;
+            try {
+                watch = openWatch(sharedWatch.kind, sharedWatch.namespace, sharedWatch);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                LOG.debug("Cannot watch " + sharedWatch.kind + " in " + sharedWatch.namespace + ": " + e);
+            }
+            boolean closeNow = false;
+            synchronized (this) {
+                if (watch == null) {
+                    if (sharedWatch.open) {
+                        sharedWatch.open = false;
+                        onFailure(sharedWatch, false);
+                    }
+                } else if (!sharedWatch.open || sharedWatch.waiters.isEmpty()) {
+                    // closed (or released) while opening
+                    closeNow = true;
+                } else {
+                    sharedWatch.watch = watch;
+                }
+            }
+            if (closeNow) watch.close();
+        }
+    }
+
+    /** Records that the watch failed (or closed after being open a while, if healthy), and when it may be re-opened. Must hold the lock on this. */
+    private void onFailure(SharedWatch sharedWatch, boolean healthy) {
+        sharedWatch.failures = healthy ? 0 : sharedWatch.failures + 1;
+        if (sharedWatch.failures >= MAX_WATCH_FAILURES) {
+            LOG.debug("Watch of " + sharedWatch.kind + " in " + sharedWatch.namespace + " failed " + sharedWatch.failures
+                    + " times; polling instead for " + POLLING_FALLBACK_PERIOD);
+            sharedWatch.polling = true;
+            pollingUntil.put(Arrays.asList(sharedWatch.kind, sharedWatch.namespace),
+                    System.currentTimeMillis() + POLLING_FALLBACK_PERIOD.toMilliseconds());
+        } else {
+            sharedWatch.retryAt = System.currentTimeMillis() + (healthy ? 0 : getRetryDelay(sharedWatch.failures).toMilliseconds());
+        }
+    }
+
+    /** The delay before re-opening a watch after the given number of consecutive failures (at least one). */
+    protected Duration getRetryDelay(int failures) {
+        Duration result = POLL_INTERVAL.multiply(1L << Math.min(failures - 1, 16));
+        return Duration.min(result, RECHECK_INTERVAL);
+    }
+
+    private synchronized boolean isPolling(List<SharedWatch> sharedWatches) {
+        for (SharedWatch sharedWatch : sharedWatches) {
+            if (sharedWatch.polling) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits on the waiter (rather than on this, so that changes to other resources do not wake it)
+     * until it sees a change, a closed watch is due to be re-opened, or the time elapses.
+     */
+    private void awaitChange(Waiter waiter, List<SharedWatch> sharedWatches, long seen, long maxWaitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        while (true) {
+            long wakeups = waiter.getWakeups();
+            long reopenAt = Long.MAX_VALUE;
+            synchronized (this) {
+                for (SharedWatch sharedWatch : sharedWatches) {
+                    if (!sharedWatch.open && !sharedWatch.polling) reopenAt = Math.min(reopenAt, sharedWatch.retryAt);
+                }
+            }
+            synchronized (waiter) {
+                if (waiter.changes != seen) return;
+                long now = System.currentTimeMillis();
+                // a closed watch is re-opened (and the condition re-checked) once due, so that changes are not missed for long
+                if (reopenAt <= now) return;
+                long remaining = Math.min(deadline, reopenAt) - now;
+                if (remaining <= 0) return;
+                // woken while the watches were inspected; inspect them again
+                if (waiter.wakeups != wakeups) continue;
+                waiter.wait(remaining);
+            }
+        }
+    }
+
+    /** Opens a watch on the given kind of resource, which must call the watcher on each change. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected Watch openWatch(Kind kind, @Nullable String namespace, Watcher<HasMetadata> watcher) {
+        Watcher raw = watcher;
+        switch (kind) {
+            case NAMESPACES:
+                return client.namespaces().watch(raw);
+            case PODS:
+                return client.pods().inNamespace(namespace).watch(raw);
+            case SERVICES:
+                return client.services().inNamespace(namespace).watch(raw);
+            case ENDPOINTS:
+                return client.endpoints().inNamespace(namespace).watch(raw);
+            case SECRETS:
+                return client.secrets().inNamespace(namespace).watch(raw);
+            case DEPLOYMENTS:
+                return client.extensions().deployments().inNamespace(namespace).watch(raw);
+            default:
+                throw new IllegalArgumentException("Unsupported kind " + kind);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + client + "]";
+    }
+}
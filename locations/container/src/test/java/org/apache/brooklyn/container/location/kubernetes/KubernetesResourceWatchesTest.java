@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.container.location.kubernetes;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.container.location.kubernetes.KubernetesLocation.ExitCondition;
+import org.apache.brooklyn.container.location.kubernetes.KubernetesResourceWatches.Kind;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+
+public class KubernetesResourceWatchesTest {
+
+    private RecordingWatches watches;
+    private ExecutorService executor;
+
+    /** Records the watches opened, rather than opening them against a cluster. */
+    private static class RecordingWatches extends KubernetesResourceWatches {
+        final List<Watcher<HasMetadata>> watchers = new CopyOnWriteArrayList<Watcher<HasMetadata>>();
+        final AtomicInteger closed = new AtomicInteger();
+        /** whether watches close with an error as soon as they are opened */
+        volatile boolean failing;
+        volatile Duration retryDelay;
+
+        RecordingWatches() {
+            super(null);
+        }
+
+        @Override
+        protected Duration getRetryDelay(int failures) {
+            return (retryDelay != null) ? retryDelay : super.getRetryDelay(failures);
+        }
+
+        @Override
+        protected Watch openWatch(Kind kind, String namespace, Watcher<HasMetadata> watcher) {
+            watchers.add(watcher);
+            if (failing) watcher.onClose(new KubernetesClientException("watch failed"));
+            return new Watch() {
+                @Override
+                public void close() {
+                    closed.incrementAndGet();
+                }
+            };
+        }
+
+        void fireEvent() {
+            fireEvent("mypod");
+        }
+
+        void fireEvent(String name) {
+            for (Watcher<HasMetadata> watcher : watchers) {
+                watcher.eventReceived(Watcher.Action.MODIFIED, new PodBuilder().withNewMetadata().withName(name).endMetadata().build());
+            }
+        }
+    }
+
+    private static class FlagCondition implements ExitCondition {
+        final AtomicBoolean flag = new AtomicBoolean();
+        final AtomicInteger checks = new AtomicInteger();
+
+        @Override
+        public Boolean call() {
+            checks.incrementAndGet();
+            return flag.get();
+        }
+
+        @Override
+        public String getFailureMessage() {
+            return "flag not set";
+        }
+    }
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        watches = new RecordingWatches();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    @Test
+    public void testConditionCheckedOnChangeAndWatchShared() throws Exception {
+        final FlagCondition condition1 = new FlagCondition();
+        final FlagCondition condition2 = new FlagCondition();
+        Future<Boolean> waiter1 = submitWait(condition1, "ns1");
+        Future<Boolean> waiter2 = submitWait(condition2, "ns1");
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(condition1.checks.get(), 1);
+                assertEquals(condition2.checks.get(), 1);
+            }
+        });
+        assertEquals(watches.watchers.size(), 1);
+
+        condition1.flag.set(true);
+        watches.fireEvent();
+        assertTrue(waiter1.get(5, TimeUnit.SECONDS));
+        assertFalse(waiter2.isDone());
+        assertEquals(watches.closed.get(), 0);
+
+        condition2.flag.set(true);
+        watches.fireEvent();
+        assertTrue(waiter2.get(5, TimeUnit.SECONDS));
+        assertEquals(watches.closed.get(), 1);
+    }
+
+    @Test
+    public void testOnlyWaitersOnChangedResourceRecheck() throws Exception {
+        final FlagCondition condition1 = new FlagCondition();
+        final FlagCondition condition2 = new FlagCondition();
+        final FlagCondition condition3 = new FlagCondition();
+        Future<Boolean> waiter1 = submitWait(condition1, "ns1", "mypod");
+        Future<Boolean> waiter2 = submitWait(condition2, "ns1", "otherpod");
+        Future<Boolean> waiter3 = submitWait(condition3, "ns1", null);
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(condition1.checks.get(), 1);
+                assertEquals(condition2.checks.get(), 1);
+                assertEquals(condition3.checks.get(), 1);
+            }
+        });
+        assertEquals(watches.watchers.size(), 1);
+
+        watches.fireEvent("mypod");
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(condition1.checks.get(), 2);
+                assertEquals(condition3.checks.get(), 2);
+            }
+        });
+        Asserts.succeedsContinually(ImmutableMap.of("timeout", Duration.millis(100)), new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(condition2.checks.get(), 1);
+            }
+        });
+
+        condition1.flag.set(true);
+        condition2.flag.set(true);
+        condition3.flag.set(true);
+        watches.fireEvent("mypod");
+        assertTrue(waiter1.get(5, TimeUnit.SECONDS));
+        assertTrue(waiter3.get(5, TimeUnit.SECONDS));
+        assertFalse(waiter2.isDone());
+        watches.fireEvent("otherpod");
+        assertTrue(waiter2.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWatchesPerNamespace() throws Exception {
+        FlagCondition condition1 = new FlagCondition();
+        FlagCondition condition2 = new FlagCondition();
+        Future<Boolean> waiter1 = submitWait(condition1, "ns1");
+        Future<Boolean> waiter2 = submitWait(condition2, "ns2");
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(watches.watchers.size(), 2);
+            }
+        });
+        condition1.flag.set(true);
+        condition2.flag.set(true);
+        watches.fireEvent();
+        assertTrue(waiter1.get(5, TimeUnit.SECONDS));
+        assertTrue(waiter2.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimesOut() throws Exception {
+        FlagCondition condition = new FlagCondition();
+        assertFalse(watches.waitFor(condition, "ns1", Duration.millis(100), Kind.PODS));
+        assertEquals(watches.closed.get(), 1);
+    }
+
+    @Test
+    public void testFailingWatchBacksOffThenPolls() throws Exception {
+        watches.failing = true;
+        watches.retryDelay = Duration.millis(50);
+        final FlagCondition condition = new FlagCondition();
+        Future<Boolean> waiter = submitWait(condition, "ns1");
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(watches.watchers.size(), KubernetesResourceWatches.MAX_WATCH_FAILURES);
+            }
+        });
+        // no more attempts to watch; the condition is polled instead
+        Thread.sleep(500);
+        assertEquals(watches.watchers.size(), KubernetesResourceWatches.MAX_WATCH_FAILURES);
+        assertTrue(condition.checks.get() < 2 * KubernetesResourceWatches.MAX_WATCH_FAILURES, "checks="+condition.checks);
+        condition.flag.set(true);
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+
+        // subsequent waits poll without watching
+        FlagCondition condition2 = new FlagCondition();
+        condition2.flag.set(true);
+        assertTrue(watches.waitFor(condition2, "ns1", Duration.ONE_MINUTE, Kind.PODS));
+        assertEquals(watches.watchers.size(), KubernetesResourceWatches.MAX_WATCH_FAILURES);
+    }
+
+    @Test
+    public void testRetryDelayBacksOffExponentially() throws Exception {
+        assertEquals(watches.getRetryDelay(1), Duration.ONE_SECOND);
+        assertEquals(watches.getRetryDelay(2), Duration.seconds(2));
+        assertEquals(watches.getRetryDelay(3), Duration.seconds(4));
+        assertEquals(watches.getRetryDelay(5), KubernetesResourceWatches.RECHECK_INTERVAL);
+    }
+
+    private Future<Boolean> submitWait(ExitCondition condition, String namespace) {
+        return submitWait(condition, namespace, null);
+    }
+
+    private Future<Boolean> submitWait(final ExitCondition condition, final String namespace, final String name) {
+        return executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return watches.waitFor(condition, namespace, name, Duration.ONE_MINUTE, Kind.PODS);
+            }
+        });
+    }
+}
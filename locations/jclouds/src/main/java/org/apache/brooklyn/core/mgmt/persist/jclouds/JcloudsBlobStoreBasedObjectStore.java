@@ -28,12 +28,14 @@ import org.apache.brooklyn.core.mgmt.persist.PersistMode;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore;
 import org.apache.brooklyn.core.server.BrooklynServerConfig;
 import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.PageSet;
 import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.options.ListContainerOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.brooklyn.location.jclouds.BlobStoreContextFactoryImpl;
 import org.apache.brooklyn.location.jclouds.JcloudsLocation;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.exceptions.FatalConfigurationRuntimeException;
 import org.apache.brooklyn.util.text.Strings;
 
@@ -162,11 +164,20 @@ public class JcloudsBlobStoreBasedObjectStore implements PersistenceObjectStore
         return "/";
     }
 
+    /**
+     * Lists all pages of the directory; blobstores return a limited number of items per request
+     * (typically 1000), so a single list request can miss items in a large store.
+     */
     @Override
     public List<String> listContentsWithSubPath(final String parentSubPath) {
         checkPrepared();
-        return FluentIterable.from(context.getBlobStore().list(getContainerNameFirstPart(), 
-            ListContainerOptions.Builder.inDirectory(getItemInContainerSubPath(parentSubPath))))
+        List<String> result = MutableList.of();
+        String marker = null;
+        do {
+            ListContainerOptions options = ListContainerOptions.Builder.inDirectory(getItemInContainerSubPath(parentSubPath));
+            if (marker != null) options.afterMarker(marker);
+            PageSet<? extends StorageMetadata> page = context.getBlobStore().list(getContainerNameFirstPart(), options);
+            result.addAll(FluentIterable.from(page)
                 .transform(new Function<StorageMetadata, String>() {
                     @Override
                     public String apply(@javax.annotation.Nullable StorageMetadata input) {
@@ -175,7 +186,10 @@ public class JcloudsBlobStoreBasedObjectStore implements PersistenceObjectStore
                         result = Strings.removeFromStart(result, "/");
                         return result;
                     }
-                }).toList();
+                }).toList());
+            marker = page.getNextMarker();
+        } while (marker != null);
+        return result;
     }
 
     @Override
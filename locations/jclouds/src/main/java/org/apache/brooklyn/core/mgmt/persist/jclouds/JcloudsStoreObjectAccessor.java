@@ -26,7 +26,12 @@ import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.stream.Streams;
 import org.apache.commons.io.Charsets;
 import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.ContainerNotFoundException;
+import org.jclouds.blobstore.KeyNotFoundException;
 import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.rest.ResourceNotFoundException;
 import org.jclouds.util.Strings2;
 
 import com.google.common.base.Throwables;
@@ -59,7 +64,6 @@ public class JcloudsStoreObjectAccessor implements PersistenceObjectStore.StoreO
     }
     
     public void put(ByteSource payload) {
-        blobStore.createContainerInLocation(null, containerName);
         // seems not needed, at least not w SoftLayer
 //        blobStore.createDirectory(containerName, directoryName);
         Blob blob;
@@ -70,7 +74,26 @@ public class JcloudsStoreObjectAccessor implements PersistenceObjectStore.StoreO
         } catch (IOException e) {
             throw Throwables.propagate(e);
         }
-        blobStore.putBlob(containerName, blob);
+        try {
+            blobStore.putBlob(containerName, blob);
+        } catch (RuntimeException e) {
+            // the container is created once when the store's context is created, so only create it
+            // (an extra request) if the put shows it is missing, e.g. deleted since, rather than before every put
+            if (!isContainerMissing(e)) throw e;
+            blobStore.createContainerInLocation(null, containerName);
+            blobStore.putBlob(containerName, blob);
+        }
+    }
+
+    /**
+     * Whether the failure may be due to the container not existing. Providers report this differently: 
+     * jclouds maps most to {@link ContainerNotFoundException}, but some give a {@link KeyNotFoundException}
+     * (or other {@link ResourceNotFoundException}) or an unmapped HTTP 404.
+     */
+    protected boolean isContainerMissing(Exception e) {
+        if (Exceptions.getFirstThrowableOfType(e, ResourceNotFoundException.class) != null) return true;
+        HttpResponseException httpException = Exceptions.getFirstThrowableOfType(e, HttpResponseException.class);
+        return httpException != null && httpException.getResponse() != null && httpException.getResponse().getStatusCode() == 404;
     }
 
     @Override
@@ -89,10 +112,12 @@ public class JcloudsStoreObjectAccessor implements PersistenceObjectStore.StoreO
     @Override
     public String get() {
         try {
-            if (!blobStore.blobExists(containerName, blobName)) return null;
+            // getBlob returns null if not found, so no need for a separate exists request
             Blob blob = blobStore.getBlob(containerName, blobName);
             if (blob==null) return null;
             return Strings2.toStringAndClose(blob.getPayload().openStream());
+        } catch (ContainerNotFoundException e) {
+            return null;
         } catch (IOException e) {
             Exceptions.propagateIfFatal(e);
             throw new IllegalStateException("Error reading blobstore "+containerName+" "+blobName+": "+e, e);
@@ -113,9 +138,10 @@ public class JcloudsStoreObjectAccessor implements PersistenceObjectStore.StoreO
 
     @Override
     public Date getLastModifiedDate() {
-        Blob blob = blobStore.getBlob(containerName, blobName);
-        if (blob==null) return null;
-        return blob.getMetadata().getLastModified();
+        // metadata only, rather than downloading the blob
+        BlobMetadata metadata = blobStore.blobMetadata(containerName, blobName);
+        if (metadata==null) return null;
+        return metadata.getLastModified();
     }
     
 }
@@ -57,6 +57,7 @@ import org.apache.brooklyn.api.location.NoMachinesAvailableException;
 import org.apache.brooklyn.api.location.PortRange;
 import org.apache.brooklyn.api.mgmt.AccessController;
 import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.config.ConfigKey.HasConfigKey;
 import org.apache.brooklyn.core.config.ConfigUtils;
@@ -81,6 +82,7 @@ import org.apache.brooklyn.core.mgmt.persist.jclouds.JcloudsBlobStoreBasedObject
 import org.apache.brooklyn.location.jclouds.api.JcloudsLocationPublic;
 import org.apache.brooklyn.location.jclouds.networking.JcloudsPortForwarderExtension;
 import org.apache.brooklyn.location.jclouds.networking.creator.DefaultAzureArmNetworkCreator;
+import org.apache.brooklyn.location.jclouds.pool.WarmMachinePool;
 import org.apache.brooklyn.location.jclouds.templates.PortableTemplateBuilder;
 import org.apache.brooklyn.location.jclouds.templates.customize.TemplateBuilderCustomizer;
 import org.apache.brooklyn.location.jclouds.templates.customize.TemplateBuilderCustomizers;
@@ -158,6 +160,7 @@ import org.jclouds.util.Predicates2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
@@ -181,6 +184,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.RateLimiter;
 
 /**
  * For provisioning and managing VMs in a particular provider/region, using jclouds.
@@ -213,6 +217,11 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
     @SetFromFlag // so it's persisted
     private final Map<MachineLocation,String> vmInstanceIds = Maps.newLinkedHashMap();
 
+    @SetFromFlag // so it's persisted
+    private final Set<MachineLocation> warmPoolMachines = Sets.newLinkedHashSet();
+
+    private WarmMachinePool warmPool;
+
     static {
         Networking.init();
     }
@@ -558,6 +567,59 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
      * (for initial login, and a user potentially to create for subsequent ie normal access) */
     @Override
     public MachineLocation obtain(Map<?,?> flags) throws NoMachinesAvailableException {
+        ConfigBag poolSetup = ConfigBag.newInstanceExtending(config().getBag(), flags);
+        Integer warmPoolSize = poolSetup.get(WARM_POOL_SIZE);
+        if (warmPoolSize == null || warmPoolSize <= 0) {
+            return obtainNewMachine(flags);
+        }
+
+        String key = WarmMachinePool.keyFor(flags);
+        if (key == null) {
+            // not pooled, as the flags include secrets or values which are not plain data
+            return obtainNewMachine(flags);
+        }
+        Duration ttl = poolSetup.get(WARM_POOL_MACHINE_TTL);
+        WarmMachinePool pool = getWarmPool();
+        JcloudsMachineLocation machine = pool.claim(key, ttl);
+        pool.replenish(key, flags, warmPoolSize, ttl);
+        if (machine != null) {
+            return machine;
+        }
+        return obtainNewMachine(flags);
+    }
+
+    /**
+     * Returns the pool of ready machines used by {@link #obtain(Map)} when {@link #WARM_POOL_SIZE} is set.
+     */
+    @Beta
+    public synchronized WarmMachinePool getWarmPool() {
+        // created lazily, as the persisted set of machines is replaced on rebind
+        if (warmPool == null) {
+            warmPool = new WarmMachinePool(this, warmPoolMachines);
+        }
+        return warmPool;
+    }
+
+    /**
+     * Releases the machines in the warm pool, as nothing else would release them, 
+     * unless this server is no longer master (when whichever takes over will rebind to them).
+     */
+    @Override
+    public void onManagementStopped() {
+        if (getManagementContext().isRunning()) {
+            ManagementNodeState nodeState = getManagementContext().getHighAvailabilityManager().getNodeState();
+            if (nodeState == ManagementNodeState.MASTER || nodeState == ManagementNodeState.INITIALIZING) {
+                getWarmPool().releaseAll();
+            }
+        }
+        super.onManagementStopped();
+    }
+
+    /**
+     * Provisions a new VM with the given flags, as for {@link #obtain(Map)} but never using the warm pool.
+     */
+    @Beta
+    public MachineLocation obtainNewMachine(Map<?,?> flags) throws NoMachinesAvailableException {
         ConfigBag setupRaw = ConfigBag.newInstanceExtending(config().getBag(), flags);
         ConfigBag setup = ResolvingConfigBag.newInstanceExtending(getManagementContext(), setupRaw);
 
@@ -662,10 +724,12 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
                 LOG.debug("Acquired in {} machine-creation permit immediately", this);
             }
             semaphoreTimestamp = Duration.of(provisioningStopwatch);
+            boolean holdingCreationPermit = true;
 
             LoginCredentials userCredentials = null;
             Set<? extends NodeMetadata> nodes;
             Template template;
+            boolean batching = isNodeCreationBatched(setup);
 
             try {
                 // Create default network for Azure ARM if necessary
@@ -683,6 +747,13 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
                         options = options.toBuilder()
                                 .skipJcloudsSshing(true)
                                 .build();
+                    } else if (options.waitForConnectable() && batching) {
+                        // The user (with its generated password) must differ for each node in a batch,
+                        // so is created over ssh once the node is up, rather than by the template's script
+                        LOG.debug("Creating user after provisioning, rather than with jclouds ssh init, for batched creation of {}", getCreationString(setup));
+                        options = options.toBuilder()
+                                .skipJcloudsSshing(true)
+                                .build();
                     } else if (options.waitForConnectable()) {
                         userCredentials = initTemplateForCreateUser(template, setup);
                     }
@@ -713,10 +784,17 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
                 LOG.debug("jclouds using template {} / options {} to provision machine in {}",
                         new Object[] {template, template.getOptions(), getCreationString(setup)});
 
-                nodes = computeService.createNodesInGroup(groupId, 1, template);
+                if (batching) {
+                    // The batcher takes a permit for the create call itself, once the batch window has passed
+                    machineCreationSemaphore.release();
+                    holdingCreationPermit = false;
+                    nodes = createNodeInGroup(computeService, groupId, template, setup, machineCreationSemaphore);
+                } else {
+                    nodes = createNodeInGroup(computeService, groupId, template, setup, null);
+                }
                 provisionTimestamp = Duration.of(provisioningStopwatch);
             } finally {
-                machineCreationSemaphore.release();
+                if (holdingCreationPermit) machineCreationSemaphore.release();
             }
 
             node = Iterables.getOnlyElement(nodes, null);
@@ -1388,10 +1466,16 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
             templateBuilder, this, getCreationString(config)});
 
         // Finally try to build the template
+        List<?> templateCacheKey = getTemplateCacheKey(config, templateBuilder);
         Template template = null;
         Image image;
         try {
-            template = templateBuilder.build();
+            if (templateCacheKey != null) {
+                template = JcloudsTemplateCache.forComputeService(computeService, config.get(TEMPLATE_CACHE_TTL))
+                        .buildTemplate(templateCacheKey, (PortableTemplateBuilder<?>) templateBuilder);
+            } else {
+                template = templateBuilder.build();
+            }
             if (template==null) throw new IllegalStateException("No matching template; check image and hardware constraints (e.g. OS, RAM); using "+templateBuilder);
             image = template.getImage();
             LOG.debug("jclouds found template "+template+" (image "+image+") for provisioning in "+this+" for "+getCreationString(config));
@@ -1475,6 +1559,69 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
     }
 
 
+    /** Whether {@link JcloudsLocationConfig#NODE_CREATION_BATCH_WINDOW} is set, to batch concurrent identical node creations. */
+    protected boolean isNodeCreationBatched(ConfigBag setup) {
+        Duration window = setup.get(NODE_CREATION_BATCH_WINDOW);
+        return window != null && window.isPositive() && elvis(setup.get(NODE_CREATION_BATCH_MAX_SIZE), 1) > 1;
+    }
+
+    /**
+     * Creates a single node for the given template, batching it with concurrent identical requests if
+     * {@link JcloudsLocationConfig#NODE_CREATION_BATCH_WINDOW} is set, and limiting the rate of create calls if
+     * {@link JcloudsLocationConfig#NODE_CREATION_MAX_CALLS_PER_SECOND} is set.
+     *
+     * @param createPermits if not null, a permit is taken for the create call (after waiting for any batch window)
+     * @see JcloudsNodeCreationBatcher
+     */
+    protected Set<? extends NodeMetadata> createNodeInGroup(ComputeService computeService, String groupId, Template template,
+            ConfigBag setup, @Nullable Semaphore createPermits) throws RunNodesException {
+        RateLimiter rateLimiter = JcloudsNodeCreationBatcher.getRateLimiter(getProvider()+"@"+getEndpoint(),
+                setup.get(NODE_CREATION_MAX_CALLS_PER_SECOND));
+        return JcloudsNodeCreationBatcher.forComputeService(computeService).createNode(groupId, template,
+                setup.get(NODE_CREATION_BATCH_WINDOW), elvis(setup.get(NODE_CREATION_BATCH_MAX_SIZE), 1), rateLimiter, createPermits);
+    }
+
+    /**
+     * Returns the key under which the image and hardware resolved for the given template builder can be cached
+     * in the {@link JcloudsTemplateCache}, or null if it should not be cached: if disabled with
+     * {@link JcloudsLocationConfig#TEMPLATE_CACHE_ENABLED}, if a template builder was supplied
+     * (as that may be changed by its owner), or if the builder's constraints cannot be described.
+     */
+    @Nullable
+    protected List<?> getTemplateCacheKey(ConfigBag config, TemplateBuilder templateBuilder) {
+        if (!Boolean.TRUE.equals(config.get(TEMPLATE_CACHE_ENABLED))) return null;
+        if (config.get(TEMPLATE_BUILDER) != null) return null;
+        if (!(templateBuilder instanceof PortableTemplateBuilder<?>)) return null;
+        String constraints = ((PortableTemplateBuilder<?>)templateBuilder).getConstraintsDescription();
+        if (constraints == null) return null;
+        // the chooser instance is recreated for each template, so key on what was configured
+        return Arrays.asList(constraints, config.getStringKey(IMAGE_CHOOSER.getName()));
+    }
+
+    /**
+     * Clears the cached image and hardware listings and resolved templates for this location's cloud,
+     * e.g. after images have been added or removed.
+     */
+    public void invalidateTemplateCache() {
+        // resolved templates are cached against the compute service used for provisioning,
+        // and listings against the less restrictive one used by logAvailableTemplates
+        ConfigBag config = config().getBag();
+        JcloudsTemplateCache.invalidate(getComputeService(config));
+        JcloudsTemplateCache.invalidate(getLessRestrictiveComputeService(config));
+    }
+
+    /** The compute service used for listing everything available, ignoring any configured image id. */
+    protected ComputeService getLessRestrictiveComputeService(ConfigBag config) {
+        ConfigBag m1 = ConfigBag.newInstanceCopying(config);
+        if (m1.containsKey(IMAGE_ID)) {
+            // if caller specified an image ID, remove that, but don't apply default filters
+            m1.remove(IMAGE_ID);
+            // TODO use key
+            m1.putStringKey("anyOwner", true);
+        }
+        return getComputeService(m1);
+    }
+
     /**
      * See {@link https://issues.apache.org/jira/browse/JCLOUDS-1108}.
      * 
@@ -1552,21 +1699,16 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
 
     protected void logAvailableTemplates(ConfigBag config) {
         LOG.info("Loading available images at "+this+" for reference...");
-        ConfigBag m1 = ConfigBag.newInstanceCopying(config);
-        if (m1.containsKey(IMAGE_ID)) {
-            // if caller specified an image ID, remove that, but don't apply default filters
-            m1.remove(IMAGE_ID);
-            // TODO use key
-            m1.putStringKey("anyOwner", true);
-        }
-        ComputeService computeServiceLessRestrictive = getComputeService(m1);
-        Set<? extends Image> imgs = computeServiceLessRestrictive.listImages();
+        ComputeService computeServiceLessRestrictive = getLessRestrictiveComputeService(config);
+        boolean useCache = Boolean.TRUE.equals(config.get(TEMPLATE_CACHE_ENABLED));
+        JcloudsTemplateCache listings = useCache ? JcloudsTemplateCache.forComputeService(computeServiceLessRestrictive, config.get(TEMPLATE_CACHE_TTL)) : null;
+        Set<? extends Image> imgs = useCache ? listings.listImages() : computeServiceLessRestrictive.listImages();
         LOG.info(""+imgs.size()+" available images at "+this);
         for (Image img: imgs) {
             LOG.info(" Image: "+img);
         }
 
-        Set<? extends Hardware> profiles = computeServiceLessRestrictive.listHardwareProfiles();
+        Set<? extends Hardware> profiles = useCache ? listings.listHardwareProfiles() : computeServiceLessRestrictive.listHardwareProfiles();
         LOG.info(""+profiles.size()+" available profiles at "+this);
         for (Hardware profile: profiles) {
             LOG.info(" Profile: "+profile);
@@ -2106,6 +2248,9 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
             LOG.info("Attempted release of unknown machine "+rawMachine+" in "+toString());
             throw new IllegalArgumentException("Unknown machine "+rawMachine);
         }
+        synchronized (warmPoolMachines) {
+            warmPoolMachines.remove(rawMachine);
+        }
         JcloudsMachineLocation machine = (JcloudsMachineLocation) rawMachine;
 
         LOG.info("Releasing machine {} in {}, instance id {}", new Object[] {machine, this, instanceId});
@@ -25,6 +25,7 @@ import org.apache.brooklyn.core.config.BasicConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.location.jclouds.api.JcloudsLocationConfigPublic;
 import org.apache.brooklyn.location.jclouds.networking.JcloudsPortForwarderExtension;
+import org.apache.brooklyn.util.time.Duration;
 import org.jclouds.compute.domain.Image;
 import org.jclouds.compute.domain.OsFamily;
 import org.jclouds.compute.domain.TemplateBuilder;
@@ -83,6 +84,52 @@ public interface JcloudsLocationConfig extends JcloudsLocationConfigPublic {
     public static final ConfigKey<OsFamily> OS_FAMILY_OVERRIDE = ConfigKeys.newConfigKey(OsFamily.class, "osFamilyOverride", 
             "OS family of VMs (ignores VM metadata from jclouds, and assumes this value)");
 
+    public static final ConfigKey<Boolean> TEMPLATE_CACHE_ENABLED = ConfigKeys.newBooleanConfigKey(
+            "jclouds.templateCache.enabled",
+            "Whether to cache the image and hardware resolved for a given set of template constraints (per compute service), "
+            + "so that subsequent provisioning with the same constraints does not need to match against all images; see "
+            + JcloudsTemplateCache.class.getSimpleName()+" (which also caches the listings logged when no template matches); "
+            + "off by default, as a cached image or hardware choice may be stale for up to the TTL",
+            false);
+
+    public static final ConfigKey<Duration> TEMPLATE_CACHE_TTL = ConfigKeys.newDurationConfigKey(
+            "jclouds.templateCache.ttl",
+            "How long resolved templates are cached, and how often the image and hardware listings cached for logging are refreshed in the background",
+            Duration.minutes(2));
+
+    public static final ConfigKey<Duration> NODE_CREATION_BATCH_WINDOW = ConfigKeys.newDurationConfigKey(
+            "jclouds.nodeCreation.batchWindow",
+            "How long to wait for concurrent requests for an identical VM in the same group (e.g. with groupId set), "
+            + "so that they can be created with a single create-nodes call (e.g. when a cluster is resized); "
+            + "in the cloud, the VMs created in a batch all have the first request's per-machine metadata (such as Name), "
+            + "and the login user is created over ssh after provisioning rather than by jclouds; "
+            + "zero (the default) disables batching",
+            Duration.ZERO);
+
+    public static final ConfigKey<Integer> NODE_CREATION_BATCH_MAX_SIZE = ConfigKeys.newIntegerConfigKey(
+            "jclouds.nodeCreation.batchMaxSize",
+            "Maximum number of VMs to create in a single batched create-nodes call",
+            20);
+
+    public static final ConfigKey<Double> NODE_CREATION_MAX_CALLS_PER_SECOND = ConfigKeys.newDoubleConfigKey(
+            "jclouds.nodeCreation.maxCallsPerSecond",
+            "Maximum rate of create-nodes calls to a given provider and endpoint (shared by all locations for that cloud); "
+            + "unlimited if not set");
+
+    public static final ConfigKey<Integer> WARM_POOL_SIZE = ConfigKeys.newIntegerConfigKey(
+            "jclouds.warmPool.size",
+            "Number of ready (booted and customized) machines to keep for each distinct set of image, hardware and "
+            + "other machine-determining obtain flags (obtains with secrets or non-data flags are not pooled), "
+            + "so that obtain can return one immediately and replace it in the background; "
+            + "pooled machines keep running until claimed or recycled; zero (the default) disables the pool",
+            0);
+
+    public static final ConfigKey<Duration> WARM_POOL_MACHINE_TTL = ConfigKeys.newDurationConfigKey(
+            "jclouds.warmPool.machineTtl",
+            "How long a machine may wait in the warm pool before it is released and replaced (default one hour), "
+            + "so that machines of pools no longer used are not kept running indefinitely",
+            Duration.ONE_HOUR);
+
     public static final ConfigKey<ComputeServiceRegistry> COMPUTE_SERVICE_REGISTRY = ConfigKeys.newConfigKey(
             ComputeServiceRegistry.class,
             "jclouds.computeServiceRegistry",
@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.RunNodesException;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.NodeMetadataBuilder;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.options.TemplateOptions;
+import org.jclouds.scriptbuilder.domain.OsFamily;
+import org.jclouds.scriptbuilder.domain.Statement;
+import org.jclouds.scriptbuilder.domain.Statements;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Creates nodes for a {@link ComputeService}, optionally coalescing concurrent single-node requests for the
+ * same group, image, hardware, location and options into one {@link ComputeService#createNodesInGroup(String, int, Template)}
+ * call, and optionally limiting the rate of such calls per provider and endpoint.
+ * <p>
+ * When a request arrives and there is no open batch for its group and template, it opens one and waits for the
+ * batch window; identical requests arriving in that window join the batch (up to the maximum batch size). The first
+ * request then creates all the nodes with its template, and hands one to each waiting request.
+ * <p>
+ * The per-machine metadata ({@link #PER_NODE_USER_METADATA}) is ignored when comparing templates, so in the cloud
+ * every node of a batch has the first request's values; the {@link NodeMetadata} handed to each request has that
+ * request's own values. Templates with a run-script are compared by the rendered script, so callers must not put
+ * per-machine credentials in the script (see {@link JcloudsLocation}, which creates the login user after the
+ * node is created when batching).
+ * <p>
+ * If only some nodes are created, the remaining requests fail with a {@link RunNodesException} for their share
+ * of the failed nodes, so that they are cleaned up as for an unbatched request.
+ * <p>
+ * With no batch window, requests are passed straight through (subject to the rate limit).
+ */
+@Beta
+public class JcloudsNodeCreationBatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JcloudsNodeCreationBatcher.class);
+
+    /** User metadata keys which {@link JcloudsLocation} sets differently for each machine, so are ignored when batching. */
+    public static final Set<String> PER_NODE_USER_METADATA = ImmutableSet.of(
+            "Name", "brooklyn-entity-id", "brooklyn-entity-name", "brooklyn-server-creation-date");
+
+    /** Stands in for the run-script of the options in a batch key, the script being compared by its rendered form. */
+    private static final Statement KEYED_SCRIPT = Statements.exec("true");
+
+    private static final Cache<ComputeService, JcloudsNodeCreationBatcher> BATCHERS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private static final ConcurrentMap<String, RateLimiter> RATE_LIMITERS = new ConcurrentHashMap<String, RateLimiter>();
+
+    public static JcloudsNodeCreationBatcher forComputeService(final ComputeService computeService) {
+        try {
+            return BATCHERS.get(computeService, new Callable<JcloudsNodeCreationBatcher>() {
+                @Override
+                public JcloudsNodeCreationBatcher call() {
+                    return new JcloudsNodeCreationBatcher(computeService);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the shared rate limiter for create-node calls to the given cloud (e.g. provider and endpoint),
+     * updating its rate if changed; or null if the rate is null or not positive (i.e. unlimited).
+     */
+    @Nullable
+    public static RateLimiter getRateLimiter(String cloud, @Nullable Double permitsPerSecond) {
+        if (permitsPerSecond == null || permitsPerSecond <= 0) return null;
+        RateLimiter result = RATE_LIMITERS.get(cloud);
+        if (result == null) {
+            RateLimiter newLimiter = RateLimiter.create(permitsPerSecond);
+            result = RATE_LIMITERS.putIfAbsent(cloud, newLimiter);
+            if (result == null) return newLimiter;
+        }
+        if (result.getRate() != permitsPerSecond) result.setRate(permitsPerSecond);
+        return result;
+    }
+
+    private static class Request {
+        final Template template;
+        final SettableFuture<NodeMetadata> result = SettableFuture.create();
+
+        Request(Template template) {
+            this.template = template;
+        }
+    }
+
+    private class Batch {
+        final String groupId;
+        final Template template;
+        final List<Request> requests = MutableList.of();
+
+        Batch(String groupId, Template template) {
+            this.groupId = groupId;
+            this.template = template;
+        }
+    }
+
+    private final ComputeService computeService;
+    /** batches still accepting requests; guarded by synchronizing on this */
+    private final Map<List<?>, Batch> openBatches = MutableMap.of();
+
+    protected JcloudsNodeCreationBatcher(ComputeService computeService) {
+        this.computeService = computeService;
+    }
+
+    /**
+     * As {@link #createNode(String, Template, Duration, int, RateLimiter, Semaphore)}, with no create permits.
+     */
+    public Set<? extends NodeMetadata> createNode(String groupId, Template template, @Nullable Duration batchWindow,
+            int maxBatchSize, @Nullable RateLimiter rateLimiter) throws RunNodesException {
+        return createNode(groupId, template, batchWindow, maxBatchSize, rateLimiter, null);
+    }
+
+    /**
+     * Creates a single node, as per {@link ComputeService#createNodesInGroup(String, int, Template)} with a count of 1.
+     *
+     * @param batchWindow how long to wait for identical requests to batch with this one; null or zero for no batching
+     * @param maxBatchSize the maximum number of nodes to create in one call
+     * @param rateLimiter if not null, a permit is acquired before each create call
+     * @param createPermits if not null, a permit is held for each create call (but not while waiting for the batch window)
+     */
+    public Set<? extends NodeMetadata> createNode(String groupId, Template template, @Nullable Duration batchWindow,
+            int maxBatchSize, @Nullable RateLimiter rateLimiter, @Nullable Semaphore createPermits) throws RunNodesException {
+        List<?> key = (batchWindow == null || !batchWindow.isPositive() || maxBatchSize <= 1) ? null : makeBatchKey(groupId, template);
+        if (key == null) {
+            acquire(createPermits);
+            try {
+                if (rateLimiter != null) rateLimiter.acquire();
+                return computeService.createNodesInGroup(groupId, 1, template);
+            } finally {
+                if (createPermits != null) createPermits.release();
+            }
+        }
+
+        Request request = new Request(template);
+        Batch batch;
+        boolean leader = false;
+        synchronized (this) {
+            batch = openBatches.get(key);
+            if (batch == null || batch.requests.size() >= maxBatchSize) {
+                batch = new Batch(groupId, template);
+                openBatches.put(key, batch);
+                leader = true;
+            }
+            batch.requests.add(request);
+        }
+
+        if (leader) {
+            try {
+                Time.sleep(batchWindow);
+            } catch (RuntimeException e) {
+                // interrupted; still create the nodes for the others in the batch, but not for us
+                request.result.cancel(false);
+                throw e;
+            } finally {
+                synchronized (this) {
+                    if (openBatches.get(key) == batch) openBatches.remove(key);
+                }
+                createBatch(batch, rateLimiter, createPermits);
+            }
+        }
+
+        SettableFuture<NodeMetadata> result = request.result;
+        try {
+            return ImmutableSet.of(result.get());
+        } catch (InterruptedException e) {
+            // if a node is later created for us, it will be destroyed
+            result.cancel(false);
+            throw Exceptions.propagate(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RunNodesException) throw (RunNodesException) cause;
+            throw Exceptions.propagate(cause);
+        }
+    }
+
+    /**
+     * Requests with equal keys can share one create call: the group, and everything in the template except the
+     * metadata which is set per machine; or null if the template cannot be compared (so is never batched).
+     */
+    @Nullable
+    protected List<?> makeBatchKey(String groupId, Template template) {
+        TemplateOptions options = template.getOptions().clone();
+        options.getUserMetadata().keySet().removeAll(PER_NODE_USER_METADATA);
+        String script = null;
+        Statement runScript = options.getRunScript();
+        if (runScript != null) {
+            try {
+                script = runScript.render(OsFamily.UNIX);
+            } catch (RuntimeException e) {
+                // e.g. statements which need initialising with per-node values (such as AdminAccess)
+                LOG.debug("Not batching creation of node in group "+groupId+", as cannot render its script "+runScript, e);
+                return null;
+            }
+            options.runScript(KEYED_SCRIPT);
+        }
+        return Arrays.asList(
+                groupId,
+                template.getImage() != null ? template.getImage().getId() : null,
+                template.getHardware() != null ? template.getHardware().getId() : null,
+                template.getLocation() != null ? template.getLocation().getId() : null,
+                script,
+                options);
+    }
+
+    protected void createBatch(Batch batch, @Nullable RateLimiter rateLimiter, @Nullable Semaphore createPermits) {
+        List<Request> requests = batch.requests;
+        int count = requests.size();
+        Set<? extends NodeMetadata> created;
+        RunNodesException partialFailure = null;
+        boolean permitted = false;
+        try {
+            acquire(createPermits);
+            permitted = true;
+            if (rateLimiter != null) rateLimiter.acquire();
+            LOG.debug("Creating batch of {} node(s) in group {} for {}", new Object[] {count, batch.groupId, computeService});
+            created = computeService.createNodesInGroup(batch.groupId, count, batch.template);
+        } catch (RunNodesException e) {
+            created = e.getSuccessfulNodes();
+            partialFailure = e;
+        } catch (Throwable e) {
+            for (Request request : requests) {
+                request.result.setException(e);
+            }
+            Exceptions.propagateIfFatal(e);
+            return;
+        } finally {
+            if (permitted && createPermits != null) createPermits.release();
+        }
+
+        Iterator<? extends NodeMetadata> nodes = created.iterator();
+        Iterator<? extends Map.Entry<? extends NodeMetadata, ? extends Throwable>> failedNodes = partialFailure != null
+                ? partialFailure.getNodeErrors().entrySet().iterator()
+                : null;
+        for (Request request : requests) {
+            if (nodes.hasNext()) {
+                NodeMetadata node = nodes.next();
+                if (!request.result.set(withOwnMetadata(node, request.template))) {
+                    // requester gave up (interrupted) while waiting
+                    destroyUnclaimedNode(node);
+                }
+            } else {
+                Map<? extends NodeMetadata, ? extends Throwable> failedNode = ImmutableMap.of();
+                if (failedNodes != null && failedNodes.hasNext()) {
+                    Map.Entry<? extends NodeMetadata, ? extends Throwable> entry = failedNodes.next();
+                    failedNode = ImmutableMap.of(entry.getKey(), entry.getValue());
+                }
+                Map<?, Exception> executionErrors = partialFailure != null
+                        ? partialFailure.getExecutionErrors()
+                        : ImmutableMap.<Object, Exception>of();
+                request.result.setException(new RunNodesException(batch.groupId, 1, request.template,
+                        ImmutableSet.<NodeMetadata>of(), executionErrors, failedNode));
+            }
+        }
+        while (nodes.hasNext()) {
+            // more nodes than requested; should not happen
+            destroyUnclaimedNode(nodes.next());
+        }
+    }
+
+    /**
+     * Returns the node with the per-machine metadata of the given request's template, rather than that of
+     * the template with which the batch was created.
+     */
+    protected NodeMetadata withOwnMetadata(NodeMetadata node, Template template) {
+        Map<String, String> metadata = MutableMap.copyOf(node.getUserMetadata());
+        metadata.keySet().removeAll(PER_NODE_USER_METADATA);
+        for (Map.Entry<String, String> entry : template.getOptions().getUserMetadata().entrySet()) {
+            if (PER_NODE_USER_METADATA.contains(entry.getKey())) metadata.put(entry.getKey(), entry.getValue());
+        }
+        return NodeMetadataBuilder.fromNodeMetadata(node).userMetadata(metadata).build();
+    }
+
+    private static void acquire(@Nullable Semaphore permits) {
+        if (permits == null) return;
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    protected void destroyUnclaimedNode(NodeMetadata node) {
+        LOG.info("Destroying node {} created in batch for {}, as no longer required", node, computeService);
+        try {
+            computeService.destroyNode(node.getId());
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            LOG.warn("Failed to destroy unclaimed node "+node+" in "+computeService+"; it may need to be destroyed manually", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+computeService+"]";
+    }
+}
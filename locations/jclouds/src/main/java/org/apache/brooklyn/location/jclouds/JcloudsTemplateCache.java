@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.brooklyn.location.jclouds.templates.PortableTemplateBuilder;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.domain.Hardware;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.Template;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches, per {@link ComputeService}, the image and hardware ids resolved for a given set of template constraints,
+ * and the image and hardware listings.
+ * <p>
+ * Compute services are shared by the {@link ComputeServiceRegistryImpl} per provider, endpoint, region and credentials,
+ * so this gives a cache per cloud account. Concurrent requests to resolve the same constraints wait for the first
+ * rather than all matching against the full list of images; the others then build a fresh {@link Template}
+ * (templates are mutable, so are never shared) from the resolved image and hardware ids.
+ * <p>
+ * The listings are not used when matching: a first resolve, or one whose cached ids are no longer valid, is done
+ * by the jclouds template builder against the compute service's own images. They only serve
+ * {@link #listImages()} and {@link #listHardwareProfiles()}, as used when logging the available templates.
+ * <p>
+ * Listings are refreshed in the background once older than the TTL (the stale listing is returned meanwhile);
+ * resolved templates expire after the TTL. Both can be cleared with {@link #invalidate()} or {@link #invalidateAll()}.
+ */
+@Beta
+public class JcloudsTemplateCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JcloudsTemplateCache.class);
+
+    public static final int MAX_TEMPLATE_SPECS = 1000;
+
+    private static final Cache<ComputeService, JcloudsTemplateCache> CACHES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private static final Executor REFRESH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("brooklyn-jclouds-template-cache-%d")
+            .setDaemon(true)
+            .build());
+
+    /** Returns the cache for the given compute service, creating it (with the given TTL) if necessary. */
+    public static JcloudsTemplateCache forComputeService(final ComputeService computeService, final Duration ttl) {
+        try {
+            return CACHES.get(computeService, new Callable<JcloudsTemplateCache>() {
+                @Override
+                public JcloudsTemplateCache call() {
+                    return new JcloudsTemplateCache(computeService, ttl);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        }
+    }
+
+    /** Clears the listings and resolved templates for the given compute service, if any are cached. */
+    public static void invalidate(ComputeService computeService) {
+        JcloudsTemplateCache cache = CACHES.getIfPresent(computeService);
+        if (cache != null) cache.invalidate();
+    }
+
+    /** Clears the listings and resolved templates for all compute services. */
+    public static void invalidateAll() {
+        for (JcloudsTemplateCache cache : CACHES.asMap().values()) {
+            cache.invalidate();
+        }
+    }
+
+    private enum Listing { IMAGES, HARDWARE }
+
+    private static class TemplateSpec {
+        final String imageId;
+        final String hardwareId;
+
+        TemplateSpec(Template template) {
+            this.imageId = template.getImage().getId();
+            this.hardwareId = template.getHardware().getId();
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).add("imageId", imageId).add("hardwareId", hardwareId).toString();
+        }
+    }
+
+    private final ComputeService computeService;
+    private final LoadingCache<Listing, Set<?>> listings;
+    private final Cache<List<?>, TemplateSpec> templateSpecs;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    protected JcloudsTemplateCache(final ComputeService computeService, Duration ttl) {
+        this.computeService = computeService;
+        long ttlMillis = Math.max(1, ttl.toMilliseconds());
+        this.listings = CacheBuilder.newBuilder()
+                .refreshAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                // don't keep serving a listing no one has asked for in a long time
+                .expireAfterWrite(ttlMillis*3, TimeUnit.MILLISECONDS)
+                .build(CacheLoader.asyncReloading(new CacheLoader<Listing, Set<?>>() {
+                    @Override
+                    public Set<?> load(Listing key) {
+                        LOG.debug("Loading {} listing for {}", key, computeService);
+                        switch (key) {
+                        case IMAGES: return ImmutableSet.copyOf(computeService.listImages());
+                        case HARDWARE: return ImmutableSet.copyOf(computeService.listHardwareProfiles());
+                        default: throw new IllegalStateException("Unexpected listing "+key);
+                        }
+                    }
+                }, REFRESH_EXECUTOR));
+        this.templateSpecs = CacheBuilder.newBuilder()
+                .maximumSize(MAX_TEMPLATE_SPECS)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<? extends Image> listImages() {
+        return (Set<? extends Image>) listings.getUnchecked(Listing.IMAGES);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<? extends Hardware> listHardwareProfiles() {
+        return (Set<? extends Hardware>) listings.getUnchecked(Listing.HARDWARE);
+    }
+
+    /**
+     * Builds a template from the given template builder (which must have this cache's compute service attached).
+     * If the same key has been resolved before, a template is built for the previously resolved
+     * image and hardware ids (with the builder's options); otherwise the builder is built as normal and the result recorded.
+     * <p>
+     * The key must capture everything which affects the image and hardware chosen, other than the compute service.
+     * Exceptions thrown when building are rethrown, and not cached.
+     */
+    public Template buildTemplate(List<?> key, final PortableTemplateBuilder<?> templateBuilder) {
+        final AtomicReference<Template> built = new AtomicReference<Template>();
+        TemplateSpec spec;
+        try {
+            spec = templateSpecs.get(key, new Callable<TemplateSpec>() {
+                @Override
+                public TemplateSpec call() {
+                    Template template = templateBuilder.build();
+                    if (template == null || template.getImage() == null || template.getHardware() == null) {
+                        throw new NoSuchElementException("No matching template; check image and hardware constraints (e.g. OS, RAM); using "+templateBuilder);
+                    }
+                    built.set(template);
+                    return new TemplateSpec(template);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw Exceptions.propagate(cause);
+        }
+        if (built.get() != null) {
+            misses.incrementAndGet();
+            return built.get();
+        }
+        hits.incrementAndGet();
+        LOG.debug("Using cached template {} for {} in {}", new Object[] {spec, templateBuilder, computeService});
+        try {
+            // leave the portable template builder untouched, in case we need to fall back to it
+            return templateBuilder.newJcloudsTemplateBuilder(computeService)
+                    .imageId(spec.imageId)
+                    .hardwareId(spec.hardwareId)
+                    .build();
+        } catch (Exception e) {
+            // e.g. image deleted since it was resolved
+            Exceptions.propagateIfFatal(e);
+            LOG.debug("Cached template "+spec+" for "+templateBuilder+" in "+computeService+" no longer valid; resolving again: "+e);
+            templateSpecs.invalidate(key);
+            return templateBuilder.build();
+        }
+    }
+
+    /** Clears the listings and resolved templates, e.g. after images have been added or removed in the cloud. */
+    public void invalidate() {
+        listings.invalidateAll();
+        templateSpecs.invalidateAll();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+computeService+"]";
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds.pool;
+
+import java.lang.reflect.Array;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.location.MachineLocation;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.config.Sanitizer;
+import org.apache.brooklyn.core.location.cloud.CloudLocationConfig;
+import org.apache.brooklyn.location.jclouds.JcloudsLocation;
+import org.apache.brooklyn.location.jclouds.JcloudsLocationConfig;
+import org.apache.brooklyn.location.jclouds.JcloudsMachineLocation;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+/**
+ * A pool of ready (booted and customized) machines of a {@link JcloudsLocation}, so that
+ * {@link JcloudsLocation#obtain(Map)} can return one immediately rather than waiting for a new VM.
+ * <p>
+ * Machines are pooled separately for each distinct set of values of the {@link #POOL_RELEVANT_KEYS pool-relevant}
+ * obtain flags, as those determine the image, hardware and set-up of the machine. Other flags (such as the
+ * {@link CloudLocationConfig#CALLER_CONTEXT caller context}) are not used for the key, nor to obtain pooled machines.
+ * The pool for a set of flags is created by the first obtain with those flags, and topped up in the background
+ * when a claim leaves it short.
+ * <p>
+ * Obtains are never pooled if their flags include secrets (e.g. a password for the machine), or any value which is
+ * not plain data (e.g. a customizer instance, a {@code TemplateBuilder}, or a value still to be resolved), as such
+ * values cannot be compared between obtains, and may depend on the caller.
+ * <p>
+ * The pooled machines are ordinary children of the location, so are persisted with it; the set of
+ * pooled machines is held (and persisted) by the location, and each machine records its pool key
+ * and when it became ready. Machines which have waited longer than the TTL are released rather than
+ * claimed. All pooled machines are released when the location is unmanaged (see {@link #releaseAll()}).
+ */
+@Beta
+public class WarmMachinePool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WarmMachinePool.class);
+
+    public static final ConfigKey<String> POOL_KEY = ConfigKeys.newStringConfigKey(
+            "jclouds.warmPool.key", "The key of the warm pool this machine was created for (a hash of the obtain flags)");
+
+    public static final ConfigKey<Long> READY_TIME = ConfigKeys.newLongConfigKey(
+            "jclouds.warmPool.readyTime", "When this machine was added to the warm pool (utc millis)");
+
+    /**
+     * The obtain flags which determine the machine, so which are used for the pool key and to obtain pooled machines.
+     */
+    public static final Set<ConfigKey<?>> POOL_RELEVANT_KEYS = ImmutableSet.<ConfigKey<?>>of(
+            JcloudsLocationConfig.CLOUD_REGION_ID,
+            JcloudsLocationConfig.CLOUD_AVAILABILITY_ZONE_ID,
+            JcloudsLocationConfig.TEMPLATE_SPEC,
+            JcloudsLocationConfig.IMAGE_ID,
+            JcloudsLocationConfig.IMAGE_NAME_REGEX,
+            JcloudsLocationConfig.IMAGE_DESCRIPTION_REGEX,
+            JcloudsLocationConfig.OS_FAMILY,
+            JcloudsLocationConfig.OS_VERSION_REGEX,
+            JcloudsLocationConfig.OS_64_BIT,
+            JcloudsLocationConfig.HARDWARE_ID,
+            JcloudsLocationConfig.MIN_RAM,
+            JcloudsLocationConfig.MIN_CORES,
+            JcloudsLocationConfig.MIN_DISK,
+            JcloudsLocationConfig.NETWORK_NAME,
+            JcloudsLocationConfig.SECURITY_GROUPS,
+            JcloudsLocationConfig.INBOUND_PORTS,
+            JcloudsLocationConfig.KEY_PAIR,
+            JcloudsLocationConfig.AUTO_ASSIGN_FLOATING_IP,
+            JcloudsLocationConfig.USE_PORT_FORWARDING,
+            JcloudsLocationConfig.TEMPLATE_OPTIONS,
+            JcloudsLocationConfig.STRING_TAGS,
+            JcloudsLocationConfig.USER_METADATA_MAP,
+            JcloudsLocationConfig.USER_METADATA_STRING,
+            JcloudsLocationConfig.DOMAIN_NAME,
+            JcloudsLocationConfig.USER,
+            JcloudsLocationConfig.LOGIN_USER,
+            JcloudsLocationConfig.DONT_CREATE_USER,
+            JcloudsLocationConfig.GRANT_USER_SUDO,
+            JcloudsLocationConfig.DISABLE_ROOT_AND_PASSWORD_SSH,
+            JcloudsLocationConfig.DONT_REQUIRE_TTY_FOR_SUDO,
+            JcloudsLocationConfig.MAP_DEV_RANDOM_TO_DEV_URANDOM,
+            JcloudsLocationConfig.OPEN_IPTABLES,
+            JcloudsLocationConfig.STOP_IPTABLES,
+            JcloudsLocationConfig.GENERATE_HOSTNAME,
+            JcloudsLocationConfig.CUSTOM_MACHINE_SETUP_SCRIPT_URL,
+            JcloudsLocationConfig.CUSTOM_MACHINE_SETUP_SCRIPT_URL_LIST,
+            JcloudsLocationConfig.CUSTOM_MACHINE_SETUP_SCRIPT_VARS);
+
+    private static final Set<String> POOL_RELEVANT_KEY_NAMES;
+    static {
+        Set<String> names = Sets.newLinkedHashSet();
+        for (ConfigKey<?> key : POOL_RELEVANT_KEYS) {
+            names.add(key.getName());
+        }
+        POOL_RELEVANT_KEY_NAMES = ImmutableSet.copyOf(names);
+    }
+
+    private final JcloudsLocation location;
+    /** The location's (persisted) set of pooled machines; guarded by synchronizing on it. */
+    private final Set<MachineLocation> machines;
+    /** The keys for which a background task is currently topping up the pool. */
+    private final Set<String> replenishing = Sets.newConcurrentHashSet();
+    /** Set by {@link #releaseAll()}, after which no more machines are pooled. */
+    private volatile boolean closed;
+
+    public WarmMachinePool(JcloudsLocation location, Set<MachineLocation> machines) {
+        this.location = location;
+        this.machines = machines;
+    }
+
+    /**
+     * Returns the key identifying the pool for machines obtained with the given flags, or null if such machines
+     * should not be pooled because the flags include secrets, or values which are not plain data.
+     * <p>
+     * The key is a hash of the {@link #POOL_RELEVANT_KEYS pool-relevant} flags, as it is persisted (and logged)
+     * with each pooled machine.
+     */
+    @Nullable
+    public static String keyFor(Map<?,?> flags) {
+        Map<String, Object> config = ConfigBag.newInstance(flags).getAllConfig();
+        if (!config.equals(Sanitizer.sanitize(config))) {
+            // includes a secret (possibly nested in one of the values)
+            return null;
+        }
+        Map<String, String> sorted = new TreeMap<String, String>();
+        for (Map.Entry<String, Object> entry : config.entrySet()) {
+            if (CloudLocationConfig.CALLER_CONTEXT.getName().equals(entry.getKey())) continue;
+            String value = toKeyString(entry.getValue());
+            if (value == null) {
+                LOG.trace("Not pooling obtain with flag {}, as its value is not plain data", entry.getKey());
+                return null;
+            }
+            if (POOL_RELEVANT_KEY_NAMES.contains(entry.getKey())) {
+                sorted.put(entry.getKey(), value);
+            }
+        }
+        return Hashing.sha256().hashString(sorted.toString(), Charsets.UTF_8).toString();
+    }
+
+    /**
+     * Returns a string for the value which is the same for equal values in every obtain (and across restarts),
+     * or null if the value is not plain data: strings, numbers, booleans, enums and durations, or arrays,
+     * collections and maps of those.
+     */
+    @Nullable
+    private static String toKeyString(@Nullable Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum || value instanceof Duration) {
+            return String.valueOf(value);
+        }
+        List<String> items = MutableList.of();
+        if (value instanceof Map) {
+            for (Map.Entry<?,?> entry : ((Map<?,?>) value).entrySet()) {
+                String k = toKeyString(entry.getKey());
+                String v = toKeyString(entry.getValue());
+                if (k == null || v == null) return null;
+                items.add(k + "=" + v);
+            }
+            // ordered by key, as the map's order may differ between obtains
+            Collections.sort(items);
+            return "{" + Joiner.on(", ").join(items) + "}";
+        }
+        if (value instanceof Iterable) {
+            for (Object item : (Iterable<?>) value) {
+                String v = toKeyString(item);
+                if (v == null) return null;
+                items.add(v);
+            }
+            if (value instanceof Set) Collections.sort(items);
+            return items.toString();
+        }
+        if (value.getClass().isArray()) {
+            for (int i = 0; i < Array.getLength(value); i++) {
+                String v = toKeyString(Array.get(value, i));
+                if (v == null) return null;
+                items.add(v);
+            }
+            return items.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the flags with which to obtain machines for the pool, i.e. only the {@link #POOL_RELEVANT_KEYS pool-relevant}
+     * flags. As these are plain data when the obtain is pooled (see {@link #keyFor(Map)}), they do not depend on the
+     * context of the caller, which is not passed on as the machine may be claimed by a different caller.
+     */
+    public static Map<String, Object> poolFlags(Map<?,?> flags) {
+        Map<String, Object> result = MutableMap.of();
+        for (Map.Entry<String, Object> entry : ConfigBag.newInstance(flags).getAllConfig().entrySet()) {
+            if (POOL_RELEVANT_KEY_NAMES.contains(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes and returns a pooled machine with the given key, or null if there are none.
+     * Any pooled machines older than the TTL (with any key) are released in the background.
+     */
+    @Nullable
+    public JcloudsMachineLocation claim(String key, @Nullable Duration ttl) {
+        recycleExpired(ttl);
+        JcloudsMachineLocation result = null;
+        synchronized (machines) {
+            List<JcloudsMachineLocation> candidates = getMachines(key);
+            if (candidates.size() > 0) {
+                result = candidates.get(0);
+                machines.remove(result);
+            }
+        }
+        if (result != null) {
+            persist();
+            LOG.debug("Claimed warm machine {} from pool {} of {}", new Object[] {result, key, location});
+        }
+        return result;
+    }
+
+    /**
+     * Tops up the pool for the given key in the background to the target size, by obtaining new machines
+     * with the given flags, first releasing any older than the TTL. This does nothing if the pool is
+     * already that size, or is already being topped up (which continues until the pool is full, so 
+     * picks up any machines claimed meanwhile).
+     */
+    public void replenish(final String key, final Map<?,?> flags, final int targetSize, @Nullable final Duration ttl) {
+        if (closed || size(key) >= targetSize) return;
+        if (!replenishing.add(key)) return;
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                boolean succeeded = false;
+                try {
+                    recycleExpired(ttl);
+                    Map<String, Object> newFlags = poolFlags(flags);
+                    while (!closed && size(key) < targetSize) {
+                        JcloudsMachineLocation machine = (JcloudsMachineLocation) location.obtainNewMachine(newFlags);
+                        machine.config().set(POOL_KEY, key);
+                        machine.config().set(READY_TIME, System.currentTimeMillis());
+                        boolean added;
+                        synchronized (machines) {
+                            added = !closed && machines.add(machine);
+                        }
+                        if (!added) {
+                            // the pool was released while this machine was being provisioned
+                            release(machine);
+                            break;
+                        }
+                        persist();
+                        LOG.debug("Added warm machine {} to pool {} of {}", new Object[] {machine, key, location});
+                    }
+                    succeeded = true;
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    LOG.warn("Failed to replenish warm pool "+key+" of "+location+" (will retry on next obtain): "+e, e);
+                } finally {
+                    replenishing.remove(key);
+                }
+                // a machine may have been claimed after the last check, when replenish would have done nothing
+                if (succeeded) {
+                    replenish(key, flags, targetSize, ttl);
+                }
+            }
+        };
+        location.getManagementContext().getServerExecutionContext().submit(
+                MutableMap.of("displayName", "Replenishing warm pool of "+location), job);
+    }
+
+    /** Removes the pooled machines (with any key) which are older than the TTL, and releases them in the background. */
+    protected void recycleExpired(@Nullable Duration ttl) {
+        if (ttl == null) return;
+        List<JcloudsMachineLocation> expired = MutableList.of();
+        synchronized (machines) {
+            for (JcloudsMachineLocation machine : getMachines(null)) {
+                if (isExpired(machine, ttl)) {
+                    machines.remove(machine);
+                    expired.add(machine);
+                }
+            }
+        }
+        if (!expired.isEmpty()) {
+            persist();
+            releaseInBackground(expired);
+        }
+    }
+
+    /** The number of pooled machines with the given key. */
+    public int size(String key) {
+        return getMachines(key).size();
+    }
+
+    /** All the pooled machines with the given key, or with any key if null. */
+    public List<JcloudsMachineLocation> getMachines(@Nullable String key) {
+        List<JcloudsMachineLocation> result = MutableList.of();
+        synchronized (machines) {
+            for (MachineLocation machine : machines) {
+                if (key == null || key.equals(machine.config().get(POOL_KEY))) {
+                    result.add((JcloudsMachineLocation) machine);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** The nodes of all the pooled machines, where known (e.g. not immediately after rebind). */
+    public MachineSet getNodes() {
+        List<NodeMetadata> result = MutableList.of();
+        for (JcloudsMachineLocation machine : getMachines(null)) {
+            Optional<NodeMetadata> node = machine.getOptionalNode();
+            if (node.isPresent()) result.add(node.get());
+        }
+        return new MachineSet(result);
+    }
+
+    /**
+     * Releases all the pooled machines, and stops pooling more, e.g. when the location is unmanaged. 
+     * Any machine being provisioned for the pool is released once it is ready.
+     */
+    public void releaseAll() {
+        List<JcloudsMachineLocation> toRelease;
+        synchronized (machines) {
+            closed = true;
+            toRelease = getMachines(null);
+            machines.clear();
+        }
+        if (toRelease.isEmpty()) return;
+        persist();
+        for (JcloudsMachineLocation machine : toRelease) {
+            release(machine);
+        }
+    }
+
+    protected boolean isExpired(JcloudsMachineLocation machine, Duration ttl) {
+        Long readyTime = machine.config().get(READY_TIME);
+        return readyTime != null && System.currentTimeMillis() - readyTime > ttl.toMilliseconds();
+    }
+
+    protected void releaseInBackground(final List<JcloudsMachineLocation> toRelease) {
+        location.getManagementContext().getServerExecutionContext().submit(
+                MutableMap.of("displayName", "Releasing expired warm machines of "+location),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        for (JcloudsMachineLocation machine : toRelease) {
+                            release(machine);
+                        }
+                    }
+                });
+    }
+
+    protected void release(JcloudsMachineLocation machine) {
+        try {
+            LOG.debug("Releasing warm machine {} of {}", machine, location);
+            location.release(machine);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            LOG.warn("Failed to release warm machine "+machine+" of "+location+"; continuing: "+e, e);
+        }
+    }
+
+    protected void persist() {
+        location.getManagementContext().getRebindManager().getChangeListener().onChanged(location);
+    }
+}
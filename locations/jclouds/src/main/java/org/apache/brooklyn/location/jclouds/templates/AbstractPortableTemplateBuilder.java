@@ -21,6 +21,8 @@ package org.apache.brooklyn.location.jclouds.templates;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.jclouds.compute.domain.Hardware;
 import org.jclouds.compute.domain.Image;
 import org.jclouds.compute.domain.OsFamily;
@@ -66,9 +68,12 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
     private List<TemplateOptions> additionalOptions = new ArrayList<TemplateOptions>();
     @VisibleForTesting
     protected Boolean forceCacheReload;
+    /** any/smallest/fastest/biggest, if one of those was requested (last wins, as for jclouds) */
+    private String ordering;
     
     @Override
     public T any() {
+        ordering = "any";
         commands.add(new Function<TemplateBuilder,TemplateBuilder>() { 
             @Override
             public TemplateBuilder apply(TemplateBuilder b) { return b.any(); }});
@@ -116,6 +121,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
 
     @Override
     public T smallest() {
+        ordering = "smallest";
         commands.add(new Function<TemplateBuilder,TemplateBuilder>() { 
             @Override
             public TemplateBuilder apply(TemplateBuilder b) { return b.smallest(); }});
@@ -124,6 +130,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
 
     @Override
     public T fastest() {
+        ordering = "fastest";
         commands.add(new Function<TemplateBuilder,TemplateBuilder>() { 
             @Override
             public TemplateBuilder apply(TemplateBuilder b) { return b.fastest(); }});
@@ -132,6 +139,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
 
     @Override
     public T biggest() {
+        ordering = "biggest";
         commands.add(new Function<TemplateBuilder,TemplateBuilder>() { 
             @Override
             public TemplateBuilder apply(TemplateBuilder b) { return b.biggest(); }});
@@ -396,6 +404,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
         imageCondition = null;
         minCores = null;
         minRam = null;
+        ordering = null;
         options = null;
         additionalOptions.clear();
 
@@ -517,7 +526,26 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
         return getClass().getSimpleName()+"["+makeNonTrivialArgumentsString()+"]";
     }
 
+    /**
+     * Describes the constraints which determine the image and hardware that will be chosen,
+     * excluding the image chooser and any template options; suitable as part of a cache key for the resolved template.
+     * Returns null if constraints have been set which cannot be described reliably (e.g. an image predicate,
+     * or a template/image/hardware instance), or if a cache reload has been forced.
+     */
+    @Nullable
+    public String getConstraintsDescription() {
+        if (hardware != null || image != null || template != null || imageCondition != null) return null;
+        if (Boolean.TRUE.equals(forceCacheReload)) return null;
+        String s = makeNonTrivialArgumentsString(false);
+        if (ordering != null) s = "ordering=" + ordering + (s.length() > 0 ? ", " + s : "");
+        return s;
+    }
+
     protected String makeNonTrivialArgumentsString() {
+        return makeNonTrivialArgumentsString(true);
+    }
+
+    private String makeNonTrivialArgumentsString(boolean includeImageChooser) {
         String s =
                   (hardware != null ? "hardware=" + hardware + ", " : "")
                 + (image != null ? "image=" + image + ", " : "")
@@ -545,7 +573,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
                         + imageVersionRegex + ", " : "")
                 + (imageCondition != null ? "imageCondition=" + imageCondition
                         + ", " : "")
-                + (imageChooserFunction != null ? "imageChooserFunction=" + imageChooserFunction
+                + (includeImageChooser && imageChooserFunction != null ? "imageChooserFunction=" + imageChooserFunction
                         + ", " : "")
                 + (minCores != null ? "minCores=" + minCores + ", " : "")
                 + (minRam != null ? "minRam=" + minRam + ", " : "")
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.brooklyn.api.location.LocationSpec;
+import org.apache.brooklyn.core.location.LocationConfigKeys;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
+import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
+import org.apache.brooklyn.location.jclouds.JcloudsLocation;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests {@link JcloudsBlobStoreBasedObjectStore} against the in-memory jclouds "transient" blobstore.
+ */
+public class JcloudsBlobStoreBasedObjectStoreTransientTest extends BrooklynMgmtUnitTestSupport {
+
+    private JcloudsBlobStoreBasedObjectStore objectStore;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        JcloudsLocation location = mgmt.getLocationManager().createLocation(LocationSpec.create(JcloudsLocation.class)
+                .configure(LocationConfigKeys.CLOUD_PROVIDER, "transient")
+                .configure(LocationConfigKeys.ACCESS_IDENTITY, "myidentity")
+                .configure(LocationConfigKeys.ACCESS_CREDENTIAL, "mycredential"));
+        objectStore = new JcloudsBlobStoreBasedObjectStore(location, "brooklyn-test-"+Identifiers.makeRandomLowercaseId(4)+"/mysubpath");
+        objectStore.injectManagementContext(mgmt);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        if (objectStore != null) objectStore.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testListsAllPages() throws Exception {
+        // more than the blobstore's page size of 1000
+        int count = 1100;
+        for (int i = 0; i < count; i++) {
+            objectStore.newAccessor("entities/e"+i).put("<entity/>");
+        }
+        List<String> listed = objectStore.listContentsWithSubPath("entities");
+        assertEquals(listed.size(), count);
+        assertEquals(MutableSet.copyOf(listed).size(), count);
+    }
+
+    @Test
+    public void testGetMissingAndPutAfterContainerDeleted() throws Exception {
+        StoreObjectAccessor accessor = objectStore.newAccessor("entities/e1");
+        assertNull(accessor.get());
+        assertNull(accessor.getLastModifiedDate());
+
+        accessor.put("<entity/>");
+        assertEquals(accessor.get(), "<entity/>");
+        assertNotNull(accessor.getLastModifiedDate());
+
+        objectStore.getBlobStoreContext().getBlobStore().deleteContainer(objectStore.getContainerNameFirstPart());
+        assertNull(accessor.get());
+        accessor.put("<entity2/>");
+        assertEquals(accessor.get(), "<entity2/>");
+    }
+
+    @Test
+    public void testPutCreatesContainerWhenMissingReportedAsHttpNotFound() throws Exception {
+        List<String> calls = MutableList.of();
+        BlobStore blobStore = newFailingFirstPutBlobStore(404, calls);
+        JcloudsStoreObjectAccessor accessor = new JcloudsStoreObjectAccessor(blobStore, objectStore.getContainerNameFirstPart(), "mysubpath/entities/e1");
+
+        accessor.put("<entity/>");
+        assertEquals(calls, ImmutableList.of("putBlob", "createContainerInLocation", "putBlob"));
+        assertEquals(accessor.get(), "<entity/>");
+    }
+
+    @Test
+    public void testPutDoesNotCreateContainerOnOtherFailure() throws Exception {
+        List<String> calls = MutableList.of();
+        BlobStore blobStore = newFailingFirstPutBlobStore(403, calls);
+        JcloudsStoreObjectAccessor accessor = new JcloudsStoreObjectAccessor(blobStore, objectStore.getContainerNameFirstPart(), "mysubpath/entities/e1");
+
+        try {
+            accessor.put("<entity/>");
+            Asserts.shouldHaveFailedPreviously();
+        } catch (HttpResponseException e) {
+            assertEquals(e.getResponse().getStatusCode(), 403);
+        }
+        assertEquals(calls, ImmutableList.of("putBlob"));
+    }
+
+    /** A blob store delegating to the real one, but whose first put fails with the given HTTP status; records puts and container creations. */
+    private BlobStore newFailingFirstPutBlobStore(final int statusCode, final List<String> calls) {
+        final BlobStore delegate = objectStore.getBlobStoreContext().getBlobStore();
+        final AtomicBoolean failed = new AtomicBoolean();
+        return (BlobStore) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {BlobStore.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("putBlob") || method.getName().equals("createContainerInLocation")) {
+                    calls.add(method.getName());
+                }
+                if (method.getName().equals("putBlob") && failed.compareAndSet(false, true)) {
+                    throw new HttpResponseException("simulated failure", null, HttpResponse.builder().statusCode(statusCode).build());
+                }
+                try {
+                    return method.invoke(delegate, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+}
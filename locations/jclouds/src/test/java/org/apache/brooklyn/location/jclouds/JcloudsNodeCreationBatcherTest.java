@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.compute.RunNodesException;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.NodeMetadata.Status;
+import org.jclouds.compute.domain.NodeMetadataBuilder;
+import org.jclouds.compute.domain.Template;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+
+public class JcloudsNodeCreationBatcherTest {
+
+    private RecordingComputeService computeService;
+    private JcloudsNodeCreationBatcher batcher;
+    private ExecutorService executor;
+
+    private static class RecordingComputeService extends UnsupportedComputeService {
+        final List<Integer> createCounts = new CopyOnWriteArrayList<Integer>();
+        final List<String> destroyed = new CopyOnWriteArrayList<String>();
+        final AtomicInteger nextId = new AtomicInteger();
+        volatile int maxNodesToCreate = Integer.MAX_VALUE;
+
+        @Override
+        public Set<? extends NodeMetadata> createNodesInGroup(String group, int count, Template template) throws RunNodesException {
+            createCounts.add(count);
+            Set<NodeMetadata> result = MutableSet.of();
+            for (int i = 0; i < Math.min(count, maxNodesToCreate); i++) {
+                result.add(new NodeMetadataBuilder().id("node"+nextId.incrementAndGet()).status(Status.RUNNING).build());
+            }
+            if (result.size() < count) {
+                throw new RunNodesException(group, count, template, result, ImmutableMap.<Object, Exception>of(),
+                        ImmutableMap.<NodeMetadata, Throwable>of());
+            }
+            return result;
+        }
+
+        @Override
+        public void destroyNode(String id) {
+            destroyed.add(id);
+        }
+    }
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        computeService = new RecordingComputeService();
+        batcher = JcloudsNodeCreationBatcher.forComputeService(computeService);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    @Test
+    public void testNoBatchingWithoutWindow() throws Exception {
+        batcher.createNode("mygroup", newTemplate("a"), Duration.ZERO, 10, null);
+        batcher.createNode("mygroup", newTemplate("b"), null, 10, null);
+        assertEquals(computeService.createCounts, MutableList.of(1, 1));
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsBatched() throws Exception {
+        List<Future<Set<? extends NodeMetadata>>> futures = submit(5, Duration.millis(500));
+
+        Set<String> ids = MutableSet.of();
+        Set<String> names = MutableSet.of();
+        for (int i = 0; i < futures.size(); i++) {
+            NodeMetadata node = Iterables.getOnlyElement(futures.get(i).get());
+            ids.add(node.getId());
+            names.add(node.getUserMetadata().get("Name"));
+            // each request's node has that request's own per-machine metadata
+            assertEquals(node.getUserMetadata().get("Name"), "vm"+i);
+        }
+        assertEquals(ids.size(), 5);
+        assertEquals(names.size(), 5);
+        assertEquals(computeService.createCounts, MutableList.of(5));
+    }
+
+    @Test
+    public void testDifferentGroupsNotBatched() throws Exception {
+        Future<Set<? extends NodeMetadata>> f1 = submit("group1", newTemplate("vm1"), Duration.millis(500), 10);
+        Future<Set<? extends NodeMetadata>> f2 = submit("group2", newTemplate("vm2"), Duration.millis(500), 10);
+        f1.get();
+        f2.get();
+        assertEquals(computeService.createCounts, MutableList.of(1, 1));
+    }
+
+    @Test
+    public void testBatchLimitedToMaxSize() throws Exception {
+        List<Future<Set<? extends NodeMetadata>>> futures = MutableList.of();
+        for (int i = 0; i < 5; i++) {
+            futures.add(submit(newTemplate("vm"+i), Duration.millis(500), 2));
+        }
+        for (Future<Set<? extends NodeMetadata>> future : futures) {
+            future.get();
+        }
+        int total = 0;
+        for (int count : computeService.createCounts) {
+            assertTrue(count <= 2, "counts="+computeService.createCounts);
+            total += count;
+        }
+        assertEquals(total, 5);
+    }
+
+    @Test
+    public void testPartialFailureFailsRemainingRequests() throws Exception {
+        computeService.maxNodesToCreate = 2;
+        List<Future<Set<? extends NodeMetadata>>> futures = submit(3, Duration.millis(500));
+
+        int succeeded = 0;
+        int failed = 0;
+        for (Future<Set<? extends NodeMetadata>> future : futures) {
+            try {
+                future.get();
+                succeeded++;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof RunNodesException)) throw e;
+                failed++;
+            }
+        }
+        assertEquals(succeeded, 2);
+        assertEquals(failed, 1);
+        assertEquals(computeService.createCounts, MutableList.of(3));
+    }
+
+    @Test
+    public void testDifferentTemplatesNotBatched() throws Exception {
+        Template t1 = newTemplate("vm1");
+        Template t2 = newTemplate("vm2");
+        t2.getOptions().inboundPorts(8080);
+        Future<Set<? extends NodeMetadata>> f1 = submit(t1, Duration.millis(500), 10);
+        Future<Set<? extends NodeMetadata>> f2 = submit(t2, Duration.millis(500), 10);
+        f1.get();
+        f2.get();
+        assertEquals(computeService.createCounts, MutableList.of(1, 1));
+    }
+
+    @Test
+    public void testRateLimiterShared() throws Exception {
+        assertEquals(JcloudsNodeCreationBatcher.getRateLimiter("mycloud", null), null);
+        assertEquals(JcloudsNodeCreationBatcher.getRateLimiter("mycloud", 0d), null);
+        assertTrue(JcloudsNodeCreationBatcher.getRateLimiter("mycloud", 5d) == JcloudsNodeCreationBatcher.getRateLimiter("mycloud", 10d));
+        assertEquals(JcloudsNodeCreationBatcher.getRateLimiter("mycloud", 10d).getRate(), 10d);
+    }
+
+    private List<Future<Set<? extends NodeMetadata>>> submit(int count, Duration window) {
+        List<Future<Set<? extends NodeMetadata>>> result = MutableList.of();
+        for (int i = 0; i < count; i++) {
+            result.add(submit(newTemplate("vm"+i), window, 10));
+        }
+        return result;
+    }
+
+    private Future<Set<? extends NodeMetadata>> submit(Template template, Duration window, int maxSize) {
+        return submit("mygroup", template, window, maxSize);
+    }
+
+    private Future<Set<? extends NodeMetadata>> submit(final String groupId, final Template template, final Duration window, final int maxSize) {
+        return executor.submit(new Callable<Set<? extends NodeMetadata>>() {
+            @Override
+            public Set<? extends NodeMetadata> call() throws Exception {
+                return batcher.createNode(groupId, template, window, maxSize, null);
+            }
+        });
+    }
+
+    /** Templates differing only in the per-machine name metadata. */
+    private Template newTemplate(String name) {
+        Template result = JcloudsStubTemplateBuilder.create().build();
+        result.getOptions().getUserMetadata().put("Name", name);
+        return result;
+    }
+}
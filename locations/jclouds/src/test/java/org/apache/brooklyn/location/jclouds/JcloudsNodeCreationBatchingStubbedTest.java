@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.brooklyn.location.jclouds.StubbedComputeServiceRegistry.BasicNodeCreator;
+import org.apache.brooklyn.location.jclouds.StubbedComputeServiceRegistry.StubbedComputeService;
+import org.apache.brooklyn.location.ssh.SshMachineLocation;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.RunNodesException;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.Template;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Drives concurrent {@link JcloudsLocation#obtain(java.util.Map)} calls through a stub compute service, with
+ * {@link JcloudsLocationConfig#NODE_CREATION_BATCH_WINDOW} set.
+ */
+public class JcloudsNodeCreationBatchingStubbedTest extends AbstractJcloudsStubbedUnitTest {
+
+    private ExecutorService executor;
+
+    private static class CountingNodeCreator extends BasicNodeCreator {
+        final List<Integer> createCounts = new CopyOnWriteArrayList<Integer>();
+
+        @Override
+        public Set<? extends NodeMetadata> createNodesInGroup(String group, int count, Template template) throws RunNodesException {
+            createCounts.add(count);
+            return super.createNodesInGroup(group, count, template);
+        }
+    }
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            if (executor != null) executor.shutdownNow();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    @Test
+    public void testConcurrentObtainsInSameGroupBatched() throws Exception {
+        CountingNodeCreator creator = initBatchingLocation();
+
+        List<JcloudsSshMachineLocation> obtained = obtainConcurrently(ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of());
+
+        assertEquals(creator.createCounts, MutableList.of(3));
+        Set<String> nodeIds = MutableSet.of();
+        Set<String> names = MutableSet.of();
+        Set<String> passwords = MutableSet.of();
+        for (JcloudsSshMachineLocation machine : obtained) {
+            nodeIds.add(machine.getJcloudsId());
+            names.add(machine.peekNode().get().getUserMetadata().get("Name"));
+            passwords.add(machine.config().get(SshMachineLocation.PASSWORD));
+        }
+        // each machine gets its own node, its own name metadata, and its own generated login credentials
+        assertEquals(nodeIds.size(), 3, "nodes="+nodeIds);
+        assertEquals(names.size(), 3, "names="+names);
+        assertEquals(passwords.size(), 3, "passwords="+passwords);
+    }
+
+    @Test
+    public void testConcurrentObtainsInDifferentGroupsNotBatched() throws Exception {
+        CountingNodeCreator creator = initBatchingLocation();
+
+        obtainConcurrently(
+                ImmutableMap.of(JcloudsLocationConfig.GROUP_ID, "group-a"),
+                ImmutableMap.of(JcloudsLocationConfig.GROUP_ID, "group-b"));
+
+        assertEquals(creator.createCounts, MutableList.of(1, 1));
+    }
+
+    private CountingNodeCreator initBatchingLocation() throws Exception {
+        CountingNodeCreator creator = new CountingNodeCreator();
+        // one compute service for all obtains (as the real registry reuses them), so they share a batcher
+        final ComputeService computeService = new StubbedComputeService(creator);
+        ComputeServiceRegistry registry = new ComputeServiceRegistry() {
+            @Override public ComputeService findComputeService(ConfigBag conf, boolean allowReuse) {
+                return computeService;
+            }};
+        initNodeCreatorAndJcloudsLocation(creator, ImmutableMap.of(
+                JcloudsLocationConfig.COMPUTE_SERVICE_REGISTRY, registry,
+                JcloudsLocationConfig.GROUP_ID, "mygroup",
+                JcloudsLocationConfig.NODE_CREATION_BATCH_WINDOW, Duration.millis(500),
+                JcloudsLocationConfig.MAX_CONCURRENT_MACHINE_CREATIONS, 1));
+        return creator;
+    }
+
+    private List<JcloudsSshMachineLocation> obtainConcurrently(ImmutableMap<?, ?>... flags) throws Exception {
+        List<Future<JcloudsSshMachineLocation>> futures = MutableList.of();
+        for (final ImmutableMap<?, ?> flag : flags) {
+            futures.add(executor.submit(new Callable<JcloudsSshMachineLocation>() {
+                @Override public JcloudsSshMachineLocation call() throws Exception {
+                    return (JcloudsSshMachineLocation) jcloudsLocation.obtain(flag);
+                }}));
+        }
+        List<JcloudsSshMachineLocation> result = MutableList.of();
+        for (Future<JcloudsSshMachineLocation> future : futures) {
+            JcloudsSshMachineLocation machine = future.get();
+            machines.add(machine);
+            result.add(machine);
+        }
+        return result;
+    }
+}
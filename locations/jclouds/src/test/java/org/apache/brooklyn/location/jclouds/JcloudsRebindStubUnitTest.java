@@ -32,8 +32,10 @@ import org.apache.brooklyn.core.mgmt.rebind.RebindTestFixtureWithApp;
 import org.apache.brooklyn.core.test.entity.TestApplication;
 import org.apache.brooklyn.location.jclouds.StubbedComputeServiceRegistry.BasicNodeCreator;
 import org.apache.brooklyn.location.jclouds.StubbedComputeServiceRegistry.NodeCreator;
+import org.apache.brooklyn.location.jclouds.pool.WarmMachinePool;
 import org.apache.brooklyn.location.ssh.SshMachineLocation;
 import org.apache.brooklyn.location.winrm.WinRmMachineLocation;
+import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool;
 import org.apache.brooklyn.util.core.internal.winrm.RecordingWinRmTool;
 import org.apache.brooklyn.util.exceptions.CompoundRuntimeException;
@@ -177,6 +179,32 @@ public class JcloudsRebindStubUnitTest extends RebindTestFixtureWithApp {
         assertEquals(newJcloudsLoc.getProvider(), origJcloudsLoc.getProvider());
     }
     
+    @Test
+    public void testRebindWithWarmPool() throws Exception {
+        this.nodeCreator = newNodeCreator();
+        this.computeServiceRegistry = new StubbedComputeServiceRegistry(nodeCreator, false);
+
+        final JcloudsLocation origJcloudsLoc = newJcloudsLocation(computeServiceRegistry, ImmutableMap.of(JcloudsLocationConfig.WARM_POOL_SIZE, 1));
+        obtainMachine(origJcloudsLoc, ImmutableMap.of());
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(origJcloudsLoc.getWarmPool().getMachines(null).size(), 1);
+            }});
+        JcloudsMachineLocation origPooled = origJcloudsLoc.getWarmPool().getMachines(null).get(0);
+        
+        rebind();
+        
+        JcloudsLocation newJcloudsLoc = (JcloudsLocation) mgmt().getLocationManager().getLocation(origJcloudsLoc.getId());
+        List<JcloudsMachineLocation> newPooled = newJcloudsLoc.getWarmPool().getMachines(null);
+        assertEquals(newPooled.size(), 1, "pooled="+newPooled);
+        assertEquals(newPooled.get(0).getId(), origPooled.getId());
+        assertEquals(newPooled.get(0).config().get(WarmMachinePool.POOL_KEY), origPooled.config().get(WarmMachinePool.POOL_KEY));
+        
+        // the pooled machine is claimed by the next obtain
+        JcloudsMachineLocation claimed = obtainMachine(newJcloudsLoc, ImmutableMap.of());
+        assertEquals(claimed.getId(), origPooled.getId());
+    }
+    
     protected JcloudsMachineLocation obtainMachine(JcloudsLocation jcloudsLoc, Map<?,?> props) throws Exception {
         return (JcloudsMachineLocation) jcloudsLoc.obtain(ImmutableMap.of("imageId", IMAGE_ID));
     }
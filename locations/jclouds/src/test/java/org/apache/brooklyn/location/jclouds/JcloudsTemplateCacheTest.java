@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.location.jclouds.templates.PortableTemplateBuilder;
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.compute.domain.Image;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.domain.TemplateBuilder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class JcloudsTemplateCacheTest {
+
+    private CountingComputeService computeService;
+    private JcloudsTemplateCache cache;
+
+    private static class CountingComputeService extends UnsupportedComputeService {
+        final AtomicInteger templateBuilderCount = new AtomicInteger();
+        final AtomicInteger listImagesCount = new AtomicInteger();
+        final JcloudsStubTemplateBuilder stub = new JcloudsStubTemplateBuilder();
+
+        @Override
+        public TemplateBuilder templateBuilder() {
+            templateBuilderCount.incrementAndGet();
+            return stub.createTemplateBuilder();
+        }
+
+        @Override
+        public Set<? extends Image> listImages() {
+            listImagesCount.incrementAndGet();
+            return ImmutableSet.of(stub.getImage());
+        }
+    }
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        computeService = new CountingComputeService();
+        cache = JcloudsTemplateCache.forComputeService(computeService, Duration.ONE_MINUTE);
+    }
+
+    @Test
+    public void testSameCacheForComputeService() throws Exception {
+        assertSame(JcloudsTemplateCache.forComputeService(computeService, Duration.ONE_MINUTE), cache);
+    }
+
+    @Test
+    public void testListingsCachedUntilInvalidated() throws Exception {
+        assertEquals(cache.listImages().size(), 1);
+        assertEquals(cache.listImages().size(), 1);
+        assertEquals(computeService.listImagesCount.get(), 1);
+
+        cache.invalidate();
+        assertEquals(cache.listImages().size(), 1);
+        assertEquals(computeService.listImagesCount.get(), 2);
+    }
+
+    @Test
+    public void testInvalidateByComputeService() throws Exception {
+        cache.listImages();
+        JcloudsTemplateCache.invalidate(computeService);
+        cache.listImages();
+        assertEquals(computeService.listImagesCount.get(), 2);
+    }
+
+    @Test
+    public void testResolvedTemplateReused() throws Exception {
+        List<?> key = ImmutableList.of("minRam=1024");
+        Template t1 = cache.buildTemplate(key, newTemplateBuilder());
+        Template t2 = cache.buildTemplate(key, newTemplateBuilder());
+
+        assertEquals(cache.getMisses(), 1);
+        assertEquals(cache.getHits(), 1);
+        // templates are mutable, so each caller must get its own
+        assertNotSame(t2, t1);
+        assertEquals(t2.getImage().getId(), t1.getImage().getId());
+        assertEquals(t2.getHardware().getId(), t1.getHardware().getId());
+    }
+
+    @Test
+    public void testDifferentKeysResolvedSeparately() throws Exception {
+        cache.buildTemplate(ImmutableList.of("a"), newTemplateBuilder());
+        cache.buildTemplate(ImmutableList.of("b"), newTemplateBuilder());
+        assertEquals(cache.getMisses(), 2);
+        assertEquals(cache.getHits(), 0);
+
+        cache.invalidate();
+        cache.buildTemplate(ImmutableList.of("a"), newTemplateBuilder());
+        assertEquals(cache.getMisses(), 3);
+    }
+
+    @Test
+    public void testConstraintsDescription() throws Exception {
+        PortableTemplateBuilder<?> tb = newTemplateBuilder();
+        tb.minRam(1024);
+        tb.imageChooser(new BrooklynImageChooser().chooser());
+        assertEquals(tb.getConstraintsDescription(), "minRam=1024");
+
+        tb.smallest();
+        assertEquals(tb.getConstraintsDescription(), "ordering=smallest, minRam=1024");
+
+        tb.imageMatches(Predicates.<Image>alwaysTrue());
+        assertNull(tb.getConstraintsDescription());
+    }
+
+    private PortableTemplateBuilder<?> newTemplateBuilder() {
+        PortableTemplateBuilder<?> result = new PortableTemplateBuilder<PortableTemplateBuilder<?>>();
+        result.minRam(512);
+        result.attachComputeService(computeService);
+        return result;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.location.jclouds.StubbedComputeServiceRegistry.AbstractNodeCreator;
+import org.apache.brooklyn.location.jclouds.pool.WarmMachinePool;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class JcloudsWarmPoolStubbedTest extends AbstractJcloudsStubbedUnitTest {
+
+    @Test
+    public void testObtainClaimsFromWarmPoolAndReplenishes() throws Exception {
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(JcloudsLocationConfig.WARM_POOL_SIZE, 2));
+        final AbstractNodeCreator creator = (AbstractNodeCreator) nodeCreator;
+        final String key = WarmMachinePool.keyFor(ImmutableMap.of());
+
+        // nothing pooled yet, so created on demand; the pool is then filled in the background
+        obtainMachine();
+        assertPoolSizeEventually(key, 2);
+        assertEquals(creator.created.size(), 3);
+
+        List<JcloudsMachineLocation> pooled = jcloudsLocation.getWarmPool().getMachines(key);
+        JcloudsSshMachineLocation machine = obtainMachine();
+        assertTrue(pooled.contains(machine), "machine="+machine+"; pooled="+pooled);
+        assertFalse(jcloudsLocation.getWarmPool().getMachines(key).contains(machine));
+
+        assertPoolSizeEventually(key, 2);
+        assertEquals(creator.created.size(), 4);
+
+        // different machine-determining flags use a different pool
+        Map<?,?> otherFlags = ImmutableMap.of(JcloudsLocationConfig.CUSTOM_MACHINE_SETUP_SCRIPT_VARS, "myvar:myval");
+        obtainMachine(otherFlags);
+        assertPoolSizeEventually(WarmMachinePool.keyFor(otherFlags), 2);
+        assertEquals(jcloudsLocation.getWarmPool().size(key), 2);
+    }
+
+    @Test
+    public void testObtainDoesNotReplenishFullPool() throws Exception {
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(JcloudsLocationConfig.WARM_POOL_SIZE, 1));
+        final AbstractNodeCreator creator = (AbstractNodeCreator) nodeCreator;
+        final String key = WarmMachinePool.keyFor(ImmutableMap.of());
+
+        obtainMachine();
+        assertPoolSizeEventually(key, 1);
+        assertEquals(creator.created.size(), 2);
+
+        // the pool is already full
+        jcloudsLocation.getWarmPool().replenish(key, ImmutableMap.of(), 1, null);
+        jcloudsLocation.getWarmPool().replenish(key, ImmutableMap.of(), 1, null);
+        Asserts.succeedsContinually(ImmutableMap.of("timeout", Duration.millis(100)), new Runnable() {
+            @Override public void run() {
+                assertEquals(creator.created.size(), 2);
+            }});
+    }
+
+    @Test
+    public void testKeyIsHashAndSecretsNotPooled() throws Exception {
+        String key = WarmMachinePool.keyFor(ImmutableMap.of("imageId", "myval"));
+        assertNotNull(key);
+        assertFalse(key.contains("myval"), "key="+key);
+        assertEquals(WarmMachinePool.keyFor(ImmutableMap.of("imageId", "myval")), key);
+
+        assertNull(WarmMachinePool.keyFor(ImmutableMap.of("password", "mypassword")));
+        assertNull(WarmMachinePool.keyFor(ImmutableMap.of("myflag", ImmutableMap.of("loginUser.password", "mypassword"))));
+
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(JcloudsLocationConfig.WARM_POOL_SIZE, 2));
+        final AbstractNodeCreator creator = (AbstractNodeCreator) nodeCreator;
+        obtainMachine(ImmutableMap.of("password", "mypassword"));
+        Asserts.succeedsContinually(ImmutableMap.of("timeout", Duration.millis(100)), new Runnable() {
+            @Override public void run() {
+                assertEquals(creator.created.size(), 1);
+                assertEquals(jcloudsLocation.getWarmPool().getMachines(null).size(), 0);
+            }});
+    }
+
+    @Test
+    public void testKeyOnlyUsesPoolRelevantPlainData() throws Exception {
+        String defaultKey = WarmMachinePool.keyFor(ImmutableMap.of());
+        // flags which do not determine the machine do not split the pool
+        assertEquals(WarmMachinePool.keyFor(ImmutableMap.of("myflag", "myval")), defaultKey);
+        assertNotEquals(WarmMachinePool.keyFor(ImmutableMap.of("imageId", "myval")), defaultKey);
+
+        // the key does not depend on the order of maps or sets
+        Map<String, Object> options1 = MutableMap.<String, Object>of("a", 1, "b", ImmutableSet.of("x", "y"));
+        Map<String, Object> options2 = MutableMap.<String, Object>of("b", ImmutableSet.of("y", "x"), "a", 1);
+        assertEquals(WarmMachinePool.keyFor(ImmutableMap.of("templateOptions", options1)),
+                WarmMachinePool.keyFor(ImmutableMap.of("templateOptions", options2)));
+
+        // values which are not plain data prevent pooling, whether or not they determine the machine
+        assertNull(WarmMachinePool.keyFor(ImmutableMap.of(JcloudsLocationConfig.JCLOUDS_LOCATION_CUSTOMIZERS,
+                ImmutableList.of(new BasicJcloudsLocationCustomizer()))));
+        assertNull(WarmMachinePool.keyFor(ImmutableMap.of(JcloudsLocationConfig.TEMPLATE_BUILDER,
+                JcloudsStubTemplateBuilder.create())));
+        assertNull(WarmMachinePool.keyFor(ImmutableMap.of("imageId", new Object())));
+    }
+
+    @Test
+    public void testObtainWithCustomizerInstanceNotPooled() throws Exception {
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(JcloudsLocationConfig.WARM_POOL_SIZE, 2));
+        obtainMachine(ImmutableMap.of(JcloudsLocationConfig.JCLOUDS_LOCATION_CUSTOMIZERS,
+                ImmutableList.of(new BasicJcloudsLocationCustomizer())));
+        assertNotProvisionedInBackground(1);
+    }
+
+    @Test
+    public void testObtainWithTemplateBuilderNotPooled() throws Exception {
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(JcloudsLocationConfig.WARM_POOL_SIZE, 2));
+        obtainMachine(ImmutableMap.of(JcloudsLocationConfig.TEMPLATE_BUILDER,
+                JcloudsStubTemplateBuilder.create(getProvider(), getRegion())));
+        assertNotProvisionedInBackground(1);
+    }
+
+    @Test
+    public void testExpiredMachinesReleasedRatherThanClaimed() throws Exception {
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(
+                JcloudsLocationConfig.WARM_POOL_SIZE, 1,
+                JcloudsLocationConfig.WARM_POOL_MACHINE_TTL, Duration.ONE_MILLISECOND));
+        final AbstractNodeCreator creator = (AbstractNodeCreator) nodeCreator;
+        final String key = WarmMachinePool.keyFor(ImmutableMap.of());
+
+        obtainMachine();
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(jcloudsLocation.getWarmPool().getMachines(key).size(), 1);
+            }});
+        final JcloudsMachineLocation expired = jcloudsLocation.getWarmPool().getMachines(key).get(0);
+        Time.sleep(Duration.millis(10));
+
+        JcloudsSshMachineLocation machine = obtainMachine();
+        assertFalse(machine.equals(expired));
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertTrue(creator.destroyed.contains(expired.getJcloudsId()), "destroyed="+creator.destroyed);
+            }});
+    }
+
+    @Test
+    public void testExpiredMachinesOfOtherPoolsReleased() throws Exception {
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(
+                JcloudsLocationConfig.WARM_POOL_SIZE, 1,
+                JcloudsLocationConfig.WARM_POOL_MACHINE_TTL, Duration.ONE_SECOND));
+        final AbstractNodeCreator creator = (AbstractNodeCreator) nodeCreator;
+        Map<?,?> otherFlags = ImmutableMap.of(JcloudsLocationConfig.CUSTOM_MACHINE_SETUP_SCRIPT_VARS, "myvar:myval");
+        final String otherKey = WarmMachinePool.keyFor(otherFlags);
+
+        obtainMachine(otherFlags);
+        assertPoolSizeEventually(otherKey, 1);
+        final JcloudsMachineLocation expired = jcloudsLocation.getWarmPool().getMachines(otherKey).get(0);
+        Time.sleep(Duration.millis(1100));
+
+        // claiming from the default pool also releases the expired machine of the other pool
+        obtainMachine();
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertTrue(creator.destroyed.contains(expired.getJcloudsId()), "destroyed="+creator.destroyed);
+            }});
+    }
+
+    @Test
+    public void testUnmanagingLocationReleasesPool() throws Exception {
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(JcloudsLocationConfig.WARM_POOL_SIZE, 2));
+        final AbstractNodeCreator creator = (AbstractNodeCreator) nodeCreator;
+        String key = WarmMachinePool.keyFor(ImmutableMap.of());
+
+        obtainMachine();
+        assertPoolSizeEventually(key, 2);
+
+        managementContext.getLocationManager().unmanage(jcloudsLocation);
+        assertEquals(creator.destroyed.size(), 2, "destroyed="+creator.destroyed);
+    }
+
+    @Test
+    public void testReleaseAll() throws Exception {
+        initNodeCreatorAndJcloudsLocation(newNodeCreator(), ImmutableMap.of(JcloudsLocationConfig.WARM_POOL_SIZE, 2));
+        final AbstractNodeCreator creator = (AbstractNodeCreator) nodeCreator;
+        String key = WarmMachinePool.keyFor(ImmutableMap.of());
+
+        obtainMachine();
+        assertPoolSizeEventually(key, 2);
+        assertEquals(jcloudsLocation.getWarmPool().getNodes().size(), 2);
+
+        jcloudsLocation.getWarmPool().releaseAll();
+        assertEquals(jcloudsLocation.getWarmPool().getMachines(null).size(), 0);
+        assertEquals(creator.destroyed.size(), 2);
+    }
+
+    private void assertNotProvisionedInBackground(final int expectedCreated) {
+        final AbstractNodeCreator creator = (AbstractNodeCreator) nodeCreator;
+        Asserts.succeedsContinually(ImmutableMap.of("timeout", Duration.millis(100)), new Runnable() {
+            @Override public void run() {
+                assertEquals(creator.created.size(), expectedCreated);
+                assertEquals(jcloudsLocation.getWarmPool().getMachines(null).size(), 0);
+            }});
+    }
+
+    private void assertPoolSizeEventually(final String key, final int expected) {
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(jcloudsLocation.getWarmPool().size(key), expected);
+            }});
+    }
+}
@@ -51,6 +51,8 @@ public class DefaultFollowTheSunModel<ContainerType, ItemType> implements Follow
     private final Set<ContainerType> containers = Collections.newSetFromMap(new ConcurrentHashMap<ContainerType,Boolean>());
     private final Map<ItemType, ContainerType> itemToContainer = new ConcurrentHashMap<ItemType, ContainerType>();
     private final Map<ContainerType, Location> containerToLocation = new ConcurrentHashMap<ContainerType, Location>();
+    /** index of containerToLocation, as the strategy looks up the containers in a location for every candidate move; guarded by itself */
+    private final Map<Location, Set<ContainerType>> locationToContainers = new ConcurrentHashMap<Location, Set<ContainerType>>();
     private final Map<ItemType, Location> itemToLocation = new ConcurrentHashMap<ItemType, Location>();
     private final Map<ItemType, Map<? extends ItemType, Double>> itemUsage = new ConcurrentHashMap<ItemType, Map<? extends ItemType,Double>>();
     private final Set<ItemType> immovableItems = Collections.newSetFromMap(new ConcurrentHashMap<ItemType, Boolean>());
@@ -158,7 +160,7 @@ public class DefaultFollowTheSunModel<ContainerType, ItemType> implements Follow
     public void onContainerAdded(ContainerType container, Location location) {
         Location locationNonNull = toNonNullLocation(location);
         containers.add(container);
-        containerToLocation.put(container, locationNonNull);
+        setContainerLocation(container, locationNonNull);
         for (ItemType item : getItemsOnContainer(container)) {
             itemToLocation.put(item, locationNonNull);
         }
@@ -167,7 +169,7 @@ public class DefaultFollowTheSunModel<ContainerType, ItemType> implements Follow
     @Override
     public void onContainerRemoved(ContainerType container) {
         containers.remove(container);
-        containerToLocation.remove(container);
+        setContainerLocation(container, null);
     }
     
     @Override
@@ -179,7 +181,7 @@ public class DefaultFollowTheSunModel<ContainerType, ItemType> implements Follow
             return;
         }
         Location locationNonNull = toNonNullLocation(location);
-        containerToLocation.put(container, locationNonNull);
+        setContainerLocation(container, locationNonNull);
         for (ItemType item : getItemsOnContainer(container)) {
             itemToLocation.put(item, locationNonNull);
         }
@@ -268,13 +270,30 @@ public class DefaultFollowTheSunModel<ContainerType, ItemType> implements Follow
     }
     
     private Set<ContainerType> getContainersInLocation(Location location) {
-        Set<ContainerType> result = new LinkedHashSet<ContainerType>();
-        for (Map.Entry<ContainerType, Location> entry : containerToLocation.entrySet()) {
-            if (location.equals(entry.getValue())) {
-                result.add(entry.getKey());
+        Set<ContainerType> containersInLocation = locationToContainers.get(location);
+        return (containersInLocation != null) ? new LinkedHashSet<ContainerType>(containersInLocation) : new LinkedHashSet<ContainerType>();
+    }
+    
+    /** Records the container's location, or that it has none if null, in containerToLocation and its index. */
+    private void setContainerLocation(ContainerType container, Location locationNonNull) {
+        synchronized (locationToContainers) {
+            Location oldLocation = (locationNonNull != null) ? containerToLocation.put(container, locationNonNull) : containerToLocation.remove(container);
+            if (oldLocation != null) {
+                Set<ContainerType> oldContainers = locationToContainers.get(oldLocation);
+                if (oldContainers != null) {
+                    oldContainers.remove(container);
+                    if (oldContainers.isEmpty()) locationToContainers.remove(oldLocation);
+                }
+            }
+            if (locationNonNull != null) {
+                Set<ContainerType> newContainers = locationToContainers.get(locationNonNull);
+                if (newContainers == null) {
+                    newContainers = Collections.newSetFromMap(new ConcurrentHashMap<ContainerType, Boolean>());
+                    locationToContainers.put(locationNonNull, newContainers);
+                }
+                newContainers.add(container);
             }
         }
-        return result;
     }
     
     private Set<ItemType> getItemsOnContainer(ContainerType container) {
@@ -57,6 +57,9 @@ public class FollowTheSunParameters {
     /** a list of excluded locations */
     public Set<Location> excludedLocations = new LinkedHashSet<Location>();
 
+    /** the number of items at and above which the strategy evaluates the items' placements in parallel */
+    public int minItemsForParallelPlanning = 1000;
+
     public static FollowTheSunParameters newDefault() {
         return new FollowTheSunParameters();
     }
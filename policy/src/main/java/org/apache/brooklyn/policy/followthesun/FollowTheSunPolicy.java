@@ -40,12 +40,14 @@ import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.core.entity.Attributes;
 import org.apache.brooklyn.core.policy.AbstractPolicy;
+import org.apache.brooklyn.core.sensor.Sensors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.brooklyn.policy.followthesun.FollowTheSunPool.ContainerItemPair;
 import org.apache.brooklyn.policy.loadbalancing.Movable;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.flags.SetFromFlag;
+import org.apache.brooklyn.util.time.Duration;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
@@ -62,6 +64,13 @@ public class FollowTheSunPolicy extends AbstractPolicy {
 
     public static final String NAME = "Follow the Sun (Inter-Geography Latency Optimization)";
 
+    public static final AttributeSensor<Duration> PLANNING_DURATION = Sensors.newSensor(Duration.class,
+            "followthesun.planning.duration", "Time taken to decide which items to move, in the policy's last run");
+    public static final AttributeSensor<Integer> PLANNING_ITEMS = Sensors.newIntegerSensor(
+            "followthesun.planning.items", "Number of items considered for moving, in the policy's last run");
+    public static final AttributeSensor<Integer> PLANNING_MIGRATIONS = Sensors.newIntegerSensor(
+            "followthesun.planning.migrations", "Number of items moved, in the policy's last run");
+
     @SetFromFlag(defaultVal="100")
     private long minPeriodBetweenExecs;
     
@@ -199,6 +208,7 @@ public class FollowTheSunPolicy extends AbstractPolicy {
                         
                         if (LOG.isTraceEnabled()) LOG.trace("{} executing follow-the-sun migration-strategy", this);
                         strategy.rebalance();
+                        publishPlanningMetrics();
                         
                     } catch (RuntimeException e) {
                         if (isRunning()) {
@@ -213,6 +223,13 @@ public class FollowTheSunPolicy extends AbstractPolicy {
         }
     }
     
+    private void publishPlanningMetrics() {
+        if (entity == null || !isRunning()) return;
+        entity.sensors().set(PLANNING_DURATION, strategy.getLastPlanningDuration());
+        entity.sensors().set(PLANNING_ITEMS, strategy.getLastItemsEvaluated());
+        entity.sensors().set(PLANNING_MIGRATIONS, strategy.getLastMigrationCount());
+    }
+    
     private void onContainerAdded(Entity container, boolean rebalanceNow) {
         subscriptions().subscribe(container, Attributes.LOCATION_CHANGED, eventHandler);
         Location location = locationFinder.apply(container);
@@ -23,15 +23,19 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.brooklyn.policy.loadbalancing.Movable;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterables;
 
 // TODO: extract interface
@@ -43,109 +47,226 @@ public class FollowTheSunStrategy<ContainerType extends Entity, ItemType extends
     
     private static final Logger LOG = LoggerFactory.getLogger(FollowTheSunStrategy.class);
     
+    /** number of items evaluated by each task when planning in parallel */
+    private static final int PLANNING_BATCH_SIZE = 100;
+    
     private final FollowTheSunParameters parameters;
     private final FollowTheSunModel<ContainerType,ItemType> model;
     private final String name;
     
+    private volatile Duration lastPlanningDuration;
+    private volatile int lastItemsEvaluated;
+    private volatile int lastMigrationCount;
+    
     public FollowTheSunStrategy(FollowTheSunModel<ContainerType,ItemType> model, FollowTheSunParameters parameters) {
         this.model = model;
         this.parameters = parameters;
         this.name = model.getName();
     }
     
+    /**
+     * Moves the items which would be better placed elsewhere.
+     * <p>
+     * The best placement of each item is found first, without moving anything (in parallel if there are at
+     * least {@link FollowTheSunParameters#minItemsForParallelPlanning} items), and then the items which
+     * should move are moved one at a time.
+     */
     public void rebalance() {
         try {
-            Set<ItemType> items = model.getItems();
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            List<ItemType> items = new ArrayList<ItemType>(model.getItems());
             Map<ItemType, Map<Location, Double>> directSendsToItemByLocation = model.getDirectSendsToItemByLocation();
             
-            for (ItemType item : items) {
-                String itemName = model.getName(item);
-                Location activeLocation = model.getItemLocation(item);
-                ContainerType activeContainer = model.getItemContainer(item);
-                Map<Location, Double> sendsByLocation = directSendsToItemByLocation.get(item);
-                if (sendsByLocation == null) sendsByLocation = Collections.emptyMap();
-                
-                if (parameters.excludedLocations.contains(activeLocation)) {
-                    if (LOG.isTraceEnabled()) LOG.trace("Ignoring segment {} as it is in {}", itemName, activeLocation);
-                    continue;
-                }
-                if (!model.isItemMoveable(item)) {
-                    if (LOG.isDebugEnabled()) LOG.debug("POLICY {} skipping any migration of {}, it is not moveable", name, itemName);
-                    continue;
-                }
-                if (model.hasActiveMigration(item)) {
-                    LOG.info("POLICY {} skipping any migration of {}, it is involved in an active migration already", name, itemName);
-                    continue;
-                }
-                
-                double total = DefaultFollowTheSunModel.sum(sendsByLocation.values());
-
-                if (LOG.isTraceEnabled()) LOG.trace("POLICY {} detected {} msgs/sec in {}, split up as: {}", new Object[] {name, total, itemName, sendsByLocation});
-                
-                Double current = sendsByLocation.get(activeLocation);
-                if (current == null) current=0d;
-                List<WeightedObject<Location>> locationsWtd = new ArrayList<WeightedObject<Location>>();
-                if (total > 0) {
-                    for (Map.Entry<Location, Double> entry : sendsByLocation.entrySet()) {
-                        Location l = entry.getKey();
-                        Double d = entry.getValue();
-                        if (d > current) locationsWtd.add(new WeightedObject<Location>(l, d));
-                    }
-                }
-                Collections.sort(locationsWtd);
-                Collections.reverse(locationsWtd);
-                
-                double highestMsgRate = -1;
-                Location highestLocation = null;
-                ContainerType optimalContainerInHighest = null;
-                while (!locationsWtd.isEmpty()) {
-                    WeightedObject<Location> weightedObject = locationsWtd.remove(0);
-                    highestMsgRate = weightedObject.getWeight();
-                    highestLocation = weightedObject.getObject();
-                    optimalContainerInHighest = findOptimal(model.getAvailableContainersFor(item, highestLocation));
-                    if (optimalContainerInHighest != null) {
-                        break;
-                    }
-                }
-                if (optimalContainerInHighest == null) {
-                    if (LOG.isDebugEnabled()) LOG.debug("POLICY {} detected {} is already in optimal permitted location ({} of {} msgs/sec)", new Object[] {name, itemName, highestMsgRate, total});
-                    continue;                   
-                }
-                
-                double nextHighestMsgRate = -1;
-                ContainerType optimalContainerInNextHighest = null;
-                while (!locationsWtd.isEmpty()) {
-                    WeightedObject<Location> weightedObject = locationsWtd.remove(0);
-                    nextHighestMsgRate = weightedObject.getWeight();
-                    Location nextHighestLocation = weightedObject.getObject();
-                    optimalContainerInNextHighest = findOptimal(model.getAvailableContainersFor(item, nextHighestLocation));
-                    if (optimalContainerInNextHighest != null) {
-                        break;
-                    }
-                }
-                if (optimalContainerInNextHighest == null) {
-                    nextHighestMsgRate = current;
+            AtomicReferenceArray<Migration> migrations = new AtomicReferenceArray<Migration>(items.size());
+            PlanningTask task = new PlanningTask(items, directSendsToItemByLocation, migrations, 0, items.size());
+            if (items.size() >= parameters.minItemsForParallelPlanning) {
+                ForkJoinPool.commonPool().invoke(task);
+            } else {
+                task.compute();
+            }
+            lastPlanningDuration = Duration.of(stopwatch);
+            lastItemsEvaluated = items.size();
+            
+            int migrationCount = 0;
+            for (int i = 0; i < migrations.length(); i++) {
+                Migration migration = migrations.get(i);
+                if (migration != null && migration.apply()) migrationCount++;
+            }
+            lastMigrationCount = migrationCount;
+        } catch (Exception e) {
+            LOG.warn("Error in policy "+name+" (ignoring): "+e, e);
+        }
+    }
+
+    /** The time taken to decide which items to move, in the last {@link #rebalance()}; null if not yet run. */
+    public Duration getLastPlanningDuration() {
+        return lastPlanningDuration;
+    }
+
+    /** The number of items considered in the last {@link #rebalance()}. */
+    public int getLastItemsEvaluated() {
+        return lastItemsEvaluated;
+    }
+
+    /** The number of items moved in the last {@link #rebalance()}. */
+    public int getLastMigrationCount() {
+        return lastMigrationCount;
+    }
+
+    /** Finds the migrations for a range of the items, splitting the range if it is large. */
+    private class PlanningTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<ItemType> items;
+        private final Map<ItemType, Map<Location, Double>> directSendsToItemByLocation;
+        private final AtomicReferenceArray<Migration> migrations;
+        private final int from;
+        private final int to;
+
+        PlanningTask(List<ItemType> items, Map<ItemType, Map<Location, Double>> directSendsToItemByLocation,
+                AtomicReferenceArray<Migration> migrations, int from, int to) {
+            this.items = items;
+            this.directSendsToItemByLocation = directSendsToItemByLocation;
+            this.migrations = migrations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PLANNING_BATCH_SIZE || getPool() == null) {
+                for (int i = from; i < to; i++) {
+                    migrations.set(i, planMigration(items.get(i), directSendsToItemByLocation));
                 }
-                
-                if (parameters.isTriggered(highestMsgRate, total, nextHighestMsgRate, current)) {
-                    LOG.info("POLICY "+name+" detected "+itemName+" should be in location "+highestLocation+" on "+optimalContainerInHighest+" ("+highestMsgRate+" of "+total+" msgs/sec), migrating");
-                    try {
-                        if (activeContainer.equals(optimalContainerInHighest)) {
-                            //shouldn't happen
-                            LOG.warn("POLICY "+name+" detected "+itemName+" should move to "+optimalContainerInHighest+" ("+highestMsgRate+" of "+total+" msgs/sec) but it is already there with "+current+" msgs/sec");
-                        } else {
-                            item.move(optimalContainerInHighest);
-                            model.onItemMoved(item, optimalContainerInHighest);
-                        }
-                    } catch (Exception e) {
-                        LOG.warn("POLICY "+name+" detected "+itemName+" should be on "+optimalContainerInHighest+", but can't move it: "+e, e);
-                    }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PlanningTask(items, directSendsToItemByLocation, migrations, from, mid),
+                        new PlanningTask(items, directSendsToItemByLocation, migrations, mid, to));
+            }
+        }
+    }
+
+    /** A move of an item to a better container, as found by planMigration. */
+    private class Migration {
+        final ItemType item;
+        final String itemName;
+        final ContainerType activeContainer;
+        final ContainerType optimalContainer;
+        final Location optimalLocation;
+        final double msgRate;
+        final double total;
+        final double current;
+
+        Migration(ItemType item, String itemName, ContainerType activeContainer, ContainerType optimalContainer,
+                Location optimalLocation, double msgRate, double total, double current) {
+            this.item = item;
+            this.itemName = itemName;
+            this.activeContainer = activeContainer;
+            this.optimalContainer = optimalContainer;
+            this.optimalLocation = optimalLocation;
+            this.msgRate = msgRate;
+            this.total = total;
+            this.current = current;
+        }
+
+        /** Moves the item, returning whether it was moved. */
+        boolean apply() {
+            LOG.info("POLICY "+name+" detected "+itemName+" should be in location "+optimalLocation+" on "+optimalContainer+" ("+msgRate+" of "+total+" msgs/sec), migrating");
+            try {
+                if (activeContainer.equals(optimalContainer)) {
+                    //shouldn't happen
+                    LOG.warn("POLICY "+name+" detected "+itemName+" should move to "+optimalContainer+" ("+msgRate+" of "+total+" msgs/sec) but it is already there with "+current+" msgs/sec");
+                    return false;
                 } else {
-                    if (LOG.isTraceEnabled()) LOG.trace("POLICY "+name+" detected "+itemName+" need not move to "+optimalContainerInHighest+" ("+highestMsgRate+" of "+total+" msgs/sec not much better than "+current+" at "+activeContainer+")");
+                    item.move(optimalContainer);
+                    model.onItemMoved(item, optimalContainer);
+                    return true;
                 }
+            } catch (Exception e) {
+                LOG.warn("POLICY "+name+" detected "+itemName+" should be on "+optimalContainer+", but can't move it: "+e, e);
+                return false;
             }
-        } catch (Exception e) {
-            LOG.warn("Error in policy "+name+" (ignoring): "+e, e);
+        }
+    }
+
+    /**
+     * Returns the move which would best reduce the item's latency, if it is sufficiently better (as per
+     * {@link FollowTheSunParameters#isTriggered(double, double, double, double)}), or null. Does not change the model.
+     */
+    private Migration planMigration(ItemType item, Map<ItemType, Map<Location, Double>> directSendsToItemByLocation) {
+        String itemName = model.getName(item);
+        Location activeLocation = model.getItemLocation(item);
+        ContainerType activeContainer = model.getItemContainer(item);
+        Map<Location, Double> sendsByLocation = directSendsToItemByLocation.get(item);
+        if (sendsByLocation == null) sendsByLocation = Collections.emptyMap();
+        
+        if (parameters.excludedLocations.contains(activeLocation)) {
+            if (LOG.isTraceEnabled()) LOG.trace("Ignoring segment {} as it is in {}", itemName, activeLocation);
+            return null;
+        }
+        if (!model.isItemMoveable(item)) {
+            if (LOG.isDebugEnabled()) LOG.debug("POLICY {} skipping any migration of {}, it is not moveable", name, itemName);
+            return null;
+        }
+        if (model.hasActiveMigration(item)) {
+            LOG.info("POLICY {} skipping any migration of {}, it is involved in an active migration already", name, itemName);
+            return null;
+        }
+        
+        double total = DefaultFollowTheSunModel.sum(sendsByLocation.values());
+
+        if (LOG.isTraceEnabled()) LOG.trace("POLICY {} detected {} msgs/sec in {}, split up as: {}", new Object[] {name, total, itemName, sendsByLocation});
+        
+        Double current = sendsByLocation.get(activeLocation);
+        if (current == null) current=0d;
+        List<WeightedObject<Location>> locationsWtd = new ArrayList<WeightedObject<Location>>();
+        if (total > 0) {
+            for (Map.Entry<Location, Double> entry : sendsByLocation.entrySet()) {
+                Location l = entry.getKey();
+                Double d = entry.getValue();
+                if (d > current) locationsWtd.add(new WeightedObject<Location>(l, d));
+            }
+        }
+        Collections.sort(locationsWtd);
+        Collections.reverse(locationsWtd);
+        
+        double highestMsgRate = -1;
+        Location highestLocation = null;
+        ContainerType optimalContainerInHighest = null;
+        while (!locationsWtd.isEmpty()) {
+            WeightedObject<Location> weightedObject = locationsWtd.remove(0);
+            highestMsgRate = weightedObject.getWeight();
+            highestLocation = weightedObject.getObject();
+            optimalContainerInHighest = findOptimal(model.getAvailableContainersFor(item, highestLocation));
+            if (optimalContainerInHighest != null) {
+                break;
+            }
+        }
+        if (optimalContainerInHighest == null) {
+            if (LOG.isDebugEnabled()) LOG.debug("POLICY {} detected {} is already in optimal permitted location ({} of {} msgs/sec)", new Object[] {name, itemName, highestMsgRate, total});
+            return null;
+        }
+        
+        double nextHighestMsgRate = -1;
+        ContainerType optimalContainerInNextHighest = null;
+        while (!locationsWtd.isEmpty()) {
+            WeightedObject<Location> weightedObject = locationsWtd.remove(0);
+            nextHighestMsgRate = weightedObject.getWeight();
+            Location nextHighestLocation = weightedObject.getObject();
+            optimalContainerInNextHighest = findOptimal(model.getAvailableContainersFor(item, nextHighestLocation));
+            if (optimalContainerInNextHighest != null) {
+                break;
+            }
+        }
+        if (optimalContainerInNextHighest == null) {
+            nextHighestMsgRate = current;
+        }
+        
+        if (parameters.isTriggered(highestMsgRate, total, nextHighestMsgRate, current)) {
+            return new Migration(item, itemName, activeContainer, optimalContainerInHighest, highestLocation, highestMsgRate, total, current);
+        } else {
+            if (LOG.isTraceEnabled()) LOG.trace("POLICY "+name+" detected "+itemName+" need not move to "+optimalContainerInHighest+" ("+highestMsgRate+" of "+total+" msgs/sec not much better than "+current+" at "+activeContainer+")");
+            return null;
         }
     }
 
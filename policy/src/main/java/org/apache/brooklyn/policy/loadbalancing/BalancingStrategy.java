@@ -20,10 +20,13 @@ package org.apache.brooklyn.policy.loadbalancing;
 
 import java.text.MessageFormat;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
@@ -46,12 +49,15 @@ public class BalancingStrategy<NodeType extends Entity, ItemType extends Movable
     
     private static final Logger LOG = LoggerFactory.getLogger(BalancingStrategy.class);
     
-    private static final int MAX_MIGRATIONS_PER_BALANCING_NODE = 20; // arbitrary (Splodge)
+    private static final int DEFAULT_MAX_MIGRATIONS_PER_BALANCING_NODE = 20; // arbitrary (Splodge)
     private static final boolean BALANCE_COLD_PULLS_IN_SAME_RUN_AS_HOT_PUSHES = false;
     
     private final String name;
     private final BalanceablePoolModel<NodeType, ItemType> model;
     private final PolicyUtilForPool<NodeType, ItemType> helper;
+    private volatile int maxMigrationsPerBalancingNode = DEFAULT_MAX_MIGRATIONS_PER_BALANCING_NODE;
+    /** containers ordered by workrate, for the duration of a {@link #rebalance()} (only called by one thread at a time) */
+    private ContainerRanking ranking;
 //    private boolean loggedColdestTooHigh = false;
 //    private boolean loggedHottestTooLow = false;
     
@@ -67,11 +73,24 @@ public class BalancingStrategy<NodeType extends Entity, ItemType extends Movable
     }
     
     public void rebalance() {
-        checkAndApplyOn(model.getPoolContents());
+        ranking = new ContainerRanking();
+        try {
+            checkAndApplyOn(model.getPoolContents());
+        } finally {
+            ranking = null;
+        }
     }
     
     public int getMaxMigrationsPerBalancingNode() {
-        return MAX_MIGRATIONS_PER_BALANCING_NODE;
+        return maxMigrationsPerBalancingNode;
+    }
+    
+    /**
+     * Sets the maximum number of items moved on or off a node in one rebalance; finding each move
+     * is cheap (logarithmic in the pool size), so large pools can use a higher limit.
+     */
+    public void setMaxMigrationsPerBalancingNode(int val) {
+        maxMigrationsPerBalancingNode = val;
     }
     
     public BalanceablePoolModel<NodeType, ItemType> getDataProvider() {
@@ -192,7 +211,7 @@ public class BalancingStrategy<NodeType extends Entity, ItemType extends Movable
             
             // move from hot node, to coldest
             
-            NodeType coldNode = helper.findColdestContainer(nodesChecked);
+            NodeType coldNode = (ranking != null) ? ranking.findColdestContainer(nodesChecked) : helper.findColdestContainer(nodesChecked);
             
             if (coldNode == null) {
                 if (LOG.isDebugEnabled()) {
@@ -386,7 +405,7 @@ public class BalancingStrategy<NodeType extends Entity, ItemType extends Movable
             
             // move from cold node, to hottest
             
-            NodeType hotNode = helper.findHottestContainer(nodesChecked);
+            NodeType hotNode = (ranking != null) ? ranking.findHottestContainer(nodesChecked) : helper.findHottestContainer(nodesChecked);
             
             if (hotNode == null) {
                 if (LOG.isDebugEnabled()) {
@@ -543,6 +562,80 @@ public class BalancingStrategy<NodeType extends Entity, ItemType extends Movable
     protected void moveItem(ItemType item, NodeType oldNode, NodeType newNode) {
         item.move(newNode);
         model.onItemMoved(item, newNode);
+        if (ranking != null) {
+            ranking.update(oldNode);
+            ranking.update(newNode);
+        }
+    }
+    
+    /**
+     * The pool's containers ordered by spare capacity and by overshoot, as found by {@link PolicyUtilForPool},
+     * so that each search for the coldest or hottest container need not compute the workrate of every container.
+     * Built at the start of a rebalance, and updated for the containers involved in each move.
+     * Ties are broken by the order of the pool's containers, as for {@link PolicyUtilForPool}.
+     */
+    private class ContainerRanking {
+        private final Map<NodeType, Integer> order = new HashMap<NodeType, Integer>();
+        private final Map<NodeType, Double> spareCapacity = new HashMap<NodeType, Double>();
+        private final Map<NodeType, Double> overshoot = new HashMap<NodeType, Double>();
+        private final TreeSet<NodeType> bySpareCapacity = new TreeSet<NodeType>(new Comparator<NodeType>() {
+            @Override
+            public int compare(NodeType a, NodeType b) {
+                int result = Double.compare(spareCapacity.get(b), spareCapacity.get(a));
+                return (result != 0) ? result : Integer.compare(order.get(a), order.get(b));
+            }
+        });
+        private final TreeSet<NodeType> byOvershoot = new TreeSet<NodeType>(new Comparator<NodeType>() {
+            @Override
+            public int compare(NodeType a, NodeType b) {
+                int result = Double.compare(overshoot.get(b), overshoot.get(a));
+                return (result != 0) ? result : Integer.compare(order.get(a), order.get(b));
+            }
+        });
+        
+        ContainerRanking() {
+            for (NodeType container : model.getPoolContents()) {
+                order.put(container, order.size());
+                update(container);
+            }
+        }
+        
+        void update(NodeType container) {
+            if (!order.containsKey(container)) return;
+            if (spareCapacity.containsKey(container)) {
+                bySpareCapacity.remove(container);
+                byOvershoot.remove(container);
+                spareCapacity.remove(container);
+                overshoot.remove(container);
+            }
+            double highThreshold = model.getHighThreshold(container);
+            double totalWorkrate = model.getTotalWorkrate(container);
+            if (highThreshold == -1 || totalWorkrate == -1) {
+                return; // container presumably has been removed
+            }
+            spareCapacity.put(container, highThreshold - totalWorkrate);
+            overshoot.put(container, totalWorkrate - highThreshold);
+            bySpareCapacity.add(container);
+            byOvershoot.add(container);
+        }
+        
+        /** As {@link PolicyUtilForPool#findColdestContainer(Set)}. */
+        NodeType findColdestContainer(Set<NodeType> excludedContainers) {
+            for (NodeType container : bySpareCapacity) {
+                if (spareCapacity.get(container) <= 0) return null;
+                if (!excludedContainers.contains(container)) return container;
+            }
+            return null;
+        }
+        
+        /** As {@link PolicyUtilForPool#findHottestContainer(Set)}. */
+        NodeType findHottestContainer(Set<NodeType> excludedContainers) {
+            for (NodeType container : byOvershoot) {
+                if (overshoot.get(container) <= 0) return null;
+                if (!excludedContainers.contains(container)) return container;
+            }
+            return null;
+        }
     }
     
     /**
@@ -53,6 +53,9 @@ public class DefaultBalanceablePoolModel<ContainerType, ItemType> implements Bal
      *  - Unfortunately changing threading model (so have a "rebalancer" thread, and a thread that 
      *    processes events to update the model), get ConcurrentModificationException if don't take
      *    copy of containerToItems.get(node)...
+     *  - With thousands of items, summing each container's items on every getTotalWorkrate dominated
+     *    rebalancing (it is called for every container when finding the hottest/coldest), so the totals
+     *    are maintained incrementally as items are added, moved, removed and their workrates change.
      */
     
     // Concurrent maps cannot have null value; use this to represent when no container is supplied for an item 
@@ -65,6 +68,8 @@ public class DefaultBalanceablePoolModel<ContainerType, ItemType> implements Bal
     private final Map<ItemType, ContainerType> itemToContainer = new ConcurrentHashMap<ItemType, ContainerType>();
     private final SetMultimap<ContainerType, ItemType> containerToItems =  Multimaps.synchronizedSetMultimap(HashMultimap.<ContainerType, ItemType>create());
     private final Map<ItemType, Double> itemToWorkrate = new ConcurrentHashMap<ItemType, Double>();
+    /** sum of the absolute workrates of each container's items; updated while synchronized on containerToItems */
+    private final Map<ContainerType, Double> containerToWorkrate = new ConcurrentHashMap<ContainerType, Double>();
     private final Set<ItemType> immovableItems = Collections.newSetFromMap(new ConcurrentHashMap<ItemType, Boolean>());
     
     private volatile double poolLowThreshold = 0;
@@ -117,13 +122,8 @@ public class DefaultBalanceablePoolModel<ContainerType, ItemType> implements Bal
     }
     
     @Override public double getTotalWorkrate(ContainerType container) {
-        double totalWorkrate = 0;
-        for (ItemType item : getItemsForContainer(container)) {
-            Double workrate = itemToWorkrate.get(item);
-            if (workrate != null)
-                totalWorkrate += Math.abs(workrate);
-        }
-        return totalWorkrate;
+        Double result = containerToWorkrate.get(container);
+        return (result != null) ? result : 0;
     }
     
     @Override public Map<ContainerType, Double> getContainerWorkrates() {
@@ -161,10 +161,7 @@ public class DefaultBalanceablePoolModel<ContainerType, ItemType> implements Bal
                     "if onItemAdded subsequently received will get new container then", item, newNode);
             return;
         }
-        ContainerType newNodeNonNull = toNonNullContainer(newNode);
-        ContainerType oldNode = itemToContainer.put(item, newNodeNonNull);
-        if (oldNode != null && oldNode != NULL_CONTAINER) containerToItems.remove(oldNode, item);
-        if (newNode != null) containerToItems.put(newNode, item);
+        setContainer(item, newNode);
     }
     
     @Override
@@ -205,28 +202,36 @@ public class DefaultBalanceablePoolModel<ContainerType, ItemType> implements Bal
         if (immovable)
             immovableItems.add(item);
         
-        ContainerType parentContainerNonNull = toNonNullContainer(parentContainer);
-        ContainerType oldNode = itemToContainer.put(item, parentContainerNonNull);
-        if (oldNode != null && oldNode != NULL_CONTAINER) containerToItems.remove(oldNode, item);
-        if (parentContainer != null) containerToItems.put(parentContainer, item);
+        setContainer(item, parentContainer);
     }
     
     @Override
     public void onItemRemoved(ItemType item) {
-        ContainerType oldNode = itemToContainer.remove(item);
-        if (oldNode != null && oldNode != NULL_CONTAINER) containerToItems.remove(oldNode, item);
-        Double workrate = itemToWorkrate.remove(item);
-        if (workrate != null)
-            currentPoolWorkrate -= workrate;
+        synchronized (containerToItems) {
+            ContainerType oldNode = itemToContainer.remove(item);
+            Double workrate = itemToWorkrate.remove(item);
+            if (oldNode != null && oldNode != NULL_CONTAINER) {
+                containerToItems.remove(oldNode, item);
+                adjustContainerWorkrate(oldNode, -absWorkrate(workrate));
+            }
+            if (workrate != null)
+                currentPoolWorkrate -= workrate;
+        }
         immovableItems.remove(item);
     }
     
     @Override
     public void onItemWorkrateUpdated(ItemType item, double newValue) {
         if (hasItem(item)) {
-            Double oldValue = itemToWorkrate.put(item, newValue);
-            double delta = ( newValue - (oldValue != null ? oldValue : 0) );
-            currentPoolWorkrate += delta;
+            synchronized (containerToItems) {
+                Double oldValue = itemToWorkrate.put(item, newValue);
+                double delta = ( newValue - (oldValue != null ? oldValue : 0) );
+                currentPoolWorkrate += delta;
+                ContainerType container = itemToContainer.get(item);
+                if (container != null && container != NULL_CONTAINER) {
+                    adjustContainerWorkrate(container, Math.abs(newValue) - absWorkrate(oldValue));
+                }
+            }
         } else {
             // Can happen when item removed - get notification of removal and workrate from group and item
             // respectively, so can overtake each other
@@ -238,6 +243,36 @@ public class DefaultBalanceablePoolModel<ContainerType, ItemType> implements Bal
         return itemToContainer.containsKey(item);
     }
     
+    private void setContainer(ItemType item, ContainerType newNode) {
+        synchronized (containerToItems) {
+            ContainerType oldNode = itemToContainer.put(item, toNonNullContainer(newNode));
+            double workrate = absWorkrate(itemToWorkrate.get(item));
+            if (oldNode != null && oldNode != NULL_CONTAINER) {
+                containerToItems.remove(oldNode, item);
+                adjustContainerWorkrate(oldNode, -workrate);
+            }
+            if (newNode != null) {
+                containerToItems.put(newNode, item);
+                adjustContainerWorkrate(newNode, workrate);
+            }
+        }
+    }
+    
+    /** Caller must hold the lock on containerToItems, and have already updated the container's items. */
+    private void adjustContainerWorkrate(ContainerType container, double delta) {
+        if (!containerToItems.containsKey(container)) {
+            // empty; also discards any rounding errors accumulated
+            containerToWorkrate.remove(container);
+            return;
+        }
+        Double oldValue = containerToWorkrate.get(container);
+        containerToWorkrate.put(container, (oldValue != null ? oldValue : 0) + delta);
+    }
+    
+    private static double absWorkrate(Double workrate) {
+        return (workrate != null) ? Math.abs(workrate) : 0;
+    }
+    
     
     // Additional methods for tests.
 
@@ -120,6 +120,31 @@ public class FollowTheSunPolicyTest extends AbstractFollowTheSunPolicyTest {
         assertItemDistributionEventually(ImmutableMap.of(containerA, ImmutableList.<MockItemEntity>of(), containerB, ImmutableList.of(item1, item2)));
     }
     
+    @Test
+    public void testMovesItemsWhenPlanningInParallel() throws Exception {
+        pool.policies().remove(policy);
+        FollowTheSunParameters parameters = FollowTheSunParameters.newDefault();
+        parameters.minItemsForParallelPlanning = 1;
+        pool.policies().add(new FollowTheSunPolicy(MutableMap.of("minPeriodBetweenExecs", 0), 
+                MockItemEntity.ITEM_USAGE_METRIC, model, parameters));
+        
+        MockContainerEntity containerA = newContainer(app, loc1, "A");
+        MockContainerEntity containerB = newContainer(app, loc2, "B");
+        MockItemEntity item1 = newItem(app, containerA, "1");
+        MockItemEntity item2 = newItem(app, containerA, "2");
+        MockItemEntity item3 = newItem(app, containerB, "3");
+
+        item1.sensors().set(MockItemEntity.ITEM_USAGE_METRIC, ImmutableMap.<Entity,Double>of(item3, 100d));
+        item2.sensors().set(MockItemEntity.ITEM_USAGE_METRIC, ImmutableMap.<Entity,Double>of(item3, 100d));
+        
+        assertItemDistributionEventually(ImmutableMap.of(containerA, ImmutableList.<MockItemEntity>of(), containerB, ImmutableList.of(item1, item2, item3)));
+        Asserts.succeedsEventually(MutableMap.of("timeout", TIMEOUT_MS), new Runnable() {
+            @Override public void run() {
+                assertEquals(pool.getAttribute(FollowTheSunPolicy.PLANNING_ITEMS), (Integer)3);
+                assertTrue(pool.getAttribute(FollowTheSunPolicy.PLANNING_DURATION) != null);
+            }});
+    }
+    
     @Test
     public void testNoopIfDemandIsTiny() throws Exception {
         // Set-up containers and items.
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.policy.loadbalancing;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Times {@link BalancingStrategy#rebalance()} on large pools, using lightweight stand-ins for the
+ * containers and items (the strategy only moves items and consults the model).
+ */
+public class BalancingStrategyPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BalancingStrategyPerformanceTest.class);
+
+    private static final double PRECISION = 0.00001;
+
+    @Test(groups={"Integration","Acceptance"})
+    public void testRebalanceLargePool() throws Exception {
+        int numContainers = 1000;
+        int numItems = 10000;
+        int numHotContainers = 100;
+
+        DefaultBalanceablePoolModel<Entity, Movable> model = new DefaultBalanceablePoolModel<Entity, Movable>("perf");
+        List<Entity> containers = MutableList.of();
+        for (int i = 0; i < numContainers; i++) {
+            Entity container = newStub(Entity.class, "container-"+i);
+            containers.add(container);
+            model.onContainerAdded(container, 0d, 10d);
+        }
+        // all items start on the first few containers, so those are far above their high threshold
+        Random random = new Random(0);
+        for (int i = 0; i < numItems; i++) {
+            Movable item = newStub(Movable.class, "item-"+i);
+            model.onItemAdded(item, containers.get(i % numHotContainers), false);
+            model.onItemWorkrateUpdated(item, random.nextDouble());
+        }
+        double poolWorkrate = model.getCurrentPoolWorkrate();
+        int hotBefore = countHot(model);
+
+        BalancingStrategy<Entity, Movable> strategy = new BalancingStrategy<Entity, Movable>("perf", model);
+        strategy.setMaxMigrationsPerBalancingNode(numItems);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        strategy.rebalance();
+        long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+
+        int hotAfter = countHot(model);
+        LOG.info("Rebalanced "+numItems+" items on "+numContainers+" containers in "+elapsed+"ms; "
+                +"containers above high threshold before "+hotBefore+", after "+hotAfter);
+        assertEquals(model.getCurrentPoolWorkrate(), poolWorkrate, PRECISION);
+        assertTrue(hotAfter < hotBefore, "before="+hotBefore+"; after="+hotAfter);
+    }
+
+    private int countHot(DefaultBalanceablePoolModel<Entity, Movable> model) {
+        int result = 0;
+        for (Entity container : model.getPoolContents()) {
+            if (model.getTotalWorkrate(container) > model.getHighThreshold(container)) result++;
+        }
+        return result;
+    }
+
+    private static <T extends Entity> T newStub(Class<T> type, final String name) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("equals") && args != null && args.length == 1) return proxy == args[0];
+                if (method.getName().equals("hashCode") && args == null) return System.identityHashCode(proxy);
+                if (method.getName().equals("toString") && args == null) return name;
+                // e.g. Movable.move: the strategy updates the model itself
+                return null;
+            }
+        }));
+    }
+}
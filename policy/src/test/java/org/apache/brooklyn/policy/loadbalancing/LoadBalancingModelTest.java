@@ -114,4 +114,27 @@ public class LoadBalancingModelTest extends BrooklynAppUnitTestSupport {
         assertEquals(model.getContainerWorkrates(), ImmutableMap.of(container1, 0d, container2, 123d));
         assertEquals(model.getCurrentPoolWorkrate(), 123d);
     }
+    
+    @Test
+    public void testContainerWorkratesTrackItemChanges() throws Exception {
+        model.onContainerAdded(container1, 10d, 20d);
+        model.onContainerAdded(container2, 11d, 21d);
+        model.onItemAdded(item1, container1, false);
+        model.onItemAdded(item2, container1, false);
+        model.onItemAdded(item3, container2, false);
+        model.onItemWorkrateUpdated(item1, 1d);
+        model.onItemWorkrateUpdated(item2, 2d);
+        model.onItemWorkrateUpdated(item3, -4d);
+        assertEquals(model.getContainerWorkrates(), ImmutableMap.of(container1, 3d, container2, 4d));
+        
+        model.onItemWorkrateUpdated(item2, 5d);
+        assertEquals(model.getContainerWorkrates(), ImmutableMap.of(container1, 6d, container2, 4d));
+        
+        model.onItemMoved(item2, container2);
+        assertEquals(model.getContainerWorkrates(), ImmutableMap.of(container1, 1d, container2, 9d));
+        
+        model.onItemRemoved(item3);
+        model.onItemAdded(item1, container2, false);
+        assertEquals(model.getContainerWorkrates(), ImmutableMap.of(container1, 0d, container2, 6d));
+    }
 }
@@ -56,7 +56,11 @@ public interface ActivityApi {
     public List<TaskSummary> children(
             @ApiParam(value = "Task ID", required = true) @PathParam("task") String taskId,
             @ApiParam(value = "Whether to include non-subtask backgrounded tasks submitted by this task", required = false)
-            @QueryParam("includeBackground") @DefaultValue("false") Boolean includeBackground);
+            @QueryParam("includeBackground") @DefaultValue("false") Boolean includeBackground,
+            @ApiParam(value = "Index of the first task to return (default 0)", required = false)
+            @QueryParam("offset") @DefaultValue("0") int offset,
+            @ApiParam(value = "Max number of tasks to return, or -1 for all (default)", required = false)
+            @QueryParam("limit") @DefaultValue("-1") int limit);
 
     @GET
     @Path("/{task}/children/recurse")
@@ -71,9 +75,11 @@ public interface ActivityApi {
             @ApiParam(value = "Max number of tasks to include, or -1 for all (default 200)", required = false) 
             @QueryParam("limit") @DefaultValue("200") int limit,
             @ApiParam(value = "Max depth to traverse, or -1 for all (default)", required = false) 
-            @QueryParam("maxDepth") @DefaultValue("-1") int maxDepth);
+            @QueryParam("maxDepth") @DefaultValue("-1") int maxDepth,
+            @ApiParam(value = "Index of the first task to include, in breadth-first order (default 0)", required = false)
+            @QueryParam("offset") @DefaultValue("0") int offset);
 
-    /** @deprecated since 0.12.0 use {@link #getAllChildrenAsMap(String, int, int)} with depth -1 */
+    /** @deprecated since 0.12.0 use {@link #getAllChildrenAsMap(String, int, int, int)} with depth -1 */
     @GET
     @Path("/{task}/children/recurse/deprecated")
     @ApiOperation(
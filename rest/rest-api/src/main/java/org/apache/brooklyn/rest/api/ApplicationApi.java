@@ -53,15 +53,29 @@ import io.swagger.annotations.ApiResponses;
 @Consumes(MediaType.APPLICATION_JSON)
 public interface ApplicationApi {
 
+    /**
+     * Response header giving the modification sequence as at the start of the request,
+     * for passing as the {@code since} parameter of the next request.
+     */
+    public static final String MODIFICATION_SEQUENCE_HEADER = "Brooklyn-Modification-Sequence";
+
     @GET
     @Path("/fetch")
     @ApiOperation(
-            value = "Fetch display details for all applications and optionally selected additional entities"
+            value = "Fetch display details for all applications and optionally selected additional entities",
+            notes = "Supports If-None-Match with the returned ETag. The response's " + MODIFICATION_SEQUENCE_HEADER + " header can be "
+                    + "passed as 'since' on the next call, to fetch only the entities changed since then."
     )
     public List<EntityDetail> fetch(
             @ApiParam(value="Selected additional entity ID's to include, comma-separated", required=false)
             @DefaultValue("")
-            @QueryParam("items") String items);
+            @QueryParam("items") String items,
+            @ApiParam(value="Only include entities changed since this modification sequence", required=false)
+            @QueryParam("since") Long since,
+            @ApiParam(value="Index of the first entity to return (default 0)", required=false)
+            @QueryParam("offset") @DefaultValue("0") int offset,
+            @ApiParam(value="Maximum number of entities to return, or -1 for all (default)", required=false)
+            @QueryParam("limit") @DefaultValue("-1") int limit);
 
     @GET
     @ApiOperation(
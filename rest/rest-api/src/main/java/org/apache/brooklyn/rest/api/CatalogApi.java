@@ -231,7 +231,11 @@ public interface CatalogApi {
         @ApiParam(name = "fragment", value = "Substring case-insensitive to search for")
         @QueryParam("fragment") @DefaultValue("") String fragment,
         @ApiParam(name = "allVersions", value = "Include all versions (defaults false, only returning the best version)")
-        @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions);
+        @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions,
+        @ApiParam(name = "offset", value = "Index of the first item to return (defaults 0)")
+        @QueryParam("offset") @DefaultValue("0") int offset,
+        @ApiParam(name = "limit", value = "Maximum number of items to return, or -1 for all (the default)")
+        @QueryParam("limit") @DefaultValue("-1") int limit);
 
     // bad name - it is just templates
     @GET
@@ -245,7 +249,11 @@ public interface CatalogApi {
             @ApiParam(name = "fragment", value = "Substring case-insensitive to search for")
             @QueryParam("fragment") @DefaultValue("") String fragment,
             @ApiParam(name = "allVersions", value = "Include all versions (defaults false, only returning the best version)")
-            @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions);
+            @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions,
+            @ApiParam(name = "offset", value = "Index of the first item to return (defaults 0)")
+            @QueryParam("offset") @DefaultValue("0") int offset,
+            @ApiParam(name = "limit", value = "Maximum number of items to return, or -1 for all (the default)")
+            @QueryParam("limit") @DefaultValue("-1") int limit);
 
     @GET
     @Path("/entities/{symbolicName}/{version}")
@@ -294,7 +302,11 @@ public interface CatalogApi {
             @ApiParam(name = "fragment", value = "Substring case-insensitive to search for")
             @QueryParam("fragment") @DefaultValue("") String fragment,
             @ApiParam(name = "allVersions", value = "Include all versions (defaults false, only returning the best version)")
-            @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions);
+            @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions,
+            @ApiParam(name = "offset", value = "Index of the first item to return (defaults 0)")
+            @QueryParam("offset") @DefaultValue("0") int offset,
+            @ApiParam(name = "limit", value = "Maximum number of items to return, or -1 for all (the default)")
+            @QueryParam("limit") @DefaultValue("-1") int limit);
 
     @GET
     @Path("/policies/{policyId}/{version}")
@@ -324,7 +336,11 @@ public interface CatalogApi {
             @ApiParam(name = "fragment", value = "Substring case-insensitive to search for")
             @QueryParam("fragment") @DefaultValue("") String fragment,
             @ApiParam(name = "allVersions", value = "Include all versions (defaults false, only returning the best version)")
-            @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions);
+            @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions,
+            @ApiParam(name = "offset", value = "Index of the first item to return (defaults 0)")
+            @QueryParam("offset") @DefaultValue("0") int offset,
+            @ApiParam(name = "limit", value = "Maximum number of items to return, or -1 for all (the default)")
+            @QueryParam("limit") @DefaultValue("-1") int limit);
 
     @GET
     @Path("/locations/{locationId}/{version}")
@@ -396,7 +412,11 @@ public interface CatalogApi {
             @ApiParam(name = "fragment", value = "Substring case-insensitive to search for")
             @QueryParam("fragment") @DefaultValue("") String fragment,
             @ApiParam(name = "allVersions", value = "Include all versions (defaults false, only returning the best version)")
-            @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions);
+            @QueryParam("allVersions") @DefaultValue("false") boolean includeAllVersions,
+            @ApiParam(name = "offset", value = "Index of the first item to return (defaults 0)")
+            @QueryParam("offset") @DefaultValue("0") int offset,
+            @ApiParam(name = "limit", value = "Maximum number of items to return, or -1 for all (the default)")
+            @QueryParam("limit") @DefaultValue("-1") int limit);
 
     @GET
     @Path("/enrichers/{enricherId}/{version}")
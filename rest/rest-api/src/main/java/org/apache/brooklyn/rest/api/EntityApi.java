@@ -43,6 +43,8 @@ public interface EntityApi {
 
     @GET
     @ApiOperation(value = "Fetch the list of entities for a given application",
+            notes = "Supports If-None-Match with the returned ETag. The response's " + ApplicationApi.MODIFICATION_SEQUENCE_HEADER + " header can be "
+                    + "passed as 'since' on the next call, to list only the entities changed since then.",
             response = org.apache.brooklyn.rest.domain.EntitySummary.class,
             responseContainer = "List")
     @ApiResponses(value = {
@@ -50,7 +52,9 @@ public interface EntityApi {
     })
     public List<EntitySummary> list(
             @ApiParam(value = "Application ID or name", required = true)
-            @PathParam("application") final String application);
+            @PathParam("application") final String application,
+            @ApiParam(value = "Only include entities changed since this modification sequence", required = false)
+            @QueryParam("since") final Long since);
 
     @GET
     @Path("/{entity}")
@@ -26,12 +26,14 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.apache.brooklyn.rest.domain.SensorSummary;
 
@@ -46,6 +48,9 @@ import io.swagger.annotations.ApiParam;
 @Consumes(MediaType.APPLICATION_JSON)
 public interface SensorApi {
 
+    /** Media type for {@link #stream(String, String, String, Boolean, String, String, Boolean, String, String)} */
+    public static final String SERVER_SENT_EVENTS = "text/event-stream";
+
     @GET
     @ApiOperation(value = "Fetch the sensor list for a specific application entity",
             response = org.apache.brooklyn.rest.domain.SensorSummary.class,
@@ -61,14 +66,51 @@ public interface SensorApi {
 
     @GET
     @Path("/current-state")
-    @ApiOperation(value = "Fetch sensor values in batch", notes="Returns a map of sensor name to value")
+    @ApiOperation(value = "Fetch sensor values in batch", notes="Returns a map of sensor name to value. "
+            + "Supports If-None-Match with the returned ETag. The response's " + ApplicationApi.MODIFICATION_SEQUENCE_HEADER + " header can be "
+            + "passed as 'since' on the next call, to read only the sensors changed since then.")
     public Map<String, Object> batchSensorRead(
             @ApiParam(value = "Application ID or name", required = true)
             @PathParam("application") final String application,
             @ApiParam(value = "Entity ID or name", required = true)
             @PathParam("entity") final String entityToken,
             @ApiParam(value = "Return raw sensor data instead of display values", required = false)
-            @QueryParam("raw") @DefaultValue("false") final Boolean raw);
+            @QueryParam("raw") @DefaultValue("false") final Boolean raw,
+            @ApiParam(value = "Only include sensors changed since this modification sequence", required = false)
+            @QueryParam("since") final Long since);
+
+    @GET
+    @Path("/stream")
+    @ApiOperation(value = "Stream sensor changes (server-sent events)",
+            notes = "Sends the current values of matching sensors, then their changes as they occur, as server-sent events "
+                    + "whose data is a JSON object with the entity id, sensor name and value. "
+                    + "Changes are coalesced, so at most one event per sensor is sent each period, with the latest value. "
+                    + "The stream ends after the timeout; reconnecting with the last event id (as the Last-Event-ID header, "
+                    + "as browsers do, or the 'resume' parameter) shortly afterwards resumes from that event, "
+                    + "without resending unchanged values.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 404, message = "Could not find application or entity")
+    })
+    @Produces(SERVER_SENT_EVENTS)
+    public Response stream(
+            @ApiParam(value = "Application ID or name", required = true)
+            @PathParam("application") final String application,
+            @ApiParam(value = "Entity ID or name", required = true)
+            @PathParam("entity") final String entityToken,
+            @ApiParam(value = "Comma-separated sensor names or globs, e.g. 'service.*,host.name'", required = false)
+            @QueryParam("sensors") @DefaultValue("*") final String sensorGlobs,
+            @ApiParam(value = "Whether to include the sensors of descendants of the entity", required = false)
+            @QueryParam("descendants") @DefaultValue("true") final Boolean includeDescendants,
+            @ApiParam(value = "Minimum period between sending batches of changes, e.g. '1s'", required = false)
+            @QueryParam("period") @DefaultValue("1s") final String period,
+            @ApiParam(value = "How long to stream for before ending the response, e.g. '1m'", required = false)
+            @QueryParam("timeout") @DefaultValue("1m") final String timeout,
+            @ApiParam(value = "Return raw sensor data instead of display values", required = false)
+            @QueryParam("raw") @DefaultValue("false") final Boolean raw,
+            @ApiParam(value = "Id of the last event received, to resume a stream", required = false)
+            @QueryParam("resume") final String resumeToken,
+            @ApiParam(value = "Id of the last event received, as sent by browsers when reconnecting", required = false)
+            @HeaderParam("Last-Event-ID") final String lastEventId);
 
     @GET
     @Path("/{sensor}")
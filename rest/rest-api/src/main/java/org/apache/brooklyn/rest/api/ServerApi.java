@@ -106,7 +106,9 @@ public interface ServerApi {
 
     @GET
     @Path("/up/extended")
-    @ApiOperation(value = "Returns extended server-up information, a map including up (/up), shuttingDown (/shuttingDown), healthy (/healthy), and ha (/ha/states) (qv)"
+    @ApiOperation(value = "Returns extended server-up information, a map including up (/up), shuttingDown (/shuttingDown), healthy (/healthy), ha (/ha/states) (qv), "
+        + "and startup (the timings of the phases of server startup, where known)"
+        + "; also entitlementCache (hits, misses and hitRatio), if entitlement decisions are cached and the user may see all server info"
         + "; also forces a session, so a useful general-purpose call for a UI client to do when starting")
     public Map<String,Object> getUpExtended();
 
@@ -187,6 +189,25 @@ public interface ServerApi {
 
     // TODO /ha/persist/backup set of endpoints, to list and retrieve specific backups
 
+    @GET
+    @Path("/tasks/statistics")
+    @ApiOperation(value = "Returns queue-wait and run-time statistics of tasks, by task category and by entity type, "
+            + "recorded since enabled or last reset")
+    public Map<String,Object> getTaskStatistics();
+
+    @POST
+    @Path("/tasks/statistics/enabled")
+    @ApiOperation(value = "Enables or disables recording of task statistics, returning whether they were previously enabled; "
+            + "requires the root entitlement")
+    public boolean setTaskStatisticsEnabled(
+            @ApiParam(name = "enabled", value = "Whether to record task statistics", required = true)
+            @FormParam("enabled") boolean enabled);
+
+    @POST
+    @Path("/tasks/statistics/reset")
+    @ApiOperation(value = "Discards the task statistics recorded so far; requires the root entitlement")
+    public void resetTaskStatistics();
+
     @GET
     @Path("/user")
     @ApiOperation(value = "Return user information for this Brooklyn instance"
@@ -157,6 +157,15 @@ public class BrooklynWebConfig {
             "SSL_DHE_DSS_WITH_CAMELLIA_128_CBC_SHA,SSL_RSA_WITH_CAMELLIA_128_CBC_SHA," +
             "SSL_RSA_WITH_3DES_EDE_CBC_SHA");
 
+    /**
+     * Each connected sensor event stream holds a web container thread for as long as it is connected,
+     * so this should be well below the size of the container's thread pool.
+     */
+    public final static ConfigKey<Integer> SENSOR_STREAMS_MAX_CONNECTED = ConfigKeys.newIntegerConfigKey(
+            BASE_NAME+".sensorStreams.maxConnected",
+            "Maximum number of sensor event streams connected at once; further requests are refused with 503 (Service Unavailable)",
+            10);
+
     public final static boolean hasNoSecurityOptions(ConfigMap config) {
         return config.findKeysPresent(ConfigPredicates.nameStartsWith(BASE_NAME_SECURITY)).isEmpty();
     }
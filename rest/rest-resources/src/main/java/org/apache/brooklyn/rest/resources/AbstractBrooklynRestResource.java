@@ -19,15 +19,25 @@
 package org.apache.brooklyn.rest.resources;
 
 import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.ContextResolver;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.core.config.render.RendererHints;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.rest.api.ApplicationApi;
 import org.apache.brooklyn.rest.domain.ApiError;
 import org.apache.brooklyn.rest.util.BrooklynRestResourceUtils;
 import org.apache.brooklyn.rest.util.DefaultExceptionMapper;
@@ -40,7 +50,10 @@ import org.apache.brooklyn.util.time.Duration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 public abstract class AbstractBrooklynRestResource {
 
@@ -49,6 +62,12 @@ public abstract class AbstractBrooklynRestResource {
     @Context
     private ContextResolver<ManagementContext> mgmt;
 
+    @Context
+    private Request request;
+
+    @Context
+    private HttpServletResponse response;
+
     private BrooklynRestResourceUtils brooklynRestResourceUtils;
     private ObjectMapper mapper;
 
@@ -91,6 +110,44 @@ public abstract class AbstractBrooklynRestResource {
         return mapper;
     }
 
+    /**
+     * Returns a weak ETag for a representation of the given entities, computed from their
+     * {@link EntityInternal#getModificationSequence() modification sequences} (so without rendering them),
+     * the requesting user, and the other given inputs to the representation (such as query parameters).
+     */
+    protected EntityTag modificationTag(Iterable<? extends Entity> entities, Object... otherInputs) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+        hasher.putString(String.valueOf(entitlementContext != null ? entitlementContext.user() : null), Charsets.UTF_8);
+        for (Object input : otherInputs) {
+            hasher.putString(String.valueOf(input), Charsets.UTF_8);
+        }
+        for (Entity entity : entities) {
+            hasher.putString(entity.getId(), Charsets.UTF_8);
+            hasher.putLong(((EntityInternal) entity).getModificationSequence());
+        }
+        return new EntityTag(hasher.hash().toString(), true);
+    }
+
+    /**
+     * Responds with 304 Not Modified if the request's If-None-Match matches the given tag; otherwise sets
+     * the tag on the response, along with the given sequence (typically read before looking at the entities)
+     * for the client to pass as {@code since} on its next request.
+     */
+    protected void checkModified(EntityTag tag, long sequence) {
+        if (request != null) {
+            ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                throw new WebApplicationException(notModified.tag(tag)
+                        .header(ApplicationApi.MODIFICATION_SEQUENCE_HEADER, sequence).build());
+            }
+        }
+        if (response != null) {
+            response.setHeader(HttpHeaders.ETAG, tag.toString());
+            response.setHeader(ApplicationApi.MODIFICATION_SEQUENCE_HEADER, Long.toString(sequence));
+        }
+    }
+
     /** @deprecated since 0.7.0 use {@link #getValueForDisplay(Object, boolean, boolean, Boolean, EntityLocal, Duration)} */ @Deprecated
     protected Object getValueForDisplay(Object value, boolean preferJson, boolean isJerseyReturnValue) {
         return resolving(value).preferJson(preferJson).asJerseyOutermostReturnValue(isJerseyReturnValue).resolve();
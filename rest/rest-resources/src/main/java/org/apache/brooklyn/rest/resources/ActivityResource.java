@@ -20,8 +20,8 @@ package org.apache.brooklyn.rest.resources;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,7 +39,7 @@ import org.apache.brooklyn.rest.util.WebResourceUtils;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableSet;
 
-import com.google.common.collect.Collections2;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -55,13 +55,13 @@ public class ActivityResource extends AbstractBrooklynRestResource implements Ac
 
     @Override @Deprecated
     public Map<String, TaskSummary> getAllChildrenAsMap(final String taskId) {
-        return getAllChildrenAsMap(taskId, 200, -1);
+        return getAllChildrenAsMap(taskId, 200, -1, 0);
     }
     
     @Override
-    public Map<String, TaskSummary> getAllChildrenAsMap(final String taskId, final int limit, final int maxDepth) {
+    public Map<String, TaskSummary> getAllChildrenAsMap(final String taskId, final int limit, final int maxDepth, final int offset) {
         final Task<?> parentTask = findTask(taskId);
-        return getAllDescendantTasks(parentTask, limit, maxDepth);
+        return getAllDescendantTasks(parentTask, offset, limit, maxDepth);
     }
 
     protected Task<?> findTask(final String taskId) {
@@ -73,62 +73,91 @@ public class ActivityResource extends AbstractBrooklynRestResource implements Ac
         return task;
     }
 
-    private LinkedHashMap<String, TaskSummary> getAllDescendantTasks(final Task<?> parentTask, int limit, int maxDepth) {
+    /**
+     * Returns the given page of the descendants of the task, in breadth-first order. The tree is walked
+     * only as far as the end of the page, and only the tasks in the page are transformed.
+     */
+    private LinkedHashMap<String, TaskSummary> getAllDescendantTasks(final Task<?> parentTask, int offset, int limit, int maxDepth) {
+        if (offset < 0) throw WebResourceUtils.badRequest("Invalid offset %s; must not be negative", offset);
+        Iterable<Task<?>> page = Iterables.skip(getDescendantTasks(parentTask, maxDepth), offset);
+        if (limit >= 0) {
+            page = Iterables.limit(page, limit);
+        }
         final LinkedHashMap<String, TaskSummary> result = Maps.newLinkedHashMap();
-        if (!(parentTask instanceof HasTaskChildren)) {
-            return result;
+        for (Task<?> task : page) {
+            result.put(task.getId(), TaskTransformer.fromTask(ui.getBaseUriBuilder()).apply(task));
         }
-        Set<Task<?>> nextLayer = MutableSet.copyOf( ((HasTaskChildren) parentTask).getChildren() );
-        outer: while (limit!=0 && !nextLayer.isEmpty() && maxDepth-- != 0) {
-            Set<Task<?>> thisLayer = nextLayer;
-            nextLayer = MutableSet.of();
-            for (final Task<?> childTask : thisLayer) {
-                TaskSummary wasThere = result.put(childTask.getId(), TaskTransformer.fromTask(ui.getBaseUriBuilder()).apply(childTask));
-                if (wasThere==null) {
-                    if (--limit == 0) {
-                        break outer;
-                    }
-                    if (childTask instanceof HasTaskChildren) {
-                        Iterables.addAll(nextLayer, ((HasTaskChildren)childTask).getChildren());
+        return result;
+    }
+
+    /** The distinct descendants of the task to the given depth (or all, if negative), walked lazily layer by layer. */
+    private Iterable<Task<?>> getDescendantTasks(final Task<?> parentTask, final int maxDepth) {
+        return new Iterable<Task<?>>() {
+            @Override
+            public Iterator<Task<?>> iterator() {
+                return new AbstractIterator<Task<?>>() {
+                    final Set<String> seen = MutableSet.of();
+                    Iterator<Task<?>> thisLayer = (maxDepth == 0) ? Collections.<Task<?>>emptyIterator() : getSubTaskChildren(parentTask).iterator();
+                    Set<Task<?>> nextLayer = MutableSet.of();
+                    int depth = 1;
+
+                    @Override
+                    protected Task<?> computeNext() {
+                        while (true) {
+                            while (thisLayer.hasNext()) {
+                                Task<?> childTask = thisLayer.next();
+                                if (seen.add(childTask.getId())) {
+                                    if (depth != maxDepth) {
+                                        nextLayer.addAll(getSubTaskChildren(childTask));
+                                    }
+                                    return childTask;
+                                }
+                            }
+                            if (nextLayer.isEmpty()) {
+                                return endOfData();
+                            }
+                            depth++;
+                            thisLayer = nextLayer.iterator();
+                            nextLayer = MutableSet.of();
+                        }
                     }
-                }
+                };
             }
-        }
-        return result;
+        };
     }
 
 
     @Override
-    public List<TaskSummary> children(String taskId, Boolean includeBackground) {
+    public List<TaskSummary> children(String taskId, Boolean includeBackground, int offset, int limit) {
         Task<?> t = findTask(taskId);
 
-        Set<TaskSummary> result = MutableSet.copyOf(getSubTaskChildren(t));
+        Set<Task<?>> result = MutableSet.copyOf(getSubTaskChildren(t));
         if (Boolean.TRUE.equals(includeBackground)) {
             result.addAll(getBackgroundedChildren(t));
         }
-        return MutableList.copyOf(result);
+        return WebResourceUtils.transformPage(MutableList.copyOf(result), offset, limit,
+                TaskTransformer.fromTask(ui.getBaseUriBuilder()));
     }
 
-    private Collection<? extends TaskSummary> getBackgroundedChildren(Task<?> t) {
+    private Collection<Task<?>> getBackgroundedChildren(Task<?> t) {
         Entity entity = BrooklynTaskTags.getContextEntity(t);
-        List<TaskSummary> result = MutableList.of();
+        List<Task<?>> result = MutableList.of();
         if (entity!=null) {
             Set<Task<?>> tasks = BrooklynTaskTags.getTasksInEntityContext(mgmt().getExecutionManager(), entity);
             for (Task<?> ti: tasks) {
                 if (t.equals(ti.getSubmittedByTask())) {
-                    result.add(TaskTransformer.fromTask(ui.getBaseUriBuilder()).apply(ti));
+                    result.add(ti);
                 }
             }
         }
         return result;
     }
 
-    private List<TaskSummary> getSubTaskChildren(Task<?> t) {
+    private List<Task<?>> getSubTaskChildren(Task<?> t) {
         if (!(t instanceof HasTaskChildren)) {
             return Collections.emptyList();
         }
-        return new LinkedList<TaskSummary>(Collections2.transform(Lists.newArrayList(((HasTaskChildren) t).getChildren()),
-                TaskTransformer.fromTask(ui.getBaseUriBuilder())));
+        return Lists.newArrayList(((HasTaskChildren) t).getChildren());
     }
 
     @Override
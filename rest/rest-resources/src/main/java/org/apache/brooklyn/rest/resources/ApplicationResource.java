@@ -49,7 +49,9 @@ import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.core.config.ConstraintViolationException;
+import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.core.entity.Attributes;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.entity.EntityPredicates;
 import org.apache.brooklyn.core.entity.lifecycle.Lifecycle;
 import org.apache.brooklyn.core.entity.trait.Startable;
@@ -89,6 +91,7 @@ import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.FluentIterable;
@@ -177,11 +180,11 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
     }
 
     @Override
-    public List<EntityDetail> fetch(String entityIds) {
-
-        List<EntityDetail> entitySummaries = Lists.newArrayList();
+    public List<EntityDetail> fetch(String entityIds, Long since, int offset, int limit) {
+        long sequence = AbstractEntity.getCurrentModificationSequence();
+        List<Entity> entities = Lists.newArrayList();
         for (Entity application : mgmt().getApplications()) {
-            entitySummaries.add(fromEntity(application));
+            entities.add(application);
         }
 
         if (entityIds != null) {
@@ -195,13 +198,27 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
                 Entity entity = mgmt().getEntityManager().getEntity(entityId.trim());
                 while (entity != null && entity.getParent() != null) {
                     if (Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY, entity)) {
-                        entitySummaries.add(fromEntity(entity));
+                        entities.add(entity);
                     }
                     entity = entity.getParent();
                 }
             }
         }
-        return entitySummaries;
+        checkModified(modificationTag(entities, "fetch", since), sequence);
+
+        List<Entity> changed = Lists.newArrayList();
+        for (Entity entity : entities) {
+            if (since == null || ((EntityInternal) entity).getModificationSequence() > since) {
+                changed.add(entity);
+            }
+        }
+        // page before creating the details, so that only the requested details are created
+        return WebResourceUtils.transformPage(changed, offset, limit, new Function<Entity, EntityDetail>() {
+            @Override
+            public EntityDetail apply(Entity entity) {
+                return fromEntity(entity);
+            }
+        });
     }
 
     @Override
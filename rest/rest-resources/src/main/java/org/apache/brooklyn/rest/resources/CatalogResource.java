@@ -293,24 +293,24 @@ public class CatalogResource extends AbstractBrooklynRestResource implements Cat
     }
 
     @Override
-    public List<CatalogEntitySummary> listEntities(String regex, String fragment, boolean allVersions) {
+    public List<CatalogEntitySummary> listEntities(String regex, String fragment, boolean allVersions, int offset, int limit) {
         Predicate<RegisteredType> filter =
                 Predicates.and(
                         RegisteredTypePredicates.IS_ENTITY,
                         RegisteredTypePredicates.disabled(false));
-        List<CatalogItemSummary> result = getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, allVersions);
+        List<CatalogItemSummary> result = getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, allVersions, offset, limit);
         return castList(result, CatalogEntitySummary.class);
     }
 
     @Override
-    public List<CatalogItemSummary> listApplications(String regex, String fragment, boolean allVersions) {
+    public List<CatalogItemSummary> listApplications(String regex, String fragment, boolean allVersions, int offset, int limit) {
         @SuppressWarnings("unchecked")
         Predicate<RegisteredType> filter =
                 Predicates.and(
                         RegisteredTypePredicates.template(true),
                         RegisteredTypePredicates.deprecated(false),
                         RegisteredTypePredicates.disabled(false));
-        return getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, allVersions);
+        return getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, allVersions, offset, limit);
     }
     
     @Override
@@ -336,12 +336,12 @@ public class CatalogResource extends AbstractBrooklynRestResource implements Cat
     }
 
     @Override
-    public List<CatalogPolicySummary> listPolicies(String regex, String fragment, boolean allVersions) {
+    public List<CatalogPolicySummary> listPolicies(String regex, String fragment, boolean allVersions, int offset, int limit) {
         Predicate<RegisteredType> filter =
                 Predicates.and(
                         RegisteredTypePredicates.IS_POLICY,
                         RegisteredTypePredicates.disabled(false));
-        List<CatalogItemSummary> result = getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, allVersions);
+        List<CatalogItemSummary> result = getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, allVersions, offset, limit);
         return castList(result, CatalogPolicySummary.class);
     }
 
@@ -362,12 +362,12 @@ public class CatalogResource extends AbstractBrooklynRestResource implements Cat
     }
 
     @Override
-    public List<CatalogLocationSummary> listLocations(String regex, String fragment, boolean allVersions) {
+    public List<CatalogLocationSummary> listLocations(String regex, String fragment, boolean allVersions, int offset, int limit) {
         Predicate<RegisteredType> filter =
                 Predicates.and(
                         RegisteredTypePredicates.IS_LOCATION,
                         RegisteredTypePredicates.disabled(false));
-        List<CatalogItemSummary> result = getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, allVersions);
+        List<CatalogItemSummary> result = getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, allVersions, offset, limit);
         return castList(result, CatalogLocationSummary.class);
     }
 
@@ -389,7 +389,7 @@ public class CatalogResource extends AbstractBrooklynRestResource implements Cat
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private <T,SpecT> List<CatalogItemSummary> getCatalogItemSummariesMatchingRegexFragment(
-            Predicate<RegisteredType> type, String regex, String fragment, boolean allVersions) {
+            Predicate<RegisteredType> type, String regex, String fragment, boolean allVersions, int offset, int limit) {
         List<Predicate<RegisteredType>> filters = new ArrayList();
         filters.add(type);
         if (Strings.isNonEmpty(regex))
@@ -404,7 +404,8 @@ public class CatalogResource extends AbstractBrooklynRestResource implements Cat
         ImmutableList<RegisteredType> sortedItems =
                 FluentIterable.from(brooklyn().getTypeRegistry().getMatching(Predicates.and(filters)))
                     .toSortedList(RegisteredTypes.RegisteredTypeNameThenBestFirstComparator.INSTANCE);
-        return Lists.transform(sortedItems, toCatalogItemSummary(ui));
+        // page before transforming, so that only the requested summaries are created
+        return Lists.transform(WebResourceUtils.page(sortedItems, offset, limit), toCatalogItemSummary(ui));
     }
 
     @Override
@@ -440,12 +441,12 @@ public class CatalogResource extends AbstractBrooklynRestResource implements Cat
     }
 
     @Override
-    public List<CatalogEnricherSummary> listEnrichers(@ApiParam(name = "regex", value = "Regular expression to search for") @DefaultValue("") String regex, @ApiParam(name = "fragment", value = "Substring case-insensitive to search for") @DefaultValue("") String fragment, @ApiParam(name = "allVersions", value = "Include all versions (defaults false, only returning the best version)") @DefaultValue("false") boolean includeAllVersions) {
+    public List<CatalogEnricherSummary> listEnrichers(@ApiParam(name = "regex", value = "Regular expression to search for") @DefaultValue("") String regex, @ApiParam(name = "fragment", value = "Substring case-insensitive to search for") @DefaultValue("") String fragment, @ApiParam(name = "allVersions", value = "Include all versions (defaults false, only returning the best version)") @DefaultValue("false") boolean includeAllVersions, int offset, int limit) {
         Predicate<RegisteredType> filter =
                 Predicates.and(
                         RegisteredTypePredicates.IS_ENRICHER,
                         RegisteredTypePredicates.disabled(false));
-        List<CatalogItemSummary> result = getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, includeAllVersions);
+        List<CatalogItemSummary> result = getCatalogItemSummariesMatchingRegexFragment(filter, regex, fragment, includeAllVersions, offset, limit);
         return castList(result, CatalogEnricherSummary.class);
     }
 
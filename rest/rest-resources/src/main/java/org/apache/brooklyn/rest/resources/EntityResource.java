@@ -24,6 +24,7 @@ import static javax.ws.rs.core.Response.Status.ACCEPTED;
 import static org.apache.brooklyn.rest.util.WebResourceUtils.serviceAbsoluteUriBuilder;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
@@ -40,6 +41,8 @@ import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.entity.AbstractEntity;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTags;
 import org.apache.brooklyn.core.mgmt.BrooklynTags.NamedStringTag;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
@@ -67,8 +70,10 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
@@ -84,10 +89,22 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
     private UriInfo uriInfo;
     
     @Override
-    public List<EntitySummary> list(final String application) {
+    public List<EntitySummary> list(final String application, final Long since) {
+        long sequence = AbstractEntity.getCurrentModificationSequence();
+        Entity app = brooklyn().getApplication(application);
+        Collection<Entity> children = app.getChildren();
+        // the app's sequence changes when children are added or removed
+        checkModified(modificationTag(Iterables.concat(ImmutableList.of(app), children), "entities", since), sequence);
+        
         return FluentIterable
-                .from(brooklyn().getApplication(application).getChildren())
+                .from(children)
                 .filter(EntitlementPredicates.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY))
+                .filter(new Predicate<Entity>() {
+                    @Override
+                    public boolean apply(Entity input) {
+                        return since == null || ((EntityInternal) input).getModificationSequence() > since;
+                    }
+                })
                 .transform(EntityTransformer.fromEntity(ui.getBaseUriBuilder()))
                 .toList();
     }
@@ -20,26 +20,44 @@ package org.apache.brooklyn.rest.resources;
 
 import static com.google.common.collect.Iterables.filter;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
+import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
 import org.apache.brooklyn.core.sensor.BasicAttributeSensor;
+import org.apache.brooklyn.rest.BrooklynWebConfig;
 import org.apache.brooklyn.rest.api.SensorApi;
 import org.apache.brooklyn.rest.domain.SensorSummary;
 import org.apache.brooklyn.rest.filter.HaHotStateRequired;
 import org.apache.brooklyn.rest.transform.SensorTransformer;
+import org.apache.brooklyn.rest.util.SensorEventStream;
+import org.apache.brooklyn.rest.util.SensorEventStream.Change;
 import org.apache.brooklyn.rest.util.WebResourceUtils;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -72,12 +90,14 @@ public class SensorResource extends AbstractBrooklynRestResource implements Sens
     }
 
     @Override
-    public Map<String, Object> batchSensorRead(final String application, final String entityToken, final Boolean raw) {
+    public Map<String, Object> batchSensorRead(final String application, final String entityToken, final Boolean raw, final Long since) {
+        long sequence = AbstractEntity.getCurrentModificationSequence();
         final Entity entity = brooklyn().getEntity(application, entityToken);
         if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY, entity)) {
             throw WebResourceUtils.forbidden("User '%s' is not authorized to see entity '%s'",
                     Entitlements.getEntitlementContext().user(), entity);
         }
+        checkModified(modificationTag(ImmutableList.of(entity), "sensors", raw, since), sequence);
 
         Map<String, Object> sensorMap = Maps.newHashMap();
         @SuppressWarnings("rawtypes")
@@ -90,6 +110,9 @@ public class SensorResource extends AbstractBrooklynRestResource implements Sens
                         new Object[] {Entitlements.getEntitlementContext().user(), sensor.getName(), entity});
                 continue;
             }
+            if (since != null && ((EntityInternal) entity).sensors().getModificationSequence(sensor) <= since) {
+                continue;
+            }
 
             Object value = entity.getAttribute(findSensor(entity, sensor.getName()));
             sensorMap.put(sensor.getName(), 
@@ -98,6 +121,89 @@ public class SensorResource extends AbstractBrooklynRestResource implements Sens
         return sensorMap;
     }
 
+    /** Minimum period between batches of changes in a sensor stream, to cap the rate of events sent to a client. */
+    private static final Duration MIN_STREAM_PERIOD = Duration.millis(100);
+    /** How often to send a comment on an idle sensor stream, so that the connection and stream are kept alive. */
+    private static final Duration STREAM_KEEPALIVE = Duration.seconds(15);
+
+    @Override
+    public Response stream(final String application, final String entityToken, final String sensorGlobs, final Boolean includeDescendants,
+            final String period, final String timeout, final Boolean raw, final String resumeToken, final String lastEventId) {
+        final Entity entity = brooklyn().getEntity(application, entityToken);
+        if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY, entity)) {
+            throw WebResourceUtils.forbidden("User '%s' is not authorized to see entity '%s'",
+                    Entitlements.getEntitlementContext().user(), entity);
+        }
+        final Duration periodDuration = Duration.max(Duration.of(period), MIN_STREAM_PERIOD);
+        final Duration timeoutDuration = Duration.of(timeout);
+        final EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+        final SensorEventStream stream = SensorEventStream.newOrResume(mgmt(), entity, sensorGlobs, includeDescendants,
+                Strings.isNonBlank(resumeToken) ? resumeToken : lastEventId,
+                entitlementContext != null ? entitlementContext.user() : null,
+                mgmt().getConfig().getConfig(BrooklynWebConfig.SENSOR_STREAMS_MAX_CONNECTED));
+        if (stream == null) {
+            throw WebResourceUtils.throwWebApplicationException(Response.Status.SERVICE_UNAVAILABLE,
+                    "Too many sensor streams connected; retry later");
+        }
+
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(OutputStream out) throws IOException, WebApplicationException {
+                EntitlementContext oldContext = Entitlements.getEntitlementContext();
+                if (entitlementContext != null) Entitlements.setEntitlementContext(entitlementContext);
+                try {
+                    writeStream(stream, new OutputStreamWriter(out, Charsets.UTF_8), periodDuration, timeoutDuration, raw);
+                } finally {
+                    stream.detach();
+                    if (oldContext != null) Entitlements.setEntitlementContext(oldContext);
+                    else Entitlements.clearEntitlementContext();
+                }
+            }
+        };
+        return Response.ok(output, SERVER_SENT_EVENTS).header("Cache-Control", "no-cache").build();
+    }
+
+    /**
+     * Writes batches of changes from the stream, at most one batch per period, until the timeout or until the client disconnects.
+     * Each change is a server-sent event whose id is the token to resume from, and whose data is the JSON of the change.
+     */
+    private void writeStream(SensorEventStream stream, Writer writer, Duration period, Duration timeout, Boolean raw) throws IOException {
+        Stopwatch elapsed = Stopwatch.createStarted();
+        writer.write("retry: "+period.toMilliseconds()+"\n\n");
+        writer.flush();
+        try {
+            while (!stream.isClosed()) {
+                Duration remaining = timeout.subtract(Duration.of(elapsed));
+                if (!remaining.isPositive()) break;
+                Stopwatch batchStart = Stopwatch.createStarted();
+                List<Change> changes = stream.awaitChanges(Duration.min(remaining, STREAM_KEEPALIVE));
+                if (changes.isEmpty()) {
+                    writer.write(": keepalive\n\n");
+                }
+                for (Change change : changes) {
+                    Entity entity = change.getEntity();
+                    if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY, entity)
+                            || !Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_SENSOR, new EntityAndItem<String>(entity, change.getSensor().getName()))) {
+                        continue;
+                    }
+                    Object value = resolving(change.getValue()).preferJson(true).asJerseyOutermostReturnValue(false).raw(raw)
+                            .context(entity).timeout(Duration.ZERO).renderAs(change.getSensor()).resolve();
+                    String data = mapper().writeValueAsString(MutableMap.of(
+                            "entity", entity.getId(), "sensor", change.getSensor().getName(), "value", value));
+                    writer.write("id: "+stream.getToken(change)+"\nevent: sensor\ndata: "+data+"\n\n");
+                }
+                writer.flush();
+                // coalesce changes for the rest of the period
+                Duration wait = period.subtract(Duration.of(batchStart));
+                if (wait.isPositive() && wait.isShorterThan(remaining)) {
+                    Thread.sleep(wait.toMilliseconds());
+                }
+            }
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
     protected Object get(boolean preferJson, String application, String entityToken, String sensorName, Boolean raw) {
         final Entity entity = brooklyn().getEntity(application, entityToken);
         AttributeSensor<?> sensor = findSensor(entity, sensorName);
@@ -37,9 +37,11 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ContextResolver;
 
 import org.apache.brooklyn.api.entity.Application;
+import org.apache.brooklyn.api.mgmt.ExecutionManager;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementManager;
 import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityManager;
 import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
 import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
@@ -52,11 +54,13 @@ import org.apache.brooklyn.core.entity.Attributes;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.StartableApplication;
 import org.apache.brooklyn.core.entity.lifecycle.Lifecycle;
+import org.apache.brooklyn.core.mgmt.entitlement.CachingEntitlementManager;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
 import org.apache.brooklyn.core.mgmt.persist.FileBasedObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore;
+import org.apache.brooklyn.core.server.StartupProfile;
 import org.apache.brooklyn.rest.api.ServerApi;
 import org.apache.brooklyn.rest.domain.BrooklynFeatureSummary;
 import org.apache.brooklyn.rest.domain.HighAvailabilitySummary;
@@ -69,6 +73,8 @@ import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.ResourceUtils;
 import org.apache.brooklyn.util.core.file.ArchiveBuilder;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.TaskStatistics;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.os.Os;
@@ -380,11 +386,19 @@ public class ServerResource extends AbstractBrooklynRestResource implements Serv
     @Override
     public Map<String,Object> getUpExtended() {
         request.getSession();
-        return MutableMap.<String,Object>of(
+        Map<String,Object> result = MutableMap.<String,Object>of(
             "up", isUp(),
             "shuttingDown", isShuttingDown(),
             "healthy", isHealthy(),
             "ha", getHighAvailabilityPlaneStates());
+        StartupProfile startupProfile = mgmt().getScratchpad().get(StartupProfile.STARTUP_PROFILE);
+        if (startupProfile != null) result.put("startup", startupProfile.toMap());
+        EntitlementManager entitlementManager = mgmt().getEntitlementManager();
+        if (entitlementManager instanceof CachingEntitlementManager
+                && Entitlements.isEntitled(entitlementManager, Entitlements.SEE_ALL_SERVER_INFO, null)) {
+            result.put("entitlementCache", ((CachingEntitlementManager) entitlementManager).getStatistics());
+        }
+        return result;
     }
 
     @Override
@@ -451,6 +465,41 @@ public class ServerResource extends AbstractBrooklynRestResource implements Serv
         return Response.ok().build();
     }
 
+    @Override
+    public Map<String, Object> getTaskStatistics() {
+        return taskStatistics().getStatistics();
+    }
+
+    @Override
+    public boolean setTaskStatisticsEnabled(boolean enabled) {
+        TaskStatistics stats = taskStatisticsForChange();
+        boolean wasEnabled = stats.isEnabled();
+        stats.setEnabled(enabled);
+        return wasEnabled;
+    }
+
+    @Override
+    public void resetTaskStatistics() {
+        taskStatisticsForChange().reset();
+    }
+
+    /** As {@link #taskStatistics()}, but also requiring {@link Entitlements#ROOT}, as changes affect the whole server. */
+    private TaskStatistics taskStatisticsForChange() {
+        TaskStatistics result = taskStatistics();
+        if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.ROOT, null))
+            throw WebResourceUtils.forbidden("User '%s' is not authorized for this operation", Entitlements.getEntitlementContext().user());
+        return result;
+    }
+
+    private TaskStatistics taskStatistics() {
+        if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ALL_SERVER_INFO, null))
+            throw WebResourceUtils.forbidden("User '%s' is not authorized for this operation", Entitlements.getEntitlementContext().user());
+        ExecutionManager em = mgmt().getExecutionManager();
+        if (!(em instanceof BasicExecutionManager))
+            throw WebResourceUtils.notFound("Task statistics not available from execution manager %s", em);
+        return ((BasicExecutionManager)em).getTaskStatistics();
+    }
+
     @Override
     public String getUser() {
         request.getSession();
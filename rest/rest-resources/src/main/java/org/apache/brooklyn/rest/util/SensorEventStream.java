@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
+import org.apache.brooklyn.api.mgmt.SubscriptionManager;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.api.sensor.Sensor;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.entity.AbstractEntity;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.text.WildcardGlobs;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Tracks changes to the sensors of an entity (and optionally its descendants) for streaming to a REST client.
+ * <p>
+ * Changes are coalesced by entity and sensor, so a client which reads slower than the sensors change
+ * gets the latest value of each changed sensor rather than every change. Streams are kept for a short time
+ * after the client disconnects, so that a client reconnecting with the id of the last event it received
+ * gets only the changes since then (including any changes which were sent but not acknowledged).
+ * <p>
+ * The subscriptions are made on the producing entities through the {@link SubscriptionManager},
+ * and removed when the stream expires.
+ * <p>
+ * A client writing a stream holds a thread for as long as it is connected, so the number of
+ * streams connected at once is limited by the caller (see {@link #newOrResume(ManagementContext, Entity, String, boolean, String, String, int)}).
+ */
+@Beta
+public class SensorEventStream {
+
+    private static final Logger log = LoggerFactory.getLogger(SensorEventStream.class);
+
+    /** How long a stream is kept, after its client disconnects, for the client to resume it. */
+    public static final Duration RESUME_GRACE_PERIOD = Duration.seconds(30);
+
+    /** The maximum number of streams, connected or awaiting resumption; the oldest is discarded if exceeded. */
+    public static final int MAX_STREAMS = 100;
+
+    /** The number of streams currently attached to a client. */
+    private static final AtomicInteger CONNECTED = new AtomicInteger();
+
+    private static final Cache<String, SensorEventStream> STREAMS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_STREAMS)
+            .expireAfterAccess(RESUME_GRACE_PERIOD.toMilliseconds(), TimeUnit.MILLISECONDS)
+            .removalListener(new RemovalListener<String, SensorEventStream>() {
+                @Override
+                public void onRemoval(RemovalNotification<String, SensorEventStream> notification) {
+                    notification.getValue().close();
+                }
+            })
+            .build();
+
+    /** A change to be sent: the latest value of a sensor on an entity, and the sequence number of that change. */
+    public static class Change {
+        private final Entity entity;
+        private final AttributeSensor<?> sensor;
+        private final Object value;
+        private final long sequence;
+
+        private Change(Entity entity, AttributeSensor<?> sensor, Object value, long sequence) {
+            this.entity = entity;
+            this.sensor = sensor;
+            this.value = value;
+            this.sequence = sequence;
+        }
+        public Entity getEntity() {
+            return entity;
+        }
+        public AttributeSensor<?> getSensor() {
+            return sensor;
+        }
+        public Object getValue() {
+            return value;
+        }
+        public long getSequence() {
+            return sequence;
+        }
+        private List<String> key() {
+            return MutableList.of(entity.getId(), sensor.getName());
+        }
+    }
+
+    /**
+     * Creates a new stream of changes to the matching sensors, initially containing their current values,
+     * or resumes the given stream if it is still known and the token was issued by it.
+     *
+     * @param resumeToken as returned by {@link #getToken(Change)} for the last change received, or null
+     * @param user the user creating the stream; a stream can only be resumed by the same user
+     * @param maxConnected the maximum number of streams attached to clients at once
+     * @return the stream, or null if there are already the maximum number of streams connected
+     */
+    @Nullable
+    public static SensorEventStream newOrResume(ManagementContext mgmt, Entity root, String sensorGlobs,
+            boolean includeDescendants, @Nullable String resumeToken, @Nullable String user, int maxConnected) {
+        STREAMS.cleanUp();
+        // reserve a connection, taken by the stream resumed or started below
+        int connected;
+        do {
+            connected = CONNECTED.get();
+            if (connected >= maxConnected) {
+                log.debug("Refusing sensor stream on {} for {}: {} streams already connected", new Object[] {root, user, connected});
+                return null;
+            }
+        } while (!CONNECTED.compareAndSet(connected, connected+1));
+        if (Strings.isNonBlank(resumeToken)) {
+            String[] parts = resumeToken.split(":");
+            SensorEventStream stream = (parts.length == 2) ? STREAMS.getIfPresent(parts[0]) : null;
+            if (stream != null && stream.root.equals(root) && stream.sensorGlobs.equals(sensorGlobs)
+                    && stream.includeDescendants == includeDescendants && Objects.equals(stream.user, user)) {
+                try {
+                    if (stream.resume(Long.parseLong(parts[1]))) return stream;
+                } catch (NumberFormatException e) {
+                    // not one of our tokens; start a new stream
+                }
+            }
+            log.debug("Cannot resume sensor stream {} for {}; starting new stream", resumeToken, user);
+        }
+        SensorEventStream stream = new SensorEventStream(mgmt, root, sensorGlobs, includeDescendants, user);
+        STREAMS.put(stream.id, stream);
+        stream.start();
+        return stream;
+    }
+
+    private final String id = Identifiers.makeRandomId(8);
+    private final ManagementContext mgmt;
+    private final Entity root;
+    private final String sensorGlobs;
+    private final List<String> globs;
+    private final boolean includeDescendants;
+    private final String user;
+
+    /** subscriptions, by producer; guarded by synchronizing on the map */
+    private final Map<Entity, SubscriptionHandle> subscriptions = MutableMap.of();
+    /** changes not yet sent, by entity id and sensor name */
+    private final Map<List<String>, Change> pending = MutableMap.of();
+    /** changes sent but not yet known to be received, i.e. in the last batch */
+    private List<Change> sent = MutableList.of();
+    private long lastSequence;
+    private boolean attached;
+    private volatile boolean closed;
+
+    protected SensorEventStream(ManagementContext mgmt, Entity root, String sensorGlobs, boolean includeDescendants, String user) {
+        this.mgmt = mgmt;
+        this.root = root;
+        this.sensorGlobs = sensorGlobs;
+        this.globs = MutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(sensorGlobs));
+        this.includeDescendants = includeDescendants;
+        this.user = user;
+    }
+
+    private void start() {
+        synchronized (this) {
+            setAttached(true);
+        }
+        subscribe(root);
+    }
+
+    /** Attaching takes the connection reserved in {@link #newOrResume(ManagementContext, Entity, String, boolean, String, String, int)}; detaching releases it. Must hold the lock on this. */
+    private void setAttached(boolean val) {
+        if (attached == val) return;
+        attached = val;
+        if (!val) CONNECTED.decrementAndGet();
+    }
+
+    /** The number of streams currently attached to a client. */
+    public static int getConnectedCount() {
+        return CONNECTED.get();
+    }
+
+    private final SensorEventListener<Object> listener = new SensorEventListener<Object>() {
+        @Override
+        public void onEvent(SensorEvent<Object> event) {
+            Sensor<?> sensor = event.getSensor();
+            if (includeDescendants && event.getSource() != null) {
+                if (AbstractEntity.CHILD_ADDED.equals(sensor) && event.getValue() instanceof Entity) {
+                    subscribe((Entity) event.getValue());
+                } else if (AbstractEntity.CHILD_REMOVED.equals(sensor) && event.getValue() instanceof Entity) {
+                    unsubscribe((Entity) event.getValue());
+                }
+            }
+            if (sensor instanceof AttributeSensor && isMatched(sensor)) {
+                record(event.getSource(), (AttributeSensor<?>) sensor, event.getValue());
+            }
+        }
+    };
+
+    private void subscribe(Entity entity) {
+        Iterable<Entity> entities = includeDescendants ? Entities.descendantsAndSelf(entity) : MutableList.of(entity);
+        for (Entity e : entities) {
+            synchronized (subscriptions) {
+                if (closed || subscriptions.containsKey(e)) continue;
+                subscriptions.put(e, mgmt.getSubscriptionManager().subscribe(
+                        MutableMap.<String, Object>of("subscriber", "rest-sensor-stream-"+id), e, null, listener));
+            }
+            // current values, recorded after subscribing so that no change is missed
+            for (Sensor<?> sensor : e.getEntityType().getSensors()) {
+                if (sensor instanceof AttributeSensor && isMatched(sensor)) {
+                    record(e, (AttributeSensor<?>) sensor, e.getAttribute((AttributeSensor<?>) sensor));
+                }
+            }
+        }
+    }
+
+    /** Unsubscribes from the entity and its descendants (which still have it as an ancestor when it is removed). */
+    private void unsubscribe(Entity entity) {
+        List<SubscriptionHandle> handles = MutableList.of();
+        synchronized (subscriptions) {
+            for (Entity producer : MutableList.copyOf(subscriptions.keySet())) {
+                if (producer.equals(entity) || Entities.isAncestor(producer, entity)) {
+                    handles.add(subscriptions.remove(producer));
+                }
+            }
+        }
+        for (SubscriptionHandle handle : handles) {
+            mgmt.getSubscriptionManager().unsubscribe(handle);
+        }
+    }
+
+    private boolean isMatched(Sensor<?> sensor) {
+        for (String glob : globs) {
+            if (WildcardGlobs.isGlobMatched(glob, sensor.getName())) return true;
+        }
+        return false;
+    }
+
+    private synchronized void record(Entity entity, AttributeSensor<?> sensor, Object value) {
+        if (closed) return;
+        Change change = new Change(entity, sensor, value, ++lastSequence);
+        pending.put(change.key(), change);
+        notifyAll();
+    }
+
+    /**
+     * Returns the pending changes, in order, once there are some, or an empty list if the timeout expires first.
+     * The changes are remembered until the next call, so they can be sent again if the client resumes from before them.
+     */
+    public synchronized List<Change> awaitChanges(Duration timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout.toMilliseconds();
+        while (pending.isEmpty() && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) break;
+            wait(remaining);
+        }
+        STREAMS.getIfPresent(id); // keep alive
+        sent = MutableList.copyOf(pending.values());
+        pending.clear();
+        return sent;
+    }
+
+    /** The id for the given change, for the client to resume from. */
+    public String getToken(Change change) {
+        return id+":"+change.getSequence();
+    }
+
+    private synchronized boolean resume(long lastReceived) {
+        if (closed || attached || lastReceived > lastSequence) return false;
+        // re-send anything in the last batch which was not received, unless it has changed again since
+        for (Change change : sent) {
+            if (change.getSequence() > lastReceived && !pending.containsKey(change.key())) {
+                pending.put(change.key(), change);
+            }
+        }
+        sent = MutableList.of();
+        setAttached(true);
+        return true;
+    }
+
+    /** Called when the client disconnects; the stream can then be resumed until it expires. */
+    public synchronized void detach() {
+        setAttached(false);
+        STREAMS.getIfPresent(id); // keep for the grace period from now
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    protected void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            setAttached(false);
+            pending.clear();
+            sent = MutableList.of();
+            notifyAll();
+        }
+        List<SubscriptionHandle> handles;
+        synchronized (subscriptions) {
+            handles = MutableList.copyOf(subscriptions.values());
+            subscriptions.clear();
+        }
+        for (SubscriptionHandle handle : handles) {
+            mgmt.getSubscriptionManager().unsubscribe(handle);
+        }
+        log.debug("Closed sensor stream {} on {}", id, root);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+id+", "+root+", "+sensorGlobs+"]";
+    }
+}
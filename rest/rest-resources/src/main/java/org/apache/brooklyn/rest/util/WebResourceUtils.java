@@ -19,6 +19,7 @@
 package org.apache.brooklyn.rest.util;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletContext;
@@ -41,7 +42,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 
 public class WebResourceUtils {
 
@@ -142,6 +146,27 @@ public class WebResourceUtils {
         }
     }
 
+    /**
+     * Returns a view of the given page of the items: those from {@code offset}, and at most {@code limit}
+     * of them unless {@code limit} is negative.
+     */
+    public static <T> List<T> page(List<T> items, int offset, int limit) {
+        if (offset < 0) throw badRequest("Invalid offset %s; must not be negative", offset);
+        int from = Math.min(offset, items.size());
+        int to = (limit < 0) ? items.size() : (int) Math.min((long) from + limit, items.size());
+        return items.subList(from, to);
+    }
+
+    /**
+     * Returns the given page of the items (as {@link #page(List, int, int)}), transformed by the function.
+     * Only the items in the page are transformed, and the result is a copy, so it does not change with
+     * the items and is not transformed again as the response is written. The page is held in memory
+     * while it is written, so callers should bound its size with {@code limit} for large listings.
+     */
+    public static <F,T> List<T> transformPage(List<F> items, int offset, int limit, Function<? super F, ? extends T> function) {
+        return ImmutableList.copyOf(Lists.transform(page(items, offset, limit), function));
+    }
+
     /** as {@link #getValueForDisplay(ObjectMapper, Object, boolean, boolean)} with no mapper
      * (so will only handle a subset of types) */
     public static Object getValueForDisplay(Object value, boolean preferJson, boolean isJerseyReturnValue) {
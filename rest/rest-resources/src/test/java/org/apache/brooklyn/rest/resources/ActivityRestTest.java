@@ -241,6 +241,61 @@ Task[eatand]@J90TKfIX: Waiting on Task[eat-sleep-rave-repeat]@QPa5o4kF
         Assert.assertTrue(tasksContain(tasks, leaf), "count+1 limited recursive tasks should have included leaf "+leaf+"; was "+tasks);
     }
 
+    @Test
+    public void testGetActivitiesChildrenPaged() {
+        Task<?> t = entity.invoke(effector, null);
+        Task<?> leaf = waitForCompletedDescendantWithChildAndSibling(t, t, CountdownTimer.newInstanceStarted(Duration.ONE_SECOND), 0);
+        Task<?> leafGrandparent = leaf.getSubmittedByTask().getSubmittedByTask();
+        
+        List<TaskSummary> all = getChildren(leafGrandparent, 0, -1);
+        Assert.assertTrue(all.size() >= 2, "children: "+all);
+        
+        List<TaskSummary> first = getChildren(leafGrandparent, 0, 1);
+        Assert.assertEquals(first.size(), 1);
+        Assert.assertEquals(first.get(0).getId(), all.get(0).getId());
+        
+        List<TaskSummary> rest = getChildren(leafGrandparent, 1, -1);
+        Assert.assertEquals(rest.size(), all.size()-1);
+        Assert.assertEquals(rest.get(0).getId(), all.get(1).getId());
+        
+        Assert.assertEquals(getChildren(leafGrandparent, all.size(), 10).size(), 0);
+    }
+
+    @Test
+    public void testGetActivitiesRecursivePaged() {
+        Task<?> t = entity.invoke(effector, null);
+        Task<?> leaf = waitForCompletedDescendantWithChildAndSibling(t, t, CountdownTimer.newInstanceStarted(Duration.ONE_SECOND), 0);
+        Task<?> leafGrandparent = leaf.getSubmittedByTask().getSubmittedByTask();
+        
+        List<String> all = MutableList.copyOf(getDescendants(leafGrandparent, 0, -1).keySet());
+        Assert.assertTrue(all.size() >= 3, "descendants: "+all);
+        
+        Assert.assertEquals(MutableList.copyOf(getDescendants(leafGrandparent, 0, 2).keySet()), all.subList(0, 2));
+        Assert.assertEquals(MutableList.copyOf(getDescendants(leafGrandparent, 1, 2).keySet()), all.subList(1, 3));
+        Assert.assertEquals(MutableList.copyOf(getDescendants(leafGrandparent, 1, -1).keySet()), all.subList(1, all.size()));
+        Assert.assertEquals(getDescendants(leafGrandparent, all.size(), 10).size(), 0);
+    }
+
+    private Map<String, TaskSummary> getDescendants(Task<?> t, int offset, int limit) {
+        Response response = client().path("/activities/"+t.getId()+"/children/recurse")
+            .query("offset", offset)
+            .query("limit", limit)
+            .accept(MediaType.APPLICATION_JSON)
+            .get();
+        assertHealthy(response);
+        return response.readEntity(new GenericType<Map<String,TaskSummary>>() {});
+    }
+
+    private List<TaskSummary> getChildren(Task<?> t, int offset, int limit) {
+        Response response = client().path("/activities/"+t.getId()+"/children")
+            .query("offset", offset)
+            .query("limit", limit)
+            .accept(MediaType.APPLICATION_JSON)
+            .get();
+        assertHealthy(response);
+        return response.readEntity(new GenericType<List<TaskSummary>>() {});
+    }
+
     private boolean tasksContain(Map<String, TaskSummary> tasks, Task<?> leaf) {
         return tasks.keySet().contains(leaf.getId());
     }
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.resources;
+
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.qa.performance.AbstractPerformanceTest;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Measures the time taken and bytes returned by the bulk application and activity endpoints, with and without paging.
+ */
+//by using a different suite name we disallow interleaving other tests between the methods of this test class, which wrecks the test fixtures
+@Test(suiteName = "ApplicationResourcePerformanceTest")
+public class ApplicationResourcePerformanceTest extends BrooklynRestResourcePerformanceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ApplicationResourcePerformanceTest.class);
+
+    private static final int NUM_APPS = 10;
+    private static final int NUM_ENTITIES_PER_APP = 100;
+
+    private String itemIds;
+
+    protected int numIterations() {
+        return 20;
+    }
+
+    @Override
+    protected void initClass() throws Exception {
+        super.initClass();
+
+        List<String> ids = MutableList.of();
+        for (int i = 0; i < NUM_APPS; i++) {
+            EntitySpec<TestApplication> appSpec = EntitySpec.create(TestApplication.class).displayName("app-"+i);
+            for (int j = 0; j < NUM_ENTITIES_PER_APP; j++) {
+                appSpec.child(EntitySpec.create(TestEntity.class).displayName("entity-"+i+"-"+j));
+            }
+            TestApplication app = getManagementContext().getEntityManager().createEntity(appSpec);
+            for (Entity child : app.getChildren()) {
+                ids.add(child.getId());
+            }
+        }
+        itemIds = Joiner.on(",").join(ids);
+    }
+
+    @Test(groups={"Integration"})
+    public void testFetchAll() {
+        runPerformanceTest("ApplicationResourcePerformanceTest.testFetchAll", "/applications/fetch", "items", itemIds);
+    }
+
+    @Test(groups={"Integration"})
+    public void testFetchPage() {
+        runPerformanceTest("ApplicationResourcePerformanceTest.testFetchPage", "/applications/fetch", "items", itemIds, "limit", 50);
+    }
+
+    @Test(groups={"Integration"})
+    public void testListCatalogEntitiesPage() {
+        runPerformanceTest("ApplicationResourcePerformanceTest.testListCatalogEntitiesPage", "/catalog/entities", "limit", 10);
+    }
+
+    protected void runPerformanceTest(String summary, final String urlPath, final Object... queryNamesAndValues) {
+        final AtomicReference<WebClient> client = new AtomicReference<>();
+        final AtomicLong bytes = new AtomicLong();
+
+        measure(PerformanceTestDescriptor.create()
+                .summary(summary)
+                .iterations(numIterations())
+                .minAcceptablePerSecond(AbstractPerformanceTest.PERFORMANCE_EXPECTATION)
+                .preJob(new Runnable() {
+                    @Override
+                    public void run() {
+                        client.set(client());
+                    }})
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        WebClient c = client.get().path(urlPath);
+                        for (int i = 0; i < queryNamesAndValues.length; i += 2) {
+                            c.query((String) queryNamesAndValues[i], queryNamesAndValues[i+1]);
+                        }
+                        String result = c.get(String.class);
+                        assertTrue(result.startsWith("["), "result="+result);
+                        bytes.set(result.length());
+                    }}));
+        log.info(summary+": response of "+bytes.get()+" bytes");
+    }
+}
@@ -412,6 +412,33 @@ public class ApplicationResourceTest extends BrooklynRestResourceTest {
         Assert.assertEquals(entityMemberDetails.get("id"), entityDetails.get("id"));
     }
 
+    @SuppressWarnings("rawtypes")
+    @Test(dependsOnMethods = "testDeployApplication")
+    public void testFetchPaged() {
+        Application app = Iterables.find(getManagementContext().getApplications(), EntityPredicates.displayNameEqualTo("simple-app"));
+        String itemIds = Joiner.on(",").join(Iterables.transform(app.getChildren(), EntityFunctions.id()));
+        
+        List<Map> all = fetch(itemIds, 0, -1);
+        assertTrue(all.size() >= 3, "fetched="+all);
+        
+        List<Map> page = fetch(itemIds, 1, 2);
+        assertEquals(page.size(), 2);
+        assertEquals(page.get(0).get("id"), all.get(1).get("id"));
+        assertEquals(page.get(1).get("id"), all.get(2).get("id"));
+        
+        assertEquals(fetch(itemIds, all.size()-1, 10).size(), 1);
+        assertEquals(fetch(itemIds, all.size(), 10).size(), 0);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private List<Map> fetch(String itemIds, int offset, int limit) {
+        return client().path("/applications/fetch")
+                .query("items", itemIds)
+                .query("offset", offset)
+                .query("limit", limit)
+                .get(new GenericType<List<Map>>() {});
+    }
+
     @Test(dependsOnMethods = "testDeployApplication")
     public void testListSensors() {
         Set<SensorSummary> sensors = client().path("/applications/simple-app/entities/simple-ent/sensors")
@@ -233,6 +233,25 @@ public class CatalogResourceTest extends BrooklynRestResourceTest {
         assertTrue(entities.size() > 0);
     }
 
+    @Test
+    public void testListEntitiesPaged() {
+        List<CatalogEntitySummary> all = client().path("/catalog/entities")
+                .get(new GenericType<List<CatalogEntitySummary>>() {});
+        assertTrue(all.size() > 1, "size="+all.size());
+
+        List<CatalogEntitySummary> first = client().path("/catalog/entities").query("limit", 1)
+                .get(new GenericType<List<CatalogEntitySummary>>() {});
+        assertEquals(first, all.subList(0, 1));
+
+        List<CatalogEntitySummary> rest = client().path("/catalog/entities").query("offset", 1)
+                .get(new GenericType<List<CatalogEntitySummary>>() {});
+        assertEquals(rest, all.subList(1, all.size()));
+
+        List<CatalogEntitySummary> none = client().path("/catalog/entities").query("offset", all.size())
+                .get(new GenericType<List<CatalogEntitySummary>>() {});
+        assertEquals(none.size(), 0);
+    }
+
     @Test
     public void testFilterListOfEntitiesByName() {
         List<CatalogEntitySummary> entities = client().path("/catalog/entities")
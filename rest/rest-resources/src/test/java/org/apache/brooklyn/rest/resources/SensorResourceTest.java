@@ -19,12 +19,18 @@
 package org.apache.brooklyn.rest.resources;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 import java.io.InputStream;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -39,11 +45,15 @@ import org.apache.brooklyn.api.sensor.Feed;
 import org.apache.brooklyn.core.config.render.RendererHints;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.entity.EntityPredicates;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.core.test.policy.TestEnricher;
 import org.apache.brooklyn.core.test.policy.TestPolicy;
 import org.apache.brooklyn.feed.function.FunctionFeed;
+import org.apache.brooklyn.rest.BrooklynWebConfig;
+import org.apache.brooklyn.rest.api.ApplicationApi;
 import org.apache.brooklyn.rest.api.SensorApi;
 import org.apache.brooklyn.rest.domain.ApplicationSpec;
 import org.apache.brooklyn.rest.domain.EntitySpec;
@@ -153,6 +163,45 @@ public class SensorResourceTest extends BrooklynRestResourceTest {
         }
     }
 
+    @Test
+    public void testBatchSensorReadConditionalAndSince() throws Exception {
+        Response response = client().path(SENSORS_ENDPOINT + "/current-state")
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        HttpAsserts.assertHealthyStatusCode(response.getStatus());
+        String etag = response.getHeaderString(HttpHeaders.ETAG);
+        String sequence = response.getHeaderString(ApplicationApi.MODIFICATION_SEQUENCE_HEADER);
+        assertNotNull(etag);
+        assertNotNull(sequence);
+
+        Response unchanged = client().path(SENSORS_ENDPOINT + "/current-state")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(unchanged.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+
+        try {
+            entity.sensors().set(SENSOR, 54321);
+            Response changed = client().path(SENSORS_ENDPOINT + "/current-state")
+                    .header(HttpHeaders.IF_NONE_MATCH, etag)
+                    .query("since", sequence)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .get();
+            HttpAsserts.assertHealthyStatusCode(changed.getStatus());
+            String nextSequence = changed.getHeaderString(ApplicationApi.MODIFICATION_SEQUENCE_HEADER);
+            Map<String, ?> delta = changed.readEntity(new GenericType<Map<String,?>>(Map.class) {});
+            assertEquals(delta.get(SENSOR_NAME), "54321 frogs");
+
+            delta = client().path(SENSORS_ENDPOINT + "/current-state")
+                    .query("since", nextSequence)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .get(new GenericType<Map<String,?>>(Map.class) {});
+            assertFalse(delta.containsKey(SENSOR_NAME), "delta="+delta);
+        } finally {
+            entity.sensors().set(SENSOR, 12345);
+        }
+    }
+
     protected Response doSensorTest(Boolean raw, MediaType acceptsType, Object expectedValue) {
         return doSensorTestUntyped(
             raw==null ? null : (""+raw).toLowerCase(), 
@@ -347,6 +396,76 @@ public class SensorResourceTest extends BrooklynRestResourceTest {
         doGetSensorTest("myTask", Map.class, ImmutableMap.of("type", Task.class.getName(), "id", task.getId(), "displayName", "sleepEffector"));
     }
     
+    @Test
+    public void testStreamSendsCurrentValueThenOnlyChangesOnResume() throws Exception {
+        String events = readStream(null);
+        assertTrue(events.contains("\"sensor\":\""+SENSOR_NAME+"\""), "events="+events);
+        assertTrue(events.contains("12345 frogs"), "events="+events);
+        String token = lastEventId(events);
+        assertNotNull(token, "events="+events);
+
+        try {
+            entity.sensors().set(SENSOR, 54321);
+            String resumed = readStream(token);
+            assertTrue(resumed.contains("54321 frogs"), "events="+resumed);
+            assertFalse(resumed.contains("12345 frogs"), "events="+resumed);
+        } finally {
+            entity.sensors().set(SENSOR, 12345);
+        }
+    }
+
+    @Test
+    public void testStreamCoalescesChanges() throws Exception {
+        String token = lastEventId(readStream(null));
+        try {
+            for (int i = 1; i <= 10; i++) {
+                entity.sensors().set(SENSOR, i);
+            }
+            String resumed = readStream(token);
+            assertTrue(resumed.contains("10 frogs"), "events="+resumed);
+            assertFalse(resumed.contains("\"5 frogs"), "events="+resumed);
+        } finally {
+            entity.sensors().set(SENSOR, 12345);
+        }
+    }
+
+    @Test
+    public void testStreamRefusedWhenTooManyConnected() throws Exception {
+        BrooklynProperties properties = ((ManagementContextInternal)getManagementContext()).getBrooklynProperties();
+        properties.put(BrooklynWebConfig.SENSOR_STREAMS_MAX_CONNECTED, 0);
+        try {
+            Response response = client().path(SENSORS_ENDPOINT + "/stream")
+                    .query("sensors", SENSOR_NAME)
+                    .accept(SensorApi.SERVER_SENT_EVENTS)
+                    .get();
+            assertEquals(response.getStatus(), Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+        } finally {
+            properties.remove(BrooklynWebConfig.SENSOR_STREAMS_MAX_CONNECTED);
+        }
+        // accepted again once the limit allows
+        assertNotNull(lastEventId(readStream(null)));
+    }
+
+    private String readStream(String resumeToken) {
+        WebClient request = client().path(SENSORS_ENDPOINT + "/stream")
+                .query("sensors", SENSOR_NAME)
+                .query("period", "100ms")
+                .query("timeout", "1s");
+        if (resumeToken != null) request = request.query("resume", resumeToken);
+        Response response = request.accept(SensorApi.SERVER_SENT_EVENTS).get();
+        HttpAsserts.assertHealthyStatusCode(response.getStatus());
+        return response.readEntity(String.class);
+    }
+
+    private String lastEventId(String events) {
+        Matcher matcher = Pattern.compile("^id: (\\S+)$", Pattern.MULTILINE).matcher(events);
+        String result = null;
+        while (matcher.find()) {
+            result = matcher.group(1);
+        }
+        return result;
+    }
+
     protected <T> void doGetSensorTest(String sensorName, Class<T> expectedType, T expectedVal) throws Exception {
         doGetSensorTest(sensorName, expectedType, expectedVal, true);
         doGetSensorTest(sensorName, expectedType, expectedVal, false);
@@ -21,6 +21,8 @@ package org.apache.brooklyn.rest.entitlement;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+
 @Test(singleThreaded = true)
 public class ServerApiEntitlementsTest extends AbstractRestApiEntitlementsTest {
 
@@ -46,6 +48,24 @@ public class ServerApiEntitlementsTest extends AbstractRestApiEntitlementsTest {
         assertForbiddenPost("unrecognisedUser", resource, null);
     }
 
+    @Test(groups = "Integration")
+    public void testTaskStatisticsChangesRequireRoot() throws Exception {
+        String path = "/v1/server/tasks/statistics";
+        assertPermitted("myRoot", path);
+        assertForbidden("myUser", path);
+
+        // allowed to see all server info (so the statistics), but not root
+        StaticDelegatingEntitlementManager.setDelegate(Entitlements.FineGrainedEntitlements.allowing(Entitlements.SEE_ALL_SERVER_INFO));
+        assertPermitted("myCustom", path);
+        for (String resource : ImmutableList.of(path+"/enabled", path+"/reset")) {
+            assertPermittedPost("myRoot", resource, null);
+            assertForbiddenPost("myCustom", resource, null);
+            assertForbiddenPost("myUser", resource, null);
+            assertForbiddenPost("myReadonly", resource, null);
+            assertForbiddenPost("unrecognisedUser", resource, null);
+        }
+    }
+
     @Test(groups = "Integration")
     public void testGetConfig() throws Exception {
         // Property set in test setup.
@@ -263,6 +263,7 @@ public abstract class AbstractSoftwareProcessSshDriver extends AbstractSoftwareP
             flags.putAll(getSshFlags());
         }
         flags.putAll(flags2);
+        boolean consolidatable = Boolean.TRUE.equals(flags.remove(ConsolidatedIsRunningChecks.CONSOLIDATABLE_FLAG));
         Map<String, String> environment = (Map<String, String>) flags.get("env");
         if (environment == null) {
             // Important only to call getShellEnvironment() if env was not supplied; otherwise it
@@ -288,6 +289,10 @@ public abstract class AbstractSoftwareProcessSshDriver extends AbstractSoftwareP
             }
         }
         if (!flags.containsKey("logPrefix")) flags.put("logPrefix", ""+entity.getId()+"@"+getLocation().getDisplayName());
+        Duration consolidatingMaxAge = ConsolidatedIsRunningChecks.getConsolidatingMaxAge();
+        if (consolidatable && consolidatingMaxAge != null) {
+            return ConsolidatedIsRunningChecks.forMachine(getMachine()).execute(entity.getId(), flags, script, environment, consolidatingMaxAge);
+        }
         return getMachine().execScript(flags, summaryForLogging, script, environment);
     }
 
@@ -606,6 +611,8 @@ public abstract class AbstractSoftwareProcessSshDriver extends AbstractSoftwareP
             s.setFlag(SshTool.PROP_CONNECT_TIMEOUT, Duration.TEN_SECONDS.toMilliseconds());
             s.setFlag(SshTool.PROP_SESSION_TIMEOUT, Duration.THIRTY_SECONDS.toMilliseconds());
             s.setFlag(SshTool.PROP_SSH_TRIES, 1);
+            // only actually consolidated if run from the is-running sensor poll
+            s.setFlag(ConsolidatedIsRunningChecks.CONSOLIDATABLE_FLAG, true);
         }
 
         if (groovyTruth(flags.get(USE_PID_FILE))) {
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.entity.software.base;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.location.ssh.SshMachineLocation;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.text.StringEscapes.BashStringEscapes;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+import com.google.common.base.Stopwatch;
+
+/**
+ * Consolidates the periodic is-running checks of the entities on a machine into a single ssh invocation.
+ * <p>
+ * When an entity's {@link SoftwareProcess#SERVICE_PROCESS_IS_RUNNING} poll runs its check-running script
+ * (inside {@link #callConsolidated(Duration, Callable)}), the script is registered against the machine.
+ * If another entity's poll has recently run this entity's registered script, that result is used (once);
+ * otherwise the scripts of all entities registered against the machine (with the same ssh flags) are run
+ * together, each in its own shell so that their environments, result codes and output are kept separate.
+ * The result for each entity is its own script's exit code, so the entity's result-code checks still apply,
+ * and a check that does not complete only fails for that entity.
+ * <p>
+ * Checks made outside the sensor poll (e.g. when starting or stopping) are never consolidated,
+ * and results are only reused if younger than the entity's poll period.
+ * <p>
+ * Instances are held per machine id for as long as any check is registered against the machine;
+ * the instance is released when its last check is {@link #remove(String) removed}.
+ */
+@Beta
+public class ConsolidatedIsRunningChecks {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConsolidatedIsRunningChecks.class);
+
+    /** Flag set by {@link AbstractSoftwareProcessSshDriver} on check-running scripts which may be consolidated. */
+    public static final String CONSOLIDATABLE_FLAG = "consolidatableIsRunningCheck";
+
+    // keyed by machine id (rather than weakly by machine, which each instance references)
+    private static final Map<String, ConsolidatedIsRunningChecks> INSTANCES = MutableMap.of();
+
+    private static final ThreadLocal<Duration> CONSOLIDATING_MAX_AGE = new ThreadLocal<Duration>();
+
+    public static synchronized ConsolidatedIsRunningChecks forMachine(SshMachineLocation machine) {
+        ConsolidatedIsRunningChecks result = INSTANCES.get(machine.getId());
+        if (result == null) {
+            result = new ConsolidatedIsRunningChecks(machine);
+            INSTANCES.put(machine.getId(), result);
+        }
+        return result;
+    }
+
+    /** As {@link #forMachine(SshMachineLocation)}, but returns null rather than creating an instance if there is none. */
+    @Nullable
+    public static synchronized ConsolidatedIsRunningChecks forMachineIfPresent(SshMachineLocation machine) {
+        return INSTANCES.get(machine.getId());
+    }
+
+    private static synchronized void release(ConsolidatedIsRunningChecks instance) {
+        String machineId = instance.machine.getId();
+        if (INSTANCES.get(machineId) == instance) {
+            INSTANCES.remove(machineId);
+        }
+    }
+
+    /**
+     * Invokes the given job (typically calling the driver's isRunning) such that any consolidatable
+     * check-running script it runs may be consolidated with those of other entities on the same machine,
+     * reusing results no older than the given age.
+     */
+    public static <T> T callConsolidated(Duration maxAge, Callable<T> job) throws Exception {
+        Duration old = CONSOLIDATING_MAX_AGE.get();
+        CONSOLIDATING_MAX_AGE.set(maxAge);
+        try {
+            return job.call();
+        } finally {
+            if (old != null) CONSOLIDATING_MAX_AGE.set(old);
+            else CONSOLIDATING_MAX_AGE.remove();
+        }
+    }
+
+    /** The max age set by {@link #callConsolidated(Duration, Callable)} in this thread, or null if not consolidating. */
+    @Nullable
+    public static Duration getConsolidatingMaxAge() {
+        return CONSOLIDATING_MAX_AGE.get();
+    }
+
+    private static class Check {
+        final String id;
+        Map<?, ?> flagsKey;
+        List<String> script;
+        Map<String, ?> env;
+        Stopwatch lastRequested;
+        /** result from another entity's round, not yet used */
+        Integer pendingResult;
+        String pendingOutput;
+        Stopwatch pendingAge;
+
+        Check(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class CheckResult {
+        final Integer exitCode;
+        final String output;
+        CheckResult(Integer exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+
+    private final SshMachineLocation machine;
+    private final Map<String, Check> checks = MutableMap.of();
+    private final Object roundMutex = new Object();
+    /** set (under the checks lock) once the last check is removed and this is no longer returned by {@link #forMachine(SshMachineLocation)} */
+    private boolean released;
+
+    protected ConsolidatedIsRunningChecks(SshMachineLocation machine) {
+        this.machine = machine;
+    }
+
+    /**
+     * Returns the exit code of the given check-running script for the given check (usually the entity id),
+     * either from a recent round run on behalf of another entity, or by running a round now.
+     *
+     * @param flags the ssh flags, as would be passed to {@link SshMachineLocation#execScript(Map, String, List, Map)};
+     *        any "out" stream is given this check's output
+     */
+    public int execute(String checkId, Map<String, ?> flags, List<String> script, Map<String, ?> env, Duration maxAge) {
+        Map<?, ?> flagsKey = flagsKey(flags);
+        OutputStream out = (OutputStream) flags.get("out");
+        boolean redirect;
+        synchronized (checks) {
+            // if the last check was removed concurrently, register with the current instance instead (below)
+            redirect = released;
+            if (!redirect) {
+                Check check = checks.get(checkId);
+                if (check == null) {
+                    check = new Check(checkId);
+                    checks.put(checkId, check);
+                }
+                check.flagsKey = flagsKey;
+                check.script = script;
+                check.env = env;
+                check.lastRequested = Stopwatch.createStarted();
+                if (check.pendingResult != null && Duration.of(check.pendingAge).isShorterThan(maxAge)) {
+                    int result = check.pendingResult;
+                    write(out, check.pendingOutput);
+                    clearPending(check);
+                    return result;
+                }
+                clearPending(check);
+            }
+        }
+        if (redirect) {
+            return forMachine(machine).execute(checkId, flags, script, env, maxAge);
+        }
+
+        // run a round including everyone on this machine with compatible flags
+        synchronized (roundMutex) {
+            List<Check> round;
+            synchronized (checks) {
+                // another thread may have just run a round including us
+                Check check = checks.get(checkId);
+                if (check != null && check.pendingResult != null) {
+                    int result = check.pendingResult;
+                    write(out, check.pendingOutput);
+                    clearPending(check);
+                    return result;
+                }
+                round = MutableList.of();
+                for (Check other : MutableList.copyOf(checks.values())) {
+                    if (Duration.of(other.lastRequested).isLongerThan(maxAge.multiply(3))) {
+                        // entity no longer polling (e.g. stopped or unmanaged)
+                        checks.remove(other.id);
+                    } else if (other.id.equals(checkId)) {
+                        round.add(0, other);
+                    } else if (Objects.equal(other.flagsKey, flagsKey)) {
+                        round.add(other);
+                    }
+                }
+            }
+            Map<String, CheckResult> results = runRound(flags, round);
+            CheckResult ours = results.remove(checkId);
+            synchronized (checks) {
+                for (Map.Entry<String, CheckResult> entry : results.entrySet()) {
+                    Check other = checks.get(entry.getKey());
+                    if (other != null && entry.getValue().exitCode != null) {
+                        other.pendingResult = entry.getValue().exitCode;
+                        other.pendingOutput = entry.getValue().output;
+                        other.pendingAge = Stopwatch.createStarted();
+                    }
+                }
+            }
+            if (ours == null || ours.exitCode == null) {
+                throw new IllegalStateException("Consolidated check-running for "+checkId+" on "+machine+" did not complete"
+                        + (ours != null ? "; output: "+ours.output : ""));
+            }
+            write(out, ours.output);
+            return ours.exitCode;
+        }
+    }
+
+    /**
+     * Stops including the given check in rounds, e.g. when the entity's sensors are disconnected;
+     * if it was the last check on the machine, the instance is released.
+     */
+    public void remove(String checkId) {
+        synchronized (checks) {
+            checks.remove(checkId);
+            if (checks.isEmpty() && !released) {
+                released = true;
+                release(this);
+            }
+        }
+    }
+
+    protected Map<String, CheckResult> runRound(Map<String, ?> flags, List<Check> round) {
+        String nonce = "BROOKLYN_CHECK_"+Identifiers.makeRandomId(8);
+        List<String> lines = MutableList.of();
+        for (int i = 0; i < round.size(); i++) {
+            Check check = round.get(i);
+            lines.add("echo "+nonce+":begin:"+i);
+            lines.add("bash <<'"+nonce+"_EOF' 2>&1");
+            if (check.env != null) {
+                for (Map.Entry<String, ?> entry : check.env.entrySet()) {
+                    if (entry.getValue() == null) continue;
+                    lines.add("export "+entry.getKey()+"="+BashStringEscapes.wrapBash(entry.getValue().toString()));
+                }
+            }
+            lines.addAll(check.script);
+            lines.add(nonce+"_EOF");
+            lines.add("echo "+nonce+":end:"+i+":$?");
+        }
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        Map<String, Object> roundFlags = MutableMap.<String, Object>copyOf(flags);
+        roundFlags.put("out", stdout);
+        roundFlags.remove("err");
+        if (LOG.isDebugEnabled()) LOG.debug("Running consolidated check-running for {} on {}", round.size(), machine);
+        machine.execScript(roundFlags, "check-running (consolidated, "+round.size()+" entities)", lines, MutableMap.<String, Object>of());
+
+        return parse(nonce, stdout.toString(), round);
+    }
+
+    private Map<String, CheckResult> parse(String nonce, String output, List<Check> round) {
+        Map<String, CheckResult> result = MutableMap.of();
+        StringBuilder section = null;
+        int current = -1;
+        for (String line : output.split("\n", -1)) {
+            if (line.startsWith(nonce+":begin:")) {
+                current = Integer.parseInt(line.substring((nonce+":begin:").length()).trim());
+                section = new StringBuilder();
+            } else if (line.startsWith(nonce+":end:")) {
+                String[] parts = line.substring((nonce+":end:").length()).trim().split(":");
+                int index = Integer.parseInt(parts[0]);
+                if (index >= 0 && index < round.size()) {
+                    result.put(round.get(index).id, new CheckResult(Integer.parseInt(parts[1]), section != null ? section.toString() : ""));
+                }
+                current = -1;
+                section = null;
+            } else if (current >= 0 && section != null) {
+                section.append(line).append("\n");
+            }
+        }
+        if (current >= 0 && current < round.size()) {
+            // started but did not finish
+            result.put(round.get(current).id, new CheckResult(null, section != null ? section.toString() : ""));
+        }
+        return result;
+    }
+
+    private static Map<?, ?> flagsKey(Map<String, ?> flags) {
+        Map<String, Object> result = MutableMap.<String, Object>copyOf(flags);
+        result.remove("out");
+        result.remove("err");
+        result.remove("logPrefix");
+        return result;
+    }
+
+    private static void clearPending(Check check) {
+        check.pendingResult = null;
+        check.pendingOutput = null;
+        check.pendingAge = null;
+    }
+
+    private static void write(@Nullable OutputStream out, @Nullable String output) {
+        if (out == null || output == null) return;
+        try {
+            out.write(output.getBytes());
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+machine+"]";
+    }
+}
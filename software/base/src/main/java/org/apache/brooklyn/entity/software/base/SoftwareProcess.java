@@ -309,6 +309,13 @@ public interface SoftwareProcess extends Entity, Startable {
             "The period for polling for whether the process is running; applies only if the entity "
                     + "wires up the connectServiceUpIsRunning.",
             Duration.FIVE_SECONDS);
+
+    ConfigKey<Boolean> SERVICE_PROCESS_IS_RUNNING_CONSOLIDATED = ConfigKeys.newBooleanConfigKey(
+            "softwareProcess.serviceProcessIsRunningConsolidated",
+            "Whether to combine the is-running polls of the entities on the same ssh machine into a single ssh "
+                    + "command each period (see ConsolidatedIsRunningChecks); applies only if the entity wires up "
+                    + "the connectServiceUpIsRunning, and only to entities which also have this set.",
+            false);
     
     /**
      * Sets the object that manages the sequence of calls of the entity's driver.
@@ -290,7 +290,8 @@ public abstract class SoftwareProcessImpl extends AbstractEntity implements Soft
      * @see #disconnectServiceUpIsRunning()
      */
     protected void connectServiceUpIsRunning() {
-        Duration period = config().get(SERVICE_PROCESS_IS_RUNNING_POLL_PERIOD);
+        final Duration period = config().get(SERVICE_PROCESS_IS_RUNNING_POLL_PERIOD);
+        final boolean consolidated = Boolean.TRUE.equals(config().get(SERVICE_PROCESS_IS_RUNNING_CONSOLIDATED));
         serviceProcessIsRunning = FunctionFeed.builder()
                 .entity(this)
                 .period(period)
@@ -299,7 +300,15 @@ public abstract class SoftwareProcessImpl extends AbstractEntity implements Soft
                         .onException(Functions.constant(Boolean.FALSE))
                         .callable(new Callable<Boolean>() {
                             @Override
-                            public Boolean call() {
+                            public Boolean call() throws Exception {
+                                if (consolidated) {
+                                    return ConsolidatedIsRunningChecks.callConsolidated(period, new Callable<Boolean>() {
+                                        @Override
+                                        public Boolean call() {
+                                            return getDriver().isRunning();
+                                        }
+                                    });
+                                }
                                 return getDriver().isRunning();
                             }
                         }))
@@ -315,6 +324,11 @@ public abstract class SoftwareProcessImpl extends AbstractEntity implements Soft
      */
     protected void disconnectServiceUpIsRunning() {
         if (serviceProcessIsRunning != null) serviceProcessIsRunning.stop();
+        SoftwareProcessDriver driver = getDriver();
+        if (Boolean.TRUE.equals(config().get(SERVICE_PROCESS_IS_RUNNING_CONSOLIDATED)) && driver instanceof AbstractSoftwareProcessSshDriver) {
+            ConsolidatedIsRunningChecks checks = ConsolidatedIsRunningChecks.forMachineIfPresent(((AbstractSoftwareProcessSshDriver)driver).getMachine());
+            if (checks != null) checks.remove(getId());
+        }
         // set null so the SERVICE_UP enricher runs (possibly removing it), then remove so everything is removed
         // TODO race because the is-running check may be mid-task
         sensors().set(SERVICE_PROCESS_IS_RUNNING, null);
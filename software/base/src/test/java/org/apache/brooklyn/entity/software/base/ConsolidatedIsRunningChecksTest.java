@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.entity.software.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.brooklyn.api.location.LocationSpec;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.location.ssh.SshMachineLocation;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool;
+import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool.CustomResponse;
+import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool.CustomResponseGenerator;
+import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool.ExecParams;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class ConsolidatedIsRunningChecksTest extends BrooklynAppUnitTestSupport {
+
+    private static final Pattern BEGIN = Pattern.compile("echo (BROOKLYN_CHECK_\\w+):begin:(\\d+)");
+    private static final Pattern EXIT = Pattern.compile("exit (\\d+)");
+
+    private SshMachineLocation machine;
+    private ConsolidatedIsRunningChecks checks;
+
+    /**
+     * Simulates running the consolidated script: each check's result is the code of its "exit n" line;
+     * a check containing "hang" never completes (so neither do any after it).
+     */
+    private static class ConsolidatedScriptResponse implements CustomResponseGenerator {
+        @Override
+        public CustomResponse generate(ExecParams execParams) {
+            StringBuilder out = new StringBuilder();
+            String nonce = null;
+            int index = -1;
+            Integer code = null;
+            for (String line : execParams.commands) {
+                Matcher begin = BEGIN.matcher(line);
+                Matcher exit = EXIT.matcher(line);
+                if (begin.matches()) {
+                    nonce = begin.group(1);
+                    index = Integer.parseInt(begin.group(2));
+                    code = null;
+                    out.append(nonce+":begin:"+index+"\n");
+                } else if (nonce != null && line.equals(nonce+"_EOF")) {
+                    out.append(nonce+":end:"+index+":"+(code != null ? code : 0)+"\n");
+                } else if (line.contains("hang")) {
+                    return new CustomResponse(255, out.toString(), "");
+                } else if (exit.matches()) {
+                    if (code == null) code = Integer.parseInt(exit.group(1));
+                } else if (line.startsWith("echo ") && index >= 0 && !line.contains(":end:")) {
+                    out.append(line.substring("echo ".length())+"\n");
+                }
+            }
+            return new CustomResponse(0, out.toString(), "");
+        }
+    }
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        RecordingSshTool.clear();
+        RecordingSshTool.setCustomResponse(".*BROOKLYN_CHECK_.*", new ConsolidatedScriptResponse());
+        machine = mgmt.getLocationManager().createLocation(LocationSpec.create(SshMachineLocation.class)
+                .configure("address", "localhost")
+                .configure(SshMachineLocation.SSH_TOOL_CLASS, RecordingSshTool.class.getName()));
+        checks = ConsolidatedIsRunningChecks.forMachine(machine);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        RecordingSshTool.clear();
+        super.tearDown();
+    }
+
+    @Test
+    public void testOneInvocationServesAllChecksOnMachine() throws Exception {
+        assertEquals(execute("a", ImmutableList.of("echo a-out", "exit 0")), 0);
+        // b's check also runs a's
+        assertEquals(execute("b", ImmutableList.of("exit 1")), 1);
+        assertEquals(RecordingSshTool.getExecCmds().size(), 2);
+
+        // a's next poll uses the result from b's check
+        RecordingSshTool.clearCmdHistory();
+        ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+        assertEquals(execute("a", ImmutableList.of("echo a-out", "exit 0"), aOut), 0);
+        assertEquals(RecordingSshTool.getExecCmds().size(), 0);
+        assertTrue(aOut.toString().contains("a-out"), "out="+aOut);
+
+        // results are only used once, so b's next poll runs both again
+        assertEquals(execute("b", ImmutableList.of("exit 1")), 1);
+        assertEquals(execute("a", ImmutableList.of("echo a-out", "exit 0")), 0);
+        assertEquals(RecordingSshTool.getExecCmds().size(), 1);
+    }
+
+    @Test
+    public void testCheckWhichDoesNotCompleteFailsOnlyThatCheck() throws Exception {
+        execute("a", ImmutableList.of("exit 0"));
+        try {
+            execute("b", ImmutableList.of("hang"));
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // a is run first in a's own round, so still gets a result
+        assertEquals(execute("a", ImmutableList.of("exit 0")), 0);
+    }
+
+    @Test
+    public void testRemovedCheckNotRun() throws Exception {
+        execute("a", ImmutableList.of("exit 0"));
+        execute("b", ImmutableList.of("exit 1"));
+        checks.remove("b");
+        // uses the result from b's check
+        execute("a", ImmutableList.of("exit 0"));
+
+        RecordingSshTool.clearCmdHistory();
+        execute("a", ImmutableList.of("exit 0"));
+        assertEquals(RecordingSshTool.getExecCmds().size(), 1);
+        List<String> commands = RecordingSshTool.getLastExecCmd().commands;
+        for (String command : commands) {
+            assertTrue(!command.equals("exit 1"), "commands="+commands);
+        }
+    }
+
+    @Test
+    public void testReleasedWhenLastCheckRemoved() throws Exception {
+        execute("a", ImmutableList.of("exit 0"));
+        execute("b", ImmutableList.of("exit 1"));
+        assertSame(ConsolidatedIsRunningChecks.forMachineIfPresent(machine), checks);
+
+        checks.remove("a");
+        assertSame(ConsolidatedIsRunningChecks.forMachineIfPresent(machine), checks);
+        checks.remove("b");
+        assertNull(ConsolidatedIsRunningChecks.forMachineIfPresent(machine));
+
+        // a check against the released instance registers with a new one
+        assertEquals(execute("a", ImmutableList.of("exit 0")), 0);
+        ConsolidatedIsRunningChecks current = ConsolidatedIsRunningChecks.forMachineIfPresent(machine);
+        assertNotSame(current, checks);
+        current.remove("a");
+        assertNull(ConsolidatedIsRunningChecks.forMachineIfPresent(machine));
+    }
+
+    private int execute(String id, List<String> script) {
+        return execute(id, script, new ByteArrayOutputStream());
+    }
+
+    private int execute(String id, List<String> script, ByteArrayOutputStream out) {
+        Map<String, Object> flags = MutableMap.<String, Object>of("out", out);
+        return checks.execute(id, flags, script, ImmutableMap.of("ID", id), Duration.ONE_MINUTE);
+    }
+}
@@ -53,12 +53,16 @@ public class WindowsPerformanceCounterSensors implements EntityInitializer {
             "poll period",
             Duration.seconds(30));
 
+    public final static ConfigKey<Boolean> CONTINUOUS = WindowsPerformanceCounterFeed.CONTINUOUS;
+
     protected final Set<Map<String, String>> sensors;
     protected final Duration period;
+    protected final boolean continuous;
 
     public WindowsPerformanceCounterSensors(ConfigBag params) {
         sensors = params.get(PERFORMANCE_COUNTERS);
         period = params.get(PERIOD);
+        continuous = Boolean.TRUE.equals(params.get(CONTINUOUS));
     }
 
     public WindowsPerformanceCounterSensors(Map<String, String> params) {
@@ -69,6 +73,7 @@ public class WindowsPerformanceCounterSensors implements EntityInitializer {
     public void apply(EntityLocal entity) {
         WindowsPerformanceCounterFeed.Builder builder = WindowsPerformanceCounterFeed.builder()
                 .period(period)
+                .continuous(continuous)
                 .entity(entity);
         for (Map<String, String> sensorConfig : sensors) {
             String name = sensorConfig.get("name");
@@ -21,12 +21,16 @@ package org.apache.brooklyn.feed.windows;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,18 +52,22 @@ import org.apache.brooklyn.core.location.Machines;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.location.winrm.WinRmMachineLocation;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.core.internal.winrm.WinRmTool;
 import org.apache.brooklyn.util.core.internal.winrm.WinRmToolResponse;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.text.Identifiers;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -75,6 +83,9 @@ import com.google.common.reflect.TypeToken;
  * <p>This feed uses WinRM to invoke the windows utility <tt>typeperf</tt> to query for a specific set of performance
  * counters, by name. The values are extracted from the response, and published to the entity's sensors.</p>
  *
+ * <p>With {@link Builder#continuous(boolean)}, a single long-running {@code Get-Counter -Continuous} is used instead
+ * of a new command for each poll, and its samples are published as they arrive; it is restarted if it fails.</p>
+ *
  * <p>Example:</p>
  *
  * {@code
@@ -100,12 +111,25 @@ public class WindowsPerformanceCounterFeed extends AbstractFeed {
     private static final Joiner JOINER_ON_SPACE = Joiner.on(' ');
     private static final Joiner JOINER_ON_COMMA = Joiner.on(',');
     private static final int OUTPUT_COLUMN_WIDTH = 100;
+    /** Prefix of the line with which the continuous sampler reports the id of its PowerShell process. */
+    private static final String SAMPLER_PID_PREFIX = "SamplerPid=";
+    /** Prefix of the file in the remote user's temp directory which, once created, makes a continuous sampler exit. */
+    private static final String SAMPLER_STOP_FILE_PREFIX = "brooklyn-perfcounter-sampler-";
 
     @SuppressWarnings("serial")
     public static final ConfigKey<Collection<WindowsPerformanceCounterPollConfig<?>>> POLLS = ConfigKeys.newConfigKey(
             new TypeToken<Collection<WindowsPerformanceCounterPollConfig<?>>>() {},
             "polls");
 
+    @Beta
+    public static final ConfigKey<Boolean> CONTINUOUS = ConfigKeys.newBooleanConfigKey(
+            "continuous",
+            "Whether to keep a single Get-Counter -Continuous running, publishing each sample to the sensors as it arrives, "
+                    + "rather than executing Get-Counter (in a new WinRM shell and PowerShell process) for every poll",
+            false);
+
+    private transient ContinuousSampler sampler;
+
     public static Builder builder() {
         return new Builder();
     }
@@ -115,6 +139,7 @@ public class WindowsPerformanceCounterFeed extends AbstractFeed {
         private Set<WindowsPerformanceCounterPollConfig<?>> polls = Sets.newLinkedHashSet();
         private Duration period = Duration.of(30, TimeUnit.SECONDS);
         private String uniqueTag;
+        private boolean continuous;
         private volatile boolean built;
 
         public Builder entity(Entity val) {
@@ -148,6 +173,12 @@ public class WindowsPerformanceCounterFeed extends AbstractFeed {
             this.uniqueTag = uniqueTag;
             return this;
         }
+        /** @see WindowsPerformanceCounterFeed#CONTINUOUS */
+        @Beta
+        public Builder continuous(boolean continuous) {
+            this.continuous = continuous;
+            return this;
+        }
         public WindowsPerformanceCounterFeed build() {
             built = true;
             WindowsPerformanceCounterFeed result = new WindowsPerformanceCounterFeed(this);
@@ -177,6 +208,7 @@ public class WindowsPerformanceCounterFeed extends AbstractFeed {
             polls.add(configCopy);
         }
         config().set(POLLS, polls);
+        config().set(CONTINUOUS, builder.continuous);
         initUniqueTag(builder.uniqueTag, polls);
     }
 
@@ -191,6 +223,11 @@ public class WindowsPerformanceCounterFeed extends AbstractFeed {
             performanceCounterNames.add(config.getPerformanceCounterName());
         }
         
+        if (Boolean.TRUE.equals(getConfig(CONTINUOUS))) {
+            startContinuousSampler(polls, performanceCounterNames, minPeriod);
+            return;
+        }
+
         Iterable<String> allParams = ImmutableList.<String>builder()
                 .add("$ProgressPreference = \"SilentlyContinue\";")
                 .add("(Get-Counter")
@@ -218,6 +255,294 @@ public class WindowsPerformanceCounterFeed extends AbstractFeed {
                 minPeriod);
     }
 
+    private void startContinuousSampler(Collection<WindowsPerformanceCounterPollConfig<?>> polls, List<String> performanceCounterNames, long period) {
+        Iterable<String> allParams = ImmutableList.<String>builder()
+                .add("$ProgressPreference = \"SilentlyContinue\";")
+                .add("Write-Output")
+                .add("\""+SAMPLER_PID_PREFIX+"$PID\";")
+                .add("Get-Counter")
+                .add("-Counter")
+                .add(JOINER_ON_COMMA.join(Iterables.transform(performanceCounterNames, QuoteStringFunction.INSTANCE)))
+                .add("-SampleInterval")
+                .add(String.valueOf(Math.max(1, Math.round(period / 1000.0))))
+                .add("-Continuous")
+                .add("|")
+                .add("ForEach-Object")
+                .add("{")
+                .add("if (Test-Path $stopFile) { Remove-Item $stopFile -ErrorAction SilentlyContinue; exit };")
+                .add("$_.CounterSamples")
+                .add("|")
+                .add("Format-Table")
+                .add(String.format("@{Expression={$_.Path};width=%d},@{Expression={$_.CookedValue};width=%<d}", OUTPUT_COLUMN_WIDTH))
+                .add("-HideTableHeaders")
+                .add("|")
+                .add("Out-String")
+                .add("-Width")
+                .add(String.valueOf(OUTPUT_COLUMN_WIDTH * 2))
+                .add("}")
+                .build();
+        String command = JOINER_ON_SPACE.join(allParams);
+        log.debug("Windows performance counter continuous sampler command for {} will be: {}", entity, command);
+
+        sampler = new ContinuousSampler(getEntity(), command, new SendPerfCountersToSensors(getEntity(), polls));
+        // Each poll just checks that the sampler is still running, restarting it if it has ended or failed
+        getSamplerPoller().scheduleAtFixedRate(sampler, sampler, period);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Poller<Boolean> getSamplerPoller() {
+        return (Poller<Boolean>) super.getPoller();
+    }
+
+    @Override
+    public void suspend() {
+        super.suspend();
+        if (sampler != null) sampler.stop();
+    }
+
+    @Override
+    public void resume() {
+        if (sampler != null) sampler.resume();
+        super.resume();
+    }
+
+    @Override
+    protected void postStop() {
+        super.postStop();
+        if (sampler != null) sampler.stop();
+    }
+
+    /**
+     * Runs a long-lived {@code Get-Counter -Continuous} on the entity's machine (see {@link #CONTINUOUS}),
+     * passing each line of its output to {@link SendPerfCountersToSensors} as it arrives.
+     * <p>
+     * Each call starts the sampler if it is not already running, so when used as a poll job a sampler
+     * which has ended or failed is restarted (with a new WinRM shell) on the next poll. Once {@link #stop() stopped},
+     * it is not started again until {@link #resume() resumed}.
+     */
+    @VisibleForTesting
+    static class ContinuousSampler implements Callable<Boolean>, PollHandler<Boolean> {
+        private final Entity entity;
+        private final String command;
+        private final SendPerfCountersToSensors handler;
+        private final Object mutex = new Object();
+        private Future<WinRmToolResponse> run;
+        private LineWriter out;
+        private WinRmMachineLocation runMachine;
+        private volatile String runPid;
+        private String runStopFile;
+        private boolean stopped;
+
+        /**
+         * @param command the sampler's PowerShell command; each run prefixes it with the definition of {@code $stopFile},
+         *        whose creation should make it exit
+         */
+        ContinuousSampler(Entity entity, String command, SendPerfCountersToSensors handler) {
+            this.entity = entity;
+            this.command = command;
+            this.handler = handler;
+        }
+
+        /** Starts the sampler if it is not running; returns false if there is not (yet) a machine to run it on. */
+        @Override
+        public Boolean call() throws Exception {
+            synchronized (mutex) {
+                if (stopped) {
+                    return true;
+                }
+                if (run != null) {
+                    if (!run.isDone()) {
+                        return true;
+                    }
+                    checkEnded(run);
+                }
+                Maybe<WinRmMachineLocation> machine = Machines.findUniqueMachineLocation(entity.getLocations(), WinRmMachineLocation.class);
+                if (machine.isAbsent()) {
+                    run = null;
+                    return false;
+                }
+                run = startRun(machine.get());
+                return true;
+            }
+        }
+
+        private Future<WinRmToolResponse> startRun(final WinRmMachineLocation machine) {
+            final LineWriter runOut = new LineWriter() {
+                @Override protected void onLine(String line) {
+                    if (line.startsWith(SAMPLER_PID_PREFIX)) {
+                        String pid = line.substring(SAMPLER_PID_PREFIX.length()).trim();
+                        if (pid.matches("\\d+")) runPid = pid;
+                        return;
+                    }
+                    try {
+                        handler.onOutputLine(line);
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                        log.debug("Ignoring unexpected Windows Performance Counter output for "+entity+": "+line, e);
+                    }
+                }
+            };
+            final LineWriter runErr = new LineWriter() {
+                @Override protected void onLine(String line) {
+                    log.debug("Windows Performance Counter sampler stderr for {}: {}", entity, line);
+                }
+            };
+            out = runOut;
+            runMachine = machine;
+            runPid = null;
+            runStopFile = SAMPLER_STOP_FILE_PREFIX + Identifiers.makeRandomId(8) + ".stop";
+            final String runCommand = "$stopFile = "+stopFilePath(runStopFile)+"; "+command;
+            ExecutionContext executionContext = ((EntityInternal) entity).getExecutionContext();
+            return executionContext.submit(ImmutableMap.of("displayName", "Windows performance counter sampler"), new Callable<WinRmToolResponse>() {
+                @Override public WinRmToolResponse call() {
+                    return machine.executePsScript(ImmutableMap.of(), runCommand, runOut, runErr);
+                }
+            });
+        }
+
+        private void checkEnded(Future<WinRmToolResponse> ended) {
+            try {
+                WinRmToolResponse response = ended.get();
+                log.debug("Windows Performance Counter sampler for {} ended (exitcode={}); restarting", entity, response.getStatusCode());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                Exceptions.propagateIfFatal(cause);
+                handler.onException(cause instanceof Exception ? (Exception) cause : e);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                handler.onException(e);
+            }
+        }
+
+        /**
+         * Terminates the sampler, if running, and prevents it from being restarted until {@link #resume()}.
+         * <p>
+         * Its output is aborted, and its PowerShell process is stopped on the machine, which ends the command
+         * and so its WinRM shell. If the process has not yet reported its id, the run's stop file is created
+         * instead, so that it exits when it next takes a sample.
+         */
+        public void stop() {
+            WinRmMachineLocation machine;
+            String pid;
+            String stopFile;
+            synchronized (mutex) {
+                stopped = true;
+                boolean running = run != null && !run.isDone();
+                machine = runMachine;
+                pid = running ? runPid : null;
+                stopFile = (running && pid == null) ? runStopFile : null;
+                if (out != null) out.abort();
+                if (run != null) run.cancel(true);
+                out = null;
+                run = null;
+                runMachine = null;
+                runPid = null;
+                runStopFile = null;
+            }
+            if (pid != null) {
+                terminate(machine, "Stop-Process -Id "+pid+" -Force -ErrorAction SilentlyContinue", "process "+pid);
+            } else if (stopFile != null) {
+                terminate(machine, "New-Item -ItemType File -Force -Path "+stopFilePath(stopFile)+" | Out-Null", "stop file "+stopFile);
+            }
+        }
+
+        /** Allows the sampler to be started again by the next call. */
+        public void resume() {
+            synchronized (mutex) {
+                stopped = false;
+            }
+        }
+
+        private void terminate(WinRmMachineLocation machine, String script, String description) {
+            try {
+                machine.executePsScript(ImmutableMap.of(WinRmTool.PROP_EXEC_TRIES, 1), ImmutableList.of(script));
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                log.debug("Failed to stop Windows Performance Counter sampler ("+description+") for "+entity+" (continuing)", e);
+            }
+        }
+
+        private static String stopFilePath(String stopFile) {
+            return "(Join-Path $env:TEMP \""+stopFile+"\")";
+        }
+
+        @Override
+        public boolean checkSuccess(Boolean val) {
+            return Boolean.TRUE.equals(val);
+        }
+
+        @Override
+        public void onSuccess(Boolean val) {
+            // sensors are published as the sampler's output arrives
+        }
+
+        @Override
+        public void onFailure(Boolean val) {
+            log.trace("Windows Performance Counter sampler not started since there is still no WinRmMachineLocation");
+        }
+
+        @Override
+        public void onException(Exception exception) {
+            handler.onException(exception);
+        }
+
+        @Override
+        public String getDescription() {
+            return "continuous " + handler.getDescription();
+        }
+
+        @Override
+        public String toString() {
+            return super.toString()+"["+getDescription()+"]";
+        }
+    }
+
+    /**
+     * Passes each complete line written to it to {@link #onLine(String)}, without line terminators,
+     * skipping empty lines. Once {@link #abort() aborted}, writing throws an {@link IOException}.
+     */
+    @VisibleForTesting
+    abstract static class LineWriter extends Writer {
+        private final StringBuilder line = new StringBuilder();
+        private volatile boolean aborted;
+
+        protected abstract void onLine(String line);
+
+        public void abort() {
+            aborted = true;
+        }
+
+        @Override
+        public synchronized void write(char[] cbuf, int off, int len) throws IOException {
+            if (aborted) throw new IOException("Output no longer wanted");
+            for (int i = off; i < off + len; i++) {
+                char c = cbuf[i];
+                if (c == '\n') {
+                    endLine();
+                } else if (c != '\r') {
+                    line.append(c);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public synchronized void close() {
+            endLine();
+        }
+
+        private void endLine() {
+            if (line.length() > 0) {
+                String result = line.toString();
+                line.setLength(0);
+                onLine(result);
+            }
+        }
+    }
+
     private static class GetPerformanceCountersJob<T> implements Callable<T> {
 
         private final Entity entity;
@@ -301,27 +626,32 @@ public class WindowsPerformanceCounterFeed extends AbstractFeed {
                 if (Strings.isNullOrEmpty(pollResponse)) {
                     continue;
                 }
-                String path = pollResponse.substring(0, OUTPUT_COLUMN_WIDTH - 1);
-                // The performance counter output prepends the sensor name with "\\<machinename>" so we need to remove it
-                Matcher machineNameLookbackMatcher = MACHINE_NAME_LOOKBACK_PATTERN.matcher(path);
-                if (!machineNameLookbackMatcher.find()) {
-                    continue;
-                }
-                String name = machineNameLookbackMatcher.group(0).trim();
-                String rawValue = pollResponse.substring(OUTPUT_COLUMN_WIDTH).replaceAll("^\\s+", "");
-                WindowsPerformanceCounterPollConfig<?> config = getPollConfig(name);
-                Class<?> clazz = config.getSensor().getType();
-                AttributeSensor<Object> attribute = (AttributeSensor<Object>) Sensors.newSensor(clazz, config.getSensor().getName(), config.getDescription());
-                try {
-                    Object value = TypeCoercions.coerce(rawValue, TypeToken.of(clazz));
-                    entity.sensors().set(attribute, value);
-                } catch (Exception e) {
-                    Exceptions.propagateIfFatal(e);
-                    if (failedAttributes.add(attribute)) {
-                        log.warn("Failed to coerce value '{}' to {} for {} -> {}", new Object[] {rawValue, clazz, entity, attribute});
-                    } else {
-                        if (log.isTraceEnabled()) log.trace("Failed (repeatedly) to coerce value '{}' to {} for {} -> {}", new Object[] {rawValue, clazz, entity, attribute});
-                    }
+                onOutputLine(pollResponse);
+            }
+        }
+
+        /** Publishes the value from one (non-empty) line of the Get-Counter output to its sensor. */
+        void onOutputLine(String pollResponse) {
+            String path = pollResponse.substring(0, OUTPUT_COLUMN_WIDTH - 1);
+            // The performance counter output prepends the sensor name with "\\<machinename>" so we need to remove it
+            Matcher machineNameLookbackMatcher = MACHINE_NAME_LOOKBACK_PATTERN.matcher(path);
+            if (!machineNameLookbackMatcher.find()) {
+                return;
+            }
+            String name = machineNameLookbackMatcher.group(0).trim();
+            String rawValue = pollResponse.substring(OUTPUT_COLUMN_WIDTH).replaceAll("^\\s+", "");
+            WindowsPerformanceCounterPollConfig<?> config = getPollConfig(name);
+            Class<?> clazz = config.getSensor().getType();
+            AttributeSensor<Object> attribute = (AttributeSensor<Object>) Sensors.newSensor(clazz, config.getSensor().getName(), config.getDescription());
+            try {
+                Object value = TypeCoercions.coerce(rawValue, TypeToken.of(clazz));
+                entity.sensors().set(attribute, value);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                if (failedAttributes.add(attribute)) {
+                    log.warn("Failed to coerce value '{}' to {} for {} -> {}", new Object[] {rawValue, clazz, entity, attribute});
+                } else {
+                    if (log.isTraceEnabled()) log.trace("Failed (repeatedly) to coerce value '{}' to {} for {} -> {}", new Object[] {rawValue, clazz, entity, attribute});
                 }
             }
         }
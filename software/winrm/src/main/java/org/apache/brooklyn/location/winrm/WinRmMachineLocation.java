@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.net.InetAddress;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import org.apache.brooklyn.core.mgmt.ManagementContextInjectable;
 import org.apache.brooklyn.util.core.ClassLoaderUtils;
 import org.apache.brooklyn.util.core.config.ConfigBag;
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
+import org.apache.brooklyn.util.core.internal.winrm.StreamingWinRmTool;
 import org.apache.brooklyn.util.core.internal.winrm.WinRmTool;
 import org.apache.brooklyn.util.core.internal.winrm.WinRmToolResponse;
 import org.apache.brooklyn.util.core.internal.winrm.winrm4j.Winrm4jTool;
@@ -309,6 +311,22 @@ public class WinRmMachineLocation extends AbstractLocation implements MachineLoc
         return tool.executePs(psScript);
     }
 
+    /**
+     * Executes the given PowerShell command, writing its output to the given writers as it arrives, and
+     * blocking until it completes; see {@link StreamingWinRmTool#executePs(String, Writer, Writer)}.
+     * 
+     * @throws UnsupportedOperationException if the configured {@link #WINRM_TOOL_CLASS} does not support streaming
+     */
+    @Beta
+    public WinRmToolResponse executePsScript(Map<?,?> props, String psScript, Writer out, Writer err) {
+        WinRmTool tool = newWinRmTool(props);
+        if (!(tool instanceof StreamingWinRmTool)) {
+            throw new UnsupportedOperationException("WinRM tool "+tool+" (of type "+tool.getClass().getName()+") for "
+                    +this+" does not support streaming output");
+        }
+        return ((StreamingWinRmTool)tool).executePs(psScript, out, err);
+    }
+
     protected WinRmTool newWinRmTool(Map<?,?> props) {
         // TODO See comments/TODOs in SshMachineLocation.connectSsh()
         try {
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.internal.winrm;
+
+import java.io.Writer;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link WinRmTool} which can pass a command's output to the caller as it arrives, rather than
+ * only once the command has completed. This allows a long-running command, such as a continuous
+ * sampler, to run in a single shell for its whole life.
+ */
+@Beta
+public interface StreamingWinRmTool extends WinRmTool {
+
+    /**
+     * Executes the given PowerShell command, writing its stdout and stderr to the given writers as it arrives,
+     * and blocking until the command completes. The stdout and stderr of the returned response may be empty.
+     * <p>
+     * To abort the command, throw an {@link java.io.IOException} from either writer. The command is not
+     * retried on failure, as the writers may already have been passed some of its output.
+     */
+    WinRmToolResponse executePs(String command, Writer out, Writer err);
+}
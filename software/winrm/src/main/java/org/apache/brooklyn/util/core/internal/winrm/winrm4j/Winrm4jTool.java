@@ -21,6 +21,7 @@ package org.apache.brooklyn.util.core.internal.winrm.winrm4j;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -34,6 +35,7 @@ import org.apache.brooklyn.core.internal.BrooklynProperties;
 import org.apache.brooklyn.core.mgmt.ManagementContextInjectable;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.apache.brooklyn.util.core.internal.winrm.StreamingWinRmTool;
 import org.apache.brooklyn.util.core.internal.winrm.WinRmException;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.javalang.Threads;
@@ -56,7 +58,7 @@ import io.cloudsoft.winrm4j.winrm.WinRmTool;
 import io.cloudsoft.winrm4j.winrm.WinRmToolResponse;
 
 @Beta
-public class Winrm4jTool implements org.apache.brooklyn.util.core.internal.winrm.WinRmTool, ManagementContextInjectable {
+public class Winrm4jTool implements StreamingWinRmTool, ManagementContextInjectable {
 
     private static final Logger LOG = LoggerFactory.getLogger(Winrm4jTool.class);
 
@@ -136,6 +138,20 @@ public class Winrm4jTool implements org.apache.brooklyn.util.core.internal.winrm
         });
     }
 
+    /**
+     * Unlike the other commands, this is attempted only once, regardless of {@link #PROP_EXEC_TRIES}:
+     * the writers may already have been passed some of the output, and an {@link java.io.IOException}
+     * thrown by a writer means the caller has aborted the command.
+     */
+    @Override
+    public org.apache.brooklyn.util.core.internal.winrm.WinRmToolResponse executePs(final String command, final Writer out, final Writer err) {
+        return exec(new Function<io.cloudsoft.winrm4j.winrm.WinRmTool, io.cloudsoft.winrm4j.winrm.WinRmToolResponse>() {
+            @Override public WinRmToolResponse apply(io.cloudsoft.winrm4j.winrm.WinRmTool tool) {
+                return tool.executePs(command, out, err);
+            }
+        }, 1);
+    }
+
     @Override
     public org.apache.brooklyn.util.core.internal.winrm.WinRmToolResponse copyToServer(InputStream source, String destination) {
         executePs(ImmutableList.of("rm -ErrorAction SilentlyContinue " + destination));
@@ -164,6 +180,10 @@ public class Winrm4jTool implements org.apache.brooklyn.util.core.internal.winrm
     }
 
     private org.apache.brooklyn.util.core.internal.winrm.WinRmToolResponse exec(Function<io.cloudsoft.winrm4j.winrm.WinRmTool, io.cloudsoft.winrm4j.winrm.WinRmToolResponse> task) {
+        return exec(task, execTries);
+    }
+
+    private org.apache.brooklyn.util.core.internal.winrm.WinRmToolResponse exec(Function<io.cloudsoft.winrm4j.winrm.WinRmTool, io.cloudsoft.winrm4j.winrm.WinRmToolResponse> task, int execTries) {
         Collection<Throwable> exceptions = Lists.newArrayList();
         Stopwatch totalStopwatch = Stopwatch.createStarted();
         
@@ -23,19 +23,34 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.location.LocationSpec;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.core.entity.EntityAsserts;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.location.winrm.WinRmMachineLocation;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.internal.winrm.RecordingWinRmTool;
+import org.apache.brooklyn.util.core.internal.winrm.RecordingWinRmTool.CustomResponse;
+import org.apache.brooklyn.util.core.internal.winrm.RecordingWinRmTool.CustomResponseGenerator;
+import org.apache.brooklyn.util.core.internal.winrm.RecordingWinRmTool.ExecParams;
+import org.apache.brooklyn.util.core.internal.winrm.RecordingWinRmTool.ExecType;
 import org.apache.brooklyn.util.core.internal.winrm.WinRmToolResponse;
 import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.AfterMethod;
@@ -44,6 +59,7 @@ import org.testng.annotations.Test;
 import org.apache.brooklyn.location.localhost.LocalhostMachineProvisioningLocation;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 public class WindowsPerformanceCounterFeedTest extends BrooklynAppUnitTestSupport {
@@ -61,12 +77,14 @@ public class WindowsPerformanceCounterFeedTest extends BrooklynAppUnitTestSuppor
         loc = new LocalhostMachineProvisioningLocation();
         entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
         app.start(ImmutableList.of(loc));
+        RecordingWinRmTool.clear();
     }
 
     @AfterMethod(alwaysRun=true)
     @Override
     public void tearDown() throws Exception {
         super.tearDown();
+        RecordingWinRmTool.clear();
     }
 
     @Test
@@ -120,6 +138,159 @@ public class WindowsPerformanceCounterFeedTest extends BrooklynAppUnitTestSuppor
         EntityAsserts.assertAttributeEquals(entity, doubleSensor, 3.1415926);
     }
 
+    @Test
+    public void testContinuousSamplerPublishesToSensorsAndIsRestarted() throws Exception {
+        AttributeSensor<Double> doubleSensor = Sensors.newDoubleSensor("baz.quux");
+        StringBuilder responseBuilder = new StringBuilder();
+        addMockResponse(responseBuilder, "\\\\machine.name\\double\\sensor", "3.1415926");
+        RecordingWinRmTool.setCustomResponse(".*Get-Counter.*-Continuous.*", new RecordingWinRmTool.CustomResponse(0, responseBuilder.toString(), ""));
+
+        WinRmMachineLocation machine = mgmt.getLocationManager().createLocation(LocationSpec.create(WinRmMachineLocation.class)
+                .configure("address", "1.2.3.4")
+                .configure(WinRmMachineLocation.WINRM_TOOL_CLASS, RecordingWinRmTool.class.getName()));
+        Entity windowsEntity = app.createAndManageChild(EntitySpec.create(TestEntity.class).location(machine));
+
+        WindowsPerformanceCounterFeed feed = WindowsPerformanceCounterFeed.builder()
+                .entity(windowsEntity)
+                .addSensor("\\double\\sensor", doubleSensor)
+                .period(Duration.millis(10))
+                .continuous(true)
+                .build();
+        try {
+            EntityAsserts.assertAttributeEqualsEventually(windowsEntity, doubleSensor, 3.1415926);
+
+            // The stub's command completes once it has written its output, so the sampler is started again
+            Asserts.succeedsEventually(new Runnable() {
+                @Override public void run() {
+                    assertTrue(getStreamingExecs().size() >= 2, "execs="+RecordingWinRmTool.getExecs());
+                }});
+            for (ExecParams exec : getStreamingExecs()) {
+                assertTrue(exec.commands.get(0).contains("-Continuous"), "exec="+exec);
+            }
+        } finally {
+            feed.stop();
+        }
+    }
+
+    @Test
+    public void testStoppedContinuousSamplerIsTerminatedAndExecutesNoMore() throws Exception {
+        AttributeSensor<Double> doubleSensor = Sensors.newDoubleSensor("baz.quux");
+        StringBuilder responseBuilder = new StringBuilder("SamplerPid=1234\r\n");
+        addMockResponse(responseBuilder, "\\\\machine.name\\double\\sensor", "3.1415926");
+        RecordingWinRmTool.setCustomResponse(".*Get-Counter.*-Continuous.*", new CustomResponse(0, responseBuilder.toString(), ""));
+
+        // The stub's sampler command keeps running until its process is stopped
+        final CountDownLatch terminated = new CountDownLatch(1);
+        RecordingWinRmTool.streamingCompletion = terminated;
+        RecordingWinRmTool.setCustomResponse(".*Stop-Process.*", new CustomResponseGenerator() {
+            @Override public CustomResponse generate(ExecParams execParams) {
+                terminated.countDown();
+                return new CustomResponse(0, "", "");
+            }});
+
+        WinRmMachineLocation machine = mgmt.getLocationManager().createLocation(LocationSpec.create(WinRmMachineLocation.class)
+                .configure("address", "1.2.3.4")
+                .configure(WinRmMachineLocation.WINRM_TOOL_CLASS, RecordingWinRmTool.class.getName()));
+        Entity windowsEntity = app.createAndManageChild(EntitySpec.create(TestEntity.class).location(machine));
+
+        WindowsPerformanceCounterFeed feed = WindowsPerformanceCounterFeed.builder()
+                .entity(windowsEntity)
+                .addSensor("\\double\\sensor", doubleSensor)
+                .period(Duration.millis(10))
+                .continuous(true)
+                .build();
+        EntityAsserts.assertAttributeEqualsEventually(windowsEntity, doubleSensor, 3.1415926);
+        feed.stop();
+
+        assertEquals(getStreamingExecs().size(), 1, "execs="+RecordingWinRmTool.getExecs());
+        ExecParams lastExec = RecordingWinRmTool.getLastExec();
+        assertEquals(lastExec.type, ExecType.POWER_SHELL, "exec="+lastExec);
+        assertTrue(lastExec.commands.get(0).contains("Stop-Process -Id 1234"), "exec="+lastExec);
+
+        final int execCount = RecordingWinRmTool.getExecs().size();
+        Asserts.succeedsContinually(ImmutableMap.of("timeout", Duration.millis(100)), new Runnable() {
+            @Override public void run() {
+                assertEquals(RecordingWinRmTool.getExecs().size(), execCount, "execs="+RecordingWinRmTool.getExecs());
+            }});
+    }
+
+    @Test
+    public void testContinuousSamplerStoppedBeforeReportingPidIsToldToExit() throws Exception {
+        AttributeSensor<Double> doubleSensor = Sensors.newDoubleSensor("baz.quux");
+        StringBuilder responseBuilder = new StringBuilder();
+        addMockResponse(responseBuilder, "\\\\machine.name\\double\\sensor", "3.1415926");
+        RecordingWinRmTool.setCustomResponse(".*Get-Counter.*-Continuous.*", new CustomResponse(0, responseBuilder.toString(), ""));
+
+        // The stub's sampler command never reports its process id, and keeps running until its stop file is created
+        final CountDownLatch terminated = new CountDownLatch(1);
+        RecordingWinRmTool.streamingCompletion = terminated;
+        RecordingWinRmTool.setCustomResponse(".*New-Item.*", new CustomResponseGenerator() {
+            @Override public CustomResponse generate(ExecParams execParams) {
+                terminated.countDown();
+                return new CustomResponse(0, "", "");
+            }});
+
+        WinRmMachineLocation machine = mgmt.getLocationManager().createLocation(LocationSpec.create(WinRmMachineLocation.class)
+                .configure("address", "1.2.3.4")
+                .configure(WinRmMachineLocation.WINRM_TOOL_CLASS, RecordingWinRmTool.class.getName()));
+        Entity windowsEntity = app.createAndManageChild(EntitySpec.create(TestEntity.class).location(machine));
+
+        WindowsPerformanceCounterFeed feed = WindowsPerformanceCounterFeed.builder()
+                .entity(windowsEntity)
+                .addSensor("\\double\\sensor", doubleSensor)
+                .period(Duration.millis(10))
+                .continuous(true)
+                .build();
+        EntityAsserts.assertAttributeEqualsEventually(windowsEntity, doubleSensor, 3.1415926);
+        feed.stop();
+
+        List<ExecParams> streamingExecs = getStreamingExecs();
+        assertEquals(streamingExecs.size(), 1, "execs="+RecordingWinRmTool.getExecs());
+        Matcher matcher = Pattern.compile("(brooklyn-perfcounter-sampler-\\w+\\.stop)").matcher(streamingExecs.get(0).commands.get(0));
+        assertTrue(matcher.find(), "exec="+streamingExecs.get(0));
+        String stopFile = matcher.group(1);
+
+        ExecParams lastExec = RecordingWinRmTool.getLastExec();
+        assertEquals(lastExec.type, ExecType.POWER_SHELL, "exec="+lastExec);
+        assertTrue(lastExec.commands.get(0).contains("New-Item"), "exec="+lastExec);
+        assertTrue(lastExec.commands.get(0).contains(stopFile), "exec="+lastExec);
+        assertFalse(lastExec.commands.get(0).contains("Stop-Process"), "exec="+lastExec);
+    }
+
+    @Test
+    public void testLineWriterPassesCompleteLines() throws Exception {
+        final List<String> lines = MutableList.of();
+        WindowsPerformanceCounterFeed.LineWriter writer = new WindowsPerformanceCounterFeed.LineWriter() {
+            @Override protected void onLine(String line) {
+                lines.add(line);
+            }
+        };
+        writer.write("first\r");
+        writer.write("\nsec");
+        writer.write("ond\r\n\r\n");
+        assertEquals(lines, ImmutableList.of("first", "second"));
+        writer.write("third");
+        writer.close();
+        assertEquals(lines, ImmutableList.of("first", "second", "third"));
+
+        writer.abort();
+        try {
+            writer.write("fourth\r\n");
+            Asserts.shouldHaveFailedPreviously();
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(lines, ImmutableList.of("first", "second", "third"));
+    }
+
+    private List<ExecParams> getStreamingExecs() {
+        List<ExecParams> result = MutableList.of();
+        for (ExecParams exec : RecordingWinRmTool.getExecs()) {
+            if (exec.type == ExecType.POWER_SHELL_STREAMING) result.add(exec);
+        }
+        return result;
+    }
+
     private void addMockResponse(StringBuilder responseBuilder, String path, String value) {
         responseBuilder.append(path);
         responseBuilder.append(Strings.repeat(" ", 200 - (path.length() + value.length())));
@@ -20,11 +20,15 @@ package org.apache.brooklyn.util.core.internal.winrm;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
 
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.stream.Streams;
 
 import com.google.common.base.MoreObjects;
@@ -38,11 +42,12 @@ import com.google.common.collect.Maps;
  * 
  * By default, all commands return exit code 0, and no stdout/stderr.
  */
-public class RecordingWinRmTool implements WinRmTool {
+public class RecordingWinRmTool implements StreamingWinRmTool {
 
     public enum ExecType {
         COMMAND,
         POWER_SHELL,
+        POWER_SHELL_STREAMING,
         COPY_TO_SERVER;
     }
     
@@ -99,11 +104,14 @@ public class RecordingWinRmTool implements WinRmTool {
     public static List<ExecParams> execs = Lists.newCopyOnWriteArrayList();
     public static List<Map<?,?>> constructorProps = Lists.newCopyOnWriteArrayList();
     public static Map<String, CustomResponseGenerator> customResponses = Maps.newConcurrentMap();
+    /** If set, streaming commands block after writing their output until this is counted down (or they are interrupted). */
+    public static volatile CountDownLatch streamingCompletion;
     
     public static void clear() {
         execs.clear();
         constructorProps.clear();
         customResponses.clear();
+        streamingCompletion = null;
     }
     
     public static void setCustomResponse(String cmdRegex, CustomResponseGenerator response) {
@@ -150,6 +158,26 @@ public class RecordingWinRmTool implements WinRmTool {
         return generateResponse(execParams);
     }
 
+    /**
+     * Writes the generated response's stdout and stderr to the writers, then returns
+     * (once {@link #streamingCompletion} is counted down, if set).
+     */
+    @Override
+    public WinRmToolResponse executePs(String command, Writer out, Writer err) {
+        ExecParams execParams = new ExecParams(ExecType.POWER_SHELL_STREAMING, ownConstructorProps, ImmutableList.of(command));
+        execs.add(execParams);
+        WinRmToolResponse response = generateResponse(execParams);
+        try {
+            out.write(response.getStdOut());
+            err.write(response.getStdErr());
+            CountDownLatch completion = streamingCompletion;
+            if (completion != null) completion.await();
+        } catch (IOException | InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+        return new WinRmToolResponse("", "", response.getStatusCode());
+    }
+
     @Override
     public WinRmToolResponse copyToServer(InputStream source, String destination) {
         execs.add(new ExecParams(ExecType.COPY_TO_SERVER, ownConstructorProps, ImmutableList.of(new String(Streams.readFully(source)))));
@@ -560,4 +560,41 @@ b: 1
             return result;
         }
     }
+
+    /** As {@link #getTextOfYamlAtPath(String, Object...)} for each element of the list at the given path,
+     * parsing the YAML only once (rather than once per element, which is quadratic for long lists).
+     * <p>
+     * If the path is not found or is not a list this returns an empty list. */
+    @Beta
+    public static List<YamlExtract> getTextOfYamlListItemsAtPath(String yaml, Object ...pathToList) {
+        List<YamlExtract> result = MutableList.of();
+        if (yaml==null) return result;
+        try {
+            Node root = newYaml().compose(new StringReader(yaml));
+            YamlExtract list = new YamlExtract();
+            list.yaml = yaml;
+            list.focus = root;
+            findTextOfYamlAtPath(list, 0, pathToList);
+            if (list.focus==null || list.focus.getNodeId()!=NodeId.sequence) return result;
+            int size = ((SequenceNode)list.focus).getValue().size();
+            for (int i=0; i<size; i++) {
+                YamlExtract item = new YamlExtract();
+                item.yaml = yaml;
+                item.focus = list.focus;
+                findTextOfYamlAtPath(item, 0, i);
+                // as if found from the root, where the list's neighbours bound its first and last elements
+                if (item.prev==null) item.prev = list.key;
+                if (item.next==null) item.next = list.next;
+                result.add(item);
+            }
+            return result;
+        } catch (NoSuchMethodError e) {
+            throw new IllegalStateException("Class version error. This can happen if using a TestNG plugin in your IDE "
+                + "which is an older version, dragging in an older version of SnakeYAML which does not support Mark.getIndex.", e);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            log.debug("Unable to find list in yaml (returning no elements): "+e);
+            return MutableList.of();
+        }
+    }
 }
@@ -167,6 +167,28 @@ public class YamlsTest {
             "x: \n   c: 1\n   d: 2");
     }
 
+    @Test
+    public void testExtractListItemsSameAsEachPath() {
+        String sample = "version: 1\n"
+            + "items:\n"
+            + "# first\n"
+            + "- id: a\n"
+            + "  item: x\n"
+            + "- id: b\n"
+            + "  item:\n"
+            + "    type: y\n"
+            + "- c\n"
+            + "other: z\n";
+        List<YamlExtract> extracts = Yamls.getTextOfYamlListItemsAtPath(sample, "items");
+        assertEquals(extracts.size(), 3);
+        for (int i=0; i<extracts.size(); i++) {
+            assertEquals(extracts.get(i).getMatchedYamlText(), Yamls.getTextOfYamlAtPath(sample, "items", i).getMatchedYamlText(), "item "+i);
+        }
+
+        Assert.assertTrue(Yamls.getTextOfYamlListItemsAtPath(sample, "version").isEmpty());
+        Assert.assertTrue(Yamls.getTextOfYamlListItemsAtPath(sample, "missing").isEmpty());
+    }
+
     @Test
     public void testExtractNoOOBE() {
         // this might log a warning, as item not found, but won't throw